@@ -0,0 +1,52 @@
+package com.example.aroxas_emotilog;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * AdapterDiffCallback - Forwards the operations of a {@link ListDiff} to a RecyclerView adapter.
+ *
+ * Design Rationale:
+ * - Each operation becomes the matching item range notification, so the RecyclerView
+ *   only binds inserted and changed rows and animates moved ones
+ * - A reset falls back to notifyDataSetChanged
+ * - Must be dispatched on the UI thread right after the adapter switched to the new
+ *   data, since RecyclerView reads the new rows while it applies the notifications
+ */
+final class AdapterDiffCallback implements ListDiff.Callback {
+    private final RecyclerView.Adapter<?> adapter;
+
+
+    AdapterDiffCallback(RecyclerView.Adapter<?> adapter) {
+        this.adapter = adapter;
+    }
+
+
+    @Override
+    public void onInserted(int position, int count) {
+        adapter.notifyItemRangeInserted(position, count);
+    }
+
+
+    @Override
+    public void onRemoved(int position, int count) {
+        adapter.notifyItemRangeRemoved(position, count);
+    }
+
+
+    @Override
+    public void onMoved(int fromPosition, int toPosition) {
+        adapter.notifyItemMoved(fromPosition, toPosition);
+    }
+
+
+    @Override
+    public void onChanged(int position, int count) {
+        adapter.notifyItemRangeChanged(position, count);
+    }
+
+
+    @Override
+    public void onReset() {
+        adapter.notifyDataSetChanged();
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.aroxas_emotilog;
+
+import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.widget.Toast;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * EmotiLogApplication - Process-wide setup for the EmotiLog application.
+ *
+ * Opens the durable emotion log before any activity is created, so every screen
+ * sees the full history no matter which activity Android restores first after
+ * the process was killed.
+ *
+ * Design Rationale:
+ * - Application.onCreate runs exactly once per process, before any activity
+ * - Keeps file system details out of the activities
+ * - A log that cannot be opened leaves LogStorage in memory-only mode rather
+ *   than crashing the app
+ * - Sets the retention policy here too, so memory stays bounded however long
+ *   the app has been in use
+ * - Reports entries the background {@link GroupCommitWriter} could not save with a
+ *   toast, since the tap that logged them has long returned
+ * - Leaves {@link StorageMetrics} off: it costs every storage call a little even
+ *   when sampled, so it is only switched on while investigating a problem
+ */
+public class EmotiLogApplication extends Application {
+    private static final String TAG = "EmotiLog";
+    private static final String LOG_DIRECTORY = "emotion-log";
+    // Older entries are kept as daily per-emotion counts only.
+    private static final int RAW_RETENTION_DAYS = 365;
+    private static final int MAX_RAW_ENTRIES = 200_000;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        try {
+            LogStorage.open(new File(getFilesDir(), LOG_DIRECTORY));
+        } catch (IOException e) {
+            Log.e(TAG, "Could not open emotion log, entries will not be saved", e);
+        }
+        LogStorage.setRetentionPolicy(new RetentionPolicy(RAW_RETENTION_DAYS, MAX_RAW_ENTRIES));
+
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        LogStorage.writer().setFailureListener((entries, failure) -> {
+            Log.e(TAG, "Could not save " + entries + " emotions", failure);
+            mainHandler.post(() -> Toast.makeText(this, entries == 1 ? "1 emotion could not be saved"
+                    : entries + " emotions could not be saved", Toast.LENGTH_SHORT).show());
+        });
+    }
+}
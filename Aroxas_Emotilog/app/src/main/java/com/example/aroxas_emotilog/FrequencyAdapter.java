@@ -4,80 +4,71 @@ import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.BaseAdapter;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 /**
  * FrequencyAdapter - Custom adapter for displaying emotion frequency data.
- * This adapter handles the display of emotion frequency counts in a ListView,
+ * This adapter handles the display of emotion frequency counts in a RecyclerView,
  * showing each emotion with its count and a visual progress bar representation.
  * Design Rationale:
- * - Extends BaseAdapter for full control over item display
- * - Uses ViewHolder pattern for efficient ListView performance
+ * - Extends RecyclerView.Adapter so updates can name the rows they touch
+ * - Uses stable ids: a row's id is the emotion id from the {@link LogSnapshot}, so a
+ *   row that moves up keeps its view
  * - Provides visual representation of frequency with progress bars
- * - Handles dynamic updates of frequency data
+ * - Handles dynamic updates of frequency data through a {@link ListDiff} computed off
+ *   the UI thread, so only the rows of the emotions that changed are bound again
+ * - Can show the estimated top emotions when there are too many distinct ones to
+ *   count exactly
  *
  */
-public class FrequencyAdapter extends BaseAdapter {
-    private List<Map.Entry<String, Integer>> frequencyData;
+public class FrequencyAdapter extends RecyclerView.Adapter<FrequencyAdapter.ViewHolder> {
+    private List<Map.Entry<String, Integer>> frequencyData = Collections.emptyList();
+    private long[] ids = new long[0];
     private final LayoutInflater inflater;
     private int maxCount;
-    
+    private boolean approximate;
+    private final AdapterDiffCallback diffCallback = new AdapterDiffCallback(this);
+
 
-    public FrequencyAdapter(Context context, List<Map.Entry<String, Integer>> frequencyData) {
-        this.frequencyData = frequencyData;
+    public FrequencyAdapter(Context context) {
         this.inflater = LayoutInflater.from(context);
-        
-        // Find the maximum count for progress bar scaling
-        this.maxCount = 0;
-        for (Map.Entry<String, Integer> entry : frequencyData) {
-            if (entry.getValue() > maxCount) {
-                maxCount = entry.getValue();
-            }
-        }
+        setHasStableIds(true);
     }
-    
+
     @Override
-    public int getCount() {
+    public int getItemCount() {
         return frequencyData.size();
     }
-    
+
     @Override
-    public Object getItem(int position) {
-        return frequencyData.get(position);
+    public long getItemId(int position) {
+        return ids[position];
     }
-    
+
+    @NonNull
     @Override
-    public long getItemId(int position) {
-        return position;
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        return new ViewHolder(inflater.inflate(R.layout.frequency_item, parent, false));
     }
-    
+
     @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        ViewHolder holder;
-        
-        if (convertView == null) {
-            convertView = inflater.inflate(R.layout.frequency_item, parent, false);
-            holder = new ViewHolder();
-            holder.emotionText = convertView.findViewById(R.id.emotionText);
-            holder.countText = convertView.findViewById(R.id.countText);
-            holder.progressBar = convertView.findViewById(R.id.progressBar);
-            convertView.setTag(holder);
-        } else {
-            holder = (ViewHolder) convertView.getTag();
-        }
-        
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
         Map.Entry<String, Integer> entry = frequencyData.get(position);
         String emotion = entry.getKey();
         int count = entry.getValue();
-        
+
         holder.emotionText.setText(emotion);
-        holder.countText.setText(String.valueOf(count));
-        
+        holder.countText.setText(approximate ? "≈" + count : String.valueOf(count));
+
         // Set progress bar (scale to max count)
         if (maxCount > 0) {
             int progress = (int) ((count * 100.0) / maxCount);
@@ -85,29 +76,46 @@ public class FrequencyAdapter extends BaseAdapter {
         } else {
             holder.progressBar.setProgress(0);
         }
-        
-        return convertView;
     }
-    
-    // Updates the frequency data and notifies the adapter of the change.
-
-    public void updateFrequencyData(List<Map.Entry<String, Integer>> newFrequencyData) {
-        this.frequencyData = newFrequencyData;
-        
-        // Recalculate max count
-        this.maxCount = 0;
+
+    /**
+     * Switches to new frequency data and notifies the rows in {@code diff}, which must
+     * lead from the shown rows to the new ones and mark every row whose text or bar
+     * changes, which is every row when the largest count changed. Counts are shown
+     * with a "≈" when they are {@link HeavyHitters} estimates.
+     *
+     * @param newIds the stable id of each row
+     */
+    public void submitFrequencyData(List<Map.Entry<String, Integer>> newFrequencyData, long[] newIds,
+                                    boolean newApproximate, ListDiff diff) {
+        this.frequencyData = new ArrayList<>(newFrequencyData);
+        this.ids = newIds.clone();
+        this.maxCount = maxCount(frequencyData);
+        this.approximate = newApproximate;
+        diff.dispatchTo(diffCallback);
+    }
+
+
+    /** Returns the largest count, which every progress bar is scaled to. */
+    static int maxCount(List<Map.Entry<String, Integer>> frequencyData) {
+        int max = 0;
         for (Map.Entry<String, Integer> entry : frequencyData) {
-            if (entry.getValue() > maxCount) {
-                maxCount = entry.getValue();
-            }
+            max = Math.max(max, entry.getValue());
         }
-        
-        notifyDataSetChanged();
+        return max;
     }
 
-    private static class ViewHolder {
-        TextView emotionText;
-        TextView countText;
-        ProgressBar progressBar;
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView emotionText;
+        final TextView countText;
+        final ProgressBar progressBar;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            emotionText = itemView.findViewById(R.id.emotionText);
+            countText = itemView.findViewById(R.id.countText);
+            progressBar = itemView.findViewById(R.id.progressBar);
+        }
     }
 }
@@ -4,81 +4,104 @@ import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.BaseAdapter;
 import android.widget.TextView;
 
-import java.util.List;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
 
 /**
- * LogAdapter - Custom adapter for displaying LogEntry objects in a ListView.
- * 
- * This adapter handles the display of emotion log entries in a ListView,
+ * LogAdapter - Custom adapter for displaying LogEntry objects in a RecyclerView.
+ *
+ * This adapter handles the display of emotion log entries in a RecyclerView,
  * providing a custom layout for each log entry that shows the emotion
  * and formatted timestamp.
- * 
+ *
  * Design Rationale:
- * - Extends BaseAdapter for full control over item display
- * - Uses ViewHolder pattern for efficient ListView performance
- * - Provides methods to update data dynamically
+ * - Extends RecyclerView.Adapter so updates can name the rows they touch
+ * - Uses stable ids: a row's id is its entry's durable record index, which stays the
+ *   same as new logs push the row down the list
+ * - Reads rows through a {@link LogPager}, so only the pages around the scroll
+ *   position are held in memory instead of the full history
+ * - Formats timestamps through a shared {@link TimeFormatter}, so binding a row
+ *   does not create a date formatter
+ * - Provides methods to update data dynamically; an updated {@link LogPager} keeps
+ *   the pages it already loaded, and the {@link ListDiff} computed with it off the
+ *   UI thread means applying a few new logs only binds those rows
  * - Handles empty state gracefully
  */
-public class LogAdapter extends BaseAdapter {
-    private Context context;
-    private List<LogEntry> logs;
-    private LayoutInflater inflater;
-    
-
-    public LogAdapter(Context context, List<LogEntry> logs) {
-        this.context = context;
-        this.logs = logs;
+public class LogAdapter extends RecyclerView.Adapter<LogAdapter.ViewHolder> {
+    // Null until the first pager is submitted.
+    private LogPager logs;
+    private final LayoutInflater inflater;
+    private TimeFormatter timeFormatter;
+    private final AdapterDiffCallback diffCallback = new AdapterDiffCallback(this);
+
+
+    /** Creates an adapter that shows no rows until the first {@link #submitLogs}. */
+    public LogAdapter(Context context) {
         this.inflater = LayoutInflater.from(context);
+        this.timeFormatter = TimeFormatter.getDefault();
+        setHasStableIds(true);
     }
-    
+
     @Override
-    public int getCount() {
-        return logs.size();
+    public int getItemCount() {
+        return logs != null ? logs.size() : 0;
     }
-    
+
     @Override
-    public Object getItem(int position) {
-        return logs.get(position);
+    public long getItemId(int position) {
+        return logs.getItemId(position);
     }
-    
+
+    @NonNull
     @Override
-    public long getItemId(int position) {
-        return position;
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        return new ViewHolder(inflater.inflate(R.layout.log_item, parent, false));
     }
-    
+
     @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        ViewHolder holder;
-        
-        if (convertView == null) {
-            convertView = inflater.inflate(R.layout.log_item, parent, false);
-            holder = new ViewHolder();
-            holder.emotionText = convertView.findViewById(R.id.emotionText);
-            holder.timestampText = convertView.findViewById(R.id.timestampText);
-            convertView.setTag(holder);
-        } else {
-            holder = (ViewHolder) convertView.getTag();
-        }
-        
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
         LogEntry log = logs.get(position);
         holder.emotionText.setText(log.getEmotion());
-        holder.timestampText.setText(log.getFormattedDateTime());
-        
-        return convertView;
+        holder.timestampText.setText(timeFormatter.formatDateTime(log.getTimestamp()));
     }
-    
 
-    public void updateLogs(List<LogEntry> newLogs) {
+    /**
+     * Switches to a newer pager and notifies the rows in {@code diff}, which must
+     * have been computed as {@code newLogs.diffFrom(getLogs())}, or be a reset if
+     * no pager was submitted before.
+     */
+    public void submitLogs(LogPager newLogs, ListDiff diff) {
         this.logs = newLogs;
-        notifyDataSetChanged();
+        diff.dispatchTo(diffCallback);
     }
-    
 
-    private static class ViewHolder {
-        TextView emotionText;
-        TextView timestampText;
+
+    /** Rebinds every row if the locale or time zone changed while the screen was hidden. */
+    public void refreshTimeFormat() {
+        TimeFormatter formatter = TimeFormatter.refreshDefault();
+        if (formatter != timeFormatter) {
+            this.timeFormatter = formatter;
+            notifyItemRangeChanged(0, getItemCount());
+        }
+    }
+
+
+    /** Returns the pager shown, or null before the first {@link #submitLogs}. */
+    public LogPager getLogs() {
+        return logs;
+    }
+
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView emotionText;
+        final TextView timestampText;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            emotionText = itemView.findViewById(R.id.emotionText);
+            timestampText = itemView.findViewById(R.id.timestampText);
+        }
     }
 }
@@ -1,12 +1,16 @@
 package com.example.aroxas_emotilog;
 
 import android.os.Bundle;
-import android.widget.ListView;
 import android.widget.TextView;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.DividerItemDecoration;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import android.content.Intent;
 import android.view.View;
 import android.widget.Button;
@@ -20,8 +24,14 @@ import android.widget.Button;
  * log viewer for users to review their emotional history.
  * 
  * Design Rationale:
- * - Uses ListView for efficient display of potentially large lists
+ * - Uses RecyclerView with stable ids for efficient display of potentially large lists
+ * - Pages logs in through a {@link LogPager}, so opening the screen costs the same
+ *   whether the history holds a hundred logs or millions
  * - Shows data in reverse chronological order (newest first) for better UX
+ * - Follows the {@link LogStorage} change feed while visible and catches up on
+ *   resume, applying only the rows added since the shown snapshot: the first pager,
+ *   each updated one and its {@link ListDiff} are computed on a background thread,
+ *   and the UI thread only notifies the inserted rows
  * - Provides clear visual separation between different log entries
  * - Includes summary information at the top of the screen
  * - Handles empty state gracefully with informative message
@@ -29,9 +39,15 @@ import android.widget.Button;
  */
 public class LogsActivity extends AppCompatActivity {
     
-    private ListView logsListView;
+    private RecyclerView logsListView;
     private TextView summaryTextView;
     private LogAdapter logAdapter;
+    private final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService diffExecutor = Executors.newSingleThreadExecutor();
+    // Pager of the last diff handed to the UI thread, null before the first one;
+    // only used on diffExecutor.
+    private LogPager diffedLogs;
+    private final LogStorage.ChangeListener changeListener = change -> applySnapshot(change.getSnapshot());
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -62,9 +78,13 @@ public class LogsActivity extends AppCompatActivity {
 
 
 
+    // The list starts empty; onResume builds the first pager in the background.
     private void setupLogsList() {
-        List<LogEntry> logs = LogStorage.getLogsSortedByTime();
-        logAdapter = new LogAdapter(this, logs);
+        logAdapter = new LogAdapter(this);
+        logsListView.setLayoutManager(new LinearLayoutManager(this));
+        DividerItemDecoration divider = new DividerItemDecoration(this, DividerItemDecoration.VERTICAL);
+        divider.setDrawable(getDrawable(R.drawable.list_divider));
+        logsListView.addItemDecoration(divider);
         logsListView.setAdapter(logAdapter);
     }
     
@@ -87,14 +107,66 @@ public class LogsActivity extends AppCompatActivity {
         summaryTextView.setText(summary.toString());
     }
     
+    // Moves the list to a newer snapshot; only rows added since the shown one are loaded
+    // and bound. Tasks run one at a time, so each diff starts where the previous one
+    // ended and the UI thread applies them in the same order.
+    private void applySnapshot(LogSnapshot snapshot) {
+        try {
+            diffExecutor.execute(() -> diffAndSubmit(snapshot));
+        } catch (RejectedExecutionException e) {
+            // The activity was destroyed while a change was being delivered; nothing to show.
+        }
+    }
+
+
+    private void diffAndSubmit(LogSnapshot snapshot) {
+        LogPager logs;
+        ListDiff diff;
+        if (diffedLogs == null) {
+            logs = new LogPager(snapshot, prefetchExecutor);
+            diff = ListDiff.reset(logs.size());
+            if (logs.size() > 0) {
+                // Loads the first page, and merges sorted runs if there are several,
+                // here rather than while binding.
+                logs.get(0);
+            }
+        } else {
+            logs = diffedLogs.update(snapshot);
+            if (logs == diffedLogs) {
+                return;
+            }
+            diff = logs.diffFrom(diffedLogs);
+        }
+        diffedLogs = logs;
+        runOnUiThread(() -> {
+            if (!isDestroyed()) {
+                logAdapter.submitLogs(logs, diff);
+                updateSummary();
+            }
+        });
+    }
+    
     @Override
     protected void onResume() {
         super.onResume();
-        // Refresh the data when returning to this activity
-        if (logAdapter != null) {
-            List<LogEntry> logs = LogStorage.getLogsSortedByTime();
-            logAdapter.updateLogs(logs);
-            updateSummary();
-        }
+        // Catch up with logs added while the screen was hidden, then follow new ones
+        LogStorage.addChangeListener(changeListener);
+        logAdapter.refreshTimeFormat();
+        applySnapshot(LogStorage.snapshot());
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        LogStorage.removeChangeListener(changeListener);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // Normally done in onPause; repeated so no change is delivered to a shut down executor.
+        LogStorage.removeChangeListener(changeListener);
+        prefetchExecutor.shutdownNow();
+        diffExecutor.shutdownNow();
     }
 }
@@ -7,6 +7,8 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
+import java.io.IOException;
+
 /**
  * MainActivity - The primary interface for the EmotiLog application.
  * 
@@ -19,6 +21,9 @@ import androidx.appcompat.app.AppCompatActivity;
  * - Uses a grid layout for emoticon buttons to maximize screen space efficiency
  * - Implements immediate feedback via Toast messages for user interaction
  * - Separates concerns by delegating data storage to LogStorage class
+ * - Taps only queue the entry through {@link LogStorage#enqueueLog}, so the UI
+ *   thread never waits for the disk; queued entries are flushed when the screen
+ *   is no longer visible, since the process may be killed after that
  * - Provides clear navigation paths to different app sections
  *
  */
@@ -35,30 +40,36 @@ public class MainActivity extends AppCompatActivity {
     
 
     private void initializeEmoticonButtons() {
-        // First row buttons
-        setupEmoticonButton(R.id.btnHappy, "Happy");
-        setupEmoticonButton(R.id.btnSad, "Sad");
-        setupEmoticonButton(R.id.btnAngry, "Angry");
-        
-        // Second row buttons
-        setupEmoticonButton(R.id.btnExcited, "Excited");
-        setupEmoticonButton(R.id.btnCrying, "Crying");
-        setupEmoticonButton(R.id.btnDead, "Dead");
-        
-        // Third row buttons
-        setupEmoticonButton(R.id.btnLoved, "Loved");
-        setupEmoticonButton(R.id.btnTired, "Tired");
-        setupEmoticonButton(R.id.btnSick, "Sick");
+        // Three rows of three, in the order of EmotionRegistry.DEFAULT_EMOTIONS.
+        int[] buttonIds = {
+                R.id.btnHappy, R.id.btnSad, R.id.btnAngry,
+                R.id.btnExcited, R.id.btnCrying, R.id.btnDead,
+                R.id.btnLoved, R.id.btnTired, R.id.btnSick
+        };
+        for (int i = 0; i < buttonIds.length; i++) {
+            setupEmoticonButton(buttonIds[i], EmotionRegistry.DEFAULT_EMOTIONS.get(i));
+        }
     }
     
 
     private void setupEmoticonButton(int buttonId, String emotion) {
         Button button = findViewById(buttonId);
         button.setOnClickListener(v -> {
-            LogStorage.addLog(emotion);
+            LogStorage.enqueueLog(emotion);
             showEmotionLoggedToast(emotion);
         });
     }
+
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        try {
+            LogStorage.flush();
+        } catch (IOException e) {
+            Toast.makeText(this, "Recent emotions could not be saved", Toast.LENGTH_SHORT).show();
+        }
+    }
     
 
     private void initializeActionButtons() {
@@ -1,17 +1,19 @@
 package com.example.aroxas_emotilog;
 
 import android.os.Bundle;
-import android.widget.ListView;
 import android.widget.TextView;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.DividerItemDecoration;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Date;
+import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import android.content.Intent;
 import android.view.View;
 import android.widget.Button;
@@ -26,18 +28,40 @@ import android.widget.Button;
  * 
  * Design Rationale:
  * - Separates different types of summaries into distinct sections
- * - Uses ListView for efficient display of emotion frequency data
- * - Provides both overall and daily-specific statistics
+ * - Uses RecyclerView with stable emotion ids for efficient display of emotion
+ *   frequency data
+ * - Provides both overall and daily-specific statistics, plus 90-day and 12-week
+ *   trends read from the storage rollup tables
  * - Handles empty state with informative messages
  * - Updates data dynamically when returning to the activity
+ * - Computes a {@link SummarySnapshot} on a background thread through a shared
+ *   {@link SummaryEngine}; the UI thread only renders it
+ * - Follows the {@link LogStorage} change feed while visible; new logs only update
+ *   the summary and the frequency rows they affect, found by a {@link ListDiff}
+ *   computed next to the summary off the UI thread
+ * - Reads the recent activity panel from the storage's ring of newest entries, so it
+ *   costs the same whatever the history size; the entries are read next to the summary
+ *   and from the same snapshot, so the panel agrees with today's counts
  *
  */
 public class SummaryActivity extends AppCompatActivity {
     
+    // Shared across activity instances, so reopening the screen reuses the last summary.
+    private static final SummaryEngine summaryEngine = new SummaryEngine();
+
     private TextView overallStatsText;
     private TextView dailyStatsText;
-    private ListView frequencyListView;
+    private TextView trendsText;
+    private RecyclerView frequencyListView;
     private FrequencyAdapter frequencyAdapter;
+    private final ExecutorService summaryExecutor = Executors.newSingleThreadExecutor();
+    private final LogStorage.ChangeListener changeListener = change -> refreshSummary();
+    // Snapshot and frequency rows of the last summary handed to the UI thread; only used
+    // on summaryExecutor.
+    private LogSnapshot renderedSnapshot;
+    private List<Map.Entry<String, Integer>> renderedFrequencies = Collections.emptyList();
+    private long[] renderedIds = new long[0];
+    private boolean renderedApproximate;
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -45,16 +69,20 @@ public class SummaryActivity extends AppCompatActivity {
         setContentView(R.layout.activity_summary);
         
         initializeViews();
-        updateOverallStatistics();
-        updateDailyStatistics();
-        updateFrequencyList();
     }
     
 
     private void initializeViews() {
         overallStatsText = findViewById(R.id.overallStatsText);
         dailyStatsText = findViewById(R.id.dailyStatsText);
+        trendsText = findViewById(R.id.trendsText);
         frequencyListView = findViewById(R.id.frequencyListView);
+        frequencyAdapter = new FrequencyAdapter(this);
+        frequencyListView.setLayoutManager(new LinearLayoutManager(this));
+        DividerItemDecoration divider = new DividerItemDecoration(this, DividerItemDecoration.VERTICAL);
+        divider.setDrawable(getDrawable(R.drawable.list_divider));
+        frequencyListView.addItemDecoration(divider);
+        frequencyListView.setAdapter(frequencyAdapter);
 
         // Handle back button
         Button backButton = findViewById(R.id.backButton);
@@ -69,24 +97,87 @@ public class SummaryActivity extends AppCompatActivity {
     }
     
 
-    private void updateOverallStatistics() {
-        int totalLogs = LogStorage.getTotalLogCount();
-        String mostFrequent = LogStorage.getMostFrequentEmotion();
-        Map<String, Integer> emotionCounts = LogStorage.getEmotionCounts();
+    // Summarizes the latest snapshot off the UI thread, then renders the result.
+    private void refreshSummary() {
+        long now = System.currentTimeMillis();
+        try {
+            summaryExecutor.execute(() -> summarizeAndShow(now));
+        } catch (RejectedExecutionException e) {
+            // A change delivered while the screen was being destroyed; there is nothing to refresh.
+        }
+    }
+
+
+    private void summarizeAndShow(long now) {
+        LogSnapshot snapshot = LogStorage.snapshot();
+        SummarySnapshot summary = summaryEngine.summarize(snapshot, now);
+        // Tasks run one at a time, so each diff starts where the previous one ended
+        // and the UI thread receives them in the same order.
+        List<Map.Entry<String, Integer>> frequencies = summary.getFrequencies();
+        long[] ids = new long[frequencies.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = snapshot.getEmotionId(frequencies.get(i).getKey());
+        }
+        ListDiff diff = frequencyDiff(snapshot, frequencies, ids, summary.isApproximate());
+        long[] recentTimestamps = new long[SummarySnapshot.MAX_RECENT_ENTRIES];
+        String[] recentEmotions = new String[SummarySnapshot.MAX_RECENT_ENTRIES];
+        int recent = LogStorage.getRecentLogsForDay(snapshot, now, recentTimestamps, recentEmotions);
+        renderedSnapshot = snapshot;
+        renderedFrequencies = frequencies;
+        renderedIds = ids;
+        renderedApproximate = summary.isApproximate();
+        runOnUiThread(() -> {
+            if (!isDestroyed()) {
+                showSummary(summary, ids, diff, recentTimestamps, recentEmotions, recent, now);
+            }
+        });
+    }
+
+
+    // Diffs the frequency rows against the rendered ones. Emotion ids are only stable
+    // within one lineage of snapshots, and a switch between exact and estimated counts
+    // changes every row, so both reload the list.
+    private ListDiff frequencyDiff(LogSnapshot snapshot, List<Map.Entry<String, Integer>> frequencies,
+                                   long[] ids, boolean approximate) {
+        if (LogChange.between(renderedSnapshot, snapshot).isReset() || approximate != renderedApproximate) {
+            return ListDiff.reset(frequencies.size());
+        }
+        List<Map.Entry<String, Integer>> old = renderedFrequencies;
+        // Every bar is scaled to the largest count, so all rows change along with it.
+        boolean rescaled = FrequencyAdapter.maxCount(old) != FrequencyAdapter.maxCount(frequencies);
+        return ListDiff.between(renderedIds, ids, (oldPosition, newPosition) -> !rescaled
+                && old.get(oldPosition).getValue().equals(frequencies.get(newPosition).getValue()));
+    }
+
+
+    private void showSummary(SummarySnapshot summary, long[] frequencyIds, ListDiff frequencyDiff,
+                             long[] recentTimestamps, String[] recentEmotions, int recent, long currentTime) {
+        updateOverallStatistics(summary);
+        updateDailyStatistics(summary, recentTimestamps, recentEmotions, recent, currentTime);
+        updateTrends(summary);
+        frequencyAdapter.submitFrequencyData(summary.getFrequencies(), frequencyIds, summary.isApproximate(),
+                frequencyDiff);
+    }
+
+
+    private void updateOverallStatistics(SummarySnapshot summary) {
+        int totalLogs = summary.getTotalLogCount();
+        String mostFrequent = summary.getMostFrequentEmotion();
         
         StringBuilder sb = new StringBuilder();
         sb.append("📊 OVERALL STATISTICS\n\n");
         sb.append("Total Emotions Logged: ").append(totalLogs).append("\n");
         
         if (mostFrequent != null) {
-            int mostFrequentCount = emotionCounts.get(mostFrequent);
+            int mostFrequentCount = summary.getMostFrequentEmotionCount();
             sb.append("Most Frequent: ").append(mostFrequent)
               .append(" (").append(mostFrequentCount).append(" times)\n");
         }
         
         if (totalLogs > 0) {
-            sb.append("\nEmotion Breakdown:\n");
-            for (Map.Entry<String, Integer> entry : emotionCounts.entrySet()) {
+            sb.append(summary.isApproximate()
+                    ? "\nEmotion Breakdown (top emotions, estimated):\n" : "\nEmotion Breakdown:\n");
+            for (Map.Entry<String, Integer> entry : summary.getFrequencies()) {
                 String emotion = entry.getKey();
                 int count = entry.getValue();
                 double percentage = (count * 100.0) / totalLogs;
@@ -101,21 +192,17 @@ public class SummaryActivity extends AppCompatActivity {
     }
     
 
-    private void updateDailyStatistics() {
-        long currentTime = System.currentTimeMillis();
-        List<LogEntry> todayLogs = LogStorage.getLogsForDay(currentTime);
-        Map<String, Integer> todayCounts = LogStorage.getEmotionCountsForDay(currentTime);
-        
-        SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, yyyy", Locale.getDefault());
-        String todayDate = dateFormat.format(new Date(currentTime));
+    private void updateDailyStatistics(SummarySnapshot summary, long[] recentTimestamps, String[] recentEmotions,
+                                       int recent, long currentTime) {
+        String todayDate = TimeFormatter.getDefault().formatDate(currentTime);
         
         StringBuilder sb = new StringBuilder();
         sb.append("📅 TODAY'S SUMMARY (").append(todayDate).append(")\n\n");
-        sb.append("Total Logs Today: ").append(todayLogs.size()).append("\n");
+        sb.append("Total Logs Today: ").append(summary.getTodayLogCount()).append("\n");
         
-        if (!todayLogs.isEmpty()) {
+        if (summary.getTodayLogCount() > 0) {
             sb.append("\nToday's Emotions:\n");
-            for (Map.Entry<String, Integer> entry : todayCounts.entrySet()) {
+            for (Map.Entry<String, Integer> entry : summary.getTodayCounts().entrySet()) {
                 String emotion = entry.getKey();
                 int count = entry.getValue();
                 sb.append("• ").append(emotion).append(": ").append(count).append(" times\n");
@@ -123,14 +210,9 @@ public class SummaryActivity extends AppCompatActivity {
             
             // Show recent logs
             sb.append("\nRecent Activity:\n");
-            List<LogEntry> recentLogs = new ArrayList<>(todayLogs);
-            recentLogs.sort((a, b) -> Long.compare(b.getTimestamp(), a.getTimestamp()));
-            
-            int maxRecent = Math.min(5, recentLogs.size());
-            for (int i = 0; i < maxRecent; i++) {
-                LogEntry entry = recentLogs.get(i);
-                sb.append("• ").append(entry.getEmotion())
-                  .append(" at ").append(entry.getFormattedTime()).append("\n");
+            for (int i = 0; i < recent; i++) {
+                sb.append("• ").append(recentEmotions[i])
+                  .append(" at ").append(TimeFormatter.getDefault().formatTime(recentTimestamps[i])).append("\n");
             }
         } else {
             sb.append("\nNo emotions logged today yet.\nLog your first emotion!");
@@ -140,23 +222,64 @@ public class SummaryActivity extends AppCompatActivity {
     }
     
 
-    private void updateFrequencyList() {
-        Map<String, Integer> emotionCounts = LogStorage.getEmotionCounts();
-        List<Map.Entry<String, Integer>> sortedCounts = new ArrayList<>(emotionCounts.entrySet());
-        
-        // Sort by count (descending)
-        sortedCounts.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
-        
-        frequencyAdapter = new FrequencyAdapter(this, sortedCounts);
-        frequencyListView.setAdapter(frequencyAdapter);
+    private void updateTrends(SummarySnapshot summary) {
+        int[] days = summary.getDailyTrend();
+        int[] weeks = summary.getWeeklyTrend();
+        int total = 0;
+        for (int count : days) {
+            total += count;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("📈 TRENDS\n\n");
+        sb.append("Last ").append(days.length).append(" days: ").append(total).append(" logs (")
+          .append(String.format("%.1f", total / (double) days.length)).append(" per day)\n");
+        // One row per 30 days, oldest first, so today is the last character.
+        for (int from = 0; from < days.length; from += 30) {
+            sb.append(sparkline(days, from, Math.min(days.length, from + 30))).append("\n");
+        }
+        sb.append("\nLast ").append(weeks.length).append(" weeks:\n");
+        sb.append(sparkline(weeks, 0, weeks.length)).append("\n");
+        sb.append("This week: ").append(weeks[weeks.length - 1]).append(" logs");
+
+        trendsText.setText(sb.toString());
     }
-    
+
+
+    // Draws counts[from, to) as block characters, scaled to the largest count in the array.
+    private static String sparkline(int[] counts, int from, int to) {
+        final String blocks = "▁▂▃▄▅▆▇█";
+        int max = 0;
+        for (int count : counts) {
+            max = Math.max(max, count);
+        }
+        StringBuilder sb = new StringBuilder(to - from);
+        for (int i = from; i < to; i++) {
+            int level = max == 0 ? 0 : (int) ((long) counts[i] * (blocks.length() - 1) / max);
+            sb.append(counts[i] == 0 ? '·' : blocks.charAt(level));
+        }
+        return sb.toString();
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
-        // Refresh all data when returning to this activity
-        updateOverallStatistics();
-        updateDailyStatistics();
-        updateFrequencyList();
+        // Catch up with logs added while the screen was hidden, then follow new ones
+        LogStorage.addChangeListener(changeListener);
+        refreshSummary();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        LogStorage.removeChangeListener(changeListener);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // Stop the change feed before its executor goes away, even if onPause was skipped.
+        LogStorage.removeChangeListener(changeListener);
+        summaryExecutor.shutdownNow();
     }
 }
@@ -0,0 +1,24 @@
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    jmhImplementation(project(":storage"))
+}
+
+// Run with ./gradlew :benchmarks:jmh; results are written to build/results/jmh.
+jmh {
+    jmhVersion.set(libs.versions.jmh.get())
+    // Reports allocation rate and bytes allocated per operation next to each score.
+    profilers.add("gc")
+    fork.set(1)
+    // Ten million entries plus what the write benchmarks add during an iteration.
+    jvmArgs.addAll("-Xms4g", "-Xmx4g")
+    resultFormat.set("JSON")
+}
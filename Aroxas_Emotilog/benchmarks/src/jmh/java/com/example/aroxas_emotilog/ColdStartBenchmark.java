@@ -0,0 +1,135 @@
+package com.example.aroxas_emotilog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * ColdStartBenchmark - Opening a durable {@link LogStore} from a checkpoint against a full replay.
+ *
+ * The trial writes a log of {@code entries} entries, checkpoints it and logs a
+ * tail of {@link #TAIL} more entries the checkpoint does not cover. It then keeps
+ * two copies of the directory: one with the checkpoint, which opens by restoring
+ * it and replaying the tail, and one without, which replays the whole log. Each
+ * call opens a new store and drops it again without writing a checkpoint, so
+ * every call starts from the same files.
+ *
+ * Design Rationale:
+ * - Both copies hold the same log records, so the difference between the scores
+ *   is what the checkpoint saves
+ * - The files stay in the page cache between calls, so the scores leave out disk
+ *   reads, as on a phone that reopens the app shortly after closing it
+ * - Posting lists of a restored checkpoint are built on the maintenance thread
+ *   after open returns, so openFromCheckpoint leaves that work out, as the app
+ *   does before its first screen
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ColdStartBenchmark {
+    static final int TAIL = 1000;
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    @Param({ "1000000" })
+    public int entries;
+
+    private File withCheckpoint;
+    private File withoutCheckpoint;
+
+
+    @Setup(Level.Trial)
+    public void write() throws IOException {
+        withCheckpoint = Files.createTempDirectory("cold-start").toFile();
+        LogStore store = new LogStore();
+        store.setTimeZone(UTC);
+        store.setCheckpointInterval(0);
+        store.open(withCheckpoint);
+        Random random = new Random(42);
+        int batch = 50_000;
+        String[] emotions = new String[batch];
+        long[] timestamps = new long[batch];
+        long first = StoreFixture.END_MILLIS - (entries + TAIL) * StoreFixture.SPACING_MILLIS;
+        for (int start = 0; start < entries + TAIL; start += batch) {
+            if (start == entries) {
+                store.checkpoint();
+            }
+            int count = Math.min(batch, entries + TAIL - start);
+            for (int i = 0; i < count; i++) {
+                double r = random.nextDouble();
+                emotions[i] = StoreFixture.EMOTIONS[(int) (r * r * StoreFixture.EMOTIONS.length)];
+                timestamps[i] = first + (start + i) * StoreFixture.SPACING_MILLIS;
+            }
+            store.addLogs(emotions, timestamps, count);
+        }
+        // Closed without checkpointing, so the tail stays uncovered.
+        store.reset();
+
+        withoutCheckpoint = Files.createTempDirectory("cold-start").toFile();
+        List<File> checkpoints = Arrays.asList(Checkpoint.list(withCheckpoint));
+        for (File file : withCheckpoint.listFiles()) {
+            if (!checkpoints.contains(file)) {
+                Files.copy(file.toPath(), new File(withoutCheckpoint, file.getName()).toPath());
+            }
+        }
+    }
+
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        for (File directory : new File[] { withCheckpoint, withoutCheckpoint }) {
+            try (Stream<Path> paths = Files.walk(directory.toPath())) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+
+    @Benchmark
+    public int openFromCheckpoint() throws IOException {
+        return open(withCheckpoint);
+    }
+
+
+    @Benchmark
+    public int openByFullReplay() throws IOException {
+        return open(withoutCheckpoint);
+    }
+
+
+    private static int open(File directory) throws IOException {
+        LogStore store = new LogStore();
+        store.setTimeZone(UTC);
+        store.setCheckpointInterval(0);
+        store.open(directory);
+        try {
+            return store.getTotalLogCount();
+        } finally {
+            store.reset();
+        }
+    }
+}
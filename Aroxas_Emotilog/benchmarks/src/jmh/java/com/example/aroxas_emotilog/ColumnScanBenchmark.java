@@ -0,0 +1,114 @@
+package com.example.aroxas_emotilog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ColumnScanBenchmark - Full scans of {@link LogColumns} sealed blocks against plain arrays.
+ *
+ * Both sides sum the same entries, once for every entry and once for the entries
+ * of one emotion in the newer half of the history. The plain arrays are what the
+ * columns held before full chunks were sealed, so the difference is the cost of
+ * decoding a block per chunk.
+ *
+ * Design Rationale:
+ * - Reads the blocks through the same per-chunk decoding the scanning queries use,
+ *   one scratch buffer per column, so the score is not an allocation benchmark
+ * - The filter resolves the emotion name of every entry, like a {@link LogFilter}
+ *   passed to the store does
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ColumnScanBenchmark {
+    @Param({ "10000", "1000000", "10000000" })
+    public int entries;
+
+    private LogColumns.View view;
+    private long[] rawTimestamps;
+    private short[] rawOrdinals;
+    private final long[] timestampScratch = new long[LogColumns.CHUNK_SIZE];
+    private final short[] ordinalScratch = new short[LogColumns.CHUNK_SIZE];
+    private LogFilter filter;
+
+
+    @Setup(Level.Trial)
+    public void fill() {
+        view = StoreFixture.columns(entries).view();
+        rawTimestamps = new long[entries];
+        rawOrdinals = new short[entries];
+        for (int i = 0; i < entries; i++) {
+            rawTimestamps[i] = view.timestampAt(i);
+            rawOrdinals[i] = (short) view.ordinalAt(i);
+        }
+        long middle = rawTimestamps[entries / 2];
+        String emotion = StoreFixture.EMOTIONS[2];
+        filter = (timestamp, name) -> timestamp >= middle && name.equals(emotion);
+    }
+
+
+    @Benchmark
+    public long scanRaw() {
+        return scanRaw(null);
+    }
+
+
+    @Benchmark
+    public long scanSealed() {
+        return scanSealed(null);
+    }
+
+
+    @Benchmark
+    public long scanRawFiltered() {
+        return scanRaw(filter);
+    }
+
+
+    @Benchmark
+    public long scanSealedFiltered() {
+        return scanSealed(filter);
+    }
+
+
+    // Sums the entries that pass the filter, or all of them without one.
+    private long scanRaw(LogFilter filter) {
+        long sum = 0;
+        for (int i = 0; i < rawTimestamps.length; i++) {
+            if (filter == null || filter.test(rawTimestamps[i], view.emotionName(rawOrdinals[i]))) {
+                sum += rawTimestamps[i] ^ rawOrdinals[i];
+            }
+        }
+        return sum;
+    }
+
+
+    private long scanSealed(LogFilter filter) {
+        long sum = 0;
+        for (int chunk = 0, base = 0; base < view.size(); chunk++, base += LogColumns.CHUNK_SIZE) {
+            long[] timestamps = view.timestamps(chunk, timestampScratch);
+            short[] ordinals = view.ordinals(chunk, ordinalScratch);
+            for (int i = 0, limit = Math.min(LogColumns.CHUNK_SIZE, view.size() - base); i < limit; i++) {
+                if (filter == null || filter.test(timestamps[i], view.emotionName(ordinals[i]))) {
+                    sum += timestamps[i] ^ ordinals[i];
+                }
+            }
+        }
+        return sum;
+    }
+}
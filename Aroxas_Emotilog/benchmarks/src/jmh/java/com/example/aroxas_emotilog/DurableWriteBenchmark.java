@@ -0,0 +1,79 @@
+package com.example.aroxas_emotilog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * DurableWriteBenchmark - Throughput of {@link LogStorage#addLog} with the durable log open.
+ *
+ * Unlike the other benchmarks, the store is opened on a fresh temporary directory
+ * before every iteration, so each call also writes its entry to disk. With several
+ * threads, entries queued while one writer holds the lock are written as one batch,
+ * so throughput should grow with the thread count instead of staying at one disk
+ * write per entry.
+ *
+ * Design Rationale:
+ * - Starts every iteration empty, since the point is the cost of the write path
+ *   rather than of the structures a large history builds up
+ * - Scores depend on the disk and the file system of the temporary directory
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DurableWriteBenchmark {
+
+    private File directory;
+
+
+    @Setup(Level.Iteration)
+    public void open() throws IOException {
+        StoreFixture.clear();
+        directory = Files.createTempDirectory("durable-write").toFile();
+        LogStorage.open(directory);
+    }
+
+
+    @TearDown(Level.Iteration)
+    public void delete() throws IOException {
+        StoreFixture.clear();
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+
+    @Benchmark
+    @Threads(1)
+    public void addLog() {
+        LogStorage.addLog("Happy");
+    }
+
+
+    @Benchmark
+    @Threads(4)
+    public void addLogContended() {
+        LogStorage.addLog("Happy");
+    }
+}
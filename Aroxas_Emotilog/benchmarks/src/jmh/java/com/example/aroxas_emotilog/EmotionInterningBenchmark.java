@@ -0,0 +1,56 @@
+package com.example.aroxas_emotilog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EmotionInterningBenchmark - Filling an {@link EmotionRegistry} up to its capacity.
+ *
+ * Every call interns {@link LogColumns#MAX_EMOTIONS} new names into an empty
+ * registry and takes a view after each one, as a store publishing a snapshot per
+ * batch of new emotions would. Interning is amortized O(1), so the score should
+ * grow linearly with the capacity rather than with its square.
+ *
+ * Design Rationale:
+ * - The names are built once up front, so the score leaves out string building
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmotionInterningBenchmark {
+    private final String[] names = new String[LogColumns.MAX_EMOTIONS];
+
+
+    @Setup(Level.Trial)
+    public void names() {
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "tag-" + i;
+        }
+    }
+
+
+    @Benchmark
+    public EmotionRegistry.View internAll() {
+        EmotionRegistry registry = new EmotionRegistry(names.length);
+        EmotionRegistry.View view = null;
+        for (String name : names) {
+            registry.intern(name);
+            view = registry.view();
+        }
+        return view;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.aroxas_emotilog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GroupCommitBenchmark - Cost of a tap through {@link GroupCommitWriter#log}.
+ *
+ * The writer runs with its default batch settings over an in-memory
+ * {@link LogStore}, so its flusher keeps draining the queue while the benchmark
+ * threads log. The score is what the UI thread pays per tap; the disk write it
+ * defers is measured by {@link DurableWriteBenchmark}.
+ *
+ * Design Rationale:
+ * - A fresh store and writer per iteration, so the entries of one iteration do not
+ *   slow down the next
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GroupCommitBenchmark {
+
+    private GroupCommitWriter writer;
+
+
+    @Setup(Level.Iteration)
+    public void create() {
+        writer = new GroupCommitWriter(new LogStore());
+    }
+
+
+    @TearDown(Level.Iteration)
+    public void drain() throws IOException {
+        writer.flush();
+    }
+
+
+    @Benchmark
+    @Threads(1)
+    public void log() {
+        writer.log("Happy");
+    }
+
+
+    @Benchmark
+    @Threads(4)
+    public void logContended() {
+        writer.log("Happy");
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.aroxas_emotilog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ImportBenchmark - Time to import a CSV history of {@code rows} rows.
+ *
+ * The input is generated on the fly, one row every 30 seconds in order, so the
+ * score is the parser and the store rather than reading a file. parseOnly hands
+ * the batches to a sink that only counts them; intoLogStorage appends them to an
+ * empty {@link LogStorage}. Rows per second is {@code rows} divided by the score.
+ *
+ * Design Rationale:
+ * - The store is emptied before every call, so each import starts from the same
+ *   state; with a call taking tens of milliseconds or more, per-call setup does
+ *   not distort the score
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImportBenchmark {
+    @Param({ "1000000" })
+    public int rows;
+
+
+    @Setup(Level.Invocation)
+    public void clear() {
+        StoreFixture.clear();
+    }
+
+
+    @TearDown(Level.Trial)
+    public void clearAfterTrial() {
+        StoreFixture.clear();
+    }
+
+
+    @Benchmark
+    public long parseOnly() throws IOException {
+        long[] imported = { 0 };
+        new LogImporter(LogFormat.CSV).importFrom(new SyntheticCsv(rows),
+                (emotions, timestamps, count) -> imported[0] += count);
+        return imported[0];
+    }
+
+
+    @Benchmark
+    public long intoLogStorage() throws IOException {
+        return new LogImporter(LogFormat.CSV).importFrom(new SyntheticCsv(rows)).getImportedCount();
+    }
+
+
+    /**
+     * Produces {@code rows} CSV rows on the fly, so the input never exists in memory.
+     */
+    private static final class SyntheticCsv extends Reader {
+        private final int rows;
+        private int row;
+        private String pending = "timestamp,emotion\n";
+        private int offset;
+
+        SyntheticCsv(int rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public int read(char[] buffer, int off, int len) {
+            int written = 0;
+            while (written < len) {
+                if (offset == pending.length()) {
+                    if (row == rows) {
+                        break;
+                    }
+                    pending = (StoreFixture.END_MILLIS - (rows - row) * 30_000L) + ","
+                            + StoreFixture.EMOTIONS[row % StoreFixture.EMOTIONS.length] + "\n";
+                    offset = 0;
+                    row++;
+                }
+                int count = Math.min(len - written, pending.length() - offset);
+                pending.getChars(offset, offset + count, buffer, off + written);
+                offset += count;
+                written += count;
+            }
+            return written == 0 ? -1 : written;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
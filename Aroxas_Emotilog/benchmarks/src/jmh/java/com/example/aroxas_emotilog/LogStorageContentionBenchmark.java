@@ -0,0 +1,187 @@
+package com.example.aroxas_emotilog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LogStorageContentionBenchmark - The {@link LogStorage} queries while another thread keeps logging.
+ *
+ * Each group runs three threads calling one query against a single writer thread
+ * calling {@link LogStorage#addLog}, so every read races with snapshot publication.
+ * The writer backs off between entries to log at a steady rate instead of
+ * saturating the lock, roughly like a busy import rather than a stress test.
+ * Results are reported per method, so the query and the writer have separate scores.
+ *
+ * Design Rationale:
+ * - The store is refilled before every iteration, so the writer's entries do not
+ *   pile up across the run
+ * - Shares {@link LogStorageQueryBenchmark#consumePage} so the scores compare
+ *   directly with the single-threaded ones
+ *
+ * Outstanding Issues:
+ * - The store grows while an iteration runs, which is noticeable next to the 10k fill
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class LogStorageContentionBenchmark {
+    // Roughly a few microseconds of busy work between two logged entries.
+    private static final long WRITER_BACKOFF_TOKENS = 2000;
+
+    @Param({ "10000", "1000000", "10000000" })
+    public int entries;
+
+    private long probeDay;
+    private String probeEmotion;
+
+
+    @Setup(Level.Iteration)
+    public void fill() {
+        probeDay = StoreFixture.fill(entries);
+        probeEmotion = StoreFixture.EMOTIONS[2];
+    }
+
+
+    @TearDown(Level.Trial)
+    public void clear() {
+        StoreFixture.clear();
+    }
+
+
+    @Benchmark
+    @Group("getLogs")
+    @GroupThreads(3)
+    public void getLogs(Blackhole blackhole) {
+        LogStorageQueryBenchmark.consumePage(LogStorage.getLogs(), blackhole);
+    }
+
+
+    @Benchmark
+    @Group("getLogs")
+    @GroupThreads(1)
+    public void getLogsWriter() {
+        write();
+    }
+
+
+    @Benchmark
+    @Group("getLogsSortedByTime")
+    @GroupThreads(3)
+    public void getLogsSortedByTime(Blackhole blackhole) {
+        LogStorageQueryBenchmark.consumePage(LogStorage.getLogsSortedByTime(), blackhole);
+    }
+
+
+    @Benchmark
+    @Group("getLogsSortedByTime")
+    @GroupThreads(1)
+    public void getLogsSortedByTimeWriter() {
+        write();
+    }
+
+
+    @Benchmark
+    @Group("getLogsForEmotion")
+    @GroupThreads(3)
+    public void getLogsForEmotion(Blackhole blackhole) {
+        LogStorageQueryBenchmark.consumePage(LogStorage.getLogsForEmotion(probeEmotion), blackhole);
+    }
+
+
+    @Benchmark
+    @Group("getLogsForEmotion")
+    @GroupThreads(1)
+    public void getLogsForEmotionWriter() {
+        write();
+    }
+
+
+    @Benchmark
+    @Group("getLogsForDay")
+    @GroupThreads(3)
+    public void getLogsForDay(Blackhole blackhole) {
+        LogStorageQueryBenchmark.consumePage(LogStorage.getLogsForDay(probeDay), blackhole);
+    }
+
+
+    @Benchmark
+    @Group("getLogsForDay")
+    @GroupThreads(1)
+    public void getLogsForDayWriter() {
+        write();
+    }
+
+
+    @Benchmark
+    @Group("getEmotionCounts")
+    @GroupThreads(3)
+    public Map<String, Integer> getEmotionCounts() {
+        return LogStorage.getEmotionCounts();
+    }
+
+
+    @Benchmark
+    @Group("getEmotionCounts")
+    @GroupThreads(1)
+    public void getEmotionCountsWriter() {
+        write();
+    }
+
+
+    @Benchmark
+    @Group("getEmotionCountsForDay")
+    @GroupThreads(3)
+    public Map<String, Integer> getEmotionCountsForDay() {
+        return LogStorage.getEmotionCountsForDay(probeDay);
+    }
+
+
+    @Benchmark
+    @Group("getEmotionCountsForDay")
+    @GroupThreads(1)
+    public void getEmotionCountsForDayWriter() {
+        write();
+    }
+
+
+    @Benchmark
+    @Group("getMostFrequentEmotion")
+    @GroupThreads(3)
+    public String getMostFrequentEmotion() {
+        return LogStorage.getMostFrequentEmotion();
+    }
+
+
+    @Benchmark
+    @Group("getMostFrequentEmotion")
+    @GroupThreads(1)
+    public void getMostFrequentEmotionWriter() {
+        write();
+    }
+
+
+    private static void write() {
+        LogStorage.addLog("Happy");
+        Blackhole.consumeCPU(WRITER_BACKOFF_TOKENS);
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.aroxas_emotilog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LogStorageQueryBenchmark - Single-threaded cost of the {@link LogStorage} queries.
+ *
+ * The store is filled once per trial with 10k, 1M or 10M entries and is not
+ * written to while the queries run. Queries that return entry lists are charged
+ * for the list and for reading one screen of {@link #PAGE_SIZE} entries from it,
+ * which is how the app uses them.
+ *
+ * Design Rationale:
+ * - Average time per call in microseconds, since calls range from nanoseconds
+ *   for the maintained counters to milliseconds for the entry lists
+ * - Allocation per call comes from the gc profiler enabled in the build file
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LogStorageQueryBenchmark {
+    static final int PAGE_SIZE = 50;
+
+    @Param({ "10000", "1000000", "10000000" })
+    public int entries;
+
+    private long probeDay;
+    private String probeEmotion;
+
+
+    @Setup(Level.Trial)
+    public void fill() {
+        probeDay = StoreFixture.fill(entries);
+        probeEmotion = StoreFixture.EMOTIONS[2];
+    }
+
+
+    @TearDown(Level.Trial)
+    public void clear() {
+        StoreFixture.clear();
+    }
+
+
+    @Benchmark
+    public void getLogs(Blackhole blackhole) {
+        consumePage(LogStorage.getLogs(), blackhole);
+    }
+
+
+    @Benchmark
+    public void getLogsSortedByTime(Blackhole blackhole) {
+        consumePage(LogStorage.getLogsSortedByTime(), blackhole);
+    }
+
+
+    @Benchmark
+    public void getLogsForEmotion(Blackhole blackhole) {
+        consumePage(LogStorage.getLogsForEmotion(probeEmotion), blackhole);
+    }
+
+
+    @Benchmark
+    public void getLogsForDay(Blackhole blackhole) {
+        consumePage(LogStorage.getLogsForDay(probeDay), blackhole);
+    }
+
+
+    @Benchmark
+    public Map<String, Integer> getEmotionCounts() {
+        return LogStorage.getEmotionCounts();
+    }
+
+
+    @Benchmark
+    public Map<String, Integer> getEmotionCountsForDay() {
+        return LogStorage.getEmotionCountsForDay(probeDay);
+    }
+
+
+    @Benchmark
+    public String getMostFrequentEmotion() {
+        return LogStorage.getMostFrequentEmotion();
+    }
+
+
+    // Daily totals for the 90 days up to the probe day, as the trends panel reads them.
+    @Benchmark
+    public int[] getNinetyDayTrend() {
+        return LogStorage.snapshot().getCountsPerBucket(RollupTable.Resolution.DAY,
+                probeDay - 89 * DayIndex.MILLIS_PER_DAY, probeDay);
+    }
+
+
+    // Reads the last page of the list, as a screen showing the latest entries would.
+    static void consumePage(List<LogEntry> logs, Blackhole blackhole) {
+        int size = logs.size();
+        blackhole.consume(size);
+        for (int i = Math.max(0, size - PAGE_SIZE); i < size; i++) {
+            blackhole.consume(logs.get(i));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.aroxas_emotilog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LogStorageWriteBenchmark - Throughput of {@link LogStorage#addLog} from one and from several threads.
+ *
+ * The contended variant has four threads logging at once, which exercises the
+ * batching of queued entries under the write lock.
+ *
+ * Design Rationale:
+ * - The store is refilled before every iteration, so the entries each iteration
+ *   appends do not pile up across the run
+ *
+ * Outstanding Issues:
+ * - The store still grows by the entries appended during an iteration, which is
+ *   noticeable next to the 10k fill
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LogStorageWriteBenchmark {
+
+    @Param({ "10000", "1000000", "10000000" })
+    public int entries;
+
+
+    @Setup(Level.Iteration)
+    public void fill() {
+        StoreFixture.fill(entries);
+    }
+
+
+    @TearDown(Level.Trial)
+    public void clear() {
+        StoreFixture.clear();
+    }
+
+
+    @Benchmark
+    @Threads(1)
+    public void addLog() {
+        LogStorage.addLog("Happy");
+    }
+
+
+    @Benchmark
+    @Threads(4)
+    public void addLogContended() {
+        LogStorage.addLog("Happy");
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.aroxas_emotilog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * MetricsOverheadBenchmark - What {@link StorageMetrics} adds to a {@link LogStorage#addLog} call.
+ *
+ * Runs with metrics off and on at the default sample interval. addLog is the
+ * whole call; bookkeeping is only what metrics do inside it, starting and
+ * recording the call around an uncontended lock. The difference between the two
+ * bookkeeping scores is the per-call cost of leaving metrics on, which should stay
+ * within a few percent of the addLog score.
+ *
+ * Design Rationale:
+ * - The bookkeeping variant isolates the metrics from the rest of addLog, whose
+ *   own run-to-run noise is larger than the overhead being measured
+ * - The store is refilled before every iteration, like {@link LogStorageWriteBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsOverheadBenchmark {
+    @Param({ "false", "true" })
+    public boolean enabled;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+
+    @Setup(Level.Trial)
+    public void enable() {
+        StorageMetrics.setSampleInterval(StorageMetrics.DEFAULT_SAMPLE_INTERVAL);
+        StorageMetrics.setEnabled(enabled);
+    }
+
+
+    @Setup(Level.Iteration)
+    public void fill() {
+        StoreFixture.fill(10_000);
+    }
+
+
+    @TearDown(Level.Trial)
+    public void clear() {
+        StorageMetrics.setEnabled(false);
+        StorageMetrics.reset();
+        StoreFixture.clear();
+    }
+
+
+    @Benchmark
+    public void addLog() {
+        LogStorage.addLog("Happy");
+    }
+
+
+    @Benchmark
+    public void bookkeeping() {
+        long call = StorageMetrics.start();
+        StorageMetrics.lock(lock);
+        lock.unlock();
+        StorageMetrics.record(StorageMetrics.Operation.ADD_LOG, call, 0, 0);
+    }
+}
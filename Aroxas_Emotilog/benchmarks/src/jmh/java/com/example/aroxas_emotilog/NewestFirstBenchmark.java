@@ -0,0 +1,77 @@
+package com.example.aroxas_emotilog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NewestFirstBenchmark - Reading the first page newest first when the clock went back.
+ *
+ * The history holds {@code entries} entries in {@code runs} sorted runs that
+ * interleave in time, as if the clock had gone back {@code runs - 1} times. Every
+ * call merges the runs from scratch, as the first read of a new snapshot does, and
+ * reads one screen of positions. With one run there is nothing to merge; with many,
+ * the score is the cost of building the merge heap plus one screen of steps.
+ *
+ * Design Rationale:
+ * - Builds a fresh {@link NewestFirstOrder} per call, since a snapshot keeps its
+ *   order once built and would otherwise be measured warm
+ * - Reads positions only, so the score leaves out creating {@link LogEntry} objects
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NewestFirstBenchmark {
+    @Param({ "1000000" })
+    public int entries;
+
+    @Param({ "1", "100", "10000" })
+    public int runs;
+
+    private LogColumns.View columns;
+    private DayIndex.View days;
+
+
+    @Setup(Level.Trial)
+    public void fill() {
+        LogColumns logColumns = new LogColumns();
+        DayIndex dayIndex = new DayIndex(TimeZone.getTimeZone("UTC"));
+        int ordinal = logColumns.intern(StoreFixture.EMOTIONS[0]);
+        int perRun = (entries + runs - 1) / runs;
+        long first = StoreFixture.END_MILLIS - (long) entries * StoreFixture.SPACING_MILLIS;
+        for (int i = 0; i < entries; i++) {
+            long slot = (long) (i % perRun) * runs + i / perRun;
+            long timestamp = first + slot * StoreFixture.SPACING_MILLIS;
+            logColumns.append(timestamp, ordinal);
+            dayIndex.add(timestamp);
+        }
+        columns = logColumns.view();
+        days = dayIndex.view();
+    }
+
+
+    @Benchmark
+    public int firstPage() {
+        NewestFirstOrder order = new NewestFirstOrder(columns, days);
+        int sum = 0;
+        for (int i = 0; i < LogStorageQueryBenchmark.PAGE_SIZE; i++) {
+            sum += order.positionAt(i);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.aroxas_emotilog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ParallelScanBenchmark - Sequential against fork/join scans per history size.
+ *
+ * Runs the scanning queries of {@link LogStorage} once per {@link ParallelScan.Mode}
+ * over 10k to 10M entries. The size at which PARALLEL overtakes SEQUENTIAL is the
+ * crossover that {@link ParallelScan#DEFAULT_THRESHOLD} should sit just above, and
+ * the ratio at 1M and 10M entries is the speedup on the machine at hand. The
+ * number of workers is the common pool's, set with
+ * {@code -Djava.util.concurrent.ForkJoinPool.common.parallelism}.
+ *
+ * Design Rationale:
+ * - The filter reads both the timestamp and the emotion, so the scan reads both
+ *   columns like a typical ad-hoc query
+ * - getLogsForEmotion is charged for creating every entry, since that is the part
+ *   that runs in parallel
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelScanBenchmark {
+    @Param({ "10000", "100000", "1000000", "10000000" })
+    public int entries;
+
+    @Param({ "SEQUENTIAL", "PARALLEL" })
+    public ParallelScan.Mode mode;
+
+    private String probeEmotion;
+    private LogFilter filter;
+
+
+    @Setup(Level.Trial)
+    public void fill() {
+        long middle = StoreFixture.fill(entries);
+        probeEmotion = StoreFixture.EMOTIONS[2];
+        // Entries of the probe emotion in the newer half of the history.
+        String emotion = probeEmotion;
+        filter = (timestamp, name) -> timestamp >= middle && name.equals(emotion);
+        ParallelScan.setMode(mode);
+    }
+
+
+    @TearDown(Level.Trial)
+    public void clear() {
+        ParallelScan.setMode(ParallelScan.Mode.AUTO);
+        StoreFixture.clear();
+    }
+
+
+    @Benchmark
+    public Map<String, Integer> getEmotionCountsWhere() {
+        return LogStorage.getEmotionCountsWhere(filter);
+    }
+
+
+    @Benchmark
+    public void getLogsWhere(Blackhole blackhole) {
+        LogStorageQueryBenchmark.consumePage(LogStorage.getLogsWhere(filter), blackhole);
+    }
+
+
+    @Benchmark
+    public void getLogsForEmotion(Blackhole blackhole) {
+        LogStorageQueryBenchmark.consumePage(LogStorage.getLogsForEmotion(probeEmotion), blackhole);
+    }
+}
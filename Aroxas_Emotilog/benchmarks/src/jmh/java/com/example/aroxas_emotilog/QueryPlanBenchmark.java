@@ -0,0 +1,94 @@
+package com.example.aroxas_emotilog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QueryPlanBenchmark - Composed {@link LogQuery} queries, one per access path.
+ *
+ * Each benchmark runs one query shape through {@link LogStorage#query}: a rare
+ * emotion grouped by hour reads its posting list, a common emotion over the last
+ * month reads the day index, weekends ranked by emotion read the day index per
+ * weekday, and a night-time grouping by emotion and hour has to scan everything.
+ * Comparing a shape across history sizes shows whether its cost follows the
+ * entries it reads rather than the history.
+ *
+ * Design Rationale:
+ * - Queries are built once per trial, so the score is planning plus execution
+ * - {@code LogStorage.explain} prints the plan each query gets on the same store
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryPlanBenchmark {
+    @Param({ "100000", "1000000" })
+    public int entries;
+
+    private LogQuery rareEmotionByHour;
+    private LogQuery lastMonthByWeekday;
+    private LogQuery weekendTopEmotions;
+    private LogQuery nightsByEmotionAndHour;
+
+
+    @Setup(Level.Trial)
+    public void fill() {
+        StoreFixture.fill(entries);
+        String[] emotions = StoreFixture.EMOTIONS;
+        long lastMonth = StoreFixture.END_MILLIS - 30 * DayIndex.MILLIS_PER_DAY;
+        rareEmotionByHour = new LogQuery.Builder().emotions(emotions[emotions.length - 1])
+                .groupBy(LogQuery.Dimension.HOUR_OF_DAY).build();
+        lastMonthByWeekday = new LogQuery.Builder().emotions(emotions[0]).between(lastMonth, Long.MAX_VALUE)
+                .groupBy(LogQuery.Dimension.DAY_OF_WEEK).build();
+        weekendTopEmotions = new LogQuery.Builder().daysOfWeek(Calendar.SATURDAY, Calendar.SUNDAY)
+                .groupBy(LogQuery.Dimension.EMOTION).orderBy(LogQuery.Aggregate.COUNT, true).limit(3).build();
+        nightsByEmotionAndHour = new LogQuery.Builder().hoursBetween(22, 6)
+                .groupBy(LogQuery.Dimension.EMOTION, LogQuery.Dimension.HOUR_OF_DAY).build();
+    }
+
+
+    @TearDown(Level.Trial)
+    public void clear() {
+        StoreFixture.clear();
+    }
+
+
+    @Benchmark
+    public QueryResult rareEmotionByHour() {
+        return LogStorage.query(rareEmotionByHour);
+    }
+
+
+    @Benchmark
+    public QueryResult lastMonthByWeekday() {
+        return LogStorage.query(lastMonthByWeekday);
+    }
+
+
+    @Benchmark
+    public QueryResult weekendTopEmotions() {
+        return LogStorage.query(weekendTopEmotions);
+    }
+
+
+    @Benchmark
+    public QueryResult nightsByEmotionAndHour() {
+        return LogStorage.query(nightsByEmotionAndHour);
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.aroxas_emotilog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ShardedAggregationBenchmark - Cross-profile aggregates of {@link ShardedLogStore} per pool size.
+ *
+ * The store is filled once per trial with {@code profiles} profiles of 100 entries
+ * each, one a day for the hundred days before {@link StoreFixture#END_MILLIS},
+ * and aggregated on a {@link ForkJoinPool} of {@code parallelism} workers.
+ * Throughput at parallelism N divided by throughput at 1 is the speedup; on a
+ * machine with at least N cores it should stay close to N.
+ *
+ * Design Rationale:
+ * - Throughput mode, so the scaling can be read straight from the scores
+ * - The benchmark thread only submits and joins; the work runs on the pool
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShardedAggregationBenchmark {
+    // One entry a day per profile.
+    private static final int ENTRIES_PER_PROFILE = 100;
+
+    @Param({ "1", "2", "4", "8", "16" })
+    public int parallelism;
+
+    @Param({ "10000" })
+    public int profiles;
+
+    private ForkJoinPool pool;
+    private ShardedLogStore store;
+    private long from;
+    private long to;
+
+
+    @Setup(Level.Trial)
+    public void fill() {
+        pool = new ForkJoinPool(parallelism);
+        store = new ShardedLogStore(ShardedLogStore.DEFAULT_SHARD_COUNT, TimeZone.getDefault(), pool);
+        to = StoreFixture.END_MILLIS;
+        from = to - (ENTRIES_PER_PROFILE - 1) * DayIndex.MILLIS_PER_DAY;
+        String[] emotions = new String[ENTRIES_PER_PROFILE];
+        long[] timestamps = new long[ENTRIES_PER_PROFILE];
+        for (int p = 0; p < profiles; p++) {
+            for (int i = 0; i < ENTRIES_PER_PROFILE; i++) {
+                emotions[i] = StoreFixture.EMOTIONS[(p + i) % StoreFixture.EMOTIONS.length];
+                timestamps[i] = from + i * DayIndex.MILLIS_PER_DAY;
+            }
+            store.profile("profile-" + p).addLogs(emotions, timestamps, ENTRIES_PER_PROFILE);
+        }
+    }
+
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+
+    @Benchmark
+    public Map<String, Long> getEmotionCounts() {
+        return store.getEmotionCounts();
+    }
+
+
+    @Benchmark
+    public long[] getDailyTotals() {
+        return store.getDailyTotals(from, to);
+    }
+
+
+    @Benchmark
+    public long getTotalLogCount() {
+        return store.getTotalLogCount();
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.aroxas_emotilog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+/**
+ * StoreFixture - Fills {@link LogStorage} with a synthetic history for the benchmarks.
+ *
+ * Entries are spread one every {@link #SPACING_MILLIS} backwards from a fixed
+ * instant, so ten million entries cover about nine and a half years, and use a
+ * skewed mix of {@link #EMOTIONS}. The same seed always produces the same store.
+ *
+ * Design Rationale:
+ * - Loads through {@link LogStorage#addLogs} in batches, which takes the write
+ *   lock once per batch and keeps setup time small next to the measurement
+ * - Stays in memory: {@link LogStorage#open} is never called, so the benchmarks
+ *   measure the in-memory structures rather than the disk
+ */
+final class StoreFixture {
+    static final String[] EMOTIONS = { "Happy", "Calm", "Tired", "Sad", "Excited", "Angry", "Anxious", "Grateful" };
+    static final long SPACING_MILLIS = 30_000L;
+    static final long END_MILLIS = 1_760_000_000_000L;
+    private static final int BATCH_SIZE = 8192;
+
+
+    private StoreFixture() {
+    }
+
+
+    /**
+     * Replaces the contents of {@link LogStorage} with {@code entries} synthetic
+     * entries and returns the timestamp of the middle one.
+     */
+    static long fill(int entries) {
+        try {
+            LogStorage.reset();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Random random = new Random(42);
+        String[] emotions = new String[BATCH_SIZE];
+        long[] timestamps = new long[BATCH_SIZE];
+        long first = END_MILLIS - (entries - 1) * SPACING_MILLIS;
+        for (int start = 0; start < entries; start += BATCH_SIZE) {
+            int count = Math.min(BATCH_SIZE, entries - start);
+            for (int i = 0; i < count; i++) {
+                // Squaring skews the mix towards the first emotions.
+                double r = random.nextDouble();
+                emotions[i] = EMOTIONS[(int) (r * r * EMOTIONS.length)];
+                timestamps[i] = first + (start + i) * SPACING_MILLIS;
+            }
+            LogStorage.addLogs(emotions, timestamps, count);
+        }
+        return first + (entries / 2) * SPACING_MILLIS;
+    }
+
+
+    /**
+     * Returns bare columns holding the same {@code entries} synthetic entries that
+     * {@link #fill} would log, for benchmarks of the storage structures themselves.
+     */
+    static LogColumns columns(int entries) {
+        LogColumns columns = new LogColumns();
+        Random random = new Random(42);
+        long first = END_MILLIS - (entries - 1) * SPACING_MILLIS;
+        for (int i = 0; i < entries; i++) {
+            double r = random.nextDouble();
+            columns.append(first + i * SPACING_MILLIS, columns.intern(EMOTIONS[(int) (r * r * EMOTIONS.length)]));
+        }
+        return columns;
+    }
+
+
+    static void clear() {
+        try {
+            LogStorage.reset();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
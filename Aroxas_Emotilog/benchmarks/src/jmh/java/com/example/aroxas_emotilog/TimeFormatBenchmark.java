@@ -0,0 +1,81 @@
+package com.example.aroxas_emotilog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TimeFormatBenchmark - Cost of formatting one bound row's timestamp.
+ *
+ * A screen of 20 rows, a minute apart, is rebound over and over as when scrolling
+ * back and forth. Each call formats the next row through a new
+ * {@link SimpleDateFormat}, which is what a row did before {@link TimeFormatter},
+ * through a shared {@link TimeFormatter}, or through {@link LogEntry#getFormattedDateTime()}.
+ *
+ * Design Rationale:
+ * - The interesting number is the allocation per call from the gc profiler, which
+ *   should be close to zero for the cached formatter once the screen was shown
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TimeFormatBenchmark {
+    private static final int ROWS = 20;
+
+    private final long[] timestamps = new long[ROWS];
+    private final LogEntry[] entries = new LogEntry[ROWS];
+    private TimeFormatter formatter;
+    private int next;
+
+
+    @Setup(Level.Trial)
+    public void fill() {
+        for (int i = 0; i < ROWS; i++) {
+            timestamps[i] = StoreFixture.END_MILLIS - i * 61_000L;
+            entries[i] = new LogEntry(StoreFixture.EMOTIONS[i % StoreFixture.EMOTIONS.length], timestamps[i]);
+        }
+        formatter = new TimeFormatter(Locale.getDefault(), TimeZone.getDefault());
+    }
+
+
+    @Benchmark
+    public String simpleDateFormat() {
+        SimpleDateFormat format = new SimpleDateFormat("MMM dd, yyyy HH:mm:ss", Locale.getDefault());
+        return format.format(new Date(timestamps[nextRow()]));
+    }
+
+
+    @Benchmark
+    public String timeFormatter() {
+        return formatter.formatDateTime(timestamps[nextRow()]);
+    }
+
+
+    @Benchmark
+    public String logEntry() {
+        return entries[nextRow()].getFormattedDateTime();
+    }
+
+
+    private int nextRow() {
+        next = next == ROWS - 1 ? 0 : next + 1;
+        return next;
+    }
+}
@@ -21,3 +21,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "Aroxas_Emotilog"
 include(":app")
+include(":storage")
+include(":benchmarks")
@@ -0,0 +1,395 @@
+package com.example.aroxas_emotilog;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Checkpoint - A durable copy of a {@link LogStore}'s in-memory state up to a log offset.
+ *
+ * Replaying the whole {@link SegmentLog} on every start rebuilds the columns, the
+ * day index, the rollups and the per-emotion counts one record at a time. A
+ * checkpoint stores all of that as of one published {@link LogSnapshot}, together
+ * with the durable record index it covers, so that opening a store reads the
+ * checkpoint in bulk and replays only the records logged after it.
+ *
+ * File layout (big-endian), written to a temporary file and renamed into place:
+ * - 4 bytes magic, 4 bytes format version
+ * - 8 bytes record index (the first record not covered), 8 bytes raw start index
+ * - time zone id as [u16 length][UTF-8 bytes]
+ * - 4 bytes name count, then names in ordinal order as [u16 length][UTF-8 bytes]
+ * - 4 bytes count per ordinal, 4 bytes most frequent ordinal (-1 for none), 4 bytes its count
+ * - 4 bytes entry count, then the columns as {@link CompressedBlock}s
+ * - the {@link DayIndex} boundaries
+ * - per rollup resolution: 4 bytes row count, rows as [8 byte bucket][4 byte ordinal][4 byte count]
+ * - 4 bytes CRC-32 of everything before it
+ *
+ * Design Rationale:
+ * - Written from an immutable snapshot, so the write lock is only held while the
+ *   snapshot is taken and while the file is committed
+ * - Files are named after their record index and the newest {@link #KEPT_CHECKPOINTS}
+ *   are kept, so a damaged newest checkpoint falls back to the one before it, and
+ *   with none left the store replays the whole log as before
+ * - A checkpoint only applies to the compacted tier and time zone it was taken
+ *   with; anything else is skipped rather than patched up
+ * - Sealed blocks are written exactly as they are held in memory, so the columns
+ *   cost about as much on disk as in memory and load without decoding
+ * - Loading checks each block's runs or dictionary rather than every entry's
+ *   ordinal, and leaves the blocks' posting lists to be built on first use (see
+ *   {@link PostingLists.Prefix}), so it does no work per restored entry
+ * - Written through a small buffer straight to the file, checksummed on the way,
+ *   rather than assembled in memory first
+ *
+ * Outstanding Issues:
+ * - Every checkpoint is written whole, so its cost grows with the history; the
+ *   interval between checkpoints amortizes it
+ * - Loading still reads and checksums the whole file, a bulk pass over a few
+ *   bytes per entry
+ * - Stores with approximate counts are not checkpointed
+ */
+final class Checkpoint {
+    static final int MAGIC = 0x454D4350;
+    static final int FORMAT_VERSION = 1;
+    static final int KEPT_CHECKPOINTS = 2;
+
+    private static final String PREFIX = "checkpoint-";
+    private static final String SUFFIX = ".bin";
+    private static final String PENDING_SUFFIX = ".pending";
+    private static final RollupTable.Resolution[] RESOLUTIONS = RollupTable.Resolution.values();
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private final long recordIndex;
+    private final long rawStartIndex;
+    private final LogColumns columns;
+    private final DayIndex dayIndex;
+    private final Rollups rollups;
+    private final int[] emotionCounts;
+    private final String mostFrequentEmotion;
+    private final int mostFrequentCount;
+
+
+    private Checkpoint(long recordIndex, long rawStartIndex, LogColumns columns, DayIndex dayIndex,
+                       Rollups rollups, int[] emotionCounts, String mostFrequentEmotion, int mostFrequentCount) {
+        this.recordIndex = recordIndex;
+        this.rawStartIndex = rawStartIndex;
+        this.columns = columns;
+        this.dayIndex = dayIndex;
+        this.rollups = rollups;
+        this.emotionCounts = emotionCounts;
+        this.mostFrequentEmotion = mostFrequentEmotion;
+        this.mostFrequentCount = mostFrequentCount;
+    }
+
+    /** Returns the durable index of the first record the checkpoint does not cover. */
+    long getRecordIndex() {
+        return recordIndex;
+    }
+
+
+    long getRawStartIndex() {
+        return rawStartIndex;
+    }
+
+
+    // Taken on top of this tier: the same raw start and the tier's emotions first.
+    private boolean matches(CompactedTier tier) {
+        if (rawStartIndex != tier.getRawStartIndex() || columns.emotionCount() < tier.emotionCount()) {
+            return false;
+        }
+        for (int ordinal = 0; ordinal < tier.emotionCount(); ordinal++) {
+            if (!tier.emotionName(ordinal).equals(columns.emotionName(ordinal))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    // The restored writer state; each belongs to the store that restores it.
+
+    LogColumns columns() {
+        return columns;
+    }
+
+
+    DayIndex dayIndex() {
+        return dayIndex;
+    }
+
+
+    Rollups rollups() {
+        return rollups;
+    }
+
+
+    int[] emotionCounts() {
+        return emotionCounts;
+    }
+
+
+    String mostFrequentEmotion() {
+        return mostFrequentEmotion;
+    }
+
+
+    int mostFrequentCount() {
+        return mostFrequentCount;
+    }
+
+    /**
+     * Writes the state of a snapshot next to its final location and forces it to disk.
+     * The returned file only becomes a checkpoint once {@link #commitPending} is called.
+     *
+     * @param timeZone the zone the snapshot's days and rollups were built in
+     * @throws IllegalArgumentException if the snapshot's counts are approximate
+     */
+    static File writePending(File directory, LogSnapshot snapshot, TimeZone timeZone) throws IOException {
+        if (snapshot.isApproximate()) {
+            throw new IllegalArgumentException("Approximate counts cannot be checkpointed");
+        }
+        LogColumns.View columns = snapshot.columns();
+        long rawStartIndex = snapshot.compacted().getRawStartIndex();
+        long recordIndex = rawStartIndex + columns.size();
+
+        File pending = new File(directory, fileName(recordIndex) + PENDING_SUFFIX);
+        try (RandomAccessFile file = new RandomAccessFile(pending, "rw");
+             FileChannel channel = file.getChannel()) {
+            channel.truncate(0);
+            OutputStream raw = Channels.newOutputStream(channel);
+            CRC32 crc = new CRC32();
+            // Buffered before the checksum, so the CRC is updated a buffer at a time.
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(raw, crc), WRITE_BUFFER_SIZE));
+            writeState(out, snapshot, timeZone, recordIndex, rawStartIndex);
+            out.flush();
+            raw.write(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+            channel.force(true);
+        }
+        return pending;
+    }
+
+
+    private static void writeState(DataOutputStream out, LogSnapshot snapshot, TimeZone timeZone,
+                                   long recordIndex, long rawStartIndex) throws IOException {
+        LogColumns.View columns = snapshot.columns();
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(recordIndex);
+        out.writeLong(rawStartIndex);
+        writeString(out, timeZone.getID());
+
+        int emotions = columns.emotionCount();
+        out.writeInt(emotions);
+        for (int ordinal = 0; ordinal < emotions; ordinal++) {
+            writeString(out, columns.emotionName(ordinal));
+        }
+        for (int ordinal = 0; ordinal < emotions; ordinal++) {
+            out.writeInt(snapshot.emotionCountAt(ordinal));
+        }
+        String mostFrequent = snapshot.getMostFrequentEmotion();
+        out.writeInt(mostFrequent != null ? columns.ordinalOf(mostFrequent) : -1);
+        out.writeInt(snapshot.getMostFrequentEmotionCount());
+
+        out.writeInt(columns.size());
+        for (int chunk = 0, base = 0; base < columns.size(); chunk++, base += LogColumns.CHUNK_SIZE) {
+            columns.block(chunk).writeTo(out);
+        }
+        snapshot.days().writeTo(out);
+        for (RollupTable.Resolution resolution : RESOLUTIONS) {
+            RollupTable.View table = snapshot.getRollups().get(resolution);
+            int[] rows = { 0 };
+            table.forEach((bucket, ordinal, count) -> rows[0]++);
+            out.writeInt(rows[0]);
+            IOException[] failure = { null };
+            table.forEach((bucket, ordinal, count) -> {
+                try {
+                    out.writeLong(bucket);
+                    out.writeInt(ordinal);
+                    out.writeInt(count);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+    }
+
+    /**
+     * Makes a file written by {@link #writePending} the newest checkpoint and deletes
+     * all but the newest {@link #KEPT_CHECKPOINTS}.
+     */
+    static void commitPending(File pending) throws IOException {
+        String name = pending.getName();
+        File target = new File(pending.getParentFile(), name.substring(0, name.length() - PENDING_SUFFIX.length()));
+        if (!pending.renameTo(target)) {
+            throw new IOException("Cannot replace " + target);
+        }
+        File[] files = list(pending.getParentFile());
+        for (int i = KEPT_CHECKPOINTS; i < files.length; i++) {
+            // A file that cannot be deleted now is skipped on load and retried next time.
+            files[i].delete();
+        }
+    }
+
+    /**
+     * Reads the newest checkpoint in a log directory that is intact and was taken
+     * with the given compacted tier and time zone, or returns null if there is none.
+     */
+    static Checkpoint readLatest(File directory, CompactedTier tier, TimeZone timeZone) {
+        for (File file : list(directory)) {
+            try {
+                Checkpoint checkpoint = read(file, timeZone);
+                if (checkpoint != null && checkpoint.matches(tier)) {
+                    return checkpoint;
+                }
+            } catch (IOException e) {
+                // Damaged: try the one before it.
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads one checkpoint file, or returns null if it was taken in another time zone.
+     *
+     * @throws IOException if the file cannot be read or is damaged
+     */
+    static Checkpoint read(File file, TimeZone timeZone) throws IOException {
+        ByteBuffer buffer;
+        try (RandomAccessFile input = new RandomAccessFile(file, "r");
+             FileChannel channel = input.getChannel()) {
+            if (channel.size() < 32 || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Damaged checkpoint: " + file);
+            }
+            buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Keep reading until the buffer is full.
+            }
+            buffer.flip();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.limit() - 4);
+        if (buffer.getInt(buffer.limit() - 4) != (int) crc.getValue()
+                || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+            throw new IOException("Damaged checkpoint: " + file);
+        }
+        buffer.limit(buffer.limit() - 4);
+        try {
+            return parse(buffer, timeZone);
+        } catch (RuntimeException e) {
+            // Passed the checksum but does not parse, e.g. written by a broken build.
+            throw new IOException("Malformed checkpoint: " + file, e);
+        }
+    }
+
+
+    private static Checkpoint parse(ByteBuffer in, TimeZone timeZone) throws IOException {
+        long recordIndex = in.getLong();
+        long rawStartIndex = in.getLong();
+        if (!readString(in).equals(timeZone.getID())) {
+            return null;
+        }
+
+        LogColumns columns = new LogColumns();
+        String[] names = new String[in.getInt()];
+        for (int ordinal = 0; ordinal < names.length; ordinal++) {
+            names[ordinal] = readString(in);
+            if (columns.intern(names[ordinal]) != ordinal) {
+                throw new IOException("Duplicate emotion " + names[ordinal]);
+            }
+        }
+        int[] emotionCounts = new int[Math.max(16, names.length)];
+        for (int ordinal = 0; ordinal < names.length; ordinal++) {
+            emotionCounts[ordinal] = in.getInt();
+        }
+        int mostFrequentOrdinal = in.getInt();
+        int mostFrequentCount = in.getInt();
+
+        int size = in.getInt();
+        if (size < 0 || recordIndex - rawStartIndex != size) {
+            throw new IOException("Checkpoint covers " + (recordIndex - rawStartIndex) + " entries, holds " + size);
+        }
+        long lastTimestamp = Long.MIN_VALUE;
+        while (columns.size() < size) {
+            CompressedBlock block = CompressedBlock.read(in);
+            if (block.size() < LogColumns.CHUNK_SIZE && columns.size() + block.size() != size) {
+                throw new IOException("Partial block before the end of the checkpoint");
+            }
+            block.validate(names.length);
+            columns.appendBlock(block);
+            lastTimestamp = block.timestampAt(block.size() - 1);
+        }
+        if (columns.size() != size) {
+            throw new IOException("Checkpoint holds " + columns.size() + " entries, expected " + size);
+        }
+
+        DayIndex dayIndex = DayIndex.read(in, timeZone, lastTimestamp);
+        if (dayIndex.size() != size) {
+            throw new IOException("Day index covers " + dayIndex.size() + " entries, expected " + size);
+        }
+        Rollups rollups = new Rollups(timeZone);
+        for (RollupTable.Resolution resolution : RESOLUTIONS) {
+            int rows = in.getInt();
+            if (rows < 0 || rows > in.remaining() / 16) {
+                throw new IOException("Malformed rollup table " + resolution);
+            }
+            for (int i = 0; i < rows; i++) {
+                long bucket = in.getLong();
+                int ordinal = in.getInt();
+                int count = in.getInt();
+                rollups.addBucket(resolution, bucket, ordinal, count);
+            }
+        }
+        if (in.hasRemaining()) {
+            throw new IOException("Trailing bytes in checkpoint");
+        }
+        return new Checkpoint(recordIndex, rawStartIndex, columns, dayIndex, rollups, emotionCounts,
+                mostFrequentOrdinal >= 0 ? names[mostFrequentOrdinal] : null, mostFrequentCount);
+    }
+
+
+    static String fileName(long recordIndex) {
+        return String.format(Locale.US, "%s%019d%s", PREFIX, recordIndex, SUFFIX);
+    }
+
+
+    // Committed checkpoints, newest first.
+    static File[] list(File directory) {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (files == null) {
+            return new File[0];
+        }
+        // Names are zero-padded, so lexical order is record order.
+        Arrays.sort(files, (a, b) -> b.getName().compareTo(a.getName()));
+        return files;
+    }
+
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.aroxas_emotilog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.TimeZone;
+import java.util.zip.CRC32;
+
+/**
+ * CompactedTier - Per-day, per-emotion counts of log entries that are no longer
+ * kept individually.
+ *
+ * When a {@link RetentionPolicy} compacts the oldest raw entries, each of them is
+ * reduced to a +1 on the count of its emotion on its local day. The tier also
+ * remembers the durable record index of the first entry that is still raw, so
+ * replaying the {@link SegmentLog} after a restart skips what was compacted.
+ * Instances are immutable; compacting more entries creates a new tier.
+ *
+ * File layout (big-endian), written to a temporary file and renamed into place:
+ * - 4 bytes magic, 4 bytes format version
+ * - 8 bytes raw start index, 8 bytes total entry count
+ * - 4 bytes name count, 4 bytes record count
+ * - names in ordinal order, each as [u16 length][UTF-8 bytes]
+ * - records in day order, each as [8 byte epoch day][4 byte ordinal][4 byte count]
+ * - 4 bytes CRC-32 of everything before it
+ *
+ * Design Rationale:
+ * - Counts live in a daily {@link RollupTable}, so a day lookup is one row read
+ * - Ordinals are those of the {@link LogColumns} the entries came from; the names
+ *   are stored in ordinal order so that a reopened store interns them first and
+ *   gets the same ordinals back
+ * - Days are the local days of the time zone in effect at compaction time; they
+ *   are not re-bucketed when the zone changes later
+ * - The file is rewritten whole on every compaction; it holds one record per
+ *   (day, emotion) pair and compactions are rare
+ */
+public final class CompactedTier {
+    static final String FILE_NAME = "compacted.days";
+    static final int MAGIC = 0x454D4344;
+    static final int FORMAT_VERSION = 1;
+
+    private static final String PENDING_SUFFIX = ".pending";
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_SIZE = 16;
+
+    static final CompactedTier EMPTY = new CompactedTier(
+            new RollupTable(RollupTable.Resolution.DAY, TimeZone.getDefault()).view(),
+            new String[0], 0, 0);
+
+    private final RollupTable.View days;
+    private final String[] emotionNames;
+    private final long total;
+    private final long rawStartIndex;
+
+
+    private CompactedTier(RollupTable.View days, String[] emotionNames, long total, long rawStartIndex) {
+        this.days = days;
+        this.emotionNames = emotionNames;
+        this.total = total;
+        this.rawStartIndex = rawStartIndex;
+    }
+
+    /**
+     * Returns a tier holding this tier's counts plus the entries at positions
+     * {@code [from, to)} of {@code columns}, which must share this tier's ordinals.
+     *
+     * @param rawStartIndex durable record index of the first entry that stays raw
+     */
+    CompactedTier plus(LogColumns.View columns, int from, int to, TimeZone timeZone, long rawStartIndex) {
+        RollupTable table = copyInto(new RollupTable(RollupTable.Resolution.DAY, timeZone));
+        LogColumns.Reader reader = columns.reader();
+        for (int i = from; i < to; i++) {
+            table.add(reader.timestampAt(i), reader.ordinalAt(i));
+        }
+        String[] names = new String[columns.emotionCount()];
+        for (int ordinal = 0; ordinal < names.length; ordinal++) {
+            names[ordinal] = columns.emotionName(ordinal);
+        }
+        return new CompactedTier(table.view(), names, total + (to - from), rawStartIndex);
+    }
+
+
+    private RollupTable copyInto(RollupTable table) {
+        days.forEach((day, ordinal, count) ->
+                table.addLocal(day * DayIndex.MILLIS_PER_DAY, ordinal, count));
+        return table;
+    }
+
+
+    public boolean isEmpty() {
+        return total == 0;
+    }
+
+    /** Returns the number of compacted entries. */
+    public long getTotal() {
+        return total;
+    }
+
+    /** Returns the durable record index of the first entry that is still raw. */
+    public long getRawStartIndex() {
+        return rawStartIndex;
+    }
+
+
+    public int countForDay(long epochDay) {
+        return days.total(epochDay);
+    }
+
+
+    public int countForDay(long epochDay, int ordinal) {
+        return days.count(epochDay, ordinal);
+    }
+
+    /** Adds the compacted count of every emotion on a day to {@code counts}, by ordinal. */
+    void addCountsForDay(long epochDay, int[] counts) {
+        int[] dayCounts = days.countsByEmotion(epochDay, epochDay + 1, counts.length);
+        for (int ordinal = 0; ordinal < counts.length; ordinal++) {
+            counts[ordinal] += dayCounts[ordinal];
+        }
+    }
+
+
+    public int emotionCount() {
+        return emotionNames.length;
+    }
+
+
+    public String emotionName(int ordinal) {
+        return emotionNames[ordinal];
+    }
+
+    /** Visits every (epoch day, ordinal, count) in day order. */
+    public void forEach(RollupTable.CountVisitor visitor) {
+        days.forEach(visitor);
+    }
+
+    // Persistence.
+
+    /**
+     * Writes the tier next to its final location and forces it to disk. The
+     * returned file only replaces the current tier once {@link #commitPending} is called.
+     */
+    File writePending(File directory) throws IOException {
+        int[] records = { 0 };
+        days.forEach((day, ordinal, count) -> records[0]++);
+        byte[][] names = new byte[emotionNames.length][];
+        int namesSize = 0;
+        for (int i = 0; i < names.length; i++) {
+            names[i] = emotionNames[i].getBytes(StandardCharsets.UTF_8);
+            namesSize += 2 + names[i].length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + namesSize + records[0] * RECORD_SIZE + 4);
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(rawStartIndex).putLong(total)
+                .putInt(names.length).putInt(records[0]);
+        for (byte[] name : names) {
+            buffer.putShort((short) name.length).put(name);
+        }
+        days.forEach((day, ordinal, count) -> buffer.putLong(day).putInt(ordinal).putInt(count));
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+
+        File pending = new File(directory, FILE_NAME + PENDING_SUFFIX);
+        try (RandomAccessFile file = new RandomAccessFile(pending, "rw");
+             FileChannel channel = file.getChannel()) {
+            channel.truncate(0);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        return pending;
+    }
+
+    /** Atomically replaces the current tier file with one written by {@link #writePending}. */
+    static void commitPending(File pending) throws IOException {
+        String name = pending.getName();
+        File target = new File(pending.getParentFile(), name.substring(0, name.length() - PENDING_SUFFIX.length()));
+        if (!pending.renameTo(target)) {
+            throw new IOException("Cannot replace " + target);
+        }
+    }
+
+    /**
+     * Reads the tier stored in a log directory, or returns {@link #EMPTY} if there is none.
+     * Days are interpreted in the given time zone from then on.
+     *
+     * @throws IOException if the file exists but is damaged; its entries cannot be recovered
+     *         from the segment log, which no longer holds them
+     */
+    static CompactedTier read(File directory, TimeZone timeZone) throws IOException {
+        File file = new File(directory, FILE_NAME);
+        if (!file.exists()) {
+            return EMPTY;
+        }
+        ByteBuffer buffer;
+        try (RandomAccessFile input = new RandomAccessFile(file, "r");
+             FileChannel channel = input.getChannel()) {
+            if (channel.size() < HEADER_SIZE + 4 || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Damaged compacted tier: " + file);
+            }
+            buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Keep reading until the buffer is full.
+            }
+            buffer.flip();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.limit() - 4);
+        if (buffer.getInt(buffer.limit() - 4) != (int) crc.getValue()
+                || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+            throw new IOException("Damaged compacted tier: " + file);
+        }
+        long rawStartIndex = buffer.getLong();
+        long total = buffer.getLong();
+        String[] names = new String[buffer.getInt()];
+        int records = buffer.getInt();
+        for (int i = 0; i < names.length; i++) {
+            byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(bytes);
+            names[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        RollupTable table = new RollupTable(RollupTable.Resolution.DAY, timeZone);
+        for (int i = 0; i < records; i++) {
+            table.addLocal(buffer.getLong() * DayIndex.MILLIS_PER_DAY, buffer.getInt(), buffer.getInt());
+        }
+        return new CompactedTier(table.view(), names, total, rawStartIndex);
+    }
+}
@@ -0,0 +1,515 @@
+package com.example.aroxas_emotilog;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * CompressedBlock - An immutable, compressed block of log entries.
+ *
+ * {@link LogColumns} seals every full chunk into a block. Timestamps are stored
+ * as delta-of-deltas: the difference between consecutive gaps is zigzag encoded
+ * and bit-packed, {@link #ANCHOR_INTERVAL} entries at a time, with the width of
+ * the largest value among them. Regularly spaced entries therefore cost nothing
+ * beyond their anchor, and irregular ones the bits of their largest jitter. When
+ * every gap in a block is a whole number of seconds, as for imported or rounded
+ * timestamps, the gaps are stored in seconds. Emotions are stored either
+ * run-length encoded or bit-packed against a block-local dictionary, whichever
+ * is smaller for the block.
+ *
+ * Design Rationale:
+ * - Fixed widths instead of Gorilla's variable-length codes: the position of a
+ *   value does not depend on the values before it, so decoding is a simple loop
+ *   without unpredictable branches
+ * - Each group of {@link #ANCHOR_INTERVAL} entries starts with its timestamp and
+ *   gap, so random access decodes at most that many values
+ * - {@link #decodeTimestamps} and {@link #decodeOrdinals} expand a whole block into
+ *   plain arrays, so scans run the same tight loops as over raw chunks
+ * - {@link #addCounts} works on runs directly when the emotions are run-length
+ *   encoded, so counting a day costs one addition per run
+ * - Arithmetic wraps, so any sequence of timestamps round-trips, even one that
+ *   goes back in time or spans the whole {@code long} range
+ * - Blocks are written to a {@link Checkpoint} exactly as they are held in memory,
+ *   so loading one is a bulk read without decoding
+ *
+ * Outstanding Issues:
+ * - A single long pause widens its whole group; taps minutes to hours apart with
+ *   millisecond timestamps still take about three bytes each
+ */
+final class CompressedBlock {
+    static final int ANCHOR_SHIFT = 7;
+    static final int ANCHOR_INTERVAL = 1 << ANCHOR_SHIFT;
+
+    private final int size;
+    // Unit of the stored gaps in milliseconds: 1000 or 1.
+    private final long scale;
+    // Packed delta-of-deltas, most significant bit first, plus one word of padding so
+    // that reading 64 bits at any value never runs past the end.
+    private final long[] bits;
+    // Group k covers entries [k * ANCHOR_INTERVAL, (k + 1) * ANCHOR_INTERVAL): its first
+    // timestamp, the gap before that, the bit offset and the width of its values.
+    private final long[] anchorTimestamps;
+    private final long[] anchorDeltas;
+    private final int[] anchorOffsets;
+    private final byte[] anchorWidths;
+
+    // Run-length encoded emotions: run r covers offsets [runEnds[r - 1], runEnds[r]).
+    private final char[] runEnds;
+    private final char[] runOrdinals;
+    // Otherwise, bitsPerOrdinal-bit indexes into the block's dictionary of ordinals.
+    private final long[] packedOrdinals;
+    private final char[] dictionary;
+    private final int bitsPerOrdinal;
+
+
+    private CompressedBlock(int size, long scale, long[] bits, long[] anchorTimestamps, long[] anchorDeltas,
+                            int[] anchorOffsets, byte[] anchorWidths, char[] runEnds, char[] runOrdinals,
+                            long[] packedOrdinals, char[] dictionary, int bitsPerOrdinal) {
+        this.size = size;
+        this.scale = scale;
+        this.bits = bits;
+        this.anchorTimestamps = anchorTimestamps;
+        this.anchorDeltas = anchorDeltas;
+        this.anchorOffsets = anchorOffsets;
+        this.anchorWidths = anchorWidths;
+        this.runEnds = runEnds;
+        this.runOrdinals = runOrdinals;
+        this.packedOrdinals = packedOrdinals;
+        this.dictionary = dictionary;
+        this.bitsPerOrdinal = bitsPerOrdinal;
+    }
+
+    /**
+     * Compresses the first {@code size} entries of a chunk.
+     *
+     * @param size at least 1
+     */
+    static CompressedBlock compress(long[] timestamps, short[] ordinals, int size) {
+        long scale = 1000;
+        for (int i = 1; i < size && scale > 1; i++) {
+            if ((timestamps[i] - timestamps[i - 1]) % 1000 != 0) {
+                scale = 1;
+            }
+        }
+        int anchors = ((size - 1) >>> ANCHOR_SHIFT) + 1;
+        long[] anchorTimestamps = new long[anchors];
+        long[] anchorDeltas = new long[anchors];
+        int[] anchorOffsets = new int[anchors];
+        byte[] anchorWidths = new byte[anchors];
+        BitWriter writer = new BitWriter(size);
+        long[] values = new long[ANCHOR_INTERVAL];
+        long delta = 0;
+        for (int anchor = 0; anchor < anchors; anchor++) {
+            int start = anchor << ANCHOR_SHIFT;
+            int end = Math.min(size, start + ANCHOR_INTERVAL);
+            if (start > 0) {
+                delta = (timestamps[start] - timestamps[start - 1]) / scale;
+            }
+            anchorTimestamps[anchor] = timestamps[start];
+            anchorDeltas[anchor] = delta;
+            anchorOffsets[anchor] = writer.length;
+            long union = 0;
+            for (int i = start + 1; i < end; i++) {
+                long next = (timestamps[i] - timestamps[i - 1]) / scale;
+                values[i - start] = zigzag(next - delta);
+                union |= values[i - start];
+                delta = next;
+            }
+            int width = 64 - Long.numberOfLeadingZeros(union);
+            anchorWidths[anchor] = (byte) width;
+            if (width > 0) {
+                for (int i = start + 1; i < end; i++) {
+                    writer.write(values[i - start], width);
+                }
+            }
+        }
+
+        int runs = 1;
+        for (int i = 1; i < size; i++) {
+            if (ordinals[i] != ordinals[i - 1]) {
+                runs++;
+            }
+        }
+        char[] distinct = distinctOrdinals(ordinals, size);
+        // Rounded up to a power of two, so that no index straddles two words.
+        int indexBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(distinct.length - 1));
+        int bitsPerOrdinal = Integer.highestOneBit(indexBits * 2 - 1);
+        long packedBytes = 8L * ((size * (long) bitsPerOrdinal + 63) >>> 6) + 2L * distinct.length;
+        if (4L * runs <= packedBytes) {
+            char[] runEnds = new char[runs];
+            char[] runOrdinals = new char[runs];
+            int run = 0;
+            for (int i = 1; i <= size; i++) {
+                if (i == size || ordinals[i] != ordinals[i - 1]) {
+                    runEnds[run] = (char) i;
+                    runOrdinals[run++] = (char) ordinals[i - 1];
+                }
+            }
+            return new CompressedBlock(size, scale, writer.toArray(), anchorTimestamps, anchorDeltas,
+                    anchorOffsets, anchorWidths, runEnds, runOrdinals, null, null, 0);
+        }
+
+        long[] packed = new long[(int) ((size * (long) bitsPerOrdinal + 63) >>> 6)];
+        for (int i = 0; i < size; i++) {
+            int index = Arrays.binarySearch(distinct, (char) ordinals[i]);
+            long bit = (long) i * bitsPerOrdinal;
+            packed[(int) (bit >>> 6)] |= (long) index << (bit & 63);
+        }
+        return new CompressedBlock(size, scale, writer.toArray(), anchorTimestamps, anchorDeltas,
+                anchorOffsets, anchorWidths, null, null, packed, distinct, bitsPerOrdinal);
+    }
+
+
+    // The distinct ordinals of a chunk, ascending.
+    private static char[] distinctOrdinals(short[] ordinals, int size) {
+        char[] sorted = new char[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = (char) ordinals[i];
+        }
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, distinct);
+    }
+
+
+    int size() {
+        return size;
+    }
+
+
+    boolean isRunLengthEncoded() {
+        return runEnds != null;
+    }
+
+
+    /** Decodes one timestamp, starting from the anchor of its group. */
+    long timestampAt(int offset) {
+        int anchor = offset >>> ANCHOR_SHIFT;
+        long timestamp = anchorTimestamps[anchor];
+        long step = anchorDeltas[anchor] * scale;
+        int count = offset & (ANCHOR_INTERVAL - 1);
+        int width = anchorWidths[anchor];
+        if (width == 0) {
+            return timestamp + count * step;
+        }
+        int position = anchorOffsets[anchor];
+        for (int i = 0; i < count; i++, position += width) {
+            step += unzigzag(read(position, width)) * scale;
+            timestamp += step;
+        }
+        return timestamp;
+    }
+
+
+    int ordinalAt(int offset) {
+        if (runEnds != null) {
+            return runOrdinals[runOf(offset)];
+        }
+        return dictionary[packedIndex(offset)];
+    }
+
+
+    /** Decodes all timestamps into {@code target}, which must hold {@link #size()} values. */
+    void decodeTimestamps(long[] target) {
+        for (int anchor = 0, start = 0; start < size; anchor++, start += ANCHOR_INTERVAL) {
+            int end = Math.min(size, start + ANCHOR_INTERVAL);
+            long timestamp = anchorTimestamps[anchor];
+            long step = anchorDeltas[anchor] * scale;
+            int width = anchorWidths[anchor];
+            target[start] = timestamp;
+            if (width == 0) {
+                for (int i = start + 1; i < end; i++) {
+                    timestamp += step;
+                    target[i] = timestamp;
+                }
+                continue;
+            }
+            for (int i = start + 1, position = anchorOffsets[anchor]; i < end; i++, position += width) {
+                step += unzigzag(read(position, width)) * scale;
+                timestamp += step;
+                target[i] = timestamp;
+            }
+        }
+    }
+
+
+    /** Decodes all ordinals into {@code target}, which must hold {@link #size()} values. */
+    void decodeOrdinals(short[] target) {
+        if (runEnds != null) {
+            int start = 0;
+            for (int run = 0; run < runEnds.length; run++) {
+                Arrays.fill(target, start, runEnds[run], (short) runOrdinals[run]);
+                start = runEnds[run];
+            }
+            return;
+        }
+        int perWord = 64 / bitsPerOrdinal;
+        int mask = (1 << bitsPerOrdinal) - 1;
+        for (int word = 0, i = 0; i < size; word++) {
+            long packed = packedOrdinals[word];
+            for (int end = Math.min(size, i + perWord); i < end; i++, packed >>>= bitsPerOrdinal) {
+                target[i] = (short) dictionary[(int) packed & mask];
+            }
+        }
+    }
+
+
+    /** Adds the entries at offsets [from, to) to the counters indexed by ordinal. */
+    void addCounts(int from, int to, int[] counts) {
+        if (from >= to) {
+            return;
+        }
+        if (runEnds != null) {
+            for (int run = runOf(from); from < to; run++) {
+                int end = Math.min(to, runEnds[run]);
+                counts[runOrdinals[run]] += end - from;
+                from = end;
+            }
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            counts[dictionary[packedIndex(i)]]++;
+        }
+    }
+
+    /**
+     * Estimates the heap used by the block, including its array headers.
+     */
+    long estimateMemoryBytes() {
+        long arrayHeader = 16;
+        long bytes = 56 + 6 * arrayHeader + 8L * bits.length + 21L * anchorTimestamps.length;
+        if (runEnds != null) {
+            bytes += 2 * arrayHeader + 4L * runEnds.length;
+        } else {
+            bytes += 2 * arrayHeader + 8L * packedOrdinals.length + 2L * dictionary.length;
+        }
+        return bytes;
+    }
+
+
+    // Serialization, big-endian like the rest of the storage files; the caller checksums.
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(size);
+        out.writeLong(scale);
+        writeLongs(out, bits);
+        writeLongs(out, anchorTimestamps);
+        writeLongs(out, anchorDeltas);
+        for (int offset : anchorOffsets) {
+            out.writeInt(offset);
+        }
+        out.write(anchorWidths);
+        out.writeBoolean(runEnds != null);
+        if (runEnds != null) {
+            writeChars(out, runEnds);
+            writeChars(out, runOrdinals);
+        } else {
+            out.writeByte(bitsPerOrdinal);
+            writeLongs(out, packedOrdinals);
+            writeChars(out, dictionary);
+        }
+    }
+
+    /**
+     * Reads a block written by {@link #writeTo}.
+     *
+     * @throws IOException if the block is malformed
+     */
+    static CompressedBlock read(ByteBuffer in) throws IOException {
+        int size = in.getInt();
+        long scale = in.getLong();
+        if (size < 1 || size > LogColumns.CHUNK_SIZE || (scale != 1 && scale != 1000)) {
+            throw new IOException("Malformed block of " + size + " entries");
+        }
+        long[] bits = readLongs(in);
+        long[] anchorTimestamps = readLongs(in);
+        long[] anchorDeltas = readLongs(in);
+        int anchors = ((size - 1) >>> ANCHOR_SHIFT) + 1;
+        if (anchorTimestamps.length != anchors || anchorDeltas.length != anchors || bits.length == 0) {
+            throw new IOException("Malformed block anchors");
+        }
+        int[] anchorOffsets = new int[anchors];
+        byte[] anchorWidths = new byte[anchors];
+        for (int i = 0; i < anchors; i++) {
+            anchorOffsets[i] = in.getInt();
+        }
+        in.get(anchorWidths);
+        if (in.get() != 0) {
+            char[] runEnds = readChars(in);
+            char[] runOrdinals = readChars(in);
+            return new CompressedBlock(size, scale, bits, anchorTimestamps, anchorDeltas, anchorOffsets,
+                    anchorWidths, runEnds, runOrdinals, null, null, 0);
+        }
+        int bitsPerOrdinal = in.get();
+        long[] packed = readLongs(in);
+        char[] dictionary = readChars(in);
+        return new CompressedBlock(size, scale, bits, anchorTimestamps, anchorDeltas, anchorOffsets,
+                anchorWidths, null, null, packed, dictionary, bitsPerOrdinal);
+    }
+
+
+    /**
+     * Checks the emotions of a block read by {@link #read}: that its runs or packed
+     * indexes cover exactly its entries and that it only refers to the first
+     * {@code emotions} ordinals. Costs one step per run or dictionary entry, not
+     * per entry; packed indexes past the dictionary are left to the file checksum.
+     *
+     * @throws IOException if the block is malformed
+     */
+    void validate(int emotions) throws IOException {
+        if (runEnds != null) {
+            if (runEnds.length == 0 || runOrdinals.length != runEnds.length || runEnds[runEnds.length - 1] != size) {
+                throw new IOException("Malformed block runs");
+            }
+            for (int run = 0; run < runEnds.length; run++) {
+                if ((run > 0 && runEnds[run] <= runEnds[run - 1]) || runOrdinals[run] >= emotions) {
+                    throw new IOException("Malformed block run " + run);
+                }
+            }
+            return;
+        }
+        if (Integer.bitCount(bitsPerOrdinal) != 1 || bitsPerOrdinal > 16
+                || packedOrdinals.length != (int) ((size * (long) bitsPerOrdinal + 63) >>> 6)
+                || dictionary.length == 0 || dictionary.length > 1 << bitsPerOrdinal) {
+            throw new IOException("Malformed block ordinals");
+        }
+        for (int i = 1; i < dictionary.length; i++) {
+            if (dictionary[i] <= dictionary[i - 1]) {
+                throw new IOException("Malformed block dictionary");
+            }
+        }
+        if (dictionary[dictionary.length - 1] >= emotions) {
+            throw new IOException("Unknown emotion ordinal " + (int) dictionary[dictionary.length - 1]);
+        }
+    }
+
+
+    private static void writeLongs(DataOutputStream out, long[] values) throws IOException {
+        out.writeInt(values.length);
+        for (long value : values) {
+            out.writeLong(value);
+        }
+    }
+
+
+    private static void writeChars(DataOutputStream out, char[] values) throws IOException {
+        out.writeInt(values.length);
+        for (char value : values) {
+            out.writeChar(value);
+        }
+    }
+
+
+    private static long[] readLongs(ByteBuffer in) throws IOException {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining() / 8) {
+            throw new IOException("Malformed block array of " + length + " values");
+        }
+        long[] values = new long[length];
+        in.asLongBuffer().get(values);
+        in.position(in.position() + 8 * length);
+        return values;
+    }
+
+
+    private static char[] readChars(ByteBuffer in) throws IOException {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining() / 2) {
+            throw new IOException("Malformed block array of " + length + " values");
+        }
+        char[] values = new char[length];
+        in.asCharBuffer().get(values);
+        in.position(in.position() + 2 * length);
+        return values;
+    }
+
+
+    private int runOf(int offset) {
+        int low = 0;
+        int high = runEnds.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (runEnds[mid] <= offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+
+    private int packedIndex(int offset) {
+        int bit = offset * bitsPerOrdinal;
+        return (int) (packedOrdinals[bit >>> 6] >>> bit) & ((1 << bitsPerOrdinal) - 1);
+    }
+
+
+    // Reads width bits at a bit offset, 1 <= width <= 64.
+    private long read(int position, int width) {
+        int word = position >>> 6;
+        int shift = position & 63;
+        // The padding word makes word + 1 valid; a shift of 64 is done in two steps.
+        long window = bits[word] << shift | bits[word + 1] >>> 1 >>> (63 - shift);
+        return window >>> (64 - width);
+    }
+
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+
+    /** Appends fixed-width values to a growing bit stream. */
+    private static final class BitWriter {
+        long[] words;
+        int length;
+
+        BitWriter(int entries) {
+            // Room for two bits per entry; grows for irregular timestamps.
+            words = new long[(entries >>> 5) + 2];
+        }
+
+        // Writes the low width bits of value, 1 <= width <= 64.
+        void write(long value, int width) {
+            if (width > 32) {
+                writeBits(value >>> 32, width - 32);
+                writeBits(value, 32);
+            } else {
+                writeBits(value, width);
+            }
+        }
+
+        // Writes the low width bits of value, 1 <= width <= 32.
+        private void writeBits(long value, int width) {
+            int word = length >>> 6;
+            if (word + 1 >= words.length) {
+                words = Arrays.copyOf(words, words.length * 2);
+            }
+            value &= (1L << width) - 1;
+            int free = 64 - (length & 63);
+            if (width <= free) {
+                words[word] |= value << (free - width);
+            } else {
+                words[word] |= value >>> (width - free);
+                words[word + 1] |= value << (64 - (width - free));
+            }
+            length += width;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(words, ((length + 63) >>> 6) + 1);
+        }
+    }
+}
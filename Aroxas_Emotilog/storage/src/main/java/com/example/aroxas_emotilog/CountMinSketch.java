@@ -0,0 +1,119 @@
+package com.example.aroxas_emotilog;
+
+/**
+ * CountMinSketch - Fixed-size approximate counter for an unbounded set of strings.
+ *
+ * The sketch is a {@code depth x width} table of counters. Each item maps to one
+ * counter per row and its estimate is the smallest of those counters. Estimates
+ * never undercount; with N the total of all counts added:
+ *
+ *   estimate(x) <= count(x) + (e / width) * N   with probability >= 1 - e^-depth
+ *
+ * Design Rationale:
+ * - Memory is {@code 4 * depth * width} bytes no matter how many distinct items
+ *   are added
+ * - Conservative update: an add only raises the counters that are below the new
+ *   estimate, which keeps the same guarantee with noticeably smaller errors on
+ *   skewed data
+ * - Row indexes come from one 64-bit string hash split into two halves (double
+ *   hashing), so an add costs one pass over the string
+ * - Not thread-safe; LogStorage only touches it under its write lock
+ */
+public final class CountMinSketch {
+    private final int depth;
+    private final int width;
+    private final int mask;
+    private final int[] counters;
+    private long total;
+
+
+    /**
+     * @param width rounded up to a power of two
+     */
+    public CountMinSketch(int depth, int width) {
+        if (depth <= 0 || width <= 0 || width > 1 << 30) {
+            throw new IllegalArgumentException("Invalid sketch size: " + depth + " x " + width);
+        }
+        this.depth = depth;
+        this.width = width == 1 ? 1 : Integer.highestOneBit(width - 1) << 1;
+        this.mask = this.width - 1;
+        this.counters = new int[depth * this.width];
+    }
+
+    /** Adds {@code count} occurrences of an item and returns its new estimate. */
+    public int add(String item, int count) {
+        long hash = hash(item);
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[index(hash, row)]);
+        }
+        int target = saturatedAdd(estimate, count);
+        for (int row = 0; row < depth; row++) {
+            int index = index(hash, row);
+            if (counters[index] < target) {
+                counters[index] = target;
+            }
+        }
+        total += count;
+        return target;
+    }
+
+
+    public int estimate(String item) {
+        long hash = hash(item);
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[index(hash, row)]);
+        }
+        return estimate;
+    }
+
+    /** Returns the sum of all counts added. */
+    public long getTotal() {
+        return total;
+    }
+
+    /** Returns the additive error bound as a fraction of {@link #getTotal()}: e / width. */
+    public double getErrorRate() {
+        return Math.E / width;
+    }
+
+    /** Returns the probability that one estimate exceeds the error bound: e^-depth. */
+    public double getFailureProbability() {
+        return Math.exp(-depth);
+    }
+
+
+    public long estimateMemoryBytes() {
+        return 16 + 4L * counters.length;
+    }
+
+
+    private int index(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return row * width + ((h1 + row * h2) & mask);
+    }
+
+
+    private static int saturatedAdd(int a, int b) {
+        long sum = (long) a + b;
+        return sum > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) sum;
+    }
+
+    // FNV-1a over the UTF-16 code units, then a MurmurHash3 fmix64 finalizer so that
+    // both 32-bit halves are well mixed.
+    static long hash(String item) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < item.length(); i++) {
+            h ^= item.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,366 @@
+package com.example.aroxas_emotilog;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.TimeZone;
+import java.util.function.IntToLongFunction;
+import java.util.function.LongPredicate;
+
+/**
+ * DayIndex - Maps calendar days to contiguous ranges of log positions.
+ *
+ * Entries are appended in log order, which is almost always timestamp order.
+ * The index records a boundary every time the local calendar day changes, so a
+ * day is a single contiguous range of positions. An entry older than the one
+ * before it (for example after the device clock was set back) starts a new
+ * sorted run, as does a local day that goes backwards. Days are contiguous
+ * within each run and a query simply checks every run, of which there are
+ * normally one or very few.
+ *
+ * Query results are returned as flat arrays of {@code [start, end)} position
+ * pairs, one pair per run that contains matching entries. Like {@link LogColumns},
+ * the index has a single writer and hands readers an immutable {@link View}.
+ *
+ * Design Rationale:
+ * - The epoch day of an entry is computed once, on append, using the zone offset
+ *   in effect at that instant, so days that are 23 or 25 hours long around DST
+ *   transitions are handled without any string formatting
+ * - Boundaries are stored in primitive arrays; lookups are binary searches
+ * - Runs keep the index correct for out-of-order timestamps without re-sorting the log
+ */
+public class DayIndex {
+    static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+    private static final int[] NO_RANGES = new int[0];
+
+    private final TimeZone timeZone;
+
+    // One boundary per (run, day): the day and the position of its first entry.
+    private long[] boundaryDays = new long[16];
+    private int[] boundaryStarts = new int[16];
+    private int boundaryCount;
+
+    // Index of the first boundary of each sorted run.
+    private int[] runStarts = new int[4];
+    private int runCount;
+
+    private int size;
+    private long lastTimestamp = Long.MIN_VALUE;
+
+
+    public DayIndex(TimeZone timeZone) {
+        this.timeZone = (TimeZone) timeZone.clone();
+    }
+
+
+    public TimeZone getTimeZone() {
+        return (TimeZone) timeZone.clone();
+    }
+
+
+    public static long epochDay(long timestamp, TimeZone timeZone) {
+        return Math.floorDiv(timestamp + timeZone.getOffset(timestamp), MILLIS_PER_DAY);
+    }
+
+
+    public long epochDay(long timestamp) {
+        return epochDay(timestamp, timeZone);
+    }
+
+
+    public int size() {
+        return size;
+    }
+
+
+    public int getRunCount() {
+        return runCount;
+    }
+
+    /**
+     * Indexes the entry at the next position. Positions must be added in order,
+     * starting from zero.
+     */
+    public void add(long timestamp) {
+        long day = epochDay(timestamp);
+        // A clock set back, or a DST fall-back right after midnight that briefly returns
+        // to the previous local day, would break the ordering a run relies on.
+        boolean newRun = runCount == 0 || timestamp < lastTimestamp
+                || day < boundaryDays[boundaryCount - 1];
+
+        if (newRun) {
+            if (runCount == runStarts.length) {
+                runStarts = Arrays.copyOf(runStarts, runCount * 2);
+            }
+            runStarts[runCount++] = boundaryCount;
+        }
+        if (newRun || boundaryDays[boundaryCount - 1] != day) {
+            if (boundaryCount == boundaryDays.length) {
+                boundaryDays = Arrays.copyOf(boundaryDays, boundaryCount * 2);
+                boundaryStarts = Arrays.copyOf(boundaryStarts, boundaryCount * 2);
+            }
+            boundaryDays[boundaryCount] = day;
+            boundaryStarts[boundaryCount] = size;
+            boundaryCount++;
+        }
+
+        lastTimestamp = timestamp;
+        size++;
+    }
+
+
+    public void clear() {
+        // New arrays rather than reset counters: existing views keep their data.
+        boundaryDays = new long[16];
+        boundaryStarts = new int[16];
+        boundaryCount = 0;
+        runStarts = new int[4];
+        runCount = 0;
+        size = 0;
+        lastTimestamp = Long.MIN_VALUE;
+    }
+
+
+    /**
+     * Reads an index written by {@link View#writeTo}, ready for further appends.
+     *
+     * @param lastTimestamp timestamp of the last indexed entry
+     * @throws IOException if the index is malformed
+     */
+    static DayIndex read(ByteBuffer in, TimeZone timeZone, long lastTimestamp) throws IOException {
+        DayIndex index = new DayIndex(timeZone);
+        index.size = in.getInt();
+        index.boundaryCount = in.getInt();
+        index.runCount = in.getInt();
+        if (index.size < 0 || index.boundaryCount < 0 || index.runCount < 0
+                || index.boundaryCount > in.remaining() / 12 || index.runCount > index.boundaryCount
+                || (index.size > 0) != (index.runCount > 0)) {
+            throw new IOException("Malformed day index");
+        }
+        index.boundaryDays = new long[Math.max(16, index.boundaryCount)];
+        index.boundaryStarts = new int[index.boundaryDays.length];
+        index.runStarts = new int[Math.max(4, index.runCount)];
+        for (int i = 0; i < index.boundaryCount; i++) {
+            index.boundaryDays[i] = in.getLong();
+            index.boundaryStarts[i] = in.getInt();
+        }
+        for (int i = 0; i < index.runCount; i++) {
+            index.runStarts[i] = in.getInt();
+        }
+        index.lastTimestamp = index.size > 0 ? lastTimestamp : Long.MIN_VALUE;
+        return index;
+    }
+
+
+    /** Captures the index as it is now; later appends are not visible to the view. */
+    public View view() {
+        return new View(timeZone, boundaryDays, boundaryStarts, boundaryCount,
+                runStarts, runCount, size);
+    }
+
+
+    public int[] rangesForDay(long epochDay) {
+        return view().rangesForDay(epochDay);
+    }
+
+
+    public int[] rangesBetween(long from, long to, IntToLongFunction timestamps) {
+        return view().rangesBetween(from, to, timestamps);
+    }
+
+
+    // First position in [low, high) whose timestamp is >= key.
+    private static int lowerBound(int low, int high, long key, IntToLongFunction timestamps) {
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps.applyAsLong(mid) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+
+    public static int countPositions(int[] ranges) {
+        int count = 0;
+        for (int i = 0; i < ranges.length; i += 2) {
+            count += ranges[i + 1] - ranges[i];
+        }
+        return count;
+    }
+
+    /**
+     * Returns the positions in both of two range arrays whose pairs are each in
+     * ascending position order, as such an array.
+     */
+    public static int[] intersectRanges(int[] a, int[] b) {
+        int[] ranges = new int[Math.min(a.length + b.length, 16)];
+        int length = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            int start = Math.max(a[i], b[j]);
+            int end = Math.min(a[i + 1], b[j + 1]);
+            if (start < end) {
+                if (length == ranges.length) {
+                    ranges = Arrays.copyOf(ranges, length * 2);
+                }
+                ranges[length++] = start;
+                ranges[length++] = end;
+            }
+            // Move past whichever range ends first; the other may overlap the next one.
+            if (a[i + 1] < b[j + 1]) {
+                i += 2;
+            } else {
+                j += 2;
+            }
+        }
+        return Arrays.copyOf(ranges, length);
+    }
+
+
+    /**
+     * An immutable, thread-safe snapshot of a {@link DayIndex}.
+     */
+    public static final class View {
+        private final TimeZone timeZone;
+        private final long[] boundaryDays;
+        private final int[] boundaryStarts;
+        private final int boundaryCount;
+        private final int[] runStarts;
+        private final int runCount;
+        private final int size;
+
+        View(TimeZone timeZone, long[] boundaryDays, int[] boundaryStarts, int boundaryCount,
+             int[] runStarts, int runCount, int size) {
+            this.timeZone = timeZone;
+            this.boundaryDays = boundaryDays;
+            this.boundaryStarts = boundaryStarts;
+            this.boundaryCount = boundaryCount;
+            this.runStarts = runStarts;
+            this.runCount = runCount;
+            this.size = size;
+        }
+
+        public long epochDay(long timestamp) {
+            return DayIndex.epochDay(timestamp, timeZone);
+        }
+
+        public TimeZone getTimeZone() {
+            return (TimeZone) timeZone.clone();
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int getRunCount() {
+            return runCount;
+        }
+
+        /** Returns the position of the first entry of a sorted run. */
+        public int runStart(int run) {
+            return boundaryStarts[runStarts[run]];
+        }
+
+        public int[] rangesForDay(long epochDay) {
+            int[] ranges = NO_RANGES;
+            int found = 0;
+            for (int run = 0; run < runCount; run++) {
+                int from = runStarts[run];
+                int to = runEnd(run);
+                int boundary = Arrays.binarySearch(boundaryDays, from, to, epochDay);
+                if (boundary < 0) {
+                    continue;
+                }
+                if (found * 2 == ranges.length) {
+                    ranges = Arrays.copyOf(ranges, Math.max(2, ranges.length * 2));
+                }
+                ranges[found * 2] = boundaryStarts[boundary];
+                ranges[found * 2 + 1] = boundaryEnd(boundary);
+                found++;
+            }
+            return found * 2 == ranges.length ? ranges : Arrays.copyOf(ranges, found * 2);
+        }
+
+        /**
+         * Returns the positions of entries whose local day passes {@code dayFilter},
+         * in ascending order, with adjacent days merged into one pair. Tests each
+         * indexed day once, whatever the number of entries.
+         */
+        public int[] rangesWhereDay(LongPredicate dayFilter) {
+            int[] ranges = NO_RANGES;
+            int length = 0;
+            for (int boundary = 0; boundary < boundaryCount; boundary++) {
+                if (!dayFilter.test(boundaryDays[boundary])) {
+                    continue;
+                }
+                int start = boundaryStarts[boundary];
+                if (length > 0 && ranges[length - 1] == start) {
+                    ranges[length - 1] = boundaryEnd(boundary);
+                    continue;
+                }
+                if (length == ranges.length) {
+                    ranges = Arrays.copyOf(ranges, Math.max(16, ranges.length * 2));
+                }
+                ranges[length++] = start;
+                ranges[length++] = boundaryEnd(boundary);
+            }
+            return length == ranges.length ? ranges : Arrays.copyOf(ranges, length);
+        }
+
+        /**
+         * Returns the positions of entries with {@code from <= timestamp < to}.
+         *
+         * @param timestamps reads the timestamp stored at a position
+         */
+        public int[] rangesBetween(long from, long to, IntToLongFunction timestamps) {
+            if (from >= to) {
+                return NO_RANGES;
+            }
+            int[] ranges = NO_RANGES;
+            int found = 0;
+            for (int run = 0; run < runCount; run++) {
+                int runFirst = boundaryStarts[runStarts[run]];
+                int runLast = run + 1 < runCount ? boundaryStarts[runStarts[run + 1]] : size;
+                int start = lowerBound(runFirst, runLast, from, timestamps);
+                int end = lowerBound(start, runLast, to, timestamps);
+                if (start == end) {
+                    continue;
+                }
+                if (found * 2 == ranges.length) {
+                    ranges = Arrays.copyOf(ranges, Math.max(2, ranges.length * 2));
+                }
+                ranges[found * 2] = start;
+                ranges[found * 2 + 1] = end;
+                found++;
+            }
+            return found * 2 == ranges.length ? ranges : Arrays.copyOf(ranges, found * 2);
+        }
+
+        /** Writes the boundaries; the time zone is the caller's to record. */
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(size);
+            out.writeInt(boundaryCount);
+            out.writeInt(runCount);
+            for (int i = 0; i < boundaryCount; i++) {
+                out.writeLong(boundaryDays[i]);
+                out.writeInt(boundaryStarts[i]);
+            }
+            for (int i = 0; i < runCount; i++) {
+                out.writeInt(runStarts[i]);
+            }
+        }
+
+        private int runEnd(int run) {
+            return run + 1 < runCount ? runStarts[run + 1] : boundaryCount;
+        }
+
+        private int boundaryEnd(int boundary) {
+            return boundary + 1 < boundaryCount ? boundaryStarts[boundary + 1] : size;
+        }
+    }
+}
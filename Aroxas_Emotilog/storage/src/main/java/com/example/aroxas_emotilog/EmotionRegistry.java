@@ -0,0 +1,165 @@
+package com.example.aroxas_emotilog;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * EmotionRegistry - Interns emotion names to dense integer ids.
+ *
+ * The first emotion interned gets id 0, the next one id 1, and so on, so ids
+ * can index plain arrays of counters and posting lists. Ids are never reused
+ * or reassigned until the registry is discarded.
+ *
+ * The registry has a single writer. Readers on other threads use a {@link View},
+ * which sees exactly the emotions interned before it was created and stays valid
+ * while the writer keeps interning.
+ *
+ * Design Rationale:
+ * - Open addressing over an {@code int[]} of ids with linear probing: a lookup
+ *   is a hash, an array read and usually one {@code equals}, with no boxing
+ * - Interning a new emotion writes one table slot in place instead of copying
+ *   the whole table, so registering many free-form tags stays linear; the table
+ *   is only copied when it is resized
+ * - Slots are only ever filled, never cleared. A view ignores ids it does not
+ *   know, which were free slots when it was created, so it can share the table
+ *   with the writer
+ * - Names are kept in an array indexed by id, grown by copying
+ */
+public final class EmotionRegistry {
+    /** The emotions offered on the main screen, in button order. */
+    public static final List<String> DEFAULT_EMOTIONS = Collections.unmodifiableList(Arrays.asList(
+            "Happy", "Sad", "Angry", "Excited", "Crying", "Dead", "Loved", "Tired", "Sick"));
+
+    private final int capacity;
+    private String[] names = new String[16];
+    // id + 1 of the emotion in each slot, 0 for a free slot; at most half full.
+    private int[] table = new int[32];
+    private int size;
+
+
+    /** Creates an empty registry that accepts up to {@code capacity} distinct emotions. */
+    public EmotionRegistry(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the id of an emotion, assigning the next free one if the emotion
+     * has not been seen before.
+     *
+     * @throws TooManyEmotionsException if the emotion is new and the registry is full
+     */
+    public int intern(String emotion) {
+        int mask = table.length - 1;
+        int slot = spread(emotion.hashCode()) & mask;
+        for (int entry = table[slot]; entry != 0; entry = table[slot]) {
+            if (names[entry - 1].equals(emotion)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int id = size;
+        if (id == capacity) {
+            throw new TooManyEmotionsException(emotion, capacity);
+        }
+        if (id == names.length) {
+            names = Arrays.copyOf(names, id * 2);
+        }
+        names[id] = emotion;
+        size = id + 1;
+        if (size * 2 > table.length) {
+            table = rehash(names, size, table.length * 2);
+        } else {
+            table[slot] = id + 1;
+        }
+        return id;
+    }
+
+
+    /** Returns the id of an emotion, or -1 if it has never been interned. */
+    public int idOf(String emotion) {
+        return find(table, names, size, emotion);
+    }
+
+
+    public String name(int id) {
+        return names[id];
+    }
+
+
+    public int size() {
+        return size;
+    }
+
+
+    /** Captures the emotions interned so far. */
+    public View view() {
+        return new View(table, names, size);
+    }
+
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+
+    private static int find(int[] table, String[] names, int size, String emotion) {
+        int mask = table.length - 1;
+        int slot = spread(emotion.hashCode()) & mask;
+        for (int entry = table[slot]; entry != 0; entry = table[slot]) {
+            if (entry > size) {
+                // Filled after the caller's point in time, so the probe chain ended here then.
+                return -1;
+            }
+            if (names[entry - 1].equals(emotion)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+
+    private static int[] rehash(String[] names, int size, int length) {
+        int[] table = new int[length];
+        int mask = length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = spread(names[id].hashCode()) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+        return table;
+    }
+
+
+    /**
+     * An immutable, thread-safe view of the first {@link #size()} emotions of a
+     * registry. Creating a view copies nothing.
+     */
+    public static final class View {
+        private final int[] table;
+        private final String[] names;
+        private final int size;
+
+        View(int[] table, String[] names, int size) {
+            this.table = table;
+            this.names = names;
+            this.size = size;
+        }
+
+        public int idOf(String emotion) {
+            return find(table, names, size, emotion);
+        }
+
+        public String name(int id) {
+            return names[id];
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+}
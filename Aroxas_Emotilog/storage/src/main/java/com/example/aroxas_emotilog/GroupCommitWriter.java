@@ -0,0 +1,295 @@
+package com.example.aroxas_emotilog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * GroupCommitWriter - Logs emotions without waiting for the disk, persisting them in batches.
+ *
+ * {@link #log} only stamps the entry with the current time and adds it to a
+ * lock-free queue. A background flusher thread writes the queued entries to the
+ * {@link LogStore} with one {@link LogStore#addLogs} call, so a burst of taps
+ * shares one disk write and one publication, as soon as either
+ * - the oldest queued entry has waited {@link #getMaxLatencyMillis()}, or
+ * - {@link #getMaxBatchSize()} entries are queued.
+ *
+ * Durability: an entry is on disk at most {@link #getMaxLatencyMillis()} after
+ * {@link #log} returned, plus the time one batch takes to write. A crash or kill
+ * therefore loses at most the entries logged in that window before it.
+ * {@link #flush()} writes everything queued so far before returning and should be
+ * called whenever the process may be about to go away, such as when the app
+ * leaves the foreground. Entries become visible to queries when their batch is
+ * written, just like with {@link LogStore#addLog}.
+ *
+ * Design Rationale:
+ * - Enqueueing is a {@link ConcurrentLinkedQueue} offer and an atomic increment,
+ *   so the UI thread never takes a lock or touches the disk
+ * - Timestamps are taken when an entry is logged, not when its batch is written
+ * - The flusher parks while the queue is empty and is only unparked by the first
+ *   entry of a batch and by a full batch, so idle costs nothing
+ * - Batches are written under a lock shared with {@link #flush()}, so they reach
+ *   the store in the order they were queued
+ * - Like {@link LogStore#addLogs}, a batch that cannot be written is not kept in
+ *   memory; it is reported to the {@link FailureListener} instead
+ * - Any exception from the store, not only a disk failure, fails just its own
+ *   batch: the flusher reports it and goes on with the next one, so entries
+ *   logged afterwards are still written. A listener that throws is logged and
+ *   otherwise ignored for the same reason
+ * - The batch window is measured on a clock passed in by tests, so they can
+ *   check when a batch is due without depending on real scheduling delays
+ *
+ * Outstanding Issues:
+ * - Entries logged from several threads at once may be stored slightly out of
+ *   timestamp order, which the store handles as a clock change
+ */
+public final class GroupCommitWriter {
+    public static final long DEFAULT_MAX_LATENCY_MILLIS = 250;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+
+    private static final Logger LOGGER = Logger.getLogger(GroupCommitWriter.class.getName());
+
+    private final LogStore store;
+    // Source of queue times and of the current time for the batch window.
+    private final LongSupplier nanoClock;
+    private final ConcurrentLinkedQueue<QueuedLog> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicReference<Thread> flusher = new AtomicReference<>();
+    // Held while a batch is taken from the queue and written.
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile long maxLatencyNanos;
+    private volatile int maxBatchSize;
+    private volatile FailureListener failureListener;
+
+    // Batch buffers, guarded by writeLock.
+    private String[] emotions = new String[16];
+    private long[] timestamps = new long[16];
+
+
+    public GroupCommitWriter(LogStore store) {
+        this(store, DEFAULT_MAX_LATENCY_MILLIS, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+
+    public GroupCommitWriter(LogStore store, long maxLatencyMillis, int maxBatchSize) {
+        this(store, maxLatencyMillis, maxBatchSize, System::nanoTime);
+    }
+
+
+    GroupCommitWriter(LogStore store, long maxLatencyMillis, int maxBatchSize, LongSupplier nanoClock) {
+        this.store = store;
+        this.nanoClock = nanoClock;
+        setMaxLatencyMillis(maxLatencyMillis);
+        setMaxBatchSize(maxBatchSize);
+    }
+
+    /**
+     * Queues an emotion with the current time. Never blocks; the entry is written
+     * by the flusher within the durability window.
+     *
+     * @throws IllegalArgumentException if the emotion is null or empty
+     */
+    public void log(String emotion) {
+        if (emotion == null || emotion.isEmpty()) {
+            throw new IllegalArgumentException("Missing emotion");
+        }
+        queue.add(new QueuedLog(emotion, System.currentTimeMillis(), nanoClock.getAsLong()));
+        int count = queued.incrementAndGet();
+        if (count == 1 || count >= maxBatchSize) {
+            LockSupport.unpark(flusher());
+        }
+    }
+
+    /**
+     * Writes every entry queued before this call and returns once it is on disk
+     * (or in memory, for a store without a durable log).
+     *
+     * @throws IOException if the entries this call wrote could not be saved; they are
+     *         not kept. Failures of batches written by the flusher are reported to the
+     *         {@link FailureListener} only.
+     * @throws RuntimeException if the store rejected the entries this call wrote, such
+     *         as a {@link TooManyEmotionsException}; they are not kept either
+     */
+    public void flush() throws IOException {
+        Exception failure = writeQueued(false);
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure != null) {
+            throw (RuntimeException) failure;
+        }
+    }
+
+
+    /** Returns the number of entries logged but not yet taken by a batch. */
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+
+    public void setMaxLatencyMillis(long maxLatencyMillis) {
+        if (maxLatencyMillis < 0) {
+            throw new IllegalArgumentException("Invalid max latency " + maxLatencyMillis);
+        }
+        this.maxLatencyNanos = maxLatencyMillis * 1_000_000L;
+        LockSupport.unpark(flusher.get());
+    }
+
+
+    public long getMaxLatencyMillis() {
+        return maxLatencyNanos / 1_000_000L;
+    }
+
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Invalid batch size " + maxBatchSize);
+        }
+        this.maxBatchSize = maxBatchSize;
+        LockSupport.unpark(flusher.get());
+    }
+
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+
+    /** Sets the listener for batches the flusher could not write, or null for none. */
+    public void setFailureListener(FailureListener listener) {
+        failureListener = listener;
+    }
+
+
+    // Drops everything queued without writing it. Used by tests.
+    void clear() {
+        writeLock.lock();
+        try {
+            while (queue.poll() != null) {
+                queued.decrementAndGet();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+
+    // Returns the flusher thread, starting it on first use.
+    private Thread flusher() {
+        Thread thread = flusher.get();
+        if (thread != null) {
+            return thread;
+        }
+        thread = new Thread(this::runFlusher, "log-group-commit");
+        thread.setDaemon(true);
+        if (flusher.compareAndSet(null, thread)) {
+            thread.start();
+            return thread;
+        }
+        return flusher.get();
+    }
+
+
+    private void runFlusher() {
+        while (!Thread.currentThread().isInterrupted()) {
+            QueuedLog oldest = queue.peek();
+            if (oldest == null) {
+                LockSupport.park(this);
+                continue;
+            }
+            long wait = oldest.queuedNanos + maxLatencyNanos - nanoClock.getAsLong();
+            if (wait > 0 && queued.get() < maxBatchSize) {
+                // Unparked early by a full batch or a setting change; the loop checks again.
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+            writeQueued(true);
+        }
+    }
+
+
+    // Takes everything queued and writes it as one batch; returns the failure, if any,
+    // after reporting it to the listener if asked to. The failure is the IOException
+    // behind an UncheckedIOException, or any other RuntimeException the store threw.
+    private Exception writeQueued(boolean report) {
+        writeLock.lock();
+        try {
+            int count = 0;
+            for (QueuedLog log = queue.poll(); log != null; log = queue.poll()) {
+                queued.decrementAndGet();
+                if (count == emotions.length) {
+                    emotions = Arrays.copyOf(emotions, count * 2);
+                    timestamps = Arrays.copyOf(timestamps, count * 2);
+                }
+                emotions[count] = log.emotion;
+                timestamps[count++] = log.timestamp;
+            }
+            if (count == 0) {
+                return null;
+            }
+            Exception failure;
+            try {
+                store.addLogs(emotions, timestamps, count);
+                return null;
+            } catch (UncheckedIOException e) {
+                failure = e.getCause();
+            } catch (RuntimeException e) {
+                failure = e;
+            } finally {
+                Arrays.fill(emotions, 0, count, null);
+            }
+            if (report) {
+                reportFailure(count, failure);
+            }
+            return failure;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+
+    private void reportFailure(int entries, Exception failure) {
+        FailureListener listener = failureListener;
+        if (listener == null) {
+            LOGGER.log(Level.WARNING, "Could not save " + entries + " queued emotions", failure);
+            return;
+        }
+        try {
+            listener.onWriteFailed(entries, failure);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Write failure listener failed", e);
+        }
+    }
+
+
+    /** Receives the batches the flusher could not write; called on the flusher thread. */
+    public interface FailureListener {
+        /**
+         * The {@code entries} entries of the failed batch are lost; {@code failure} says
+         * why: an {@link IOException} if they could not be written to disk, or the
+         * RuntimeException the store rejected them with.
+         */
+        void onWriteFailed(int entries, Exception failure);
+    }
+
+
+    private static final class QueuedLog {
+        final String emotion;
+        final long timestamp;
+        final long queuedNanos;
+
+        QueuedLog(String emotion, long timestamp, long queuedNanos) {
+            this.emotion = emotion;
+            this.timestamp = timestamp;
+            this.queuedNanos = queuedNanos;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.aroxas_emotilog;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LatencyHistogram - Concurrent histogram of durations in nanoseconds with log-linear buckets.
+ *
+ * Every power of two is split into {@link #SUB_BUCKETS} equal buckets, so a value
+ * is known to within 12.5% whatever its magnitude: 1,000 ns and 1,000,000 ns are
+ * resolved equally well, and durations up to about 18 minutes fit in a few
+ * hundred counters. Longer durations are counted in the last bucket.
+ *
+ * Design Rationale:
+ * - Recording is one bucket index computation and two atomic additions, with no
+ *   allocation and no lock, so it can sit on the hot path of every operation
+ * - The bucket index comes from the position of the highest set bit, not from
+ *   a logarithm or a search
+ * - Readers take a {@link Snapshot} and compute percentiles from it; a snapshot
+ *   taken while values are recorded may be off by those few values
+ */
+public final class LatencyHistogram {
+    static final int SUB_BUCKET_BITS = 3;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Values below 2^MAX_EXPONENT nanoseconds get their own bucket.
+    private static final int MAX_EXPONENT = 40;
+    static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts.incrementAndGet(bucketOf(nanos));
+        sum.add(nanos);
+        if (nanos > max.get()) {
+            max.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        sum.reset();
+        max.set(0);
+    }
+
+
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, sum.sum(), max.get());
+    }
+
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent >= MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+
+    /** Returns the smallest value counted in the bucket. */
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+
+    /** Returns the largest value counted in the bucket, ignoring the overflow of the last one. */
+    static long upperBound(int bucket) {
+        return lowerBound(bucket + 1) - 1;
+    }
+
+
+    /**
+     * Immutable copy of the histogram's counters.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSumNanos() {
+            return sum;
+        }
+
+        public long getMaxNanos() {
+            return max;
+        }
+
+        public double getMeanNanos() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Returns a value that at least the given fraction of the recorded values do
+         * not exceed, accurate to the bucket width, and never above the maximum.
+         * Returns 0 if nothing was recorded.
+         */
+        public long getPercentileNanos(double fraction) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(fraction * count));
+            long seen = 0;
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                seen += counts[bucket];
+                if (seen >= rank) {
+                    return Math.min(upperBound(bucket), max);
+                }
+            }
+            return max;
+        }
+
+        /** Returns the number of values recorded in the bucket; see {@link #getBucketCount()}. */
+        public long getCountInBucket(int bucket) {
+            return counts[bucket];
+        }
+
+        public int getBucketCount() {
+            return counts.length;
+        }
+    }
+}
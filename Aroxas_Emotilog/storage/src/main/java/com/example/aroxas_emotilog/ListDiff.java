@@ -0,0 +1,314 @@
+package com.example.aroxas_emotilog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ListDiff - The row operations that turn one version of a list into the next.
+ *
+ * Rows are identified by stable ids, such as a {@link LogSnapshot} record index or
+ * emotion id. A diff is computed once, typically on a background thread, and then
+ * dispatched to a {@link Callback} on the UI thread, which forwards each operation
+ * to the list adapter, so that only inserted and changed rows are bound again and
+ * moved rows keep their views. The operations are meant to be applied in order:
+ * each position refers to the list as it is after the operations before it, the
+ * way a RecyclerView adapter expects its notifications.
+ *
+ * Design Rationale:
+ * - Independent of any UI toolkit, so diffs can be unit tested and computed
+ *   wherever the data is
+ * - {@link #between} handles short lists such as the per-emotion frequencies with a
+ *   simple O(n^2) pass; long lists that only ever grow, such as the log, build their
+ *   diff from what they know about the change through a {@link Builder}
+ * - Adjacent inserts, removals and changes are merged into ranges
+ * - A {@link #reset} diff stands for a list that has to be reloaded as a whole
+ *
+ * Outstanding Issues:
+ * - {@link #between} moves rows up to their new position one at a time, so a row
+ *   moving down past k others costs k moves rather than one
+ */
+public final class ListDiff {
+    /** A diff without operations. */
+    public static final ListDiff NONE = new Builder().build();
+
+    private static final int INSERT = 0;
+    private static final int REMOVE = 1;
+    private static final int MOVE = 2;
+    private static final int CHANGE = 3;
+
+    // Operations as (type, position or from, count or to) triples, in dispatch order.
+    private final int[] operations;
+    private final boolean reset;
+    // Size of the reloaded list; only set for a reset.
+    private final int newSize;
+
+
+    private ListDiff(int[] operations, boolean reset, int newSize) {
+        this.operations = operations;
+        this.reset = reset;
+        this.newSize = newSize;
+    }
+
+    /**
+     * Returns a diff that reloads the whole list, for changes that cannot be
+     * described row by row.
+     */
+    public static ListDiff reset(int newSize) {
+        return new ListDiff(new int[0], true, newSize);
+    }
+
+    /**
+     * Computes the diff between two short lists of distinct stable ids. Rows whose
+     * id is in both lists are moved as needed and reported as changed when
+     * {@code contents} says their content differs.
+     *
+     * @throws IllegalArgumentException if an id appears twice in the same list
+     */
+    public static ListDiff between(long[] oldIds, long[] newIds, ContentComparator contents) {
+        Map<Long, Integer> oldPositions = positions(oldIds);
+        Map<Long, Integer> newPositions = positions(newIds);
+        Builder diff = new Builder();
+
+        // Removals from the bottom up, so that every position is still the old one.
+        List<Integer> current = new ArrayList<>(oldIds.length);
+        for (int i = oldIds.length - 1; i >= 0; i--) {
+            if (newPositions.containsKey(oldIds[i])) {
+                current.add(i);
+            } else {
+                diff.remove(i, 1);
+            }
+        }
+        Collections.reverse(current);
+
+        // Then each new position in turn: the rows above it are already final.
+        for (int i = 0; i < newIds.length; i++) {
+            Integer oldPosition = oldPositions.get(newIds[i]);
+            if (oldPosition == null) {
+                current.add(i, -1);
+                diff.insert(i, 1);
+                continue;
+            }
+            int from = current.indexOf(oldPosition);
+            if (from != i) {
+                current.add(i, current.remove(from));
+                diff.move(from, i);
+            }
+            if (!contents.isSameContent(oldPosition, i)) {
+                diff.change(i, 1);
+            }
+        }
+        return diff.build();
+    }
+
+
+    private static Map<Long, Integer> positions(long[] ids) {
+        Map<Long, Integer> positions = new HashMap<>(ids.length * 2);
+        for (int i = 0; i < ids.length; i++) {
+            if (positions.put(ids[i], i) != null) {
+                throw new IllegalArgumentException("Duplicate id " + ids[i]);
+            }
+        }
+        return positions;
+    }
+
+    /** Sends the operations to a callback in order, or a single reset. */
+    public void dispatchTo(Callback callback) {
+        if (reset) {
+            callback.onReset();
+            return;
+        }
+        for (int i = 0; i < operations.length; i += 3) {
+            switch (operations[i]) {
+                case INSERT:
+                    callback.onInserted(operations[i + 1], operations[i + 2]);
+                    break;
+                case REMOVE:
+                    callback.onRemoved(operations[i + 1], operations[i + 2]);
+                    break;
+                case MOVE:
+                    callback.onMoved(operations[i + 1], operations[i + 2]);
+                    break;
+                default:
+                    callback.onChanged(operations[i + 1], operations[i + 2]);
+                    break;
+            }
+        }
+    }
+
+
+    public boolean isReset() {
+        return reset;
+    }
+
+
+    public boolean isEmpty() {
+        return !reset && operations.length == 0;
+    }
+
+
+    public int getInsertedCount() {
+        return total(INSERT);
+    }
+
+
+    public int getRemovedCount() {
+        return total(REMOVE);
+    }
+
+
+    public int getMovedCount() {
+        int moves = 0;
+        for (int i = 0; i < operations.length; i += 3) {
+            if (operations[i] == MOVE) {
+                moves++;
+            }
+        }
+        return moves;
+    }
+
+
+    public int getChangedCount() {
+        return total(CHANGE);
+    }
+
+    /**
+     * Returns how many rows an adapter binds again when this diff is dispatched:
+     * inserted and changed rows, or every row after a reset.
+     */
+    public int getRebindCount() {
+        return reset ? newSize : getInsertedCount() + getChangedCount();
+    }
+
+
+    private int total(int type) {
+        int total = 0;
+        for (int i = 0; i < operations.length; i += 3) {
+            if (operations[i] == type) {
+                total += operations[i + 2];
+            }
+        }
+        return total;
+    }
+
+
+    @Override
+    public String toString() {
+        if (reset) {
+            return "reset";
+        }
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < operations.length; i += 3) {
+            if (text.length() > 0) {
+                text.append(", ");
+            }
+            String name = operations[i] == INSERT ? "insert" : operations[i] == REMOVE ? "remove"
+                    : operations[i] == MOVE ? "move" : "change";
+            text.append(name).append(' ').append(operations[i + 1])
+                .append(operations[i] == MOVE ? " to " : " x").append(operations[i + 2]);
+        }
+        return text.toString();
+    }
+
+
+    /** Receives the operations of a diff, usually to forward them to a list adapter. */
+    public interface Callback {
+        void onInserted(int position, int count);
+
+        void onRemoved(int position, int count);
+
+        void onMoved(int fromPosition, int toPosition);
+
+        void onChanged(int position, int count);
+
+        /** The whole list has to be reloaded; no other operation is sent. */
+        void onReset();
+    }
+
+
+    /** Says whether a row present in both lists still shows the same content. */
+    public interface ContentComparator {
+        boolean isSameContent(int oldPosition, int newPosition);
+    }
+
+
+    /**
+     * Collects operations in dispatch order, merging each one into the previous
+     * operation where they form one range.
+     */
+    public static final class Builder {
+        private int[] operations = new int[12];
+        private int length;
+
+
+        public Builder insert(int position, int count) {
+            if (count > 0 && !extend(INSERT, position, count)) {
+                add(INSERT, position, count);
+            }
+            return this;
+        }
+
+
+        public Builder remove(int position, int count) {
+            if (count <= 0) {
+                return this;
+            }
+            // Removing the row just above the previous removal grows it upwards.
+            if (length > 0 && operations[length - 3] == REMOVE && position + count == operations[length - 2]) {
+                operations[length - 2] = position;
+                operations[length - 1] += count;
+                return this;
+            }
+            if (!extend(REMOVE, position, count)) {
+                add(REMOVE, position, count);
+            }
+            return this;
+        }
+
+
+        public Builder move(int fromPosition, int toPosition) {
+            if (fromPosition != toPosition) {
+                add(MOVE, fromPosition, toPosition);
+            }
+            return this;
+        }
+
+
+        public Builder change(int position, int count) {
+            if (count > 0 && !extend(CHANGE, position, count)) {
+                add(CHANGE, position, count);
+            }
+            return this;
+        }
+
+
+        public ListDiff build() {
+            return new ListDiff(Arrays.copyOf(operations, length), false, 0);
+        }
+
+
+        // Appends to the previous operation if it is of the same type and ends at position.
+        private boolean extend(int type, int position, int count) {
+            if (length > 0 && operations[length - 3] == type
+                    && (type == REMOVE ? operations[length - 2] == position
+                        : operations[length - 2] + operations[length - 1] == position)) {
+                operations[length - 1] += count;
+                return true;
+            }
+            return false;
+        }
+
+
+        private void add(int type, int a, int b) {
+            if (length == operations.length) {
+                operations = Arrays.copyOf(operations, length * 2);
+            }
+            operations[length++] = type;
+            operations[length++] = a;
+            operations[length++] = b;
+        }
+    }
+}
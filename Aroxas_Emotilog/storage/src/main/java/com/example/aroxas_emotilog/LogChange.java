@@ -0,0 +1,112 @@
+package com.example.aroxas_emotilog;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LogChange - Describes how the stored logs changed between two snapshots.
+ *
+ * A {@link LogStore} sends one change to its {@link LogStore.ChangeListener}s for
+ * every snapshot it publishes. A change carries the sequence numbers (snapshot versions)
+ * it spans, and either the range of log positions that were appended or a reset
+ * flag when the store was cleared or re-indexed. Screens that kept an older
+ * snapshot can also ask for the change to the latest one with {@link #between}.
+ *
+ * Design Rationale:
+ * - Appends never move existing entries, so an append-only change is fully
+ *   described by the first appended position and a count
+ * - Per-emotion count deltas are computed on first use from the appended range
+ *   only, so the cost is proportional to the number of new entries
+ * - Holds both snapshots, so the appended entries can be read without locking
+ */
+public final class LogChange {
+    private final LogSnapshot previous;
+    private final LogSnapshot current;
+    private final boolean reset;
+    private volatile Map<String, Integer> countDeltas;
+
+
+    private LogChange(LogSnapshot previous, LogSnapshot current, boolean reset) {
+        this.previous = previous;
+        this.current = current;
+        this.reset = reset;
+    }
+
+    /**
+     * Returns the change from {@code previous} to {@code current}. The change is a
+     * reset when {@code previous} is null or {@code current} does not extend it.
+     */
+    public static LogChange between(LogSnapshot previous, LogSnapshot current) {
+        return new LogChange(previous, current, !current.extendsSnapshot(previous));
+    }
+
+    /** Returns the sequence number of the snapshot this change leads to. */
+    public long getSequence() {
+        return current.getVersion();
+    }
+
+    /** Returns the sequence number the change starts from, or 0 if there was no snapshot. */
+    public long getPreviousSequence() {
+        return previous != null ? previous.getVersion() : 0;
+    }
+
+
+    public LogSnapshot getSnapshot() {
+        return current;
+    }
+
+    /**
+     * Returns true if the entries cannot be described as appended to the previous
+     * snapshot; holders of derived state must rebuild it from {@link #getSnapshot()}.
+     */
+    public boolean isReset() {
+        return reset;
+    }
+
+    /** Returns the log position of the first appended entry. */
+    public int getFirstInsertedPosition() {
+        return reset ? 0 : previous.getRawLogCount();
+    }
+
+
+    public int getInsertedCount() {
+        return current.getRawLogCount() - getFirstInsertedPosition();
+    }
+
+    /** Returns the appended entries in the order they were logged. */
+    public List<LogEntry> getInsertedEntries() {
+        int first = getFirstInsertedPosition();
+        return current.getLogs().subList(first, first + getInsertedCount());
+    }
+
+    /**
+     * Returns how much each emotion's count grew, for emotions that changed.
+     * For a reset this is the full count of every emotion, compacted entries included.
+     */
+    public Map<String, Integer> getCountDeltas() {
+        Map<String, Integer> deltas = countDeltas;
+        if (deltas != null) {
+            return deltas;
+        }
+        if (reset) {
+            deltas = current.getEmotionCounts();
+            countDeltas = deltas;
+            return deltas;
+        }
+        LogColumns.View columns = current.columns();
+        int[] counts = new int[columns.emotionCount()];
+        int first = getFirstInsertedPosition();
+        columns.addCounts(first, first + getInsertedCount(), counts);
+        deltas = new HashMap<>();
+        for (int ordinal = 0; ordinal < counts.length; ordinal++) {
+            if (counts[ordinal] > 0) {
+                deltas.put(columns.emotionName(ordinal), counts[ordinal]);
+            }
+        }
+        deltas = Collections.unmodifiableMap(deltas);
+        countDeltas = deltas;
+        return deltas;
+    }
+}
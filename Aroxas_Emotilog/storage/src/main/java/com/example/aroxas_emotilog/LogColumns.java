@@ -0,0 +1,428 @@
+package com.example.aroxas_emotilog;
+
+import java.util.Arrays;
+
+/**
+ * LogColumns - Primitive, column-oriented storage for emotion log entries.
+ *
+ * Instead of one {@link LogEntry} object per log, entries are stored as two
+ * parallel columns: a {@code long} timestamp and a {@code short} emotion ordinal.
+ * Each column is split into fixed-size chunks so growing the store never copies
+ * existing data. Once a chunk is full it is sealed into an immutable
+ * {@link CompressedBlock}, and only the chunk being written stays uncompressed.
+ * Emotion names are interned once by an {@link EmotionRegistry} and referenced
+ * by ordinal, and every appended position is also added to its emotion's
+ * {@link PostingLists} entry, so the entries of one emotion can be read without
+ * scanning the others. {@link LogEntry} objects are only created when a caller
+ * asks for them.
+ *
+ * Memory per entry (compressed references, 12 byte object headers):
+ * - {@code ArrayList<LogEntry>}: 24 byte LogEntry + 4-6 byte list slot, about 29 bytes
+ * - Open chunk: 8 byte timestamp + 2 byte ordinal, about 10 bytes
+ * - Sealed blocks: about 0.3 bytes for entries at a steady pace; for taps of
+ *   several emotions minutes to hours apart, about 2.6 bytes with whole-second
+ *   and about 3.9 bytes with millisecond timestamps
+ * - Plus a 4 byte posting list slot
+ *
+ * LogColumns has a single writer. Readers on other threads use a {@link View},
+ * which captures the directories and size at one point in time and stays valid
+ * while the writer keeps appending.
+ *
+ * Design Rationale:
+ * - Struct-of-arrays layout keeps scans to tight loops over primitive arrays;
+ *   scans over sealed blocks decode one block at a time into such arrays
+ * - Fixed chunk size ({@link #CHUNK_SIZE}) means appends never reallocate filled
+ *   chunks; only the small chunk directories are copied as the store grows
+ * - A slot is written once and never changed, and growing, sealing or clearing
+ *   always allocates new directories, so a view never sees a value change
+ *   underneath it; a view taken before a chunk was sealed keeps reading its raw
+ *   arrays
+ * - Sealing costs one pass over the chunk every {@link #CHUNK_SIZE} appends
+ * - Ordinals are dense, so per-emotion counters can be plain {@code int[]} arrays
+ * - Loops that visit many positions go through a {@link Reader}, which decodes a
+ *   block once instead of once per position
+ */
+public class LogColumns {
+    static final int CHUNK_SHIFT = 12;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    static final int MAX_EMOTIONS = 1 << 16;
+
+    // Estimated heap cost of one entry in the previous ArrayList<LogEntry> layout.
+    static final double LIST_BYTES_PER_ENTRY = 24 + 4 * 1.25;
+
+    // Raw chunks; null once sealed into the block of the same index.
+    private long[][] timestampChunks = new long[4][];
+    private short[][] emotionChunks = new short[4][];
+    private CompressedBlock[] blocks = new CompressedBlock[4];
+    private int size;
+
+    private EmotionRegistry emotions = new EmotionRegistry(MAX_EMOTIONS);
+    private PostingLists postings = new PostingLists();
+
+
+    public int size() {
+        return size;
+    }
+
+
+    public void append(long timestamp, int ordinal) {
+        int chunk = size >>> CHUNK_SHIFT;
+        int offset = size & CHUNK_MASK;
+        if (offset == 0) {
+            if (chunk == timestampChunks.length) {
+                timestampChunks = Arrays.copyOf(timestampChunks, chunk * 2);
+                emotionChunks = Arrays.copyOf(emotionChunks, chunk * 2);
+                blocks = Arrays.copyOf(blocks, chunk * 2);
+            }
+            if (chunk > 0 && blocks[chunk - 1] == null) {
+                seal(chunk - 1);
+            }
+            timestampChunks[chunk] = new long[CHUNK_SIZE];
+            emotionChunks[chunk] = new short[CHUNK_SIZE];
+        }
+        timestampChunks[chunk][offset] = timestamp;
+        emotionChunks[chunk][offset] = (short) ordinal;
+        postings.add(ordinal, size);
+        size++;
+    }
+
+
+    /**
+     * Appends the entries of a block, as read from a {@link Checkpoint}. A full block
+     * is kept as it is, and its entries are only added to the posting lists on first
+     * use; a partial one can only come last and is decoded into the open chunk. The
+     * block's ordinals must already be interned.
+     */
+    void appendBlock(CompressedBlock block) {
+        if ((size & CHUNK_MASK) != 0) {
+            throw new IllegalStateException("Blocks can only be appended at a chunk boundary");
+        }
+        int count = block.size();
+        if (count < CHUNK_SIZE) {
+            long[] timestamps = new long[CHUNK_SIZE];
+            short[] ordinals = new short[CHUNK_SIZE];
+            block.decodeTimestamps(timestamps);
+            block.decodeOrdinals(ordinals);
+            for (int i = 0; i < count; i++) {
+                append(timestamps[i], ordinals[i] & 0xFFFF);
+            }
+            return;
+        }
+        int chunk = size >>> CHUNK_SHIFT;
+        if (chunk == timestampChunks.length) {
+            timestampChunks = Arrays.copyOf(timestampChunks, chunk * 2);
+            emotionChunks = Arrays.copyOf(emotionChunks, chunk * 2);
+            blocks = Arrays.copyOf(blocks, chunk * 2);
+        }
+        if (chunk > 0 && blocks[chunk - 1] == null) {
+            seal(chunk - 1);
+        }
+        blocks[chunk] = block;
+        size += CHUNK_SIZE;
+        postings.setPrefix(blocks, size);
+    }
+
+
+    // Compresses a full chunk. The block slot was never read, so it is set in place;
+    // the raw directories are copied, since existing views may still read the chunk.
+    private void seal(int chunk) {
+        blocks[chunk] = CompressedBlock.compress(timestampChunks[chunk], emotionChunks[chunk], CHUNK_SIZE);
+        timestampChunks = timestampChunks.clone();
+        emotionChunks = emotionChunks.clone();
+        timestampChunks[chunk] = null;
+        emotionChunks[chunk] = null;
+    }
+
+
+    public long timestampAt(int position) {
+        return timestampAt(timestampChunks, blocks, position);
+    }
+
+
+    public int ordinalAt(int position) {
+        return ordinalAt(emotionChunks, blocks, position);
+    }
+
+
+    public LogEntry entryAt(int position) {
+        return new LogEntry(emotions.name(ordinalAt(position)), timestampAt(position));
+    }
+
+    /**
+     * Returns the ordinal for an emotion, assigning the next free one if the
+     * emotion has not been seen before.
+     */
+    public int intern(String emotion) {
+        return emotions.intern(emotion);
+    }
+
+
+    /** Returns the ordinal of an emotion, or -1 if it has never been logged. */
+    public int ordinalOf(String emotion) {
+        return emotions.idOf(emotion);
+    }
+
+
+    public String emotionName(int ordinal) {
+        return emotions.name(ordinal);
+    }
+
+
+    public int emotionCount() {
+        return emotions.size();
+    }
+
+
+    /** Returns the number of entries with the given emotion ordinal. */
+    public int countOf(int ordinal) {
+        return postings.count(ordinal);
+    }
+
+
+    public void clear() {
+        timestampChunks = new long[4][];
+        emotionChunks = new short[4][];
+        blocks = new CompressedBlock[4];
+        size = 0;
+        emotions = new EmotionRegistry(MAX_EMOTIONS);
+        postings.clear();
+    }
+
+
+    /** Captures the entries appended so far. */
+    public View view() {
+        return new View(timestampChunks, emotionChunks, blocks, size, emotions.view(), postings.view());
+    }
+
+    /**
+     * Estimates the heap used by the columns: sealed blocks, the open chunk and the
+     * chunk directories. Interned emotion names are shared with the rest of the app
+     * and not counted, and neither are the posting lists, see
+     * {@link #estimatePostingMemoryBytes()}.
+     */
+    public long estimateMemoryBytes() {
+        long arrayHeader = 16;
+        long bytes = 3 * (arrayHeader + 4L * timestampChunks.length);
+        for (int chunk = 0, chunks = (size + CHUNK_SIZE - 1) >>> CHUNK_SHIFT; chunk < chunks; chunk++) {
+            if (timestampChunks[chunk] != null) {
+                bytes += (arrayHeader + 8L * CHUNK_SIZE) + (arrayHeader + 2L * CHUNK_SIZE);
+            } else {
+                bytes += blocks[chunk].estimateMemoryBytes();
+            }
+        }
+        return bytes;
+    }
+
+
+    public long estimatePostingMemoryBytes() {
+        return postings.estimateMemoryBytes();
+    }
+
+
+    private static long timestampAt(long[][] timestampChunks, CompressedBlock[] blocks, int position) {
+        long[] chunk = timestampChunks[position >>> CHUNK_SHIFT];
+        if (chunk != null) {
+            return chunk[position & CHUNK_MASK];
+        }
+        return blocks[position >>> CHUNK_SHIFT].timestampAt(position & CHUNK_MASK);
+    }
+
+
+    private static int ordinalAt(short[][] emotionChunks, CompressedBlock[] blocks, int position) {
+        short[] chunk = emotionChunks[position >>> CHUNK_SHIFT];
+        if (chunk != null) {
+            return chunk[position & CHUNK_MASK] & 0xFFFF;
+        }
+        return blocks[position >>> CHUNK_SHIFT].ordinalAt(position & CHUNK_MASK);
+    }
+
+
+    /**
+     * An immutable, thread-safe view of the first {@link #size()} entries of a
+     * {@link LogColumns}. Creating a view copies nothing but references.
+     */
+    public static final class View {
+        private final long[][] timestampChunks;
+        private final short[][] emotionChunks;
+        private final CompressedBlock[] blocks;
+        private final int size;
+        private final EmotionRegistry.View emotions;
+        private final PostingLists.View postings;
+
+        View(long[][] timestampChunks, short[][] emotionChunks, CompressedBlock[] blocks, int size,
+             EmotionRegistry.View emotions, PostingLists.View postings) {
+            this.timestampChunks = timestampChunks;
+            this.emotionChunks = emotionChunks;
+            this.blocks = blocks;
+            this.size = size;
+            this.emotions = emotions;
+            this.postings = postings;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /** Reads one timestamp; loops over many positions should use a {@link #reader()}. */
+        public long timestampAt(int position) {
+            return LogColumns.timestampAt(timestampChunks, blocks, position);
+        }
+
+        public int ordinalAt(int position) {
+            return LogColumns.ordinalAt(emotionChunks, blocks, position);
+        }
+
+        public LogEntry entryAt(int position) {
+            return new LogEntry(emotions.name(ordinalAt(position)), timestampAt(position));
+        }
+
+        public int ordinalOf(String emotion) {
+            return emotions.idOf(emotion);
+        }
+
+        public String emotionName(int ordinal) {
+            return emotions.name(ordinal);
+        }
+
+        public int emotionCount() {
+            return emotions.size();
+        }
+
+        public int countOf(int ordinal) {
+            return postings.count(ordinal);
+        }
+
+        /** Returns a reader for loops over many positions; each thread needs its own. */
+        public Reader reader() {
+            return new Reader(this);
+        }
+
+        /** The positions of each emotion's entries, ascending. */
+        PostingLists.View postings() {
+            return postings;
+        }
+
+        // Chunk access for scans: callers iterate chunk by chunk instead of paying
+        // the shift and mask for every position. Sealed chunks are decoded into the
+        // scratch array, which must hold CHUNK_SIZE values.
+
+        long[] timestamps(int chunk, long[] scratch) {
+            long[] raw = timestampChunks[chunk];
+            if (raw != null) {
+                return raw;
+            }
+            blocks[chunk].decodeTimestamps(scratch);
+            return scratch;
+        }
+
+        short[] ordinals(int chunk, short[] scratch) {
+            short[] raw = emotionChunks[chunk];
+            if (raw != null) {
+                return raw;
+            }
+            blocks[chunk].decodeOrdinals(scratch);
+            return scratch;
+        }
+
+        /** Adds the entries at positions [from, to) to the counters indexed by ordinal. */
+        void addCounts(int from, int to, int[] counts) {
+            while (from < to) {
+                int chunk = from >>> CHUNK_SHIFT;
+                int offset = from & CHUNK_MASK;
+                int end = Math.min(CHUNK_SIZE, offset + to - from);
+                short[] raw = emotionChunks[chunk];
+                if (raw != null) {
+                    for (int i = offset; i < end; i++) {
+                        counts[raw[i] & 0xFFFF]++;
+                    }
+                } else {
+                    blocks[chunk].addCounts(offset, end, counts);
+                }
+                from += end - offset;
+            }
+        }
+
+        boolean isSealed(int chunk) {
+            return timestampChunks[chunk] == null;
+        }
+
+        /** Returns a chunk as a block, compressing it first if it is still open. */
+        CompressedBlock block(int chunk) {
+            if (timestampChunks[chunk] == null) {
+                return blocks[chunk];
+            }
+            int count = Math.min(CHUNK_SIZE, size - (chunk << CHUNK_SHIFT));
+            return CompressedBlock.compress(timestampChunks[chunk], emotionChunks[chunk], count);
+        }
+    }
+
+
+    /**
+     * Reads positions of a {@link View}, keeping the block it last read decoded, so
+     * that visiting a run of nearby positions, in any direction, decodes each
+     * sealed block once. Not thread-safe.
+     */
+    public static final class Reader {
+        private final View view;
+        private int chunk = -1;
+        private long[] timestamps;
+        private short[] ordinals;
+        private CompressedBlock block;
+        private boolean visited;
+        private long[] timestampBuffer;
+        private short[] ordinalBuffer;
+
+        Reader(View view) {
+            this.view = view;
+        }
+
+        public long timestampAt(int position) {
+            enter(position >>> CHUNK_SHIFT);
+            if (timestamps == null) {
+                if (!visited) {
+                    // A single read in a block, as in a sparse posting list, costs
+                    // less through the block's anchors than a full decode.
+                    visited = true;
+                    return block.timestampAt(position & CHUNK_MASK);
+                }
+                decode();
+            }
+            return timestamps[position & CHUNK_MASK];
+        }
+
+        public int ordinalAt(int position) {
+            enter(position >>> CHUNK_SHIFT);
+            if (ordinals == null) {
+                return block.ordinalAt(position & CHUNK_MASK);
+            }
+            return ordinals[position & CHUNK_MASK] & 0xFFFF;
+        }
+
+        public LogEntry entryAt(int position) {
+            return new LogEntry(view.emotionName(ordinalAt(position)), timestampAt(position));
+        }
+
+        private void enter(int next) {
+            if (next == chunk) {
+                return;
+            }
+            chunk = next;
+            timestamps = view.timestampChunks[next];
+            ordinals = view.emotionChunks[next];
+            block = timestamps == null ? view.blocks[next] : null;
+            visited = false;
+        }
+
+        private void decode() {
+            if (timestampBuffer == null) {
+                timestampBuffer = new long[CHUNK_SIZE];
+                ordinalBuffer = new short[CHUNK_SIZE];
+            }
+            block.decodeTimestamps(timestampBuffer);
+            block.decodeOrdinals(ordinalBuffer);
+            timestamps = timestampBuffer;
+            ordinals = ordinalBuffer;
+        }
+    }
+}
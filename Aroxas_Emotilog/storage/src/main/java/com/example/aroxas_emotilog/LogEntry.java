@@ -1,8 +1,6 @@
 package com.example.aroxas_emotilog;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
+import java.util.TimeZone;
 
 /**
  * LogEntry - Represents a single emotion log entry with timestamp.
@@ -14,7 +12,8 @@ import java.util.Locale;
  * Design Rationale:
  * - Immutable design ensures data integrity once created
  * - Simple data structure focused on core requirements
- * - Includes formatting methods for consistent display across the app
+ * - Includes formatting methods for consistent display across the app, backed by
+ *   the shared {@link TimeFormatter} caches
  * - Uses long timestamp for precise time tracking
  */
 public class LogEntry {
@@ -39,28 +38,23 @@ public class LogEntry {
     
 
     public String getFormattedTime() {
-        SimpleDateFormat sdf = new SimpleDateFormat("HH:mm:ss", Locale.getDefault());
-        return sdf.format(new Date(timestamp));
+        return TimeFormatter.getDefault().formatTime(timestamp);
     }
     
 
     public String getFormattedDateTime() {
-        SimpleDateFormat sdf = new SimpleDateFormat("MMM dd, yyyy HH:mm:ss", Locale.getDefault());
-        return sdf.format(new Date(timestamp));
+        return TimeFormatter.getDefault().formatDateTime(timestamp);
     }
     
 
     public String getFormattedDate() {
-        SimpleDateFormat sdf = new SimpleDateFormat("MMM dd, yyyy", Locale.getDefault());
-        return sdf.format(new Date(timestamp));
+        return TimeFormatter.getDefault().formatDate(timestamp);
     }
     
 
     public boolean isSameDay(long otherTimestamp) {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-        String thisDate = sdf.format(new Date(timestamp));
-        String otherDate = sdf.format(new Date(otherTimestamp));
-        return thisDate.equals(otherDate);
+        TimeZone timeZone = TimeFormatter.getDefault().timeZone();
+        return DayIndex.epochDay(timestamp, timeZone) == DayIndex.epochDay(otherTimestamp, timeZone);
     }
     
     @Override
@@ -0,0 +1,197 @@
+package com.example.aroxas_emotilog;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * LogExporter - Streams the entries of a {@link LogSnapshot} as CSV or NDJSON.
+ *
+ * Rows are formatted straight from the snapshot's columns into a fixed-size
+ * character buffer, chunk by chunk, in log order. No {@link LogEntry} objects
+ * or lists are created, so exporting a long history needs no more memory than
+ * exporting a short one. The output can be read back with {@link LogImporter}.
+ *
+ * Design Rationale:
+ * - Works on an immutable snapshot, so the export is consistent while entries
+ *   keep being logged and never holds a lock
+ * - Each emotion name is quoted or escaped once per export, not once per row
+ * - Timestamps are written as digits directly into the buffer
+ *
+ * Outstanding Issues:
+ * - Entries compacted by a {@link RetentionPolicy} no longer have timestamps and
+ *   are not exported
+ */
+public final class LogExporter {
+    private static final int BUFFER_SIZE = 1 << 14;
+    private static final char[] JSON_TIMESTAMP = "{\"timestamp\":".toCharArray();
+    private static final char[] JSON_EMOTION = ",\"emotion\":".toCharArray();
+
+    private final LogFormat format;
+
+
+    public LogExporter(LogFormat format) {
+        this.format = format;
+    }
+
+    /** Writes the snapshot as UTF-8 text; the stream is flushed but not closed. */
+    public int export(LogSnapshot snapshot, OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        int rows = export(snapshot, writer);
+        writer.flush();
+        return rows;
+    }
+
+    /**
+     * Writes every raw entry of the snapshot in log order and returns the number
+     * of rows written. The writer is not flushed or closed.
+     */
+    public int export(LogSnapshot snapshot, Writer out) throws IOException {
+        LogColumns.View columns = snapshot.columns();
+        char[][] encodedNames = new char[columns.emotionCount()][];
+        RowBuffer buffer = new RowBuffer(out);
+        if (format == LogFormat.CSV) {
+            buffer.append(LogFormat.CSV_HEADER.toCharArray());
+            buffer.append('\n');
+        }
+
+        int size = columns.size();
+        long[] timestampScratch = new long[LogColumns.CHUNK_SIZE];
+        short[] emotionScratch = new short[LogColumns.CHUNK_SIZE];
+        for (int chunk = 0, base = 0; base < size; chunk++, base += LogColumns.CHUNK_SIZE) {
+            long[] timestamps = columns.timestamps(chunk, timestampScratch);
+            short[] emotions = columns.ordinals(chunk, emotionScratch);
+            int limit = Math.min(LogColumns.CHUNK_SIZE, size - base);
+            for (int i = 0; i < limit; i++) {
+                int ordinal = emotions[i] & 0xFFFF;
+                char[] name = encodedNames[ordinal];
+                if (name == null) {
+                    name = encode(columns.emotionName(ordinal));
+                    encodedNames[ordinal] = name;
+                }
+                if (format == LogFormat.CSV) {
+                    buffer.appendLong(timestamps[i]);
+                    buffer.append(',');
+                    buffer.append(name);
+                    buffer.append('\n');
+                } else {
+                    buffer.append(JSON_TIMESTAMP);
+                    buffer.appendLong(timestamps[i]);
+                    buffer.append(JSON_EMOTION);
+                    buffer.append(name);
+                    buffer.append('}');
+                    buffer.append('\n');
+                }
+            }
+        }
+        buffer.flush();
+        return size;
+    }
+
+
+    private char[] encode(String emotion) {
+        return (format == LogFormat.CSV ? csvField(emotion) : jsonString(emotion)).toCharArray();
+    }
+
+
+    static String csvField(String value) {
+        boolean quote = value.isEmpty() || value.charAt(0) == ' ' || value.charAt(value.length() - 1) == ' ';
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        return quote ? '"' + value.replace("\"", "\"\"") + '"' : value;
+    }
+
+
+    static String jsonString(String value) {
+        StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format(Locale.US, "\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        return json.append('"').toString();
+    }
+
+
+    /**
+     * Fixed-size output buffer that is written out whenever it fills up.
+     */
+    private static final class RowBuffer {
+        private final Writer out;
+        private final char[] chars = new char[BUFFER_SIZE];
+        private final char[] digits = new char[20];
+        private int length;
+
+        RowBuffer(Writer out) {
+            this.out = out;
+        }
+
+        void append(char c) throws IOException {
+            if (length == chars.length) {
+                flush();
+            }
+            chars[length++] = c;
+        }
+
+        void append(char[] text) throws IOException {
+            if (text.length > chars.length - length) {
+                flush();
+                if (text.length > chars.length) {
+                    out.write(text);
+                    return;
+                }
+            }
+            System.arraycopy(text, 0, chars, length, text.length);
+            length += text.length;
+        }
+
+        void appendLong(long value) throws IOException {
+            if (value < 0) {
+                append(Long.toString(value).toCharArray());
+                return;
+            }
+            int start = digits.length;
+            do {
+                digits[--start] = (char) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            int count = digits.length - start;
+            if (count > chars.length - length) {
+                flush();
+            }
+            System.arraycopy(digits, start, chars, length, count);
+            length += count;
+        }
+
+        void flush() throws IOException {
+            out.write(chars, 0, length);
+            length = 0;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.aroxas_emotilog;
+
+/**
+ * LogFilter - A predicate over raw log entries for ad-hoc queries.
+ *
+ * Design Rationale:
+ * - Takes the entry's fields rather than a {@link LogEntry}, so scans test entries
+ *   straight from the columns without creating an object per entry
+ * - Emotion names are interned, so comparing them with {@code equals} is cheap
+ * - May be called from several threads at once by a parallel scan, so it must not
+ *   depend on shared mutable state
+ */
+public interface LogFilter {
+    boolean test(long timestamp, String emotion);
+}
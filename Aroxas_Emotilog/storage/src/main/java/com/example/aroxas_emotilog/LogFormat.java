@@ -0,0 +1,42 @@
+package com.example.aroxas_emotilog;
+
+/**
+ * LogFormat - Text formats for importing and exporting emotion histories.
+ *
+ * Both formats hold one entry per row with its timestamp in milliseconds since
+ * the epoch and its emotion name:
+ * - CSV: a {@code timestamp,emotion} header, then rows such as {@code 1700000000000,Happy};
+ *   emotions containing commas, quotes or line breaks are quoted as in RFC 4180
+ * - NDJSON: one JSON object per line, such as
+ *   {@code {"timestamp":1700000000000,"emotion":"Happy"}}
+ *
+ * Design Rationale:
+ * - Millisecond timestamps round-trip exactly and need no date parsing
+ * - Both formats are line oriented, so {@link LogImporter} and {@link LogExporter}
+ *   can stream them without holding the whole history in memory
+ */
+public enum LogFormat {
+    CSV("text/csv", "csv"),
+    NDJSON("application/x-ndjson", "ndjson");
+
+    static final String CSV_HEADER = "timestamp,emotion";
+
+    private final String mimeType;
+    private final String fileExtension;
+
+
+    LogFormat(String mimeType, String fileExtension) {
+        this.mimeType = mimeType;
+        this.fileExtension = fileExtension;
+    }
+
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+
+    public String getFileExtension() {
+        return fileExtension;
+    }
+}
@@ -0,0 +1,710 @@
+package com.example.aroxas_emotilog;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * LogImporter - Streams a CSV or NDJSON history into LogStorage.
+ *
+ * Rows are parsed straight from a fixed-size character buffer and handed to
+ * {@link LogStorage#addLogs} in batches of {@link #DEFAULT_BATCH_SIZE}, keeping
+ * their original timestamps. Imports are re-sorted: rows are stored in timestamp
+ * order as far as a window of one batch allows, not in file order. Memory use
+ * depends on the batch size and the number of distinct emotions, never on the
+ * size of the input. Malformed rows are skipped and reported in the returned
+ * {@link Report}; the rest of the input is still imported.
+ *
+ * Design Rationale:
+ * - One write lock acquisition, one durable write and one snapshot per batch
+ *   instead of per row
+ * - The store starts a new sorted run whenever a timestamp goes back, so rows go
+ *   through a {@link SortBuffer} first: replacement selection over one batch of
+ *   rows turns a shuffled file into runs of about two batches, a newest-first one
+ *   into runs of one batch, and keeps an already sorted file as a single run
+ * - Rows with equal timestamps keep their file order
+ * - Lines are read into a reusable char array rather than one String per line,
+ *   and emotion names go through a small cache, so a row usually allocates nothing
+ * - Error messages are only built for rows that fail, and at most
+ *   {@link #MAX_REPORTED_ERRORS} of them are kept
+ * - Not thread-safe; use one importer per input
+ *
+ * Outstanding Issues:
+ * - A batch that fails to persist aborts the import; earlier batches stay imported,
+ *   and after re-sorting those are not necessarily the first rows of the file
+ * - Newest-first exports, the most common kind, still cost one sorted run per
+ *   batch; a window of one batch cannot reverse more than that
+ */
+public final class LogImporter {
+    public static final int DEFAULT_BATCH_SIZE = 8192;
+    static final int MAX_REPORTED_ERRORS = 100;
+    static final int MAX_LINE_LENGTH = 1 << 16;
+    static final int MAX_EMOTION_LENGTH = 1024;
+
+    /** Receives each full batch of parsed rows. */
+    interface BatchSink {
+        void accept(String[] emotions, long[] timestamps, int count);
+    }
+
+    private final LogFormat format;
+    private final int batchSize;
+
+    // Parser state for the current row.
+    private LineReader lines;
+    private int position;
+    private long timestamp;
+    private String emotion;
+    private char[] text = new char[64];
+    private int textLength;
+    private final NameCache names = new NameCache();
+
+
+    public LogImporter(LogFormat format) {
+        this(format, DEFAULT_BATCH_SIZE);
+    }
+
+
+    public LogImporter(LogFormat format, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.format = format;
+        this.batchSize = batchSize;
+    }
+
+    /** Imports UTF-8 text from a stream; the stream is not closed. */
+    public Report importFrom(InputStream in) throws IOException {
+        return importFrom(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    /** Imports every row of the input into {@link LogStorage}; the reader is not closed. */
+    public Report importFrom(Reader reader) throws IOException {
+        return importFrom(reader, LogStorage::addLogs);
+    }
+
+
+    Report importFrom(Reader reader, BatchSink sink) throws IOException {
+        lines = new LineReader(reader);
+        SortBuffer rows = new SortBuffer(batchSize, sink);
+        Report report = new Report();
+        boolean first = true;
+
+        while (lines.next(false)) {
+            long lineNumber = lines.lineNumber;
+            if (lines.length == 0) {
+                continue;
+            }
+            if (first && format == LogFormat.CSV && isCsvHeader()) {
+                first = false;
+                continue;
+            }
+            first = false;
+
+            String error = lines.truncated ? "Line longer than " + MAX_LINE_LENGTH + " characters"
+                    : format == LogFormat.CSV ? parseCsv() : parseJson();
+            if (error != null) {
+                report.reject(lineNumber, error);
+                continue;
+            }
+
+            rows.add(emotion, timestamp);
+        }
+        rows.finish();
+        report.imported = rows.written;
+        return report;
+    }
+
+
+    private boolean isCsvHeader() {
+        String header = LogFormat.CSV_HEADER;
+        if (lines.length != header.length()) {
+            return false;
+        }
+        for (int i = 0; i < header.length(); i++) {
+            if (Character.toLowerCase(lines.line[i]) != header.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // CSV: timestamp,emotion where the emotion may be quoted, with "" for a quote.
+
+    private String parseCsv() throws IOException {
+        position = 0;
+        if (!parseTimestamp()) {
+            return "Invalid timestamp";
+        }
+        if (!consume(',')) {
+            return "Expected timestamp,emotion";
+        }
+        textLength = 0;
+        if (consume('"')) {
+            String error = parseQuotedCsv();
+            if (error != null) {
+                return error;
+            }
+        } else {
+            while (position < lines.length) {
+                char c = lines.line[position++];
+                if (c == ',') {
+                    return "Too many fields";
+                }
+                if (c == '"') {
+                    return "Quote in unquoted emotion";
+                }
+                appendText(c);
+            }
+        }
+        return takeEmotion();
+    }
+
+
+    // Decodes a quoted emotion whose opening quote was consumed. A line break inside
+    // the quotes belongs to the emotion, so the next line is appended to this one.
+    private String parseQuotedCsv() throws IOException {
+        while (true) {
+            while (position >= lines.length) {
+                if (lines.truncated || !lines.next(true)) {
+                    return "Unterminated quoted emotion";
+                }
+            }
+            char c = lines.line[position++];
+            if (c != '"') {
+                appendText(c);
+            } else if (consume('"')) {
+                appendText('"');
+            } else {
+                break;
+            }
+        }
+        return position == lines.length ? null : "Unexpected characters after quoted emotion";
+    }
+
+
+    // NDJSON: a flat object with an integer "timestamp" and a string "emotion";
+    // other members are skipped if they are strings, numbers, booleans or null.
+
+    private String parseJson() {
+        position = 0;
+        boolean hasTimestamp = false;
+        boolean hasEmotion = false;
+        skipWhitespace();
+        if (!consume('{')) {
+            return "Expected a JSON object";
+        }
+        skipWhitespace();
+        if (!consume('}')) {
+            while (true) {
+                skipWhitespace();
+                if (!consume('"') || !parseJsonString()) {
+                    return "Invalid member name";
+                }
+                boolean isTimestamp = textEquals("timestamp");
+                boolean isEmotion = !isTimestamp && textEquals("emotion");
+                skipWhitespace();
+                if (!consume(':')) {
+                    return "Expected ':'";
+                }
+                skipWhitespace();
+                if (isTimestamp) {
+                    if (!parseTimestamp() || (position < lines.length && isNumberPart(lines.line[position]))) {
+                        return "Timestamp must be an integer";
+                    }
+                    hasTimestamp = true;
+                } else if (isEmotion) {
+                    if (!consume('"') || !parseJsonString()) {
+                        return "Emotion must be a string";
+                    }
+                    // Taken now, since later member names reuse the text buffer.
+                    String error = takeEmotion();
+                    if (error != null) {
+                        return error;
+                    }
+                    hasEmotion = true;
+                } else if (!skipJsonValue()) {
+                    return "Unsupported value";
+                }
+                skipWhitespace();
+                if (consume('}')) {
+                    break;
+                }
+                if (!consume(',')) {
+                    return "Expected ',' or '}'";
+                }
+            }
+        }
+        skipWhitespace();
+        if (position != lines.length) {
+            return "Unexpected characters after object";
+        }
+        if (!hasTimestamp || !hasEmotion) {
+            return hasTimestamp ? "Missing emotion" : "Missing timestamp";
+        }
+        return null;
+    }
+
+
+    // Decodes a string whose opening quote was consumed into the text buffer.
+    private boolean parseJsonString() {
+        textLength = 0;
+        char[] line = lines.line;
+        while (position < lines.length) {
+            char c = line[position++];
+            if (c == '"') {
+                return true;
+            }
+            if (c != '\\') {
+                if (c < 0x20) {
+                    return false;
+                }
+                appendText(c);
+                continue;
+            }
+            if (position >= lines.length) {
+                return false;
+            }
+            char escape = line[position++];
+            switch (escape) {
+                case '"':
+                case '\\':
+                case '/':
+                    appendText(escape);
+                    break;
+                case 'b':
+                    appendText('\b');
+                    break;
+                case 'f':
+                    appendText('\f');
+                    break;
+                case 'n':
+                    appendText('\n');
+                    break;
+                case 'r':
+                    appendText('\r');
+                    break;
+                case 't':
+                    appendText('\t');
+                    break;
+                case 'u':
+                    if (position + 4 > lines.length) {
+                        return false;
+                    }
+                    int value = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(line[position++], 16);
+                        if (digit < 0) {
+                            return false;
+                        }
+                        value = value * 16 + digit;
+                    }
+                    appendText((char) value);
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return false;
+    }
+
+
+    private boolean skipJsonValue() {
+        if (consume('"')) {
+            return parseJsonString();
+        }
+        int start = position;
+        while (position < lines.length && (isNumberPart(lines.line[position])
+                || Character.isLetter(lines.line[position]))) {
+            position++;
+        }
+        return position > start;
+    }
+
+
+    private static boolean isNumberPart(char c) {
+        return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E';
+    }
+
+    // Shared scanning helpers.
+
+    private boolean parseTimestamp() {
+        char[] line = lines.line;
+        boolean negative = position < lines.length && line[position] == '-';
+        if (negative) {
+            position++;
+        }
+        int start = position;
+        long value = 0;
+        while (position < lines.length && line[position] >= '0' && line[position] <= '9') {
+            if (position - start >= 18) {
+                return false;
+            }
+            value = value * 10 + (line[position++] - '0');
+        }
+        timestamp = negative ? -value : value;
+        return position > start;
+    }
+
+
+    // Turns the text buffer into the row's emotion.
+    private String takeEmotion() {
+        if (textLength == 0) {
+            return "Missing emotion";
+        }
+        if (textLength > MAX_EMOTION_LENGTH) {
+            return "Emotion longer than " + MAX_EMOTION_LENGTH + " characters";
+        }
+        emotion = names.get(text, textLength);
+        return null;
+    }
+
+
+    private void skipWhitespace() {
+        while (position < lines.length && (lines.line[position] == ' ' || lines.line[position] == '\t')) {
+            position++;
+        }
+    }
+
+
+    private boolean consume(char expected) {
+        if (position < lines.length && lines.line[position] == expected) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+
+    private void appendText(char c) {
+        if (textLength == text.length) {
+            text = Arrays.copyOf(text, textLength * 2);
+        }
+        text[textLength++] = c;
+    }
+
+
+    private boolean textEquals(String value) {
+        if (textLength != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < textLength; i++) {
+            if (text[i] != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Outcome of an import: how many rows were imported and rejected, and why
+     * the first {@link #MAX_REPORTED_ERRORS} rejected rows failed.
+     */
+    public static final class Report {
+        private long imported;
+        private long rejected;
+        private final List<String> errors = new ArrayList<>();
+
+        void reject(long lineNumber, String message) {
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add("Line " + lineNumber + ": " + message);
+            }
+            rejected++;
+        }
+
+        public long getImportedCount() {
+            return imported;
+        }
+
+        public long getRejectedCount() {
+            return rejected;
+        }
+
+        public boolean hasErrors() {
+            return rejected > 0;
+        }
+
+        /** Returns messages of the form "Line 12: Invalid timestamp", in input order. */
+        public List<String> getErrors() {
+            return Collections.unmodifiableList(errors);
+        }
+    }
+
+
+    /**
+     * Re-sorts rows by timestamp with replacement selection before handing them to
+     * the sink in full batches. One batch of rows is held back; each new row pushes
+     * out the oldest one of the current run, and a row older than the last one handed
+     * on is held back for the next run. Every run the sink sees is in timestamp order.
+     * Rows that arrive in order wait in a queue rather than the heap, so sorted input
+     * costs O(1) per row and only out-of-order rows pay O(log batch size).
+     */
+    private static final class SortBuffer {
+        private final BatchSink sink;
+        // Row slots; a slot is refilled as soon as its row is handed on.
+        private final String[] rowEmotions;
+        private final long[] rowTimestamps;
+        private final long[] rowRuns;
+        private final long[] rowSequences;
+        // Slots of in-order rows of the current run, oldest first, as a ring.
+        private final int[] queue;
+        private int queueHead;
+        private int queueSize;
+        // Min-heap of the other slots by run, then timestamp, then file order.
+        private final int[] heap;
+        private int heapSize;
+        private long run;
+        private long lastTimestamp = Long.MIN_VALUE;
+        private long sequence;
+
+        // The batch being filled for the sink.
+        private final String[] emotions;
+        private final long[] timestamps;
+        private int count;
+        long written;
+
+        SortBuffer(int capacity, BatchSink sink) {
+            this.sink = sink;
+            rowEmotions = new String[capacity];
+            rowTimestamps = new long[capacity];
+            rowRuns = new long[capacity];
+            rowSequences = new long[capacity];
+            queue = new int[capacity];
+            heap = new int[capacity];
+            emotions = new String[capacity];
+            timestamps = new long[capacity];
+        }
+
+        void add(String emotion, long timestamp) {
+            // Slots fill up in order, and once all are taken each row frees one.
+            int slot = heapSize + queueSize == heap.length ? handOnNext() : heapSize + queueSize;
+            rowEmotions[slot] = emotion;
+            rowTimestamps[slot] = timestamp;
+            rowRuns[slot] = timestamp < lastTimestamp ? run + 1 : run;
+            rowSequences[slot] = sequence++;
+            if (timestamp >= lastTimestamp && (queueSize == 0
+                    || timestamp >= rowTimestamps[queue[(queueHead + queueSize - 1) % queue.length]])) {
+                queue[(queueHead + queueSize++) % queue.length] = slot;
+            } else {
+                heap[heapSize] = slot;
+                siftUp(heapSize++);
+            }
+        }
+
+        /** Hands on every row still held, then the last partial batch. */
+        void finish() {
+            while (heapSize + queueSize > 0) {
+                handOnNext();
+            }
+            if (count > 0) {
+                flush();
+            }
+        }
+
+        // Hands on the first row held and returns its slot.
+        private int handOnNext() {
+            int slot;
+            if (queueSize > 0 && (heapSize == 0 || before(queue[queueHead], heap[0]))) {
+                slot = queue[queueHead];
+                queueHead = (queueHead + 1) % queue.length;
+                queueSize--;
+            } else {
+                slot = heap[0];
+                heap[0] = heap[--heapSize];
+                siftDown(0);
+            }
+            run = rowRuns[slot];
+            lastTimestamp = rowTimestamps[slot];
+            emotions[count] = rowEmotions[slot];
+            timestamps[count] = lastTimestamp;
+            rowEmotions[slot] = null;
+            if (++count == emotions.length) {
+                flush();
+            }
+            return slot;
+        }
+
+        private void flush() {
+            sink.accept(emotions, timestamps, count);
+            written += count;
+            count = 0;
+        }
+
+        private void siftUp(int i) {
+            int slot = heap[i];
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(slot, heap[parent])) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = slot;
+        }
+
+        private void siftDown(int i) {
+            int slot = heap[i];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= heapSize) {
+                    break;
+                }
+                if (child + 1 < heapSize && before(heap[child + 1], heap[child])) {
+                    child++;
+                }
+                if (!before(heap[child], slot)) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = slot;
+        }
+
+        private boolean before(int a, int b) {
+            if (rowRuns[a] != rowRuns[b]) {
+                return rowRuns[a] < rowRuns[b];
+            }
+            if (rowTimestamps[a] != rowTimestamps[b]) {
+                return rowTimestamps[a] < rowTimestamps[b];
+            }
+            return rowSequences[a] < rowSequences[b];
+        }
+    }
+
+
+    /**
+     * Reads lines into a reusable char array. Lines longer than
+     * {@link #MAX_LINE_LENGTH} are consumed but cut off and flagged.
+     */
+    private static final class LineReader {
+        private final Reader reader;
+        private final char[] buffer = new char[1 << 16];
+        private int bufferPosition;
+        private int bufferLimit;
+        char[] line = new char[256];
+        int length;
+        boolean truncated;
+        long lineNumber;
+        private long linesRead;
+
+        LineReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * Reads the next line. With {@code append}, the line is added to the current
+         * one after a '\n' instead of replacing it. Returns false at the end of input.
+         */
+        boolean next(boolean append) throws IOException {
+            if (bufferPosition == bufferLimit && !fill()) {
+                return false;
+            }
+            if (append) {
+                appendChar('\n');
+            } else {
+                length = 0;
+                truncated = false;
+                lineNumber = linesRead + 1;
+            }
+            linesRead++;
+            while (true) {
+                if (bufferPosition == bufferLimit && !fill()) {
+                    break;
+                }
+                int start = bufferPosition;
+                while (bufferPosition < bufferLimit && buffer[bufferPosition] != '\n') {
+                    bufferPosition++;
+                }
+                appendChars(start, bufferPosition - start);
+                if (bufferPosition < bufferLimit) {
+                    bufferPosition++;
+                    break;
+                }
+            }
+            if (length > 0 && line[length - 1] == '\r') {
+                length--;
+            }
+            // Editors on some platforms start UTF-8 files with a byte order mark.
+            if (linesRead == 1 && length > 0 && line[0] == '\uFEFF') {
+                System.arraycopy(line, 1, line, 0, --length);
+            }
+            return true;
+        }
+
+        private boolean fill() throws IOException {
+            int read = reader.read(buffer);
+            if (read <= 0) {
+                bufferPosition = bufferLimit = 0;
+                return false;
+            }
+            bufferPosition = 0;
+            bufferLimit = read;
+            return true;
+        }
+
+        private void appendChars(int start, int count) {
+            int room = MAX_LINE_LENGTH - length;
+            if (count > room) {
+                truncated = true;
+                count = room;
+            }
+            if (length + count > line.length) {
+                line = Arrays.copyOf(line, Math.max(length + count, line.length * 2));
+            }
+            System.arraycopy(buffer, start, line, length, count);
+            length += count;
+        }
+
+        private void appendChar(char c) {
+            if (length == MAX_LINE_LENGTH) {
+                truncated = true;
+                return;
+            }
+            if (length == line.length) {
+                line = Arrays.copyOf(line, length * 2);
+            }
+            line[length++] = c;
+        }
+    }
+
+
+    /**
+     * Direct-mapped cache from emotion characters to a String, so repeated emotions
+     * share one instance and a row does not have to allocate one.
+     */
+    private static final class NameCache {
+        private final String[] slots = new String[1024];
+
+        String get(char[] chars, int length) {
+            int hash = 0;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + chars[i];
+            }
+            int slot = (hash ^ (hash >>> 16)) & (slots.length - 1);
+            String cached = slots[slot];
+            if (cached != null && cached.length() == length && matches(cached, chars)) {
+                return cached;
+            }
+            String name = new String(chars, 0, length);
+            slots[slot] = name;
+            return name;
+        }
+
+        private static boolean matches(String name, char[] chars) {
+            for (int i = 0; i < name.length(); i++) {
+                if (name.charAt(i) != chars[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.example.aroxas_emotilog;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * LogPager - Loads a snapshot's logs newest first, one fixed-size page at a time.
+ *
+ * A page is identified by its cursor: the index of its first entry in newest-first
+ * order, counted from the anchor row, divided by the page size. The anchor is the
+ * newest entry when the first pager of a chain was created; rows appended later sit
+ * above it at negative offsets, so {@link #update(LogSnapshot)} can keep every
+ * resident page that the new rows did not touch. Rows below the ones added on top
+ * keep reading the newest-first order of the chain's first snapshot, so an update
+ * does not merge the sorted runs again when the clock once went back. Pages are built on first access and kept in a
+ * small least-recently-used window, so only a bounded number of {@link LogEntry}
+ * objects is ever resident no matter how long the history is. When a page is
+ * read, the pages just beyond it are loaded ahead of the scroll position on the
+ * prefetch executor.
+ *
+ * Design Rationale:
+ * - Reads from one pinned {@link LogSnapshot}, so positions stay stable while the
+ *   user scrolls even if new logs arrive; a screen refresh asks for an updated
+ *   pager, which costs O(new rows) when the new snapshot only appended entries
+ * - Creating a pager is O(1): rows are read through the snapshot's newest-first
+ *   order, which is a view, or with several sorted runs a lazy merge of them
+ * - New rows that sort above every shown row, the usual case even after a clock
+ *   change, are added in O(new rows); rows that land further down are located by
+ *   binary search in each run, in O(new rows * runs * log n), and never by
+ *   walking the whole list
+ * - A page that has not been prefetched yet is loaded on the calling thread;
+ *   building one page only costs one allocation per entry on it
+ * - Prefetching is best effort: once the executor rejects work, as after its
+ *   screen shut it down, pages are only loaded when read
+ * - Thread-safe, since prefetching runs on a background executor
+ * - Rows are identified by their durable record index, and {@link #diffFrom} turns
+ *   an update into row insertions, so a list only binds the rows that are new
+ */
+public class LogPager {
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int DEFAULT_MAX_RESIDENT_PAGES = 6;
+    public static final int DEFAULT_PREFETCH_PAGES = 1;
+
+    private final LogSnapshot snapshot;
+    // Rows [0, prepended) are the raw positions [base size, size) newest first; the
+    // rows below them follow base's newest-first order.
+    private final LogSnapshot base;
+    private final int prepended;
+    private final int size;
+    private final int anchor;
+    private final int pageSize;
+    private final int maxResidentPages;
+    private final int prefetchPages;
+    private final Executor prefetchExecutor;
+    private final Map<Integer, LogEntry[]> residentPages;
+
+
+    public LogPager(LogSnapshot snapshot, Executor prefetchExecutor) {
+        this(snapshot, DEFAULT_PAGE_SIZE, DEFAULT_MAX_RESIDENT_PAGES, DEFAULT_PREFETCH_PAGES,
+                prefetchExecutor);
+    }
+
+
+    public LogPager(LogSnapshot snapshot, int pageSize, int maxResidentPages, int prefetchPages,
+                    Executor prefetchExecutor) {
+        this(snapshot, snapshot, 0, 0, pageSize, maxResidentPages, prefetchPages, prefetchExecutor);
+    }
+
+
+    private LogPager(LogSnapshot snapshot, LogSnapshot base, int prepended, int anchor, int pageSize,
+                     int maxResidentPages, int prefetchPages, Executor prefetchExecutor) {
+        if (pageSize <= 0 || maxResidentPages <= prefetchPages) {
+            throw new IllegalArgumentException("Window must hold the current page and its prefetch");
+        }
+        this.snapshot = snapshot;
+        this.base = base;
+        this.prepended = prepended;
+        this.size = snapshot.getRawLogCount();
+        this.anchor = anchor;
+        this.pageSize = pageSize;
+        this.maxResidentPages = maxResidentPages;
+        this.prefetchPages = prefetchPages;
+        this.prefetchExecutor = prefetchExecutor;
+        this.residentPages = new LinkedHashMap<Integer, LogEntry[]>(maxResidentPages + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, LogEntry[]> eldest) {
+                return size() > maxResidentPages;
+            }
+        };
+    }
+
+
+    public int size() {
+        return size;
+    }
+
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+
+    public LogSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Returns a pager over a newer snapshot. If the newer snapshot only appended
+     * entries that sort before every existing one in newest-first order, the new
+     * pager keeps this pager's resident pages and only the new rows are loaded.
+     * Returns this pager if {@code newer} is not newer than the pinned snapshot.
+     */
+    public LogPager update(LogSnapshot newer) {
+        if (snapshot.extendsSnapshot(newer)
+                || (newer.getRawLogCount() == size && newer.extendsSnapshot(snapshot))) {
+            return this;
+        }
+        if (!newer.extendsSnapshot(snapshot) || !addsOnTop(newer)) {
+            return new LogPager(newer, pageSize, maxResidentPages, prefetchPages, prefetchExecutor);
+        }
+
+        int added = newer.getRawLogCount() - size;
+        LogPager next = new LogPager(newer, base, prepended + added, anchor + added, pageSize,
+                maxResidentPages, prefetchPages, prefetchExecutor);
+        synchronized (this) {
+            // Least recently used first, so the new window keeps the same eviction order.
+            for (Map.Entry<Integer, LogEntry[]> page : residentPages.entrySet()) {
+                if (firstPosition(page.getKey()) >= 0) {
+                    next.residentPages.put(page.getKey(), page.getValue());
+                }
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Returns the row changes from an older pager of the same store to this one.
+     * When this pager's snapshot only appended entries, the diff is the inserted
+     * rows: one range at the top, or, after the clock went back, every new row
+     * where it sorts, found by binary search in each sorted run. Otherwise the
+     * diff is a reset.
+     */
+    public ListDiff diffFrom(LogPager older) {
+        if (older.snapshot == snapshot || (older.size == size && snapshot.extendsSnapshot(older.snapshot))) {
+            return ListDiff.NONE;
+        }
+        if (!snapshot.extendsSnapshot(older.snapshot)) {
+            return ListDiff.reset(size);
+        }
+        ListDiff.Builder diff = new ListDiff.Builder();
+        if (older.addsOnTop(snapshot)) {
+            return diff.insert(0, size - older.size).build();
+        }
+        int[] rows = new int[size - older.size];
+        for (int position = older.size; position < size; position++) {
+            rows[position - older.size] = rowOf(position);
+        }
+        Arrays.sort(rows);
+        for (int row : rows) {
+            diff.insert(row, 1);
+        }
+        return diff.build();
+    }
+
+    /**
+     * Returns a stable id for the row at a newest-first position: the entry's durable
+     * record index, which does not change as rows are added above it.
+     */
+    public long getItemId(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Position: " + position + ", Size: " + size);
+        }
+        return snapshot.compacted().getRawStartIndex() + rawPosition(position);
+    }
+
+    /** Returns the entry at a newest-first position, loading its page if needed. */
+    public LogEntry get(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Position: " + position + ", Size: " + size);
+        }
+        int cursor = Math.floorDiv(position - anchor, pageSize);
+        LogEntry[] page = getPage(cursor);
+        prefetchAfter(cursor);
+        return page[position - Math.max(0, firstPosition(cursor))];
+    }
+
+
+    public synchronized int getResidentPageCount() {
+        return residentPages.size();
+    }
+
+
+    synchronized boolean isResident(int cursor) {
+        return residentPages.containsKey(cursor);
+    }
+
+
+    private LogEntry[] getPage(int cursor) {
+        synchronized (this) {
+            LogEntry[] page = residentPages.get(cursor);
+            if (page != null) {
+                return page;
+            }
+        }
+        LogEntry[] page = loadPage(cursor);
+        synchronized (this) {
+            residentPages.put(cursor, page);
+        }
+        return page;
+    }
+
+
+    private void prefetchAfter(int cursor) {
+        if (prefetchExecutor == null) {
+            return;
+        }
+        int lastCursor = Math.floorDiv(size - 1 - anchor, pageSize);
+        for (int next = cursor + 1; next <= Math.min(lastCursor, cursor + prefetchPages); next++) {
+            if (isResident(next)) {
+                continue;
+            }
+            int target = next;
+            try {
+                prefetchExecutor.execute(() -> {
+                    if (!isResident(target)) {
+                        LogEntry[] page = loadPage(target);
+                        synchronized (this) {
+                            residentPages.put(target, page);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                return;
+            }
+        }
+    }
+
+
+    // Newest-first position of the first row of a page. Negative for the topmost page
+    // when fewer rows than a page were added above the anchor; that page is partial
+    // and is rebuilt after the next update.
+    private int firstPosition(int cursor) {
+        return cursor * pageSize + anchor;
+    }
+
+
+    private LogEntry[] loadPage(int cursor) {
+        int from = Math.max(0, firstPosition(cursor));
+        int to = Math.min(size, firstPosition(cursor) + pageSize);
+        LogEntry[] page = new LogEntry[to - from];
+        LogColumns.Reader reader = snapshot.columns().reader();
+        for (int i = from; i < to; i++) {
+            page[i - from] = reader.entryAt(rawPosition(i));
+        }
+        return page;
+    }
+
+
+    // Raw position of the entry at a newest-first position.
+    private int rawPosition(int position) {
+        return position < prepended ? size - 1 - position : base.rawPositionSortedByTime(position - prepended);
+    }
+
+
+    // Whether the entries a newer snapshot appended all sort above this pager's rows,
+    // newest first among themselves: they did not start a new sorted run, and the
+    // first of them is not older than the newest row shown. Ties sort above, since
+    // equal timestamps are in reverse log order.
+    private boolean addsOnTop(LogSnapshot newer) {
+        if (size == 0) {
+            return newer.days().getRunCount() <= 1;
+        }
+        LogColumns.View columns = newer.columns();
+        return newer.days().getRunCount() == snapshot.days().getRunCount()
+                && columns.timestampAt(size) >= columns.timestampAt(rawPosition(0));
+    }
+
+
+    // Newest-first row of the entry at a raw position: the number of entries that sort
+    // above it, counted in each sorted run by binary search, since (timestamp, position)
+    // only grows along a run.
+    private int rowOf(int position) {
+        LogColumns.View columns = snapshot.columns();
+        DayIndex.View days = snapshot.days();
+        long timestamp = columns.timestampAt(position);
+        int row = 0;
+        for (int run = 0, runs = days.getRunCount(); run < runs; run++) {
+            int low = days.runStart(run);
+            int end = run + 1 < runs ? days.runStart(run + 1) : size;
+            int high = end;
+            // First position of the run that sorts above the entry.
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                long other = columns.timestampAt(mid);
+                if (other > timestamp || (other == timestamp && mid > position)) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            row += end - low;
+        }
+        return row;
+    }
+}
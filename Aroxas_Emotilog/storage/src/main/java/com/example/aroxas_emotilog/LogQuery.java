@@ -0,0 +1,307 @@
+package com.example.aroxas_emotilog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * LogQuery - A composable, immutable query over the raw entries of a {@link LogSnapshot}.
+ *
+ * A query filters entries by emotion, time range, local hour of day and local day
+ * of week, optionally groups the matches by emotion, hour of day and day of week,
+ * and returns the count and the first and last timestamp of every group. Groups
+ * can be ordered by one of these aggregates and cut to a limit. Queries are built
+ * with a {@link Builder} and run with {@link LogSnapshot#query(LogQuery)}; the
+ * snapshot's {@link QueryPlan} decides which index reads the candidates, and
+ * {@link LogSnapshot#explain(LogQuery)} shows that decision without running it.
+ *
+ * Design Rationale:
+ * - Describes what to find, not how: the same query can be planned differently
+ *   as the history grows, so callers never pick an index by hand
+ * - Hours and days are kept as bit masks, so testing an entry costs one shift
+ * - Days of week use the {@link Calendar} constants, since java.time is not
+ *   available on every supported Android version
+ * - Local hours and days follow the snapshot's time zone, like {@link DayIndex}
+ * - An arbitrary {@link LogFilter} can be added for conditions the builder does
+ *   not cover; it is tested after every indexed condition
+ */
+public final class LogQuery {
+    static final int ALL_HOURS = (1 << 24) - 1;
+    // Bits Calendar.SUNDAY (1) through Calendar.SATURDAY (7).
+    static final int ALL_DAYS = 0xFE;
+    private static final String[] DAY_NAMES = { null, "SUN", "MON", "TUE", "WED", "THU", "FRI", "SAT" };
+
+    private final String[] emotions;
+    private final long from;
+    private final long to;
+    private final int hourMask;
+    private final int dayMask;
+    private final LogFilter filter;
+    private final Dimension[] groupBy;
+    private final Aggregate orderBy;
+    private final boolean descending;
+    private final int limit;
+
+
+    private LogQuery(Builder builder) {
+        this.emotions = builder.emotions;
+        this.from = builder.from;
+        this.to = builder.to;
+        this.hourMask = builder.hourMask;
+        this.dayMask = builder.dayMask;
+        this.filter = builder.filter;
+        this.groupBy = builder.groupBy;
+        this.orderBy = builder.orderBy;
+        this.descending = builder.descending;
+        this.limit = builder.limit;
+    }
+
+
+    /** Returns the emotions to match, or null if every emotion matches. */
+    String[] emotions() {
+        return emotions;
+    }
+
+
+    boolean hasTimeRange() {
+        return from != Long.MIN_VALUE || to != Long.MAX_VALUE;
+    }
+
+
+    long from() {
+        return from;
+    }
+
+
+    long to() {
+        return to;
+    }
+
+
+    int hourMask() {
+        return hourMask;
+    }
+
+
+    int dayMask() {
+        return dayMask;
+    }
+
+
+    LogFilter filter() {
+        return filter;
+    }
+
+
+    boolean groupsBy(Dimension dimension) {
+        return Arrays.asList(groupBy).contains(dimension);
+    }
+
+
+    Aggregate orderBy() {
+        return orderBy;
+    }
+
+
+    boolean isDescending() {
+        return descending;
+    }
+
+
+    int limit() {
+        return limit;
+    }
+
+
+    /** Returns the {@link Calendar} day of week, SUNDAY (1) to SATURDAY (7), of an epoch day. */
+    static int dayOfWeek(long epochDay) {
+        // 1970-01-01 was a Thursday.
+        return (int) Math.floorMod(epochDay + 4, 7L) + 1;
+    }
+
+
+    @Override
+    public String toString() {
+        List<String> parts = new ArrayList<>();
+        if (emotions != null) {
+            parts.add("emotions " + Arrays.toString(emotions));
+        }
+        if (hasTimeRange()) {
+            parts.add("time [" + from + ", " + to + ")");
+        }
+        if (hourMask != ALL_HOURS) {
+            List<Integer> hours = new ArrayList<>();
+            for (int hour = 0; hour < 24; hour++) {
+                if ((hourMask & 1 << hour) != 0) {
+                    hours.add(hour);
+                }
+            }
+            parts.add("hours " + hours);
+        }
+        if (dayMask != ALL_DAYS) {
+            List<String> days = new ArrayList<>();
+            for (int day = Calendar.SUNDAY; day <= Calendar.SATURDAY; day++) {
+                if ((dayMask & 1 << day) != 0) {
+                    days.add(DAY_NAMES[day]);
+                }
+            }
+            parts.add("days " + days);
+        }
+        if (filter != null) {
+            parts.add("where " + filter);
+        }
+        if (groupBy.length > 0) {
+            parts.add("group by " + Arrays.toString(groupBy));
+        }
+        if (orderBy != null) {
+            parts.add("order by " + orderBy + (descending ? " desc" : " asc"));
+        }
+        if (limit != Integer.MAX_VALUE) {
+            parts.add("limit " + limit);
+        }
+        return parts.isEmpty() ? "all entries" : String.join(", ", parts);
+    }
+
+
+    /** A property of an entry that results can be grouped by. */
+    public enum Dimension {
+        EMOTION,
+        /** The local hour, 0 to 23. */
+        HOUR_OF_DAY,
+        /** The local day of week, as a {@link Calendar} constant. */
+        DAY_OF_WEEK
+    }
+
+
+    /** A value computed for every group, which groups can be ordered by. */
+    public enum Aggregate {
+        /** The number of matching entries. */
+        COUNT,
+        /** The earliest timestamp among the matching entries. */
+        FIRST,
+        /** The latest timestamp among the matching entries. */
+        LAST
+    }
+
+
+    /**
+     * Collects the parts of a query. Each method replaces what an earlier call of
+     * the same method set; conditions set by different methods must all hold.
+     */
+    public static final class Builder {
+        private String[] emotions;
+        private long from = Long.MIN_VALUE;
+        private long to = Long.MAX_VALUE;
+        private int hourMask = ALL_HOURS;
+        private int dayMask = ALL_DAYS;
+        private LogFilter filter;
+        private Dimension[] groupBy = new Dimension[0];
+        private Aggregate orderBy;
+        private boolean descending;
+        private int limit = Integer.MAX_VALUE;
+
+
+        /** Matches entries of any of the given emotions. */
+        public Builder emotions(String... emotions) {
+            Set<String> distinct = new LinkedHashSet<>(Arrays.asList(emotions));
+            this.emotions = distinct.toArray(new String[0]);
+            return this;
+        }
+
+
+        /** Matches entries logged at or after {@code from} and before {@code to}. */
+        public Builder between(long from, long to) {
+            this.from = from;
+            this.to = to;
+            return this;
+        }
+
+
+        /** Matches entries logged in one of the given local hours, 0 to 23. */
+        public Builder hoursOfDay(int... hours) {
+            int mask = 0;
+            for (int hour : hours) {
+                if (hour < 0 || hour > 23) {
+                    throw new IllegalArgumentException("Invalid hour " + hour);
+                }
+                mask |= 1 << hour;
+            }
+            this.hourMask = mask;
+            return this;
+        }
+
+        /**
+         * Matches entries logged from local hour {@code fromHour} up to, not including,
+         * {@code toHour}; wraps past midnight if {@code toHour} is not after {@code fromHour}.
+         */
+        public Builder hoursBetween(int fromHour, int toHour) {
+            if (fromHour < 0 || fromHour > 23 || toHour < 0 || toHour > 24) {
+                throw new IllegalArgumentException("Invalid hours " + fromHour + " to " + toHour);
+            }
+            int mask = 0;
+            for (int hour = fromHour; hour != toHour % 24 || mask == 0; hour = (hour + 1) % 24) {
+                mask |= 1 << hour;
+            }
+            this.hourMask = mask;
+            return this;
+        }
+
+
+        /** Matches entries logged on one of the given local days of week, as {@link Calendar} constants. */
+        public Builder daysOfWeek(int... days) {
+            int mask = 0;
+            for (int day : days) {
+                if (day < Calendar.SUNDAY || day > Calendar.SATURDAY) {
+                    throw new IllegalArgumentException("Invalid day of week " + day);
+                }
+                mask |= 1 << day;
+            }
+            this.dayMask = mask;
+            return this;
+        }
+
+
+        /** Matches entries that also pass {@code filter}. */
+        public Builder where(LogFilter filter) {
+            this.filter = filter;
+            return this;
+        }
+
+        /**
+         * Returns one row per distinct combination of the given dimensions. Without
+         * dimensions, the query returns a single row for all matching entries.
+         */
+        public Builder groupBy(Dimension... dimensions) {
+            this.groupBy = new LinkedHashSet<>(Arrays.asList(dimensions)).toArray(new Dimension[0]);
+            return this;
+        }
+
+        /**
+         * Orders rows by an aggregate; ties, and rows of a query without an order,
+         * are ordered by emotion name, hour of day and day of week from Monday.
+         */
+        public Builder orderBy(Aggregate aggregate, boolean descending) {
+            this.orderBy = aggregate;
+            this.descending = descending;
+            return this;
+        }
+
+
+        /** Returns at most {@code limit} rows, the first ones in the query's order. */
+        public Builder limit(int limit) {
+            if (limit < 0) {
+                throw new IllegalArgumentException("Invalid limit " + limit);
+            }
+            this.limit = limit;
+            return this;
+        }
+
+
+        public LogQuery build() {
+            return new LogQuery(this);
+        }
+    }
+}
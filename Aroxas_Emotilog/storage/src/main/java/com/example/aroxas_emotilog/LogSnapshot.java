@@ -0,0 +1,577 @@
+package com.example.aroxas_emotilog;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.TimeZone;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * LogSnapshot - An immutable, consistent view of the stored emotion logs.
+ *
+ * LogStorage publishes a new snapshot after every batch of appended entries.
+ * All read queries run against a snapshot, so readers never wait for writers
+ * or for each other, and every query sees the columns, the day index and the
+ * aggregate counters at the same point in time.
+ *
+ * Every snapshot carries a version number that increases with each publication,
+ * so callers can tell cheaply whether anything changed since they last looked.
+ * Snapshots published between two resets of the store form a lineage in which
+ * each one only appends to the previous one; {@link LogChange} relies on this to
+ * describe the difference between two snapshots without comparing them.
+ *
+ * Design Rationale:
+ * - Holds only references to append-only column and index data, so publishing
+ *   a snapshot costs a few small allocations regardless of history size
+ * - Lists returned by {@link #getLogs()} and {@link #getLogsSortedByTime()} are
+ *   read-only views over the shared columns; entries are created as they are read
+ * - Newest-first order walks each sorted run backwards instead of sorting; with
+ *   several runs, a {@link NewestFirstOrder} merges them only as far as they are read
+ * - Emotion queries read the emotion's {@link PostingLists} entry rather than
+ *   scanning every entry, so they cost O(matches)
+ * - Queries that do have to scan, such as per-day counts and {@link LogFilter}
+ *   queries, run through {@link ParallelScan}, which splits large scans over cores
+ * - Composed {@link LogQuery} queries are planned against the day index and the
+ *   posting lists, so they read no more entries than the cheapest of them allows
+ * - {@link #spliterator()} reports exact sizes, so parallel streams split evenly
+ * - Aggregates are copied when the snapshot is published, which keeps whole
+ *   history statistics O(1) to read
+ * - Query methods mirror the LogStorage API so LogStorage can simply delegate
+ * - Carries {@link Rollups} views, so hourly, daily and weekly trends over any
+ *   range cost one row per bucket
+ * - Past a threshold of distinct emotions, carries the {@link HeavyHitters}
+ *   estimates instead of one exact counter per emotion
+ * - Entries compacted by a {@link RetentionPolicy} are only present as the
+ *   {@link CompactedTier}'s daily counts: counts, totals and rollups cover both
+ *   tiers, while the entry lists and range queries return raw entries only
+ */
+public final class LogSnapshot {
+    // Declared before EMPTY, which uses it.
+    private static final Rollups.View NO_ROLLUPS = new Rollups(TimeZone.getDefault()).view();
+    static final LogSnapshot EMPTY = new LogSnapshot(0,
+            new LogColumns().view(), new DayIndex(TimeZone.getDefault()).view(),
+            new int[0], null, 0);
+
+    private static final int SPLITERATOR_CHARACTERISTICS = Spliterator.ORDERED
+            | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.IMMUTABLE | Spliterator.NONNULL;
+
+    private final long version;
+    private final Object lineage;
+    private final LogColumns.View columns;
+    private final DayIndex.View days;
+    private final int[] emotionCounts;
+    private final String mostFrequentEmotion;
+    private final int mostFrequentCount;
+    private final List<Map.Entry<String, Integer>> heavyHitters;
+    private final Rollups.View rollups;
+    private final CompactedTier compacted;
+    private volatile Map<String, Integer> countsMap;
+    private volatile NewestFirstOrder newestFirstOrder;
+
+
+    LogSnapshot(long version, LogColumns.View columns, DayIndex.View days, int[] emotionCounts,
+                String mostFrequentEmotion, int mostFrequentCount) {
+        this(version, new Object(), columns, days, emotionCounts, mostFrequentEmotion, mostFrequentCount);
+    }
+
+    /**
+     * @param lineage shared by all snapshots published since the store was last cleared
+     *                or re-indexed, so that each of them only appends to the one before
+     */
+    LogSnapshot(long version, Object lineage, LogColumns.View columns, DayIndex.View days,
+                int[] emotionCounts, String mostFrequentEmotion, int mostFrequentCount) {
+        this(version, lineage, columns, days, NO_ROLLUPS, emotionCounts, mostFrequentEmotion,
+                mostFrequentCount, null);
+    }
+
+    /**
+     * @param heavyHitters estimated counts of the most frequent emotions, highest first,
+     *                     when the store keeps approximate counts; null when counts are exact
+     */
+    LogSnapshot(long version, Object lineage, LogColumns.View columns, DayIndex.View days,
+                Rollups.View rollups, int[] emotionCounts, String mostFrequentEmotion,
+                int mostFrequentCount, List<Map.Entry<String, Integer>> heavyHitters) {
+        this(version, lineage, columns, days, rollups, CompactedTier.EMPTY, emotionCounts,
+                mostFrequentEmotion, mostFrequentCount, heavyHitters);
+    }
+
+    /**
+     * @param compacted counts of the entries that are no longer kept individually;
+     *                  {@code columns} holds only the raw entries logged after them
+     */
+    LogSnapshot(long version, Object lineage, LogColumns.View columns, DayIndex.View days,
+                Rollups.View rollups, CompactedTier compacted, int[] emotionCounts,
+                String mostFrequentEmotion, int mostFrequentCount,
+                List<Map.Entry<String, Integer>> heavyHitters) {
+        this.version = version;
+        this.compacted = compacted;
+        this.rollups = rollups;
+        this.lineage = lineage;
+        this.columns = columns;
+        this.days = days;
+        this.emotionCounts = emotionCounts;
+        this.mostFrequentEmotion = mostFrequentEmotion;
+        this.mostFrequentCount = mostFrequentCount;
+        this.heavyHitters = heavyHitters != null ? Collections.unmodifiableList(heavyHitters) : null;
+    }
+
+
+    public long getVersion() {
+        return version;
+    }
+
+
+    /**
+     * Returns true if this snapshot holds every entry of {@code older} at the same
+     * position, followed by zero or more appended entries.
+     */
+    boolean extendsSnapshot(LogSnapshot older) {
+        return older != null && older.lineage == lineage && older.version <= version;
+    }
+
+
+    LogColumns.View columns() {
+        return columns;
+    }
+
+
+    DayIndex.View days() {
+        return days;
+    }
+
+
+    CompactedTier compacted() {
+        return compacted;
+    }
+
+
+    // Exact whole-history count for an emotion ordinal; 0 for ordinals added after
+    // publication and for every ordinal once counts are approximate.
+    int emotionCountAt(int ordinal) {
+        return ordinal < emotionCounts.length ? emotionCounts[ordinal] : 0;
+    }
+
+    /**
+     * Returns all entries in the order they were logged, as a read-only view
+     * over this snapshot. Nothing is copied.
+     */
+    public List<LogEntry> getLogs() {
+        return new EntryList(null, false);
+    }
+
+    /**
+     * Returns all entries newest first, as a read-only view over this snapshot.
+     * Entries with equal timestamps are returned in reverse log order.
+     */
+    public List<LogEntry> getLogsSortedByTime() {
+        if (days.getRunCount() <= 1) {
+            return new EntryList(null, true);
+        }
+        return new EntryList(newestFirstOrder(), false);
+    }
+
+
+    /**
+     * Returns the durable record index of the entry at a position of
+     * {@link #getLogsSortedByTime()}. It names the same entry in every later snapshot
+     * of the store, also after older entries were compacted, so lists can use it
+     * as a stable row id.
+     */
+    public long getRecordIndexSortedByTime(int index) {
+        return compacted.getRawStartIndex() + rawPositionSortedByTime(index);
+    }
+
+
+    // Raw position of the entry at a newest-first index; O(1) with a single sorted run,
+    // and O(1) once the merge of several runs has reached the index.
+    int rawPositionSortedByTime(int index) {
+        if (index < 0 || index >= columns.size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + columns.size());
+        }
+        return days.getRunCount() <= 1 ? columns.size() - 1 - index : newestFirstOrder().positionAt(index);
+    }
+
+    /**
+     * Returns the dense id of an emotion, or -1 if it was never logged. Ids stay the
+     * same until the store is cleared, so lists can use them as stable row ids.
+     */
+    public int getEmotionId(String emotion) {
+        return columns.ordinalOf(emotion);
+    }
+
+
+    public Spliterator<LogEntry> spliterator() {
+        return new EntrySpliterator(columns, 0, columns.size());
+    }
+
+
+    public Stream<LogEntry> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+
+    public Stream<LogEntry> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+
+    /** Returns the raw entries of one emotion in log order, reading only those entries. */
+    public List<LogEntry> getLogsForEmotion(String emotion) {
+        int ordinal = columns.ordinalOf(emotion);
+        if (ordinal < 0) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(Arrays.asList(ParallelScan.entriesOf(columns, ordinal, 0, columns.countOf(ordinal))));
+    }
+
+    /**
+     * Returns the raw entries of one emotion logged at or after {@code from} and
+     * before {@code to}, in log order. Each position range of the time range is
+     * located in the emotion's posting list by binary search, so only matching
+     * entries are read.
+     */
+    public List<LogEntry> getLogsForEmotionBetween(String emotion, long from, long to) {
+        List<LogEntry> result = new ArrayList<>();
+        int ordinal = columns.ordinalOf(emotion);
+        if (ordinal < 0) {
+            return result;
+        }
+        PostingLists.View postings = columns.postings();
+        int[] ranges = days.rangesBetween(from, to, columns::timestampAt);
+        for (int r = 0; r < ranges.length; r += 2) {
+            collect(ordinal, postings.indexOf(ordinal, ranges[r]), postings.indexOf(ordinal, ranges[r + 1]), result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of raw entries of one emotion logged at or after {@code from}
+     * and before {@code to}, without reading any entry.
+     */
+    public int getLogCountForEmotionBetween(String emotion, long from, long to) {
+        int ordinal = columns.ordinalOf(emotion);
+        if (ordinal < 0) {
+            return 0;
+        }
+        PostingLists.View postings = columns.postings();
+        int[] ranges = days.rangesBetween(from, to, columns::timestampAt);
+        int count = 0;
+        for (int r = 0; r < ranges.length; r += 2) {
+            count += postings.indexOf(ordinal, ranges[r + 1]) - postings.indexOf(ordinal, ranges[r]);
+        }
+        return count;
+    }
+
+
+    public List<LogEntry> getLogsForDay(long timestamp) {
+        return collect(days.rangesForDay(days.epochDay(timestamp)));
+    }
+
+    /**
+     * Returns the entries logged at or after {@code from} and before {@code to},
+     * in the order they were logged.
+     */
+    public List<LogEntry> getLogsBetween(long from, long to) {
+        return collect(days.rangesBetween(from, to, columns::timestampAt));
+    }
+
+    /**
+     * Returns the number of logs per emotion across the whole history as an
+     * unmodifiable map, built once per snapshot and shared between callers.
+     * When {@link #isApproximate()}, only the most frequent emotions are included
+     * and their counts are estimates that are never too low.
+     */
+    public Map<String, Integer> getEmotionCounts() {
+        Map<String, Integer> counts = countsMap;
+        if (counts == null) {
+            if (heavyHitters != null) {
+                Map<String, Integer> map = new LinkedHashMap<>();
+                for (Map.Entry<String, Integer> entry : heavyHitters) {
+                    map.put(entry.getKey(), entry.getValue());
+                }
+                counts = Collections.unmodifiableMap(map);
+            } else {
+                counts = Collections.unmodifiableMap(toMap(emotionCounts));
+            }
+            countsMap = counts;
+        }
+        return counts;
+    }
+
+    /** Returns the hourly, daily and weekly rollup tables as of this snapshot. */
+    public Rollups.View getRollups() {
+        return rollups;
+    }
+
+    /**
+     * Returns the number of logs in each bucket from the one containing {@code from}
+     * through the one containing {@code to}, read from the rollup tables.
+     */
+    public int[] getCountsPerBucket(RollupTable.Resolution resolution, long from, long to) {
+        RollupTable.View table = rollups.get(resolution);
+        return table.totals(table.bucketOf(from), table.bucketOf(to) + 1);
+    }
+
+    /** Like {@link #getCountsPerBucket(RollupTable.Resolution, long, long)} for one emotion. */
+    public int[] getCountsPerBucket(RollupTable.Resolution resolution, long from, long to, String emotion) {
+        RollupTable.View table = rollups.get(resolution);
+        long fromBucket = table.bucketOf(from);
+        long toBucket = table.bucketOf(to) + 1;
+        int ordinal = columns.ordinalOf(emotion);
+        if (ordinal < 0) {
+            return new int[(int) Math.max(0, toBucket - fromBucket)];
+        }
+        return table.counts(fromBucket, toBucket, ordinal);
+    }
+
+    /**
+     * Returns true if there were too many distinct emotions to count each one exactly;
+     * whole-history counts and the most frequent emotion are then estimates.
+     */
+    public boolean isApproximate() {
+        return heavyHitters != null;
+    }
+
+    /** Returns the estimated counts of the most frequent emotions, or null if counts are exact. */
+    public List<Map.Entry<String, Integer>> getHeavyHitters() {
+        return heavyHitters;
+    }
+
+
+    public Map<String, Integer> getEmotionCountsForDay(long timestamp) {
+        long epochDay = days.epochDay(timestamp);
+        int[] ranges = days.rangesForDay(epochDay);
+        int[] counts = ParallelScan.countEmotions(columns, ranges, null);
+        compacted.addCountsForDay(epochDay, counts);
+        return toMap(counts);
+    }
+
+    /**
+     * Returns the number of raw entries per emotion among those that pass
+     * {@code filter}. Every raw entry is tested, in parallel for large histories
+     * (see {@link ParallelScan}).
+     */
+    public Map<String, Integer> getEmotionCountsWhere(LogFilter filter) {
+        return toMap(ParallelScan.countEmotions(columns, allPositions(), filter));
+    }
+
+    /**
+     * Returns the raw entries that pass {@code filter}, in the order they were logged.
+     * Every raw entry is tested, in parallel for large histories (see {@link ParallelScan}).
+     */
+    public List<LogEntry> getLogsWhere(LogFilter filter) {
+        int[] positions = ParallelScan.select(columns, allPositions(), filter);
+        List<LogEntry> result = new ArrayList<>(positions.length);
+        LogColumns.Reader reader = columns.reader();
+        for (int position : positions) {
+            result.add(reader.entryAt(position));
+        }
+        return result;
+    }
+
+    /**
+     * Runs a query over the raw entries, reading them through the cheapest index
+     * that applies; see {@link QueryPlan}.
+     */
+    public QueryResult query(LogQuery query) {
+        return QueryPlan.plan(this, query).execute();
+    }
+
+
+    /** Plans a query without running it and describes the plan; see {@link QueryPlan#explain()}. */
+    public String explain(LogQuery query) {
+        return QueryPlan.plan(this, query).explain();
+    }
+
+
+    /** Returns the number of entries ever logged, raw and compacted. */
+    public int getTotalLogCount() {
+        return columns.size() + (int) compacted.getTotal();
+    }
+
+    /** Returns the number of entries still kept individually, i.e. the size of {@link #getLogs()}. */
+    public int getRawLogCount() {
+        return columns.size();
+    }
+
+
+    public int getCompactedLogCount() {
+        return (int) compacted.getTotal();
+    }
+
+
+    public int getLogCountForDay(long timestamp) {
+        long epochDay = days.epochDay(timestamp);
+        return DayIndex.countPositions(days.rangesForDay(epochDay)) + compacted.countForDay(epochDay);
+    }
+
+
+    public String getMostFrequentEmotion() {
+        return mostFrequentEmotion;
+    }
+
+
+    public int getMostFrequentEmotionCount() {
+        return mostFrequentCount;
+    }
+
+
+    // Only needed when the clock went backwards at some point; created once per
+    // snapshot and extended as far as it is read.
+    private NewestFirstOrder newestFirstOrder() {
+        NewestFirstOrder order = newestFirstOrder;
+        if (order == null) {
+            synchronized (this) {
+                order = newestFirstOrder;
+                if (order == null) {
+                    order = new NewestFirstOrder(columns, days);
+                    newestFirstOrder = order;
+                }
+            }
+        }
+        return order;
+    }
+
+
+    private int[] allPositions() {
+        return new int[] { 0, columns.size() };
+    }
+
+
+    // Adds the entries at posting list indexes [from, to) of an emotion.
+    private List<LogEntry> collect(int ordinal, int from, int to, List<LogEntry> result) {
+        PostingLists.View postings = columns.postings();
+        LogColumns.Reader reader = columns.reader();
+        String name = columns.emotionName(ordinal);
+        for (int i = from; i < to; i++) {
+            result.add(new LogEntry(name, reader.timestampAt(postings.positionAt(ordinal, i))));
+        }
+        return result;
+    }
+
+
+    private List<LogEntry> collect(int[] ranges) {
+        List<LogEntry> result = new ArrayList<>(DayIndex.countPositions(ranges));
+        LogColumns.Reader reader = columns.reader();
+        for (int r = 0; r < ranges.length; r += 2) {
+            for (int i = ranges[r]; i < ranges[r + 1]; i++) {
+                result.add(reader.entryAt(i));
+            }
+        }
+        return result;
+    }
+
+    // Converts counters indexed by ordinal into a map keyed by emotion name.
+    private Map<String, Integer> toMap(int[] counts) {
+        Map<String, Integer> map = new HashMap<>();
+        int n = Math.min(counts.length, columns.emotionCount());
+        for (int ordinal = 0; ordinal < n; ordinal++) {
+            if (counts[ordinal] > 0) {
+                map.put(columns.emotionName(ordinal), counts[ordinal]);
+            }
+        }
+        return map;
+    }
+
+
+    /**
+     * Read-only list over the snapshot's entries in log order, reverse log order,
+     * or the merged newest-first order of several runs.
+     */
+    private final class EntryList extends AbstractList<LogEntry> implements RandomAccess {
+        private final NewestFirstOrder order;
+        private final boolean reversed;
+
+        EntryList(NewestFirstOrder order, boolean reversed) {
+            this.order = order;
+            this.reversed = reversed;
+        }
+
+        @Override
+        public LogEntry get(int index) {
+            if (index < 0 || index >= columns.size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + columns.size());
+            }
+            int position = order != null ? order.positionAt(index)
+                    : reversed ? columns.size() - 1 - index : index;
+            return columns.entryAt(position);
+        }
+
+        @Override
+        public int size() {
+            return columns.size();
+        }
+
+        @Override
+        public Spliterator<LogEntry> spliterator() {
+            if (order == null && !reversed) {
+                return LogSnapshot.this.spliterator();
+            }
+            return super.spliterator();
+        }
+    }
+
+
+    /**
+     * Splits a range of positions in halves; every part knows its exact size.
+     */
+    static final class EntrySpliterator implements Spliterator<LogEntry> {
+        private final LogColumns.View columns;
+        private int origin;
+        private final int fence;
+
+        EntrySpliterator(LogColumns.View columns, int origin, int fence) {
+            this.columns = columns;
+            this.origin = origin;
+            this.fence = fence;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super LogEntry> action) {
+            if (origin >= fence) {
+                return false;
+            }
+            action.accept(columns.entryAt(origin++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super LogEntry> action) {
+            LogColumns.Reader reader = columns.reader();
+            for (int i = origin; i < fence; i++) {
+                action.accept(reader.entryAt(i));
+            }
+            origin = fence;
+        }
+
+        @Override
+        public Spliterator<LogEntry> trySplit() {
+            int mid = (origin + fence) >>> 1;
+            if (mid <= origin) {
+                return null;
+            }
+            Spliterator<LogEntry> prefix = new EntrySpliterator(columns, origin, mid);
+            origin = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - origin;
+        }
+
+        @Override
+        public int characteristics() {
+            return SPLITERATOR_CHARACTERISTICS;
+        }
+    }
+}
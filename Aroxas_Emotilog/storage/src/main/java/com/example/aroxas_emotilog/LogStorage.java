@@ -0,0 +1,260 @@
+package com.example.aroxas_emotilog;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * LogStorage - Manages the storage and retrieval of emotion log entries.
+ *
+ * This class provides a centralized data storage solution for the EmotiLog application.
+ * It is the static entry point to the app's single {@link LogStore}, which
+ * maintains all logged emotions with their timestamps and provides various
+ * methods to query and analyze the stored data; see there for how entries are
+ * stored, indexed, persisted and compacted.
+ *
+ * Design Rationale:
+ * - Uses static methods for global access across the application
+ * - Only delegates, so the app and code that manages many logs, such as
+ *   {@link ShardedLogStore}, share one implementation
+ */
+public class LogStorage {
+    /** See {@link LogStore#APPROXIMATE_COUNTS_THRESHOLD}. */
+    public static final int APPROXIMATE_COUNTS_THRESHOLD = LogStore.APPROXIMATE_COUNTS_THRESHOLD;
+
+    private static final LogStore store = new LogStore();
+    private static final GroupCommitWriter writer = new GroupCommitWriter(store);
+
+
+    /** Returns the store behind the static methods. */
+    public static LogStore store() {
+        return store;
+    }
+
+
+    /** See {@link LogStore#open(File)}. */
+    public static void open(File directory) throws IOException {
+        store.open(directory);
+    }
+
+
+    /** Writes the entries queued by {@link #enqueueLog} and closes the durable log. */
+    public static void close() throws IOException {
+        try {
+            writer.flush();
+        } finally {
+            store.close();
+        }
+    }
+
+
+    // Closes the durable log and drops all in-memory and queued entries. Used by tests.
+    static void reset() throws IOException {
+        writer.clear();
+        store.reset();
+    }
+
+
+    /** See {@link LogStore#addLog(String)}. */
+    public static void addLog(String emotion) {
+        store.addLog(emotion);
+    }
+
+
+    /**
+     * Queues an emotion with the current time without waiting for the disk; see
+     * {@link GroupCommitWriter#log(String)} for when it is written and visible.
+     */
+    public static void enqueueLog(String emotion) {
+        writer.log(emotion);
+    }
+
+
+    /** Writes every entry queued by {@link #enqueueLog} so far; see {@link GroupCommitWriter#flush()}. */
+    public static void flush() throws IOException {
+        writer.flush();
+    }
+
+
+    /** Returns the group-commit writer behind {@link #enqueueLog}, for its settings. */
+    public static GroupCommitWriter writer() {
+        return writer;
+    }
+
+
+    /** See {@link LogStore#addLogs(String[], long[], int)}. */
+    public static void addLogs(String[] emotions, long[] timestamps, int count) {
+        store.addLogs(emotions, timestamps, count);
+    }
+
+
+    public static void setTimeZone(TimeZone timeZone) {
+        store.setTimeZone(timeZone);
+    }
+
+
+    public static void setRetentionPolicy(RetentionPolicy policy) {
+        store.setRetentionPolicy(policy);
+    }
+
+
+    public static RetentionPolicy getRetentionPolicy() {
+        return store.getRetentionPolicy();
+    }
+
+
+    /** See {@link LogStore#compact()}. */
+    public static int compact() throws IOException {
+        return store.compact();
+    }
+
+
+    static int compact(long now) throws IOException {
+        return store.compact(now);
+    }
+
+
+    /** Returns the latest published snapshot. Never blocks. */
+    public static LogSnapshot snapshot() {
+        return store.snapshot();
+    }
+
+
+    /** See {@link LogStore#addChangeListener(LogStore.ChangeListener)}. */
+    public static void addChangeListener(LogStore.ChangeListener listener) {
+        store.addChangeListener(listener);
+    }
+
+
+    public static void removeChangeListener(LogStore.ChangeListener listener) {
+        store.removeChangeListener(listener);
+    }
+
+
+    public static List<LogEntry> getLogs() {
+        return store.getLogs();
+    }
+
+
+    public static List<LogEntry> getLogsSortedByTime() {
+        return store.getLogsSortedByTime();
+    }
+
+
+    public static List<LogEntry> getLogsForEmotion(String emotion) {
+        return store.getLogsForEmotion(emotion);
+    }
+
+
+    public static List<LogEntry> getLogsForEmotionBetween(String emotion, long from, long to) {
+        return store.getLogsForEmotionBetween(emotion, from, to);
+    }
+
+
+    public static int getLogCountForEmotionBetween(String emotion, long from, long to) {
+        return store.getLogCountForEmotionBetween(emotion, from, to);
+    }
+
+
+    /** See {@link LogStore#getRecentLogs}. */
+    public static int getRecentLogs(long[] timestamps, String[] emotions) {
+        return store.getRecentLogs(timestamps, emotions);
+    }
+
+
+    /** See {@link LogStore#getRecentLogsForDay(long, long[], String[])}. */
+    public static int getRecentLogsForDay(long timestamp, long[] timestamps, String[] emotions) {
+        return store.getRecentLogsForDay(timestamp, timestamps, emotions);
+    }
+
+
+    /** See {@link LogStore#getRecentLogsForDay(LogSnapshot, long, long[], String[])}. */
+    public static int getRecentLogsForDay(LogSnapshot snapshot, long timestamp, long[] timestamps,
+                                          String[] emotions) {
+        return store.getRecentLogsForDay(snapshot, timestamp, timestamps, emotions);
+    }
+
+
+    public static void setRecentCapacity(int capacity) {
+        store.setRecentCapacity(capacity);
+    }
+
+
+    public static List<LogEntry> getLogsForDay(long timestamp) {
+        return store.getLogsForDay(timestamp);
+    }
+
+
+    public static List<LogEntry> getLogsBetween(long from, long to) {
+        return store.getLogsBetween(from, to);
+    }
+
+
+    public static Map<String, Integer> getEmotionCounts() {
+        return store.getEmotionCounts();
+    }
+
+
+    public static Map<String, Integer> getEmotionCountsForDay(long timestamp) {
+        return store.getEmotionCountsForDay(timestamp);
+    }
+
+
+    public static Map<String, Integer> getEmotionCountsWhere(LogFilter filter) {
+        return store.getEmotionCountsWhere(filter);
+    }
+
+
+    public static List<LogEntry> getLogsWhere(LogFilter filter) {
+        return store.getLogsWhere(filter);
+    }
+
+
+    /** See {@link LogStore#query(LogQuery)}. */
+    public static QueryResult query(LogQuery query) {
+        return store.query(query);
+    }
+
+
+    public static String explain(LogQuery query) {
+        return store.explain(query);
+    }
+
+
+    public static int[] getCountsPerBucket(RollupTable.Resolution resolution, long from, long to) {
+        return store.getCountsPerBucket(resolution, from, to);
+    }
+
+
+    public static int[] getCountsPerBucket(RollupTable.Resolution resolution, long from, long to,
+                                           String emotion) {
+        return store.getCountsPerBucket(resolution, from, to, emotion);
+    }
+
+
+    public static int getTotalLogCount() {
+        return store.getTotalLogCount();
+    }
+
+
+    public static int getLogCountForDay(long timestamp) {
+        return store.getLogCountForDay(timestamp);
+    }
+
+
+    public static String getMostFrequentEmotion() {
+        return store.getMostFrequentEmotion();
+    }
+
+
+    public static int getMostFrequentEmotionCount() {
+        return store.getMostFrequentEmotionCount();
+    }
+
+
+    /** Receives a {@link LogChange} for every snapshot published by the app's store. */
+    public interface ChangeListener extends LogStore.ChangeListener {
+    }
+}
@@ -0,0 +1,1106 @@
+package com.example.aroxas_emotilog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * LogStore - Stores, persists and queries one emotion log.
+ *
+ * A LogStore maintains all logged emotions with their timestamps and provides
+ * various methods to query and analyze the stored data. Instances are fully
+ * independent: each has its own entries, write lock, snapshots, listeners and
+ * durable log. The app's own log is the instance behind {@link LogStorage};
+ * {@link ShardedLogStore} keeps one instance per profile.
+ *
+ * Design Rationale:
+ * - Keeps entries in primitive {@link LogColumns} rather than one object per entry;
+ *   {@link LogEntry} objects are only created for the entries a query returns
+ * - Returns read-only views or fresh lists, so callers cannot modify internal data
+ * - Includes utility methods for data analysis and filtering
+ * - Thread-safe without a global monitor: writers enqueue entries and whichever
+ *   writer holds the write lock appends all queued entries as one batch, then
+ *   publishes a new {@link LogSnapshot}; readers only read the latest snapshot
+ * - Bulk ingestion through {@link #addLogs} keeps the original timestamps and takes
+ *   the write lock, writes to disk and publishes once per batch rather than per entry
+ * - Keeps per-emotion counters and the running most frequent emotion up to date on
+ *   every append, so whole-history statistics never rescan the log
+ * - Past {@link #APPROXIMATE_COUNTS_THRESHOLD} distinct emotions, whole-history counts
+ *   come from fixed-size {@link HeavyHitters} estimators, so memory and publish cost
+ *   stay bounded when emotions are free-form tags
+ * - Indexes entries by local calendar day through {@link DayIndex}, so day and time
+ *   range queries only touch the matching entries
+ * - Interns emotions to dense ids through an {@link EmotionRegistry} and keeps a
+ *   {@link PostingLists} entry per emotion, so emotion queries, also within a time
+ *   range, only touch the matching entries
+ * - Maintains hourly, daily and ISO-weekly {@link Rollups} on every append, so trend
+ *   queries never read entries at all
+ * - Answers composed {@link LogQuery} queries through a {@link QueryPlan} that picks
+ *   the day index, the posting lists or a full scan, whichever reads the fewest entries
+ * - Persists entries through an append-only {@link SegmentLog} once {@link #open(File)}
+ *   has been called; each batch reaches the log before it becomes visible in memory
+ * - Keeps the newest entries in a lock-free {@link RecentLogs} ring, so recent
+ *   activity is read in O(ring capacity) without allocating, whatever the history size
+ * - Announces every published snapshot to registered {@link ChangeListener}s as a
+ *   {@link LogChange}, so screens can apply the appended rows instead of reloading.
+ *   Changes are queued under the write lock and delivered after it is released,
+ *   so a slow or failing listener never holds up writers or other listeners
+ * - Bounds memory and disk with a {@link RetentionPolicy}: entries past its limits
+ *   are compacted into a {@link CompactedTier} of daily per-emotion counts on a
+ *   background thread, and the result is swapped in under the write lock after
+ *   catching up with the entries appended meanwhile
+ * - Writes a {@link Checkpoint} of its in-memory state every
+ *   {@link #getCheckpointInterval()} records and on {@link #close()}, in the
+ *   background and from a snapshot; {@link #open(File)} loads the newest valid one
+ *   and replays only the log records written after it, so startup cost follows the
+ *   length of that tail rather than of the history
+ * - Counts and samples the latency of its public operations, and times write lock
+ *   waits, through {@link StorageMetrics} when enabled; while disabled this costs
+ *   one volatile read per call
+ *
+ * Outstanding Issues:
+ * - Emotion strings are only checked for being present and storable, not for content
+ * - A store holds at most {@link #MAX_DISTINCT_EMOTIONS} distinct emotions for its
+ *   whole lifetime, a limit of the 16-bit ordinals in memory and on disk; past it,
+ *   new emotions are refused with a {@link TooManyEmotionsException}
+ * - Compacted entries are only counted per day: entry lists, time range queries
+ *   and hourly rollups rebuilt after a time zone change, or after a restart without
+ *   a usable checkpoint, leave them out
+ * - Loading a checkpoint still reads and checksums the whole file, so it costs
+ *   time in proportion to the history, though far less per entry than replaying
+ *   it; the posting lists of the restored entries are built afterwards in the
+ *   background
+ *
+ */
+public class LogStore {
+    /**
+     * Number of distinct emotions above which whole-history counts switch from one
+     * exact counter per emotion to {@link HeavyHitters} estimates.
+     */
+    public static final int APPROXIMATE_COUNTS_THRESHOLD = 1024;
+
+    /**
+     * Number of distinct emotions a store can hold over its lifetime. Logging a new
+     * emotion once this many are known throws a {@link TooManyEmotionsException}.
+     */
+    public static final int MAX_DISTINCT_EMOTIONS = LogColumns.MAX_EMOTIONS;
+
+    /** Default number of newest entries kept for {@link #getRecentLogs}. */
+    public static final int DEFAULT_RECENT_CAPACITY = 32;
+
+    /** Default number of logged records after which a new {@link Checkpoint} is written. */
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 1 << 16;
+
+    // Queued entries waiting to be appended by the current lock holder.
+    private final ConcurrentLinkedQueue<PendingLog> pending = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile LogSnapshot snapshot = LogSnapshot.EMPTY;
+    // Written by the write lock holder after each publication, read without locks.
+    private volatile RecentLogs recentLogs = new RecentLogs(DEFAULT_RECENT_CAPACITY);
+    private long version;
+    private Object lineage = new Object();
+    private final CopyOnWriteArrayList<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+    // Published changes not yet delivered, in sequence order; delivered by one thread
+    // at a time, whichever holds deliveryLock.
+    private final ConcurrentLinkedQueue<LogChange> changes = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock deliveryLock = new ReentrantLock();
+
+    private volatile RetentionPolicy retentionPolicy = RetentionPolicy.KEEP_ALL;
+    // Held for a whole compaction, so that at most one runs at a time.
+    private final ReentrantLock compactionLock = new ReentrantLock();
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    // Held while a checkpoint is written, so that at most one is written at a time.
+    private final ReentrantLock checkpointLock = new ReentrantLock();
+    private final AtomicBoolean checkpointScheduled = new AtomicBoolean();
+    private volatile int checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+    // Durable record index the newest checkpoint covers up to, or Long.MAX_VALUE while
+    // no durable log is open; written under writeLock.
+    private volatile long checkpointedIndex = Long.MAX_VALUE;
+    // Shared by all stores; compactions and checkpoints are rare and each one takes
+    // the store's own locks.
+    private static final Logger LOGGER = Logger.getLogger(LogStore.class.getName());
+    private static final ExecutorService maintenanceExecutor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "log-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Writer state, guarded by writeLock.
+    private LogColumns columns = new LogColumns();
+    private CompactedTier compactedTier = CompactedTier.EMPTY;
+    // Durable record index of the entry at raw position 0.
+    private long rawStartIndex;
+    private int[] emotionCounts = new int[16];
+    private String mostFrequentEmotion;
+    private int mostFrequentCount;
+    // Replaces emotionCounts once there are too many distinct emotions.
+    private HeavyHitters heavyHitters;
+    private DayIndex dayIndex = new DayIndex(TimeZone.getDefault());
+    private Rollups rollups = new Rollups(TimeZone.getDefault());
+    private SegmentLog segmentLog;
+    // Reused by drainPending, which grows them to the largest batch seen.
+    private PendingLog[] batchLogs = new PendingLog[16];
+    private String[] batchEmotions = new String[16];
+    private long[] batchTimestamps = new long[16];
+
+
+    /**
+     * Opens the durable log in the given directory and loads its compacted tier and
+     * the newest valid checkpoint, then replays the stored raw entries the checkpoint
+     * does not cover. Without a usable checkpoint every raw entry is replayed.
+     * Calling it again while a log is open has no effect.
+     */
+    public void open(File directory) throws IOException {
+        StorageMetrics.lock(writeLock);
+        try {
+            if (segmentLog != null) {
+                return;
+            }
+            clearEntries();
+            TimeZone timeZone = dayIndex.getTimeZone();
+            CompactedTier tier = CompactedTier.read(directory, timeZone);
+            Checkpoint checkpoint = Checkpoint.readLatest(directory, tier, timeZone);
+            if (checkpoint != null) {
+                restoreCheckpoint(tier, checkpoint);
+                segmentLog = SegmentLog.open(directory, SegmentLog.DEFAULT_RECORDS_PER_SEGMENT,
+                        tier.getRawStartIndex(), checkpoint.getRecordIndex(), this::append);
+                if (segmentLog.getRecordCount() < checkpoint.getRecordIndex()) {
+                    // The log lost records the checkpoint covers; the log is what counts.
+                    closeLog();
+                    clearEntries();
+                    checkpoint = null;
+                }
+            }
+            if (checkpoint == null) {
+                restoreCompacted(tier);
+                segmentLog = SegmentLog.open(directory, SegmentLog.DEFAULT_RECORDS_PER_SEGMENT,
+                        tier.getRawStartIndex(), this::append);
+            }
+            checkpointedIndex = checkpoint != null ? checkpoint.getRecordIndex() : tier.getRawStartIndex();
+            publish();
+            recentLogs = loadRecentLogs(recentLogs.getCapacity());
+            if (checkpoint != null) {
+                // Usually done before the first emotion query needs them.
+                PostingLists.View restored = snapshot.columns().postings();
+                maintenanceExecutor.execute(restored::load);
+            }
+        } finally {
+            unlockAndDeliver();
+        }
+        scheduleCompactionIfNeeded();
+        scheduleCheckpointIfNeeded();
+    }
+
+    /**
+     * Writes a checkpoint if anything was logged since the last one, then closes the
+     * durable log. A failed checkpoint is ignored: the log alone is enough to reopen.
+     */
+    public void close() throws IOException {
+        try {
+            checkpoint();
+        } catch (IOException | RuntimeException e) {
+            // The next open replays more of the log instead.
+        }
+        StorageMetrics.lock(writeLock);
+        try {
+            closeLog();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+
+    // Closes the durable log without a checkpoint. Requires writeLock.
+    private void closeLog() throws IOException {
+        if (segmentLog != null) {
+            try {
+                segmentLog.close();
+            } finally {
+                segmentLog = null;
+                checkpointedIndex = Long.MAX_VALUE;
+            }
+        }
+    }
+
+
+    // Closes the durable log and drops all in-memory entries. Used by tests.
+    void reset() throws IOException {
+        StorageMetrics.lock(writeLock);
+        try {
+            closeLog();
+            retentionPolicy = RetentionPolicy.KEEP_ALL;
+            clearEntries();
+            recentLogs = new RecentLogs(DEFAULT_RECENT_CAPACITY);
+            publish();
+        } finally {
+            unlockAndDeliver();
+        }
+    }
+
+
+    /**
+     * Records an emotion with the current time. When several threads log at once,
+     * their entries are appended, persisted and published together as one batch.
+     * The entry is visible to readers when this method returns. An entry that cannot
+     * be added only fails its own call; the other entries of its batch are kept.
+     *
+     * @throws IllegalArgumentException if the emotion is null or empty
+     * @throws TooManyEmotionsException if the emotion is new and the store already holds
+     *         {@link #MAX_DISTINCT_EMOTIONS} distinct emotions
+     * @throws UncheckedIOException if the entry could not be written to the durable log;
+     *         the entry is not kept in memory in that case
+     */
+    public void addLog(String emotion) {
+        if (emotion == null || emotion.isEmpty()) {
+            throw new IllegalArgumentException("Missing emotion");
+        }
+        long start = StorageMetrics.start();
+        PendingLog log = new PendingLog(emotion);
+        pending.add(log);
+
+        StorageMetrics.lock(writeLock);
+        try {
+            // Another writer may already have appended this entry with its own batch.
+            if (!log.done) {
+                drainPending();
+            }
+        } finally {
+            unlockAndDeliver();
+        }
+
+        if (log.rejection != null) {
+            throw log.rejection;
+        }
+        if (log.failure != null) {
+            throw new UncheckedIOException("Could not save " + emotion, log.failure);
+        }
+        StorageMetrics.record(StorageMetrics.Operation.ADD_LOG, start, 0, 0);
+        scheduleCompactionIfNeeded();
+        scheduleCheckpointIfNeeded();
+    }
+
+
+    /**
+     * Records a batch of entries with the timestamps they were originally logged at,
+     * for example when importing a history. The whole batch is appended, persisted
+     * and published under one acquisition of the write lock; entries queued by
+     * {@link #addLog} in the meantime are appended just before it. Timestamps do
+     * not need to be in order.
+     *
+     * @throws IllegalArgumentException if an emotion is null or empty; nothing is added
+     * @throws TooManyEmotionsException if the batch holds more new emotions than still
+     *         fit under {@link #MAX_DISTINCT_EMOTIONS}; nothing is added
+     * @throws UncheckedIOException if the batch could not be written to the durable log;
+     *         none of its entries are kept in memory in that case
+     */
+    public void addLogs(String[] emotions, long[] timestamps, int count) {
+        if (count < 0 || count > emotions.length || count > timestamps.length) {
+            throw new IllegalArgumentException("Invalid batch size " + count);
+        }
+        for (int i = 0; i < count; i++) {
+            if (emotions[i] == null || emotions[i].isEmpty()) {
+                throw new IllegalArgumentException("Missing emotion at batch index " + i);
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+
+        long start = StorageMetrics.start();
+        IOException failure;
+        StorageMetrics.lock(writeLock);
+        try {
+            drainPending();
+            Set<String> added = new HashSet<>();
+            for (int i = 0; i < count; i++) {
+                RuntimeException rejection = checkEmotion(emotions[i], added);
+                if (rejection != null) {
+                    throw rejection;
+                }
+            }
+            failure = appendBatch(emotions, timestamps, count);
+        } finally {
+            unlockAndDeliver();
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Could not save " + count + " entries", failure);
+        }
+        StorageMetrics.record(StorageMetrics.Operation.ADD_LOGS, start, 0, 0);
+        scheduleCompactionIfNeeded();
+        scheduleCheckpointIfNeeded();
+    }
+
+
+    /**
+     * Sets the time zone used to decide which calendar day an entry belongs to
+     * and rebuilds the day index and the rollup tables.
+     */
+    public void setTimeZone(TimeZone timeZone) {
+        StorageMetrics.lock(writeLock);
+        try {
+            dayIndex = new DayIndex(timeZone);
+            rollups = new Rollups(timeZone);
+            lineage = new Object();
+            // Compacted days keep the boundaries of the zone they were compacted in.
+            compactedTier.forEach(rollups::addDay);
+            LogColumns.Reader reader = columns.view().reader();
+            for (int i = 0, size = columns.size(); i < size; i++) {
+                long timestamp = reader.timestampAt(i);
+                dayIndex.add(timestamp);
+                rollups.add(timestamp, reader.ordinalAt(i));
+            }
+            publish();
+        } finally {
+            unlockAndDeliver();
+        }
+    }
+
+    /**
+     * Sets how many entries are kept individually. Entries beyond the policy's
+     * limits are compacted in the background, starting right away if needed.
+     */
+    public void setRetentionPolicy(RetentionPolicy policy) {
+        retentionPolicy = policy;
+        scheduleCompactionIfNeeded();
+    }
+
+
+    public RetentionPolicy getRetentionPolicy() {
+        return retentionPolicy;
+    }
+
+    /**
+     * Compacts the raw entries that fall outside the retention policy now, on the
+     * calling thread. Writers are only held up while the result is swapped in, and
+     * readers not at all.
+     *
+     * @return the number of entries compacted
+     * @throws IOException if the compacted tier could not be saved; nothing is
+     *         compacted in that case
+     */
+    public int compact() throws IOException {
+        return compact(System.currentTimeMillis());
+    }
+
+
+    int compact(long now) throws IOException {
+        long start = StorageMetrics.start();
+        compactionLock.lock();
+        try {
+            LogSnapshot source;
+            Object sourceLineage;
+            CompactedTier tier;
+            long sourceRawStart;
+            TimeZone timeZone;
+            File directory;
+            StorageMetrics.lock(writeLock);
+            try {
+                source = snapshot;
+                sourceLineage = lineage;
+                tier = compactedTier;
+                sourceRawStart = rawStartIndex;
+                timeZone = dayIndex.getTimeZone();
+                directory = segmentLog != null ? segmentLog.getDirectory() : null;
+            } finally {
+                writeLock.unlock();
+            }
+
+            LogColumns.View raw = source.columns();
+            int cut = retentionPolicy.compactionCut(raw, source.days(), now);
+            if (cut == 0) {
+                return 0;
+            }
+
+            // The expensive part works on the immutable snapshot, without the write lock.
+            CompactedTier compacted = tier.plus(raw, 0, cut, timeZone, sourceRawStart + cut);
+            LogColumns retained = new LogColumns();
+            DayIndex retainedDays = new DayIndex(timeZone);
+            copyEntries(raw, cut, retained, retainedDays);
+            File pending = directory != null ? compacted.writePending(directory) : null;
+
+            StorageMetrics.lock(writeLock);
+            try {
+                if (lineage != sourceLineage || (directory != null && segmentLog == null)) {
+                    // Cleared, re-indexed or closed in the meantime: the result no longer applies.
+                    if (pending != null && !pending.delete()) {
+                        pending.deleteOnExit();
+                    }
+                    return 0;
+                }
+                // Catch up with the entries appended since the source snapshot.
+                copyEntries(columns.view(), raw.size(), retained, retainedDays);
+                if (pending != null) {
+                    CompactedTier.commitPending(pending);
+                }
+                columns = retained;
+                dayIndex = retainedDays;
+                compactedTier = compacted;
+                rawStartIndex = compacted.getRawStartIndex();
+                // Existing checkpoints were taken on the old tier and no longer apply.
+                if (segmentLog != null) {
+                    checkpointedIndex = rawStartIndex;
+                }
+                lineage = new Object();
+                publish();
+
+                // Replay skips compacted records, so a segment that cannot be deleted now
+                // is only wasted space until the next open.
+                if (segmentLog != null) {
+                    segmentLog.deleteSegmentsBefore(rawStartIndex);
+                }
+                StorageMetrics.record(StorageMetrics.Operation.COMPACT, start, raw.size(), 0);
+                return cut;
+            } finally {
+                unlockAndDeliver();
+            }
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+
+    // Appends source positions [from, size) to the target, interning every emotion of
+    // the source first so that ordinals stay the same.
+    private static void copyEntries(LogColumns.View source, int from, LogColumns target, DayIndex targetDays) {
+        for (int ordinal = target.emotionCount(); ordinal < source.emotionCount(); ordinal++) {
+            target.intern(source.emotionName(ordinal));
+        }
+        LogColumns.Reader reader = source.reader();
+        for (int i = from, size = source.size(); i < size; i++) {
+            long timestamp = reader.timestampAt(i);
+            target.append(timestamp, reader.ordinalAt(i));
+            targetDays.add(timestamp);
+        }
+    }
+
+
+    // Starts a background compaction when the policy is exceeded and none is running.
+    private void scheduleCompactionIfNeeded() {
+        RetentionPolicy policy = retentionPolicy;
+        if (policy.keepsAll() || !policy.isExceeded(snapshot, System.currentTimeMillis())
+                || !compactionScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        maintenanceExecutor.execute(() -> {
+            try {
+                compact(System.currentTimeMillis());
+            } catch (IOException e) {
+                // Nothing was changed; the next append schedules another attempt.
+            } finally {
+                compactionScheduled.set(false);
+            }
+        });
+    }
+
+    /**
+     * Writes a checkpoint of everything logged so far, on the calling thread, unless
+     * no durable log is open, nothing was logged since the last checkpoint or counts
+     * are approximate. Writers are only held up while the snapshot is taken and while
+     * the file is committed.
+     *
+     * @return whether a checkpoint was written
+     * @throws IOException if the checkpoint could not be saved; the previous ones stay valid
+     */
+    public boolean checkpoint() throws IOException {
+        checkpointLock.lock();
+        try {
+            LogSnapshot source;
+            Object sourceLineage;
+            TimeZone timeZone;
+            File directory;
+            StorageMetrics.lock(writeLock);
+            try {
+                if (segmentLog == null || heavyHitters != null
+                        || rawStartIndex + columns.size() == checkpointedIndex) {
+                    return false;
+                }
+                source = snapshot;
+                sourceLineage = lineage;
+                timeZone = dayIndex.getTimeZone();
+                directory = segmentLog.getDirectory();
+            } finally {
+                writeLock.unlock();
+            }
+
+            File pending = Checkpoint.writePending(directory, source, timeZone);
+
+            StorageMetrics.lock(writeLock);
+            try {
+                if (lineage != sourceLineage || segmentLog == null) {
+                    // Compacted, re-indexed or closed in the meantime: the snapshot no longer applies.
+                    if (!pending.delete()) {
+                        pending.deleteOnExit();
+                    }
+                    return false;
+                }
+                Checkpoint.commitPending(pending);
+                checkpointedIndex = source.compacted().getRawStartIndex() + source.columns().size();
+                return true;
+            } finally {
+                writeLock.unlock();
+            }
+        } finally {
+            checkpointLock.unlock();
+        }
+    }
+
+    /**
+     * Sets after how many logged records a checkpoint is written in the background,
+     * or 0 to only write one on {@link #close()} and {@link #checkpoint()}.
+     */
+    public void setCheckpointInterval(int records) {
+        if (records < 0) {
+            throw new IllegalArgumentException("Invalid checkpoint interval " + records);
+        }
+        checkpointInterval = records;
+        scheduleCheckpointIfNeeded();
+    }
+
+
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+
+    // Starts a background checkpoint when enough records were logged since the last one.
+    private void scheduleCheckpointIfNeeded() {
+        int interval = checkpointInterval;
+        LogSnapshot current = snapshot;
+        if (interval == 0 || current.isApproximate()
+                || current.compacted().getRawStartIndex() + current.columns().size() - checkpointedIndex < interval
+                || !checkpointScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        maintenanceExecutor.execute(() -> {
+            try {
+                checkpoint();
+            } catch (IOException | RuntimeException e) {
+                // The previous checkpoint stays valid; the next append schedules another attempt.
+            } finally {
+                checkpointScheduled.set(false);
+            }
+        });
+    }
+
+    /**
+     * Sets how many of the newest entries {@link #getRecentLogs} can return and
+     * refills the ring from the stored entries.
+     */
+    public void setRecentCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        StorageMetrics.lock(writeLock);
+        try {
+            recentLogs = loadRecentLogs(capacity);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+
+    public int getRecentCapacity() {
+        return recentLogs.getCapacity();
+    }
+
+
+    // Fills a new ring with the newest raw entries. Requires writeLock.
+    private RecentLogs loadRecentLogs(int capacity) {
+        RecentLogs recent = new RecentLogs(capacity);
+        LogColumns.Reader reader = columns.view().reader();
+        for (int i = Math.max(0, columns.size() - capacity), size = columns.size(); i < size; i++) {
+            recent.add(reader.timestampAt(i), columns.emotionName(reader.ordinalAt(i)), version);
+        }
+        return recent;
+    }
+
+    /** Returns the latest published snapshot. Never blocks. */
+    public LogSnapshot snapshot() {
+        return snapshot;
+    }
+
+
+    /**
+     * Registers a listener for every snapshot published from now on. Listeners are
+     * called in sequence order, one change at a time, on a thread that just
+     * published a snapshot, after it released the write lock; they should still
+     * hand the change to another thread and return, since that thread is a writer.
+     * An exception thrown by a listener is logged and does not reach the writer or
+     * keep the change from the other listeners.
+     */
+    public void addChangeListener(ChangeListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+
+    public void removeChangeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+
+    private void drainPending() {
+        int count = 0;
+        PendingLog[] batch = batchLogs;
+        for (PendingLog log = pending.poll(); log != null; log = pending.poll()) {
+            if (count == batch.length) {
+                batch = Arrays.copyOf(batch, count * 2);
+                batchLogs = batch;
+            }
+            batch[count++] = log;
+        }
+        if (count == 0) {
+            return;
+        }
+
+        if (batchEmotions.length < count) {
+            batchEmotions = new String[Math.max(count, batchEmotions.length * 2)];
+            batchTimestamps = new long[batchEmotions.length];
+        }
+        // Entries that cannot be appended are turned away one by one, before anything
+        // is written, so they cannot fail the entries of other writers.
+        int accepted = 0;
+        Set<String> added = null;
+        for (int i = 0; i < count; i++) {
+            PendingLog log = batch[i];
+            if (columns.ordinalOf(log.emotion) < 0) {
+                if (added == null) {
+                    added = new HashSet<>();
+                }
+                log.rejection = checkEmotion(log.emotion, added);
+                if (log.rejection != null) {
+                    log.done = true;
+                    continue;
+                }
+            }
+            batch[accepted++] = log;
+        }
+        // Timestamps are taken in append order so the log stays sorted under contention.
+        for (int i = 0; i < accepted; i++) {
+            batchEmotions[i] = batch[i].emotion;
+            batchTimestamps[i] = System.currentTimeMillis();
+        }
+
+        IOException failure = accepted > 0 ? appendBatch(batchEmotions, batchTimestamps, accepted) : null;
+        for (int i = 0; i < accepted; i++) {
+            batch[i].failure = failure;
+            batch[i].done = true;
+            batchEmotions[i] = null;
+        }
+        Arrays.fill(batch, 0, count, null);
+    }
+
+
+    // Returns why an emotion cannot be appended after the new emotions in {@code added},
+    // or null if it can, in which case it is added to them. Checked before a batch is
+    // written, so that appending it to the durable log and to memory cannot fail
+    // halfway. Requires writeLock.
+    private RuntimeException checkEmotion(String emotion, Set<String> added) {
+        if (columns.ordinalOf(emotion) >= 0 || added.contains(emotion)) {
+            return null;
+        }
+        if (columns.emotionCount() + added.size() >= MAX_DISTINCT_EMOTIONS) {
+            return new TooManyEmotionsException(emotion, MAX_DISTINCT_EMOTIONS);
+        }
+        if (segmentLog != null && emotion.getBytes(StandardCharsets.UTF_8).length > SegmentLog.MAX_EMOTION_BYTES) {
+            return new IllegalArgumentException("Emotion too long to save: " + emotion.length() + " characters");
+        }
+        added.add(emotion);
+        return null;
+    }
+
+
+    // Persists a batch, then appends and publishes it. Returns the failure if the batch
+    // could not be persisted, in which case nothing is appended.
+    private IOException appendBatch(String[] emotions, long[] timestamps, int count) {
+        if (segmentLog != null) {
+            try {
+                segmentLog.appendAll(emotions, timestamps, count);
+            } catch (IOException e) {
+                return e;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            append(timestamps[i], emotions[i]);
+        }
+        publish();
+        RecentLogs recent = recentLogs;
+        for (int i = Math.max(0, count - recent.getCapacity()); i < count; i++) {
+            recent.add(timestamps[i], emotions[i], version);
+        }
+        return null;
+    }
+
+
+    private void append(long timestamp, String emotion) {
+        int ordinal = columns.intern(emotion);
+        columns.append(timestamp, ordinal);
+        dayIndex.add(timestamp);
+        rollups.add(timestamp, ordinal);
+        count(ordinal, emotion, 1);
+    }
+
+
+    // Loads a compacted tier into empty writer state: its emotions are interned first,
+    // in ordinal order, so the raw entries replayed afterwards get the same ordinals.
+    private void restoreCompacted(CompactedTier tier) {
+        compactedTier = tier;
+        rawStartIndex = tier.getRawStartIndex();
+        for (int ordinal = 0; ordinal < tier.emotionCount(); ordinal++) {
+            columns.intern(tier.emotionName(ordinal));
+        }
+        tier.forEach((day, ordinal, count) -> {
+            rollups.addDay(day, ordinal, count);
+            count(ordinal, tier.emotionName(ordinal), count);
+        });
+    }
+
+
+    // Loads a checkpoint taken on the given tier into empty writer state.
+    private void restoreCheckpoint(CompactedTier tier, Checkpoint checkpoint) {
+        compactedTier = tier;
+        rawStartIndex = checkpoint.getRawStartIndex();
+        columns = checkpoint.columns();
+        dayIndex = checkpoint.dayIndex();
+        rollups = checkpoint.rollups();
+        emotionCounts = checkpoint.emotionCounts();
+        mostFrequentEmotion = checkpoint.mostFrequentEmotion();
+        mostFrequentCount = checkpoint.mostFrequentCount();
+    }
+
+
+    private void count(int ordinal, String emotion, int added) {
+        if (heavyHitters == null && ordinal >= APPROXIMATE_COUNTS_THRESHOLD) {
+            switchToApproximateCounts();
+        }
+        if (heavyHitters != null) {
+            heavyHitters.add(emotion, added);
+            return;
+        }
+
+        if (ordinal >= emotionCounts.length) {
+            emotionCounts = Arrays.copyOf(emotionCounts, Math.max(ordinal + 1, emotionCounts.length * 2));
+        }
+        int count = emotionCounts[ordinal] += added;
+
+        // Counts only ever grow, so the leader can only change to the emotion just logged.
+        // Ties keep the emotion that reached the count first.
+        if (count > mostFrequentCount) {
+            mostFrequentCount = count;
+            mostFrequentEmotion = emotion;
+        }
+    }
+
+
+    // Seeds the estimators with the exact counts so far and stops counting exactly.
+    private void switchToApproximateCounts() {
+        heavyHitters = new HeavyHitters();
+        for (int ordinal = 0; ordinal < emotionCounts.length; ordinal++) {
+            if (emotionCounts[ordinal] > 0) {
+                heavyHitters.add(columns.emotionName(ordinal), emotionCounts[ordinal]);
+            }
+        }
+        emotionCounts = new int[0];
+    }
+
+
+    private void publish() {
+        LogSnapshot previous = snapshot;
+        if (heavyHitters == null) {
+            snapshot = new LogSnapshot(++version, lineage, columns.view(), dayIndex.view(),
+                    rollups.view(), compactedTier, Arrays.copyOf(emotionCounts, columns.emotionCount()),
+                    mostFrequentEmotion, mostFrequentCount, null);
+        } else {
+            List<Map.Entry<String, Integer>> top = heavyHitters.top();
+            snapshot = new LogSnapshot(++version, lineage, columns.view(), dayIndex.view(),
+                    rollups.view(), compactedTier, new int[0], top.get(0).getKey(),
+                    top.get(0).getValue(), top);
+        }
+
+        if (!listeners.isEmpty()) {
+            changes.add(LogChange.between(previous, snapshot));
+        }
+    }
+
+
+    // Releases the write lock, then delivers the changes published under it.
+    private void unlockAndDeliver() {
+        writeLock.unlock();
+        deliverChanges();
+    }
+
+
+    // Hands queued changes to the listeners unless another thread already does. The
+    // loop rechecks after unlocking, so a change queued just as the delivering thread
+    // finished is not left behind. A listener that logs entries itself only queues
+    // its change; the outer delivery picks it up, keeping sequence order.
+    private void deliverChanges() {
+        while (!changes.isEmpty() && !deliveryLock.isHeldByCurrentThread() && deliveryLock.tryLock()) {
+            try {
+                for (LogChange change = changes.poll(); change != null; change = changes.poll()) {
+                    for (ChangeListener listener : listeners) {
+                        try {
+                            listener.onLogsChanged(change);
+                        } catch (RuntimeException e) {
+                            LOGGER.log(Level.WARNING, "Change listener failed", e);
+                        }
+                    }
+                }
+            } finally {
+                deliveryLock.unlock();
+            }
+        }
+    }
+
+
+    private void clearEntries() {
+        lineage = new Object();
+        recentLogs = new RecentLogs(recentLogs.getCapacity());
+        columns.clear();
+        compactedTier = CompactedTier.EMPTY;
+        rawStartIndex = 0;
+        dayIndex.clear();
+        rollups.clear();
+        emotionCounts = new int[16];
+        mostFrequentEmotion = null;
+        mostFrequentCount = 0;
+        heavyHitters = null;
+    }
+
+
+    /**
+     * Returns all raw entries in log order as a read-only view; nothing is copied.
+     * Compacted entries are only counted, see {@link #getTotalLogCount()}.
+     */
+    public List<LogEntry> getLogs() {
+        long start = StorageMetrics.start();
+        List<LogEntry> logs = snapshot.getLogs();
+        StorageMetrics.record(StorageMetrics.Operation.GET_LOGS, start, 0, logs.size());
+        return logs;
+    }
+
+
+    /** Returns all entries newest first as a read-only view; nothing is copied or sorted. */
+    public List<LogEntry> getLogsSortedByTime() {
+        long start = StorageMetrics.start();
+        List<LogEntry> logs = snapshot.getLogsSortedByTime();
+        StorageMetrics.record(StorageMetrics.Operation.GET_LOGS_SORTED_BY_TIME, start, 0, logs.size());
+        return logs;
+    }
+
+
+    public List<LogEntry> getLogsForEmotion(String emotion) {
+        long start = StorageMetrics.start();
+        List<LogEntry> logs = snapshot.getLogsForEmotion(emotion);
+        StorageMetrics.record(StorageMetrics.Operation.GET_LOGS_FOR_EMOTION, start, logs.size(), logs.size());
+        return logs;
+    }
+
+
+    /** See {@link LogSnapshot#getLogsForEmotionBetween(String, long, long)}. */
+    public List<LogEntry> getLogsForEmotionBetween(String emotion, long from, long to) {
+        long start = StorageMetrics.start();
+        List<LogEntry> logs = snapshot.getLogsForEmotionBetween(emotion, from, to);
+        StorageMetrics.record(StorageMetrics.Operation.GET_LOGS_FOR_EMOTION_BETWEEN, start, logs.size(),
+                logs.size());
+        return logs;
+    }
+
+
+    public int getLogCountForEmotionBetween(String emotion, long from, long to) {
+        return snapshot.getLogCountForEmotionBetween(emotion, from, to);
+    }
+
+
+    /**
+     * Copies the most recently logged entries, newest first, into the given arrays:
+     * as many as fit, up to {@link #getRecentCapacity()}. Never blocks, never
+     * allocates and costs O(capacity) whatever the history size.
+     *
+     * @return the number of entries copied
+     */
+    public int getRecentLogs(long[] timestamps, String[] emotions) {
+        return recentLogs.copyRecent(timestamps, emotions);
+    }
+
+    /**
+     * Like {@link #getRecentLogs}, but only copies entries from the local day that
+     * contains the given time, stopping at the first entry from an earlier day.
+     */
+    public int getRecentLogsForDay(long timestamp, long[] timestamps, String[] emotions) {
+        DayIndex.View days = snapshot.days();
+        return recentLogs.copyRecentForDay(days, days.epochDay(timestamp), timestamps, emotions);
+    }
+
+    /**
+     * Like {@link #getRecentLogsForDay(long, long[], String[])}, but leaves out entries
+     * logged after the given snapshot, so the result agrees with what was computed from it.
+     */
+    public int getRecentLogsForDay(LogSnapshot snapshot, long timestamp, long[] timestamps, String[] emotions) {
+        DayIndex.View days = snapshot.days();
+        return recentLogs.copyRecentForDay(days, days.epochDay(timestamp), snapshot.getVersion(),
+                timestamps, emotions);
+    }
+
+
+    public List<LogEntry> getLogsForDay(long timestamp) {
+        long start = StorageMetrics.start();
+        List<LogEntry> logs = snapshot.getLogsForDay(timestamp);
+        StorageMetrics.record(StorageMetrics.Operation.GET_LOGS_FOR_DAY, start, logs.size(), logs.size());
+        return logs;
+    }
+
+
+    /**
+     * Returns the entries logged at or after {@code from} and before {@code to},
+     * in the order they were logged.
+     */
+    public List<LogEntry> getLogsBetween(long from, long to) {
+        long start = StorageMetrics.start();
+        List<LogEntry> logs = snapshot.getLogsBetween(from, to);
+        StorageMetrics.record(StorageMetrics.Operation.GET_LOGS_BETWEEN, start, logs.size(), logs.size());
+        return logs;
+    }
+
+
+    /**
+     * Returns the number of logs per emotion across the whole history.
+     * The returned map is an unmodifiable snapshot that is shared between callers
+     * until the next entry is logged. Past {@link #APPROXIMATE_COUNTS_THRESHOLD}
+     * distinct emotions it only holds estimates for the most frequent ones.
+     */
+    public Map<String, Integer> getEmotionCounts() {
+        long start = StorageMetrics.start();
+        Map<String, Integer> counts = snapshot.getEmotionCounts();
+        StorageMetrics.record(StorageMetrics.Operation.GET_EMOTION_COUNTS, start, 0, counts.size());
+        return counts;
+    }
+
+
+    public Map<String, Integer> getEmotionCountsForDay(long timestamp) {
+        long start = StorageMetrics.start();
+        LogSnapshot current = snapshot;
+        Map<String, Integer> counts = current.getEmotionCountsForDay(timestamp);
+        if (StorageMetrics.isRecorded(start)) {
+            DayIndex.View days = current.days();
+            int scanned = DayIndex.countPositions(days.rangesForDay(days.epochDay(timestamp)));
+            StorageMetrics.record(StorageMetrics.Operation.GET_EMOTION_COUNTS_FOR_DAY, start, scanned,
+                    counts.size());
+        }
+        return counts;
+    }
+
+
+    /** See {@link LogSnapshot#getEmotionCountsWhere(LogFilter)}. */
+    public Map<String, Integer> getEmotionCountsWhere(LogFilter filter) {
+        long start = StorageMetrics.start();
+        LogSnapshot current = snapshot;
+        Map<String, Integer> counts = current.getEmotionCountsWhere(filter);
+        StorageMetrics.record(StorageMetrics.Operation.GET_EMOTION_COUNTS_WHERE, start, current.getRawLogCount(),
+                counts.size());
+        return counts;
+    }
+
+
+    /** See {@link LogSnapshot#getLogsWhere(LogFilter)}. */
+    public List<LogEntry> getLogsWhere(LogFilter filter) {
+        long start = StorageMetrics.start();
+        LogSnapshot current = snapshot;
+        List<LogEntry> logs = current.getLogsWhere(filter);
+        StorageMetrics.record(StorageMetrics.Operation.GET_LOGS_WHERE, start, current.getRawLogCount(), logs.size());
+        return logs;
+    }
+
+
+    /** See {@link LogSnapshot#query(LogQuery)}. */
+    public QueryResult query(LogQuery query) {
+        long start = StorageMetrics.start();
+        QueryResult result = snapshot.query(query);
+        StorageMetrics.record(StorageMetrics.Operation.QUERY, start, result.getPlan().getEntriesRead(),
+                result.getRows().size());
+        return result;
+    }
+
+
+    /** See {@link LogSnapshot#explain(LogQuery)}. */
+    public String explain(LogQuery query) {
+        return snapshot.explain(query);
+    }
+
+
+    /** See {@link LogSnapshot#getCountsPerBucket(RollupTable.Resolution, long, long)}. */
+    public int[] getCountsPerBucket(RollupTable.Resolution resolution, long from, long to) {
+        long start = StorageMetrics.start();
+        int[] counts = snapshot.getCountsPerBucket(resolution, from, to);
+        StorageMetrics.record(StorageMetrics.Operation.GET_COUNTS_PER_BUCKET, start, 0, counts.length);
+        return counts;
+    }
+
+
+    public int[] getCountsPerBucket(RollupTable.Resolution resolution, long from, long to,
+                                           String emotion) {
+        long start = StorageMetrics.start();
+        int[] counts = snapshot.getCountsPerBucket(resolution, from, to, emotion);
+        StorageMetrics.record(StorageMetrics.Operation.GET_COUNTS_PER_BUCKET, start, 0, counts.length);
+        return counts;
+    }
+
+
+    /** Returns the number of entries ever logged, including compacted ones. */
+    public int getTotalLogCount() {
+        return snapshot.getTotalLogCount();
+    }
+
+
+    public int getLogCountForDay(long timestamp) {
+        return snapshot.getLogCountForDay(timestamp);
+    }
+
+
+    public String getMostFrequentEmotion() {
+        long start = StorageMetrics.start();
+        String emotion = snapshot.getMostFrequentEmotion();
+        StorageMetrics.record(StorageMetrics.Operation.GET_MOST_FREQUENT_EMOTION, start, 0, emotion != null ? 1 : 0);
+        return emotion;
+    }
+
+
+    public int getMostFrequentEmotionCount() {
+        return snapshot.getMostFrequentEmotionCount();
+    }
+
+
+    /** Receives a {@link LogChange} for every published snapshot. */
+    public interface ChangeListener {
+        void onLogsChanged(LogChange change);
+    }
+
+
+    private static final class PendingLog {
+        final String emotion;
+        // Written by the writer that appended the entry, read by the owner after it
+        // acquires the write lock itself.
+        boolean done;
+        // Why the entry alone was turned away, or why its whole batch failed to persist.
+        RuntimeException rejection;
+        IOException failure;
+
+        PendingLog(String emotion) {
+            this.emotion = emotion;
+        }
+    }
+}
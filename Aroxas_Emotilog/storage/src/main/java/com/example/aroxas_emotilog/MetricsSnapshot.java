@@ -0,0 +1,194 @@
+package com.example.aroxas_emotilog;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * MetricsSnapshot - A point-in-time copy of the {@link StorageMetrics} counters.
+ *
+ * Holds, per {@link StorageMetrics.Operation}, the number of calls, a histogram
+ * of the sampled latencies and the numbers of raw entries scanned and of items
+ * returned, plus the write lock's
+ * acquisition counts and wait times. {@link #toText()} renders a table for logs
+ * and bug reports; {@link #toJson()} renders the same numbers, including the
+ * non-empty histogram buckets, for tooling.
+ *
+ * Design Rationale:
+ * - Immutable, so it can be handed to another thread or kept for comparison
+ * - Durations are reported in nanoseconds in JSON and microseconds in text
+ * - Operations that were never called are left out of both renderings
+ */
+public final class MetricsSnapshot {
+    private static final double[] PERCENTILES = { 0.5, 0.9, 0.99 };
+
+    private final boolean enabled;
+    private final Map<StorageMetrics.Operation, OperationStats> operations;
+    private final long lockAcquisitions;
+    private final long contendedLockAcquisitions;
+    private final LatencyHistogram.Snapshot lockWait;
+
+
+    MetricsSnapshot(boolean enabled, Map<StorageMetrics.Operation, OperationStats> operations,
+                    long lockAcquisitions, long contendedLockAcquisitions, LatencyHistogram.Snapshot lockWait) {
+        this.enabled = enabled;
+        this.operations = Collections.unmodifiableMap(operations);
+        this.lockAcquisitions = lockAcquisitions;
+        this.contendedLockAcquisitions = contendedLockAcquisitions;
+        this.lockWait = lockWait;
+    }
+
+
+    /** Returns whether metrics were being recorded when the snapshot was taken. */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+
+    public OperationStats get(StorageMetrics.Operation operation) {
+        return operations.get(operation);
+    }
+
+
+    /** Returns how often the write lock was acquired while metrics were enabled. */
+    public long getLockAcquisitions() {
+        return lockAcquisitions;
+    }
+
+
+    /** Returns how many of those acquisitions had to wait for another thread. */
+    public long getContendedLockAcquisitions() {
+        return contendedLockAcquisitions;
+    }
+
+
+    /** Returns the wait times of the contended acquisitions. */
+    public LatencyHistogram.Snapshot getLockWait() {
+        return lockWait;
+    }
+
+
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.US, "%-24s %10s %10s %10s %10s %10s %10s %12s %12s%n",
+                "operation", "calls", "mean us", "p50 us", "p90 us", "p99 us", "max us", "scanned", "returned"));
+        for (Map.Entry<StorageMetrics.Operation, OperationStats> entry : operations.entrySet()) {
+            OperationStats stats = entry.getValue();
+            LatencyHistogram.Snapshot latency = stats.latency;
+            if (stats.calls == 0) {
+                continue;
+            }
+            text.append(String.format(Locale.US, "%-24s %10d %10.1f %10.1f %10.1f %10.1f %10.1f %12d %12d%n",
+                    entry.getKey().getMethodName(), stats.calls, latency.getMeanNanos() / 1e3,
+                    latency.getPercentileNanos(0.5) / 1e3, latency.getPercentileNanos(0.9) / 1e3,
+                    latency.getPercentileNanos(0.99) / 1e3, latency.getMaxNanos() / 1e3,
+                    stats.scanned, stats.returned));
+        }
+        text.append(String.format(Locale.US,
+                "write lock: %d acquisitions, %d contended, wait mean %.1f us, p99 %.1f us, max %.1f us%n",
+                lockAcquisitions, contendedLockAcquisitions, lockWait.getMeanNanos() / 1e3,
+                lockWait.getPercentileNanos(0.99) / 1e3, lockWait.getMaxNanos() / 1e3));
+        if (!enabled) {
+            text.append("metrics are disabled\n");
+        }
+        return text.toString();
+    }
+
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\"enabled\":").append(enabled).append(",\"operations\":{");
+        boolean first = true;
+        for (Map.Entry<StorageMetrics.Operation, OperationStats> entry : operations.entrySet()) {
+            OperationStats stats = entry.getValue();
+            if (stats.calls == 0) {
+                continue;
+            }
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append('"').append(entry.getKey().getMethodName()).append("\":{\"calls\":")
+                    .append(stats.calls).append(',');
+            appendLatency(json, stats.latency);
+            json.append(",\"scanned\":").append(stats.scanned)
+                    .append(",\"returned\":").append(stats.returned).append('}');
+        }
+        json.append("},\"writeLock\":{\"acquisitions\":").append(lockAcquisitions)
+                .append(",\"contended\":").append(contendedLockAcquisitions).append(",\"wait\":{");
+        appendLatency(json, lockWait);
+        return json.append("}}}").toString();
+    }
+
+
+    @Override
+    public String toString() {
+        return toText();
+    }
+
+
+    private static void appendLatency(StringBuilder json, LatencyHistogram.Snapshot latency) {
+        json.append("\"count\":").append(latency.getCount())
+                .append(",\"meanNanos\":").append(Math.round(latency.getMeanNanos()));
+        for (double percentile : PERCENTILES) {
+            json.append(",\"p").append(Math.round(percentile * 100)).append("Nanos\":")
+                    .append(latency.getPercentileNanos(percentile));
+        }
+        json.append(",\"maxNanos\":").append(latency.getMaxNanos()).append(",\"buckets\":[");
+        boolean first = true;
+        for (int bucket = 0; bucket < latency.getBucketCount(); bucket++) {
+            long count = latency.getCountInBucket(bucket);
+            if (count == 0) {
+                continue;
+            }
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append("{\"fromNanos\":").append(LatencyHistogram.lowerBound(bucket))
+                    .append(",\"toNanos\":").append(LatencyHistogram.upperBound(bucket))
+                    .append(",\"count\":").append(count).append('}');
+        }
+        json.append(']');
+    }
+
+
+    /**
+     * Call count, sampled latency and entry counts of one operation.
+     */
+    public static final class OperationStats {
+        private final long calls;
+        private final LatencyHistogram.Snapshot latency;
+        private final long scanned;
+        private final long returned;
+
+        OperationStats(long calls, LatencyHistogram.Snapshot latency, long scanned, long returned) {
+            this.calls = calls;
+            this.latency = latency;
+            this.scanned = scanned;
+            this.returned = returned;
+        }
+
+        /** Returns how often the operation was called while metrics were enabled. */
+        public long getCalls() {
+            return calls;
+        }
+
+        /**
+         * Returns the durations of the sampled calls, about one in
+         * {@link StorageMetrics#getSampleInterval()}.
+         */
+        public LatencyHistogram.Snapshot getLatency() {
+            return latency;
+        }
+
+        /** Returns the number of raw entries the calls read from the columns. */
+        public long getScanned() {
+            return scanned;
+        }
+
+        /** Returns the number of entries, or map and bucket items, the calls returned. */
+        public long getReturned() {
+            return returned;
+        }
+    }
+}
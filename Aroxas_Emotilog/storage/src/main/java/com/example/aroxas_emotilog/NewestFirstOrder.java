@@ -0,0 +1,144 @@
+package com.example.aroxas_emotilog;
+
+import java.util.Arrays;
+
+/**
+ * NewestFirstOrder - The newest-first order of entries that form several sorted runs.
+ *
+ * Entries are logged in sorted runs, a new one starting whenever the clock went
+ * back (see {@link DayIndex#getRunCount()}). Newest first, the order is a merge of
+ * the runs, each walked backwards. The merge keeps one cursor per run in a binary
+ * heap keyed by the timestamp under the cursor, and it only runs as far as a
+ * caller has read: the positions produced so far are kept in fixed-size pages.
+ *
+ * Design Rationale:
+ * - Each position costs O(log runs), so the whole order costs O(n log runs)
+ *   instead of comparing every run head for every position
+ * - Reading the first rows costs O(runs) to build the heap, whatever the history
+ *   size; only a caller that reads deep into the order pays for it, 4 bytes per
+ *   position read
+ * - A cursor is an int and a long in parallel arrays, and all cursors read through
+ *   one {@link LogColumns.Reader}, so the merge keeps a single decoding buffer
+ *   however many runs there are
+ * - Ties go to the later run, and within a run to the later position, so equal
+ *   timestamps come out in reverse log order
+ * - Thread-safe: the merge is extended under the object's monitor
+ */
+final class NewestFirstOrder {
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final int size;
+    private final LogColumns.Reader reader;
+    // Per run: the next position to emit, walking down, and the first position of the run.
+    private final int[] cursors;
+    private final int[] lows;
+    // Timestamp at each run's cursor.
+    private final long[] heads;
+    // Max-heap of the runs that still have positions left.
+    private final int[] heap;
+    private int heapSize;
+    private int[][] pages = new int[4][];
+    private int produced;
+    // Run heads compared so far; tests check that the merge stays O(log runs) per position.
+    private long comparisons;
+
+
+    NewestFirstOrder(LogColumns.View columns, DayIndex.View days) {
+        size = columns.size();
+        reader = columns.reader();
+        int runs = days.getRunCount();
+        cursors = new int[runs];
+        lows = new int[runs];
+        heads = new long[runs];
+        heap = new int[runs];
+        for (int run = 0; run < runs; run++) {
+            lows[run] = days.runStart(run);
+            cursors[run] = (run + 1 < runs ? days.runStart(run + 1) : size) - 1;
+        }
+    }
+
+
+    /** Returns the raw position of the entry at a newest-first index. */
+    synchronized int positionAt(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (produced == 0) {
+            buildHeap();
+        }
+        while (produced <= index) {
+            int page = produced >>> PAGE_SHIFT;
+            if (page == pages.length) {
+                pages = Arrays.copyOf(pages, page * 2);
+            }
+            if (pages[page] == null) {
+                pages[page] = new int[PAGE_SIZE];
+            }
+            pages[page][produced & PAGE_MASK] = next();
+            produced++;
+        }
+        return pages[index >>> PAGE_SHIFT][index & PAGE_MASK];
+    }
+
+
+    /** Returns how many times two run heads were compared so far. */
+    synchronized long comparisons() {
+        return comparisons;
+    }
+
+
+    private void buildHeap() {
+        for (int run = 0; run < cursors.length; run++) {
+            if (cursors[run] >= lows[run]) {
+                heads[run] = reader.timestampAt(cursors[run]);
+                heap[heapSize++] = run;
+            }
+        }
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+
+    // Emits the position under the top cursor and moves that cursor down its run.
+    private int next() {
+        int run = heap[0];
+        int position = cursors[run]--;
+        if (cursors[run] >= lows[run]) {
+            heads[run] = reader.timestampAt(cursors[run]);
+        } else {
+            heap[0] = heap[--heapSize];
+        }
+        siftDown(0);
+        return position;
+    }
+
+
+    private void siftDown(int i) {
+        int run = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && before(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!before(heap[child], run)) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = run;
+    }
+
+
+    // Whether run a's cursor comes first newest first.
+    private boolean before(int a, int b) {
+        comparisons++;
+        return heads[a] > heads[b] || (heads[a] == heads[b] && a > b);
+    }
+}
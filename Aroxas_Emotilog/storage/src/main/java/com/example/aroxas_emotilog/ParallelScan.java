@@ -0,0 +1,448 @@
+package com.example.aroxas_emotilog;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * ParallelScan - Sequential or fork/join execution of the scans over raw log entries.
+ *
+ * A scan covers a set of position ranges of a {@link LogColumns.View}, such as the
+ * runs of one day from the {@link DayIndex}. Large scans are cut into pieces that
+ * run as fork/join tasks on the common pool; each piece counts into its own
+ * {@code int[]} of per-emotion counters, or collects its own matching positions,
+ * and the partial results are merged on the way back up. Small scans run in the
+ * calling thread through the same loop.
+ *
+ * In {@link Mode#AUTO}, scans of at least {@link #getThreshold()} entries run in
+ * parallel if the common pool has more than one worker.
+ *
+ * Design Rationale:
+ * - The inner loops read the column chunks directly, so a piece is a tight loop
+ *   over a {@code short[]} and, with a filter, a {@code long[]}
+ * - Pieces are sized so there are about four per worker, which keeps the workers
+ *   busy without making the merge of large counter arrays dominate
+ * - Partial counters belong to one task, so counting needs no atomics or locks
+ * - Static like StorageMetrics, so the mode can be changed from a debug hook or a
+ *   benchmark without plumbing
+ *
+ * Outstanding Issues:
+ * - The default threshold is an estimate: about a millisecond of sequential
+ *   scanning, well above the cost of forking a few tasks. ParallelScanBenchmark
+ *   shows the actual crossover for a given device
+ */
+public final class ParallelScan {
+    /** Entries from which {@link Mode#AUTO} scans in parallel. */
+    public static final int DEFAULT_THRESHOLD = 1 << 17;
+    // Smaller pieces cost more to schedule than they save.
+    static final int MIN_PIECE_SIZE = 1 << 14;
+    private static final int PIECES_PER_WORKER = 4;
+
+    private static volatile Mode mode = Mode.AUTO;
+    private static volatile int threshold = DEFAULT_THRESHOLD;
+
+
+    private ParallelScan() {
+    }
+
+
+    public static void setMode(Mode newMode) {
+        mode = newMode;
+    }
+
+
+    public static Mode getMode() {
+        return mode;
+    }
+
+
+    /** Sets the number of entries from which {@link Mode#AUTO} scans in parallel. */
+    public static void setThreshold(int entries) {
+        if (entries < 0) {
+            throw new IllegalArgumentException("Invalid threshold " + entries);
+        }
+        threshold = entries;
+    }
+
+
+    public static int getThreshold() {
+        return threshold;
+    }
+
+
+    /** Returns true if a scan of {@code entries} entries would run in parallel. */
+    public static boolean isParallel(int entries) {
+        switch (mode) {
+            case SEQUENTIAL:
+                return false;
+            case PARALLEL:
+                return entries > 1;
+            default:
+                return entries >= threshold && ForkJoinPool.getCommonPoolParallelism() > 1;
+        }
+    }
+
+    /**
+     * Counts the entries at the positions in {@code ranges} per emotion ordinal,
+     * only counting those that pass {@code filter} if it is not null.
+     *
+     * @param ranges [from, to) position pairs, as returned by {@link DayIndex.View}
+     * @return counters indexed by ordinal, {@link LogColumns.View#emotionCount()} long
+     */
+    static int[] countEmotions(LogColumns.View columns, int[] ranges, LogFilter filter) {
+        Scan scan = new Scan(columns, ranges, filter);
+        if (!isParallel(scan.size)) {
+            return scan.count(0, scan.size);
+        }
+        return ForkJoinPool.commonPool().invoke(new CountTask(scan, 0, scan.size, scan.pieceSize()));
+    }
+
+    /**
+     * Returns the positions in {@code ranges} whose entries pass {@code filter}, in
+     * the order of the ranges.
+     */
+    static int[] select(LogColumns.View columns, int[] ranges, LogFilter filter) {
+        Scan scan = new Scan(columns, ranges, filter);
+        if (!isParallel(scan.size)) {
+            return scan.select(0, scan.size);
+        }
+        return ForkJoinPool.commonPool().invoke(new SelectTask(scan, 0, scan.size, scan.pieceSize()));
+    }
+
+    /**
+     * Folds the entries at the positions in {@code ranges} into an aggregate. Each
+     * piece of a parallel scan starts from its own {@link Aggregator#newPartial()},
+     * and the partial aggregates are merged in position order.
+     */
+    static <A> A aggregate(LogColumns.View columns, int[] ranges, Aggregator<A> aggregator) {
+        Scan scan = new Scan(columns, ranges, null);
+        if (!isParallel(scan.size)) {
+            return scan.aggregate(0, scan.size, aggregator);
+        }
+        return ForkJoinPool.commonPool().invoke(new AggregateTask<>(scan, 0, scan.size, scan.pieceSize(), aggregator));
+    }
+
+    /**
+     * Creates the entries at posting list indexes [from, to) of an emotion, in
+     * parallel for large ranges.
+     */
+    static LogEntry[] entriesOf(LogColumns.View columns, int ordinal, int from, int to) {
+        LogEntry[] entries = new LogEntry[to - from];
+        if (!isParallel(entries.length)) {
+            fillEntries(columns, ordinal, from, to, entries, from);
+        } else {
+            ForkJoinPool.commonPool().invoke(new EntriesTask(columns, ordinal, from, to, entries,
+                    pieceSize(entries.length)));
+        }
+        return entries;
+    }
+
+
+    private static int pieceSize(int entries) {
+        int pieces = ForkJoinPool.getCommonPoolParallelism() * PIECES_PER_WORKER;
+        return Math.max(MIN_PIECE_SIZE, (entries + pieces - 1) / pieces);
+    }
+
+
+    // Fills entries[i - base] for posting list indexes i in [from, to).
+    private static void fillEntries(LogColumns.View columns, int ordinal, int from, int to, LogEntry[] entries,
+                                    int base) {
+        PostingLists.View postings = columns.postings();
+        LogColumns.Reader reader = columns.reader();
+        String name = columns.emotionName(ordinal);
+        for (int i = from; i < to; i++) {
+            entries[i - base] = new LogEntry(name, reader.timestampAt(postings.positionAt(ordinal, i)));
+        }
+    }
+
+
+    /**
+     * Accumulates the entries of a scan. Partial aggregates are only touched by one
+     * task at a time, so they need no synchronization.
+     */
+    interface Aggregator<A> {
+        A newPartial();
+
+        void add(A partial, long timestamp, int ordinal);
+
+        /** Combines two partial aggregates, {@code left} covering the earlier positions. */
+        A merge(A left, A right);
+    }
+
+
+    /** How scans are executed. */
+    public enum Mode {
+        /** Parallel from {@link #getThreshold()} entries on, if there is more than one core. */
+        AUTO,
+        SEQUENTIAL,
+        /** Always parallel; for tests and benchmarks. */
+        PARALLEL
+    }
+
+
+    /**
+     * The ranges of one scan, addressed by index into their concatenation so that
+     * the scan can be split evenly however the ranges are sized.
+     */
+    private static final class Scan {
+        final LogColumns.View columns;
+        final int[] ranges;
+        final LogFilter filter;
+        // starts[r] is the index of the first position of range r; starts[last] is the size.
+        final int[] starts;
+        final int size;
+
+        Scan(LogColumns.View columns, int[] ranges, LogFilter filter) {
+            this.columns = columns;
+            this.ranges = ranges;
+            this.filter = filter;
+            starts = new int[ranges.length / 2 + 1];
+            for (int r = 0; r < ranges.length; r += 2) {
+                starts[r / 2 + 1] = starts[r / 2] + ranges[r + 1] - ranges[r];
+            }
+            size = starts[starts.length - 1];
+        }
+
+        int pieceSize() {
+            return ParallelScan.pieceSize(size);
+        }
+
+        // Returns the range holding index, the last one whose start is at or before it.
+        int rangeOf(int index) {
+            int r = Arrays.binarySearch(starts, index);
+            if (r < 0) {
+                return -r - 2;
+            }
+            // Skip empty ranges that start at the same index.
+            while (r + 1 < starts.length - 1 && starts[r + 1] == index) {
+                r++;
+            }
+            return r;
+        }
+
+        int[] count(int from, int to) {
+            int[] counts = new int[columns.emotionCount()];
+            // Sealed chunks are decoded into these for the filter; unfiltered counts
+            // are taken from the blocks directly.
+            long[] timestampScratch = filter == null ? null : new long[LogColumns.CHUNK_SIZE];
+            short[] ordinalScratch = filter == null ? null : new short[LogColumns.CHUNK_SIZE];
+            for (int r = rangeOf(from); from < to; r++) {
+                int start = ranges[2 * r] + from - starts[r];
+                int end = start + Math.min(to, starts[r + 1]) - from;
+                countPositions(start, end, counts, timestampScratch, ordinalScratch);
+                from += end - start;
+            }
+            return counts;
+        }
+
+        private void countPositions(int from, int to, int[] counts, long[] timestampScratch,
+                                    short[] ordinalScratch) {
+            if (filter == null) {
+                columns.addCounts(from, to, counts);
+                return;
+            }
+            while (from < to) {
+                int chunk = from >>> LogColumns.CHUNK_SHIFT;
+                int offset = from & LogColumns.CHUNK_MASK;
+                int end = Math.min(LogColumns.CHUNK_SIZE, offset + to - from);
+                long[] timestamps = columns.timestamps(chunk, timestampScratch);
+                short[] ordinals = columns.ordinals(chunk, ordinalScratch);
+                for (int i = offset; i < end; i++) {
+                    int ordinal = ordinals[i] & 0xFFFF;
+                    if (filter.test(timestamps[i], columns.emotionName(ordinal))) {
+                        counts[ordinal]++;
+                    }
+                }
+                from += end - offset;
+            }
+        }
+
+        <A> A aggregate(int from, int to, Aggregator<A> aggregator) {
+            A partial = aggregator.newPartial();
+            long[] timestampScratch = new long[LogColumns.CHUNK_SIZE];
+            short[] ordinalScratch = new short[LogColumns.CHUNK_SIZE];
+            // Many short ranges, such as single days, can share a chunk; decode it once.
+            int decoded = -1;
+            long[] timestamps = null;
+            short[] ordinals = null;
+            for (int r = rangeOf(from); from < to; r++) {
+                int position = ranges[2 * r] + from - starts[r];
+                int end = position + Math.min(to, starts[r + 1]) - from;
+                from += end - position;
+                while (position < end) {
+                    int chunk = position >>> LogColumns.CHUNK_SHIFT;
+                    int offset = position & LogColumns.CHUNK_MASK;
+                    int chunkEnd = Math.min(LogColumns.CHUNK_SIZE, offset + end - position);
+                    if (chunk != decoded) {
+                        timestamps = columns.timestamps(chunk, timestampScratch);
+                        ordinals = columns.ordinals(chunk, ordinalScratch);
+                        decoded = chunk;
+                    }
+                    for (int i = offset; i < chunkEnd; i++) {
+                        aggregator.add(partial, timestamps[i], ordinals[i] & 0xFFFF);
+                    }
+                    position += chunkEnd - offset;
+                }
+            }
+            return partial;
+        }
+
+        int[] select(int from, int to) {
+            int limit = to - from;
+            int[] positions = new int[Math.min(limit, 16)];
+            int length = 0;
+            LogColumns.Reader reader = columns.reader();
+            for (int r = rangeOf(from); from < to; r++) {
+                int start = ranges[2 * r] + from - starts[r];
+                int end = start + Math.min(to, starts[r + 1]) - from;
+                for (int position = start; position < end; position++) {
+                    if (filter.test(reader.timestampAt(position), columns.emotionName(reader.ordinalAt(position)))) {
+                        if (length == positions.length) {
+                            positions = Arrays.copyOf(positions, Math.min(limit, positions.length * 2));
+                        }
+                        positions[length++] = position;
+                    }
+                }
+                from += end - start;
+            }
+            return length == positions.length ? positions : Arrays.copyOf(positions, length);
+        }
+    }
+
+
+    private static final class CountTask extends RecursiveTask<int[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final Scan scan;
+        private final int from;
+        private final int to;
+        private final int pieceSize;
+
+        CountTask(Scan scan, int from, int to, int pieceSize) {
+            this.scan = scan;
+            this.from = from;
+            this.to = to;
+            this.pieceSize = pieceSize;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (to - from <= pieceSize) {
+                return scan.count(from, to);
+            }
+            int middle = (from + to) >>> 1;
+            CountTask right = new CountTask(scan, middle, to, pieceSize);
+            right.fork();
+            int[] counts = new CountTask(scan, from, middle, pieceSize).compute();
+            int[] rightCounts = right.join();
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += rightCounts[i];
+            }
+            return counts;
+        }
+    }
+
+
+    private static final class SelectTask extends RecursiveTask<int[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final Scan scan;
+        private final int from;
+        private final int to;
+        private final int pieceSize;
+
+        SelectTask(Scan scan, int from, int to, int pieceSize) {
+            this.scan = scan;
+            this.from = from;
+            this.to = to;
+            this.pieceSize = pieceSize;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (to - from <= pieceSize) {
+                return scan.select(from, to);
+            }
+            int middle = (from + to) >>> 1;
+            SelectTask right = new SelectTask(scan, middle, to, pieceSize);
+            right.fork();
+            int[] left = new SelectTask(scan, from, middle, pieceSize).compute();
+            int[] rightPositions = right.join();
+            int[] positions = Arrays.copyOf(left, left.length + rightPositions.length);
+            System.arraycopy(rightPositions, 0, positions, left.length, rightPositions.length);
+            return positions;
+        }
+    }
+
+
+    private static final class AggregateTask<A> extends RecursiveTask<A> {
+        private static final long serialVersionUID = 1L;
+
+        private final Scan scan;
+        private final int from;
+        private final int to;
+        private final int pieceSize;
+        private final Aggregator<A> aggregator;
+
+        AggregateTask(Scan scan, int from, int to, int pieceSize, Aggregator<A> aggregator) {
+            this.scan = scan;
+            this.from = from;
+            this.to = to;
+            this.pieceSize = pieceSize;
+            this.aggregator = aggregator;
+        }
+
+        @Override
+        protected A compute() {
+            if (to - from <= pieceSize) {
+                return scan.aggregate(from, to, aggregator);
+            }
+            int middle = (from + to) >>> 1;
+            AggregateTask<A> right = new AggregateTask<>(scan, middle, to, pieceSize, aggregator);
+            right.fork();
+            A left = new AggregateTask<>(scan, from, middle, pieceSize, aggregator).compute();
+            return aggregator.merge(left, right.join());
+        }
+    }
+
+
+    private static final class EntriesTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final LogColumns.View columns;
+        private final int ordinal;
+        private final int from;
+        private final int to;
+        private final LogEntry[] entries;
+        private final int pieceSize;
+        // Posting list index stored at entries[0].
+        private final int base;
+
+        EntriesTask(LogColumns.View columns, int ordinal, int from, int to, LogEntry[] entries, int pieceSize) {
+            this(columns, ordinal, from, to, entries, pieceSize, from);
+        }
+
+        private EntriesTask(LogColumns.View columns, int ordinal, int from, int to, LogEntry[] entries,
+                            int pieceSize, int base) {
+            this.columns = columns;
+            this.ordinal = ordinal;
+            this.from = from;
+            this.to = to;
+            this.entries = entries;
+            this.pieceSize = pieceSize;
+            this.base = base;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= pieceSize) {
+                fillEntries(columns, ordinal, from, to, entries, base);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new EntriesTask(columns, ordinal, from, middle, entries, pieceSize, base),
+                    new EntriesTask(columns, ordinal, middle, to, entries, pieceSize, base));
+        }
+    }
+}
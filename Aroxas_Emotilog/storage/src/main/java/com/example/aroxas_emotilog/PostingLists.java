@@ -0,0 +1,283 @@
+package com.example.aroxas_emotilog;
+
+import java.util.Arrays;
+
+/**
+ * PostingLists - The positions of each emotion's entries, one ascending list per emotion id.
+ *
+ * {@link LogColumns} adds every appended position to the list of its emotion,
+ * so filtering by emotion reads only the matching entries, and intersecting an
+ * emotion with a range of positions is a binary search followed by the matches.
+ *
+ * Like the columns, the lists have a single writer and are read through
+ * {@link View}s that capture every list's length at one point in time.
+ *
+ * Design Rationale:
+ * - Each list is a directory of chunks that start at 4 positions and double up to
+ *   16K, so a rarely used emotion costs a few bytes and a frequent one about
+ *   4 bytes per entry; filled chunks are never copied or changed
+ * - List lengths live in small pages that are copied on the first append after
+ *   a view was taken, so taking a view copies only the page directory and an
+ *   append copies at most one page, however many emotions there are
+ * - Positions are appended in increasing order, so every list is sorted
+ * - The entries restored from a {@link Checkpoint} are a {@link Prefix} of sealed
+ *   blocks whose lists are only built on first use, or in the background after
+ *   opening, so a cold start does not decode every stored entry; lists then read
+ *   the prefix's positions before their own
+ */
+public final class PostingLists {
+    private static final int FIRST_CHUNK_SHIFT = 2;
+    private static final int MAX_CHUNK_SHIFT = 14;
+    private static final int MAX_CHUNK_SIZE = 1 << MAX_CHUNK_SHIFT;
+    // Chunks 0 .. GROWING_CHUNKS - 1 double in size; later ones are all MAX_CHUNK_SIZE.
+    private static final int GROWING_CHUNKS = MAX_CHUNK_SHIFT - FIRST_CHUNK_SHIFT + 1;
+    private static final int GROWING_CAPACITY = (MAX_CHUNK_SIZE << 1) - (1 << FIRST_CHUNK_SHIFT);
+    private static final int PAGE_SHIFT = 6;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    // Per page of emotion ids: the list lengths and the chunk directories.
+    private int[][] lengthPages = new int[1][];
+    private int[][][][] chunkPages = new int[1][][][];
+    // The view generation in which each page was last copied; older pages are shared.
+    private int[] pageGenerations = new int[1];
+    private int generation = 1;
+    // Positions [0, prefix.size) when entries were restored from sealed blocks, else null.
+    private Prefix prefix;
+
+
+    public void add(int id, int position) {
+        int page = id >>> PAGE_SHIFT;
+        int slot = id & PAGE_MASK;
+        if (page >= lengthPages.length) {
+            int pages = Math.max(page + 1, lengthPages.length * 2);
+            lengthPages = Arrays.copyOf(lengthPages, pages);
+            chunkPages = Arrays.copyOf(chunkPages, pages);
+            pageGenerations = Arrays.copyOf(pageGenerations, pages);
+        }
+        if (lengthPages[page] == null) {
+            lengthPages[page] = new int[PAGE_SIZE];
+            chunkPages[page] = new int[PAGE_SIZE][][];
+            pageGenerations[page] = generation;
+        } else if (pageGenerations[page] != generation) {
+            lengthPages[page] = lengthPages[page].clone();
+            chunkPages[page] = chunkPages[page].clone();
+            pageGenerations[page] = generation;
+        }
+
+        int length = lengthPages[page][slot];
+        int chunk = chunkOf(length);
+        int offset = offsetOf(length, chunk);
+        int[][] chunks = chunkPages[page][slot];
+        if (offset == 0) {
+            if (chunks == null) {
+                chunks = new int[4][];
+            } else if (chunk == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunk * 2);
+            }
+            // Views only read chunks below their own length, so writing a new one is safe.
+            chunks[chunk] = new int[chunkSize(chunk)];
+            chunkPages[page][slot] = chunks;
+        }
+        chunks[chunk][offset] = position;
+        lengthPages[page][slot] = length + 1;
+    }
+
+
+    public int count(int id) {
+        return (prefix != null ? prefix.lists().count(id) : 0) + count(lengthPages, id);
+    }
+
+
+    public void clear() {
+        lengthPages = new int[1][];
+        chunkPages = new int[1][][][];
+        pageGenerations = new int[1];
+        prefix = null;
+    }
+
+    /**
+     * Makes the positions of the first {@code size} entries those of full sealed
+     * blocks, indexed on first use instead of one {@link #add} per entry. Only valid
+     * before any position was added, as when restoring a {@link Checkpoint}; later
+     * calls may extend the prefix.
+     */
+    void setPrefix(CompressedBlock[] blocks, int size) {
+        if (lengthPages.length != 1 || lengthPages[0] != null || (size & LogColumns.CHUNK_MASK) != 0) {
+            throw new IllegalStateException("A prefix must come before all other positions");
+        }
+        prefix = new Prefix(Arrays.copyOf(blocks, size >>> LogColumns.CHUNK_SHIFT));
+    }
+
+
+    /** Captures the positions added so far. */
+    public View view() {
+        generation++;
+        return new View(lengthPages.clone(), chunkPages.clone(), prefix);
+    }
+
+    /**
+     * Estimates the heap used by the allocated chunks and directories.
+     */
+    public long estimateMemoryBytes() {
+        long arrayHeader = 16;
+        long bytes = 3 * (arrayHeader + 4L * lengthPages.length);
+        if (prefix != null) {
+            bytes += prefix.estimateMemoryBytes();
+        }
+        for (int page = 0; page < lengthPages.length; page++) {
+            if (lengthPages[page] == null) {
+                continue;
+            }
+            bytes += 2 * (arrayHeader + 4L * PAGE_SIZE);
+            for (int slot = 0; slot < PAGE_SIZE; slot++) {
+                int[][] chunks = chunkPages[page][slot];
+                if (chunks == null) {
+                    continue;
+                }
+                bytes += arrayHeader + 4L * chunks.length;
+                for (int[] chunk : chunks) {
+                    if (chunk != null) {
+                        bytes += arrayHeader + 4L * chunk.length;
+                    }
+                }
+            }
+        }
+        return bytes;
+    }
+
+
+    private static int count(int[][] lengthPages, int id) {
+        int page = id >>> PAGE_SHIFT;
+        if (page >= lengthPages.length || lengthPages[page] == null) {
+            return 0;
+        }
+        return lengthPages[page][id & PAGE_MASK];
+    }
+
+
+    static int chunkOf(int index) {
+        if (index < GROWING_CAPACITY) {
+            return 31 - Integer.numberOfLeadingZeros(index + (1 << FIRST_CHUNK_SHIFT)) - FIRST_CHUNK_SHIFT;
+        }
+        return GROWING_CHUNKS + ((index - GROWING_CAPACITY) >>> MAX_CHUNK_SHIFT);
+    }
+
+
+    static int offsetOf(int index, int chunk) {
+        if (chunk < GROWING_CHUNKS) {
+            return index + (1 << FIRST_CHUNK_SHIFT) - (1 << (chunk + FIRST_CHUNK_SHIFT));
+        }
+        return (index - GROWING_CAPACITY) & (MAX_CHUNK_SIZE - 1);
+    }
+
+
+    static int chunkSize(int chunk) {
+        return chunk < GROWING_CHUNKS ? 1 << (chunk + FIRST_CHUNK_SHIFT) : MAX_CHUNK_SIZE;
+    }
+
+
+    /**
+     * An immutable, thread-safe view of the posting lists as they were when it was
+     * taken. Creating a view copies only the page directories.
+     */
+    public static final class View {
+        private final int[][] lengthPages;
+        private final int[][][][] chunkPages;
+        private final Prefix prefix;
+
+        View(int[][] lengthPages, int[][][][] chunkPages, Prefix prefix) {
+            this.lengthPages = lengthPages;
+            this.chunkPages = chunkPages;
+            this.prefix = prefix;
+        }
+
+        /** Returns the number of positions in the emotion's list; 0 for unknown ids. */
+        public int count(int id) {
+            return (prefix != null ? prefix.lists().count(id) : 0) + PostingLists.count(lengthPages, id);
+        }
+
+        /** Returns the {@code index}-th smallest position of the emotion's entries. */
+        public int positionAt(int id, int index) {
+            if (prefix != null) {
+                View lists = prefix.lists();
+                int count = lists.count(id);
+                if (index < count) {
+                    return lists.positionAt(id, index);
+                }
+                index -= count;
+            }
+            int chunk = chunkOf(index);
+            return chunkPages[id >>> PAGE_SHIFT][id & PAGE_MASK][chunk][offsetOf(index, chunk)];
+        }
+
+        /**
+         * Returns the index of the first position at or after {@code position} in the
+         * emotion's list, or {@link #count(int)} if there is none.
+         */
+        public int indexOf(int id, int position) {
+            int low = 0;
+            int high = count(id);
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (positionAt(id, mid) < position) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /** Builds the lists of restored entries now, if there are any, rather than on first use. */
+        void load() {
+            if (prefix != null) {
+                prefix.lists();
+            }
+        }
+    }
+
+
+    /**
+     * The positions of entries restored as full sealed blocks. The blocks never
+     * change, so the lists are built from them once, on first use, by whichever
+     * thread needs them first, and are then shared by the writer and all views.
+     */
+    static final class Prefix {
+        private final CompressedBlock[] blocks;
+        // Written before lists, read after it.
+        private PostingLists built;
+        private volatile View lists;
+
+        Prefix(CompressedBlock[] blocks) {
+            this.blocks = blocks;
+        }
+
+        View lists() {
+            View current = lists;
+            if (current != null) {
+                return current;
+            }
+            synchronized (this) {
+                if (lists == null) {
+                    PostingLists postings = new PostingLists();
+                    short[] ordinals = new short[LogColumns.CHUNK_SIZE];
+                    for (int chunk = 0; chunk < blocks.length; chunk++) {
+                        blocks[chunk].decodeOrdinals(ordinals);
+                        int base = chunk << LogColumns.CHUNK_SHIFT;
+                        for (int i = 0; i < LogColumns.CHUNK_SIZE; i++) {
+                            postings.add(ordinals[i] & 0xFFFF, base + i);
+                        }
+                    }
+                    built = postings;
+                    lists = postings.view();
+                }
+                return lists;
+            }
+        }
+
+        long estimateMemoryBytes() {
+            return lists != null ? built.estimateMemoryBytes() : 0;
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package com.example.aroxas_emotilog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * QueryPlan - How a {@link LogQuery} reads a snapshot, and the execution of that plan.
+ *
+ * The planner pushes as much of the query as it can into the indexes before any
+ * entry is read. The time range and the days of week become position ranges of
+ * the {@link DayIndex}: a binary search per sorted run for the time range, and one
+ * test per indexed day for the days of week. With an emotion filter, the
+ * positions of each emotion within those ranges are located in its
+ * {@link PostingLists} entry, again by binary search, which yields the exact
+ * number of matching entries before reading any. The plan then takes the cheapest
+ * of the access paths that apply:
+ * - {@link AccessPath#EMOTION_POSTINGS} reads only the entries of the wanted
+ *   emotions within the ranges
+ * - {@link AccessPath#TIME_INDEX} reads every entry within the ranges
+ * - {@link AccessPath#FULL_SCAN} reads every entry
+ * Conditions that no index covers, the hour of day and a {@link LogFilter}, are
+ * tested on each entry read, as is the emotion when the entries are scanned.
+ *
+ * Design Rationale:
+ * - Costs are counted in entries read, so candidates are compared on exact
+ *   numbers instead of selectivity guesses; an entry read through a posting list
+ *   costs {@link #POSTING_READ_COST} times a scanned one, since it is a random
+ *   access where a scan steps through a decoded chunk
+ * - Scans run through {@link ParallelScan}, so large ones are split over cores;
+ *   each piece aggregates into its own groups, merged on the way back
+ * - Groups are kept in an open-addressing table keyed by an int that packs the
+ *   grouped dimensions, so aggregating an entry allocates nothing
+ * - The local time of an entry is only computed when the query needs its hour of
+ *   day or groups by day of week
+ * - {@link #explain()} shows the chosen path, every candidate's cost and the
+ *   conditions left for the entries
+ *
+ * Outstanding Issues:
+ * - Like the other range queries, only raw entries are queried; compacted
+ *   entries are left out even where their daily counts could answer the query
+ * - The posting list path reads sequentially, as it is only chosen when it reads
+ *   few entries compared to a scan
+ * - An hour of day filter could be answered from the hourly rollups for counts,
+ *   but not for first and last, so it is always tested per entry
+ */
+public final class QueryPlan {
+    /** The relative cost of reading one entry through a posting list instead of a scan. */
+    static final int POSTING_READ_COST = 4;
+
+    private static final long MILLIS_PER_HOUR = 60 * 60 * 1000L;
+    // Group keys pack (ordinal, hour, day of week) as ordinal * 192 + hour * 8 + day.
+    private static final int HOUR_KEYS = 24 * 8;
+
+    private final LogQuery query;
+    private final LogColumns.View columns;
+    private final TimeZone timeZone;
+    // Candidate positions from the time index, or all positions.
+    private final int[] ranges;
+    private final boolean indexed;
+    // Known ordinals of the wanted emotions, or null without an emotion filter.
+    private final int[] ordinals;
+    // Posting list indexes [start, end) of each ordinal within each range, one
+    // ranges.length-long block per ordinal.
+    private final int[] postingBounds;
+    private final long postingEntries;
+    private final AccessPath accessPath;
+
+
+    private QueryPlan(LogQuery query, LogColumns.View columns, TimeZone timeZone, int[] ranges,
+                      boolean indexed, int[] ordinals, int[] postingBounds, long postingEntries) {
+        this.query = query;
+        this.columns = columns;
+        this.timeZone = timeZone;
+        this.ranges = ranges;
+        this.indexed = indexed;
+        this.ordinals = ordinals;
+        this.postingBounds = postingBounds;
+        this.postingEntries = postingEntries;
+        if (ordinals != null && postingEntries * POSTING_READ_COST < DayIndex.countPositions(ranges)) {
+            accessPath = AccessPath.EMOTION_POSTINGS;
+        } else {
+            accessPath = indexed ? AccessPath.TIME_INDEX : AccessPath.FULL_SCAN;
+        }
+    }
+
+    /**
+     * Plans a query against a snapshot. Planning reads no entries: it costs a few
+     * binary searches per sorted run, emotion and candidate range.
+     */
+    static QueryPlan plan(LogSnapshot snapshot, LogQuery query) {
+        LogColumns.View columns = snapshot.columns();
+        DayIndex.View days = snapshot.days();
+        int[] ranges = new int[] { 0, columns.size() };
+        boolean indexed = false;
+        if (query.hasTimeRange()) {
+            ranges = days.rangesBetween(query.from(), query.to(), columns::timestampAt);
+            indexed = true;
+        }
+        if (query.dayMask() != LogQuery.ALL_DAYS) {
+            int dayMask = query.dayMask();
+            int[] dayRanges = days.rangesWhereDay(day -> (dayMask & 1 << LogQuery.dayOfWeek(day)) != 0);
+            ranges = indexed ? DayIndex.intersectRanges(ranges, dayRanges) : dayRanges;
+            indexed = true;
+        }
+
+        int[] ordinals = null;
+        int[] postingBounds = null;
+        long postingEntries = 0;
+        if (query.emotions() != null) {
+            ordinals = new int[query.emotions().length];
+            int known = 0;
+            for (String emotion : query.emotions()) {
+                int ordinal = columns.ordinalOf(emotion);
+                if (ordinal >= 0) {
+                    ordinals[known++] = ordinal;
+                }
+            }
+            ordinals = Arrays.copyOf(ordinals, known);
+            PostingLists.View postings = columns.postings();
+            postingBounds = new int[ordinals.length * ranges.length];
+            for (int o = 0; o < ordinals.length; o++) {
+                for (int r = 0; r < ranges.length; r += 2) {
+                    int start = postings.indexOf(ordinals[o], ranges[r]);
+                    int end = postings.indexOf(ordinals[o], ranges[r + 1]);
+                    postingBounds[o * ranges.length + r] = start;
+                    postingBounds[o * ranges.length + r + 1] = end;
+                    postingEntries += end - start;
+                }
+            }
+        }
+        return new QueryPlan(query, columns, days.getTimeZone(), ranges, indexed, ordinals, postingBounds,
+                postingEntries);
+    }
+
+
+    public LogQuery getQuery() {
+        return query;
+    }
+
+
+    public AccessPath getAccessPath() {
+        return accessPath;
+    }
+
+
+    /** Returns the number of entries the chosen access path reads. */
+    public long getEntriesRead() {
+        return accessPath == AccessPath.EMOTION_POSTINGS ? postingEntries : DayIndex.countPositions(ranges);
+    }
+
+    /**
+     * Describes the plan, one line each for the query, the chosen access path, the
+     * conditions tested per entry and the cost of every candidate path.
+     */
+    public String explain() {
+        StringBuilder text = new StringBuilder();
+        text.append("query: ").append(query).append('\n');
+
+        text.append("access: ").append(accessPath);
+        int rangeCount = ranges.length / 2;
+        if (accessPath == AccessPath.EMOTION_POSTINGS) {
+            text.append(", ").append(ordinals.length).append(ordinals.length == 1 ? " emotion" : " emotions");
+            if (indexed) {
+                text.append(" within ").append(rangeCount).append(" time index ")
+                    .append(rangeCount == 1 ? "range" : "ranges");
+            }
+        } else if (accessPath == AccessPath.TIME_INDEX) {
+            text.append(", ").append(rangeCount).append(rangeCount == 1 ? " range" : " ranges");
+        }
+        text.append(", reads ").append(getEntriesRead()).append(" of ").append(columns.size())
+            .append(" entries\n");
+
+        List<String> residual = new ArrayList<>();
+        if (ordinals != null && accessPath != AccessPath.EMOTION_POSTINGS) {
+            residual.add("emotion");
+        }
+        if (query.hourMask() != LogQuery.ALL_HOURS) {
+            residual.add("hour of day");
+        }
+        if (query.filter() != null) {
+            residual.add("filter");
+        }
+        text.append("residual: ").append(residual.isEmpty() ? "none" : String.join(", ", residual)).append('\n');
+
+        text.append("candidates: ");
+        if (ordinals != null) {
+            text.append(AccessPath.EMOTION_POSTINGS).append(" cost ").append(postingEntries * POSTING_READ_COST)
+                .append(", ");
+        }
+        if (indexed) {
+            text.append(AccessPath.TIME_INDEX).append(" cost ").append(DayIndex.countPositions(ranges)).append(", ");
+        }
+        text.append(AccessPath.FULL_SCAN).append(" cost ").append(columns.size());
+        return text.toString();
+    }
+
+
+    @Override
+    public String toString() {
+        return explain();
+    }
+
+
+    /** Runs the plan and aggregates, orders and limits the matching entries. */
+    QueryResult execute() {
+        Groups groups;
+        if (accessPath == AccessPath.EMOTION_POSTINGS) {
+            groups = readPostings(new Matcher(null));
+        } else {
+            boolean[] wanted = null;
+            if (ordinals != null) {
+                wanted = new boolean[columns.emotionCount()];
+                for (int ordinal : ordinals) {
+                    wanted[ordinal] = true;
+                }
+            }
+            groups = ParallelScan.aggregate(columns, ranges, new Matcher(wanted));
+        }
+        return new QueryResult(rows(groups), this);
+    }
+
+
+    private Groups readPostings(Matcher matcher) {
+        Groups groups = matcher.newPartial();
+        PostingLists.View postings = columns.postings();
+        for (int o = 0; o < ordinals.length; o++) {
+            int ordinal = ordinals[o];
+            LogColumns.Reader reader = columns.reader();
+            for (int r = 0; r < ranges.length; r += 2) {
+                int end = postingBounds[o * ranges.length + r + 1];
+                for (int i = postingBounds[o * ranges.length + r]; i < end; i++) {
+                    matcher.add(groups, reader.timestampAt(postings.positionAt(ordinal, i)), ordinal);
+                }
+            }
+        }
+        return groups;
+    }
+
+
+    private List<QueryResult.Row> rows(Groups groups) {
+        boolean byEmotion = query.groupsBy(LogQuery.Dimension.EMOTION);
+        boolean byHour = query.groupsBy(LogQuery.Dimension.HOUR_OF_DAY);
+        boolean byDay = query.groupsBy(LogQuery.Dimension.DAY_OF_WEEK);
+        List<QueryResult.Row> rows = new ArrayList<>(groups.size);
+        for (int slot = 0; slot < groups.keys.length; slot++) {
+            int key = groups.keys[slot];
+            if (key < 0) {
+                continue;
+            }
+            rows.add(new QueryResult.Row(byEmotion ? columns.emotionName(key / HOUR_KEYS) : null,
+                    byHour ? key % HOUR_KEYS / 8 : -1, byDay ? key % 8 : 0,
+                    groups.counts[slot], groups.firsts[slot], groups.lasts[slot]));
+        }
+
+        Comparator<QueryResult.Row> order = Comparator
+                .comparing((QueryResult.Row row) -> row.getEmotion() != null ? row.getEmotion() : "")
+                .thenComparingInt(QueryResult.Row::getHourOfDay)
+                // Monday first, like the weekly rollups.
+                .thenComparingInt(row -> (row.getDayOfWeek() + 5) % 7);
+        if (query.orderBy() != null) {
+            Comparator<QueryResult.Row> byAggregate;
+            switch (query.orderBy()) {
+                case COUNT:
+                    byAggregate = Comparator.comparingInt(QueryResult.Row::getCount);
+                    break;
+                case FIRST:
+                    byAggregate = Comparator.comparingLong(QueryResult.Row::getFirst);
+                    break;
+                default:
+                    byAggregate = Comparator.comparingLong(QueryResult.Row::getLast);
+                    break;
+            }
+            order = (query.isDescending() ? byAggregate.reversed() : byAggregate).thenComparing(order);
+        }
+        rows.sort(order);
+        return rows.size() > query.limit() ? new ArrayList<>(rows.subList(0, query.limit())) : rows;
+    }
+
+
+    /** The ways a plan can read the candidate entries. */
+    public enum AccessPath {
+        /** Every raw entry is read. */
+        FULL_SCAN,
+        /** Every entry in the day index ranges of the time range and days of week is read. */
+        TIME_INDEX,
+        /** Only the entries of the wanted emotions are read, within the day index ranges if any. */
+        EMOTION_POSTINGS
+    }
+
+
+    /**
+     * Tests the conditions left after the access path and adds matching entries to
+     * their group. Shared by all pieces of a parallel scan, so it holds no state
+     * that changes while entries are added.
+     */
+    private final class Matcher implements ParallelScan.Aggregator<Groups> {
+        private final boolean[] wanted;
+        private final int hourMask = query.hourMask();
+        private final LogFilter filter = query.filter();
+        private final boolean byEmotion = query.groupsBy(LogQuery.Dimension.EMOTION);
+        private final boolean byHour = query.groupsBy(LogQuery.Dimension.HOUR_OF_DAY);
+        private final boolean byDay = query.groupsBy(LogQuery.Dimension.DAY_OF_WEEK);
+        private final boolean needsLocalTime = hourMask != LogQuery.ALL_HOURS || byHour || byDay;
+
+        Matcher(boolean[] wanted) {
+            this.wanted = wanted;
+        }
+
+        @Override
+        public Groups newPartial() {
+            return new Groups();
+        }
+
+        @Override
+        public void add(Groups groups, long timestamp, int ordinal) {
+            if (wanted != null && (ordinal >= wanted.length || !wanted[ordinal])) {
+                return;
+            }
+            int hour = 0;
+            int day = 0;
+            if (needsLocalTime) {
+                long local = timestamp + timeZone.getOffset(timestamp);
+                hour = (int) (Math.floorMod(local, DayIndex.MILLIS_PER_DAY) / MILLIS_PER_HOUR);
+                if ((hourMask & 1 << hour) == 0) {
+                    return;
+                }
+                if (byDay) {
+                    day = LogQuery.dayOfWeek(Math.floorDiv(local, DayIndex.MILLIS_PER_DAY));
+                }
+            }
+            if (filter != null && !filter.test(timestamp, columns.emotionName(ordinal))) {
+                return;
+            }
+            int key = (byEmotion ? ordinal * HOUR_KEYS : 0) + (byHour ? hour * 8 : 0) + (byDay ? day : 0);
+            groups.add(key, timestamp);
+        }
+
+        @Override
+        public Groups merge(Groups left, Groups right) {
+            for (int slot = 0; slot < right.keys.length; slot++) {
+                if (right.keys[slot] >= 0) {
+                    left.merge(right.keys[slot], right.counts[slot], right.firsts[slot], right.lasts[slot]);
+                }
+            }
+            return left;
+        }
+    }
+
+
+    /** Count, first and last timestamp per group key, in an open-addressing table. */
+    static final class Groups {
+        int[] keys = newKeys(16);
+        int[] counts = new int[16];
+        long[] firsts = new long[16];
+        long[] lasts = new long[16];
+        int size;
+
+
+        void add(int key, long timestamp) {
+            merge(key, 1, timestamp, timestamp);
+        }
+
+
+        void merge(int key, int count, long first, long last) {
+            int slot = slotOf(key);
+            if (keys[slot] < 0) {
+                if (2 * (size + 1) > keys.length) {
+                    grow();
+                    slot = slotOf(key);
+                }
+                keys[slot] = key;
+                firsts[slot] = first;
+                lasts[slot] = last;
+                size++;
+            } else {
+                firsts[slot] = Math.min(firsts[slot], first);
+                lasts[slot] = Math.max(lasts[slot], last);
+            }
+            counts[slot] += count;
+        }
+
+
+        // The slot holding key, or the empty slot where it belongs.
+        private int slotOf(int key) {
+            int mask = keys.length - 1;
+            int hash = key * 0x9E3779B9;
+            int slot = (hash ^ hash >>> 16) & mask;
+            while (keys[slot] >= 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldCounts = counts;
+            long[] oldFirsts = firsts;
+            long[] oldLasts = lasts;
+            keys = newKeys(oldKeys.length * 2);
+            counts = new int[keys.length];
+            firsts = new long[keys.length];
+            lasts = new long[keys.length];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] >= 0) {
+                    int slot = slotOf(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    counts[slot] = oldCounts[i];
+                    firsts[slot] = oldFirsts[i];
+                    lasts[slot] = oldLasts[i];
+                }
+            }
+        }
+
+
+        private static int[] newKeys(int capacity) {
+            int[] keys = new int[capacity];
+            Arrays.fill(keys, -1);
+            return keys;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.aroxas_emotilog;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * QueryResult - The rows a {@link LogQuery} returned, together with the plan that produced them.
+ *
+ * Design Rationale:
+ * - Rows carry every aggregate, whichever one the query was ordered by, since
+ *   computing all three costs no more than computing one
+ * - Dimensions the query did not group by are reported as absent rather than
+ *   given a made-up value
+ */
+public final class QueryResult {
+    private final List<Row> rows;
+    private final QueryPlan plan;
+
+
+    QueryResult(List<Row> rows, QueryPlan plan) {
+        this.rows = Collections.unmodifiableList(rows);
+        this.plan = plan;
+    }
+
+
+    /** Returns the rows in the query's order; empty if no entry matched. */
+    public List<Row> getRows() {
+        return rows;
+    }
+
+
+    public QueryPlan getPlan() {
+        return plan;
+    }
+
+
+    /** See {@link QueryPlan#explain()}. */
+    public String explain() {
+        return plan.explain();
+    }
+
+
+    /** One group of matching entries and its aggregates. */
+    public static final class Row {
+        private final String emotion;
+        private final int hourOfDay;
+        private final int dayOfWeek;
+        private final int count;
+        private final long first;
+        private final long last;
+
+
+        Row(String emotion, int hourOfDay, int dayOfWeek, int count, long first, long last) {
+            this.emotion = emotion;
+            this.hourOfDay = hourOfDay;
+            this.dayOfWeek = dayOfWeek;
+            this.count = count;
+            this.first = first;
+            this.last = last;
+        }
+
+
+        /** Returns the group's emotion, or null if the query did not group by emotion. */
+        public String getEmotion() {
+            return emotion;
+        }
+
+
+        /** Returns the group's local hour, or -1 if the query did not group by hour of day. */
+        public int getHourOfDay() {
+            return hourOfDay;
+        }
+
+
+        /** Returns the group's {@link java.util.Calendar} day of week, or 0 if not grouped by it. */
+        public int getDayOfWeek() {
+            return dayOfWeek;
+        }
+
+
+        public int getCount() {
+            return count;
+        }
+
+
+        /** Returns the earliest timestamp in the group. */
+        public long getFirst() {
+            return first;
+        }
+
+
+        /** Returns the latest timestamp in the group. */
+        public long getLast() {
+            return last;
+        }
+
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            if (emotion != null) {
+                text.append(emotion).append(' ');
+            }
+            if (hourOfDay >= 0) {
+                text.append("hour ").append(hourOfDay).append(' ');
+            }
+            if (dayOfWeek > 0) {
+                text.append("day ").append(dayOfWeek).append(' ');
+            }
+            return text.append("count ").append(count).append(" first ").append(first)
+                    .append(" last ").append(last).toString();
+        }
+    }
+}
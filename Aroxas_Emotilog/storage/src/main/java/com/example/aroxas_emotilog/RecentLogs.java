@@ -0,0 +1,155 @@
+package com.example.aroxas_emotilog;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * RecentLogs - A fixed-capacity ring of the most recently logged entries.
+ *
+ * A {@link LogStore} adds every entry it publishes, so "what was logged last"
+ * never depends on the history size: reading the newest entries costs at most
+ * {@link #getCapacity()} steps, and reading those of one day stops at the first
+ * entry from an earlier day.
+ *
+ * Design Rationale:
+ * - One writer, the holder of the store's write lock, and any number of readers
+ *   without locks: the writer claims a slot before overwriting it and publishes it
+ *   afterwards, and a reader that finds the slot it read was claimed meanwhile
+ *   starts over from the newest entry
+ * - Slots are atomic arrays and both counters are volatile, so every access is a
+ *   volatile one and a reader that saw an overwritten slot also sees its claim
+ * - Readers fill caller-supplied arrays and never allocate, so a screen can read
+ *   the ring on every frame
+ * - Entries are kept in the order they were logged, not by timestamp
+ * - Each entry is tagged with the version of the {@link LogSnapshot} that first held
+ *   it, so a reader working on a snapshot can leave out entries logged after it
+ *
+ * Outstanding Issues:
+ * - Entries imported with old timestamps count as recent, and end a day-filtered
+ *   read early if they are from an earlier day
+ * - A reader can in theory be restarted indefinitely by a writer that laps the
+ *   ring faster than it is read
+ * - A read for an older snapshot returns fewer entries once so many have been logged
+ *   since that the ring no longer holds the snapshot's newest ones
+ */
+public final class RecentLogs {
+    private final int capacity;
+    private final AtomicLongArray timestamps;
+    private final AtomicReferenceArray<String> emotions;
+    private final AtomicLongArray versions;
+    // Sequence numbers: slots of entries before claimed - capacity may be overwritten,
+    // entries before published are complete.
+    private volatile long claimed;
+    private volatile long published;
+
+
+    public RecentLogs(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        this.capacity = capacity;
+        this.timestamps = new AtomicLongArray(capacity);
+        this.emotions = new AtomicReferenceArray<>(capacity);
+        this.versions = new AtomicLongArray(capacity);
+    }
+
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+
+    /** Returns the number of entries added so far, including those overwritten since. */
+    public long getAddedCount() {
+        return published;
+    }
+
+    /**
+     * Adds an entry, overwriting the oldest one once the ring is full. Must only be
+     * called by one thread at a time.
+     */
+    public void add(long timestamp, String emotion) {
+        add(timestamp, emotion, 0);
+    }
+
+    /**
+     * Adds an entry like {@link #add(long, String)}, tagged with the version of the
+     * first snapshot that holds it.
+     */
+    public void add(long timestamp, String emotion, long version) {
+        long sequence = published;
+        claimed = sequence + 1;
+        int slot = (int) (sequence % capacity);
+        timestamps.set(slot, timestamp);
+        emotions.set(slot, emotion);
+        versions.set(slot, version);
+        published = sequence + 1;
+    }
+
+    /**
+     * Copies the newest entries, newest first, into the given arrays, as many as fit
+     * and at most {@link #getCapacity()}. Never blocks and never allocates.
+     *
+     * @return the number of entries copied
+     */
+    public int copyRecent(long[] timestampsOut, String[] emotionsOut) {
+        return copy(null, 0, Long.MAX_VALUE, timestampsOut, emotionsOut);
+    }
+
+    /**
+     * Copies the newest entries of one local day, newest first, like {@link #copyRecent}.
+     * Entries from later days are skipped; the first entry from an earlier day ends the
+     * read, so it costs no more than the number of entries logged since that day began.
+     *
+     * @param days decides which local day an entry belongs to
+     */
+    public int copyRecentForDay(DayIndex.View days, long epochDay, long[] timestampsOut, String[] emotionsOut) {
+        return copy(days, epochDay, Long.MAX_VALUE, timestampsOut, emotionsOut);
+    }
+
+    /**
+     * Like {@link #copyRecentForDay(DayIndex.View, long, long[], String[])}, but skips
+     * entries tagged with a version above {@code maxVersion}, so that the result matches
+     * the snapshot of that version as long as the ring still holds its newest entries.
+     */
+    public int copyRecentForDay(DayIndex.View days, long epochDay, long maxVersion,
+                                long[] timestampsOut, String[] emotionsOut) {
+        return copy(days, epochDay, maxVersion, timestampsOut, emotionsOut);
+    }
+
+
+    private int copy(DayIndex.View days, long epochDay, long maxVersion, long[] timestampsOut, String[] emotionsOut) {
+        int limit = Math.min(timestampsOut.length, emotionsOut.length);
+        restart:
+        while (true) {
+            long end = published;
+            long oldest = Math.max(0, end - capacity);
+            int count = 0;
+            for (long sequence = end - 1; sequence >= oldest && count < limit; sequence--) {
+                int slot = (int) (sequence % capacity);
+                long timestamp = timestamps.get(slot);
+                String emotion = emotions.get(slot);
+                long version = versions.get(slot);
+                if (sequence < claimed - capacity) {
+                    // Overwritten while it was read; the newest entries have changed too.
+                    continue restart;
+                }
+                if (version > maxVersion) {
+                    continue;
+                }
+                if (days != null) {
+                    long day = days.epochDay(timestamp);
+                    if (day < epochDay) {
+                        break;
+                    }
+                    if (day > epochDay) {
+                        continue;
+                    }
+                }
+                timestampsOut[count] = timestamp;
+                emotionsOut[count++] = emotion;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.aroxas_emotilog;
+
+/**
+ * RetentionPolicy - Decides how many log entries LogStorage keeps individually.
+ *
+ * Entries are kept raw, with their own timestamps, while they are within the
+ * newest {@code maxDays} local days and among the newest {@code maxEntries}
+ * entries. Whichever limit is reached first applies; older entries are compacted
+ * into a {@link CompactedTier} of per-day, per-emotion counts.
+ *
+ * Design Rationale:
+ * - A limit of 0 means "no limit", so {@link #KEEP_ALL} never compacts anything
+ * - Compaction is only worth starting once a limit is exceeded by a margin, so
+ *   {@link #isExceeded} allows some slack while {@link #compactionCut} trims
+ *   exactly to the limits; this keeps compaction from running on every append
+ * - The cut is a position in log order: the entries before it are compacted and
+ *   everything after stays raw, even if the clock was set back at some point
+ */
+public final class RetentionPolicy {
+    public static final RetentionPolicy KEEP_ALL = new RetentionPolicy(0, 0);
+
+    private final int maxDays;
+    private final int maxEntries;
+
+
+    /**
+     * @param maxDays    number of local days, today included, whose entries stay raw; 0 for no limit
+     * @param maxEntries number of newest entries that stay raw; 0 for no limit
+     */
+    public RetentionPolicy(int maxDays, int maxEntries) {
+        if (maxDays < 0 || maxEntries < 0) {
+            throw new IllegalArgumentException("Retention limits must not be negative");
+        }
+        this.maxDays = maxDays;
+        this.maxEntries = maxEntries;
+    }
+
+
+    public int getMaxDays() {
+        return maxDays;
+    }
+
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+
+    public boolean keepsAll() {
+        return maxDays == 0 && maxEntries == 0;
+    }
+
+    /**
+     * Cheap check, run after every publication, for whether the raw entries of a
+     * snapshot exceed the policy by enough to start a compaction.
+     */
+    boolean isExceeded(LogSnapshot snapshot, long now) {
+        LogColumns.View columns = snapshot.columns();
+        int size = columns.size();
+        if (size == 0) {
+            return false;
+        }
+        if (maxEntries > 0 && size > maxEntries + Math.max(1, maxEntries / 16)) {
+            return true;
+        }
+        DayIndex.View days = snapshot.days();
+        return maxDays > 0 && days.epochDay(columns.timestampAt(0)) < firstKeptDay(days, now);
+    }
+
+    /**
+     * Returns the number of leading raw entries that the policy compacts, from
+     * zero up to the number of entries in {@code columns}.
+     */
+    int compactionCut(LogColumns.View columns, DayIndex.View days, long now) {
+        int size = columns.size();
+        int cut = maxEntries > 0 ? Math.max(0, size - maxEntries) : 0;
+        if (maxDays > 0) {
+            long firstKeptDay = firstKeptDay(days, now);
+            LogColumns.Reader reader = columns.reader();
+            while (cut < size && days.epochDay(reader.timestampAt(cut)) < firstKeptDay) {
+                cut++;
+            }
+        }
+        return cut;
+    }
+
+
+    private long firstKeptDay(DayIndex.View days, long now) {
+        return days.epochDay(now) - maxDays + 1;
+    }
+
+
+    @Override
+    public String toString() {
+        return "RetentionPolicy{maxDays=" + maxDays + ", maxEntries=" + maxEntries + "}";
+    }
+}
@@ -0,0 +1,367 @@
+package com.example.aroxas_emotilog;
+
+import java.util.Arrays;
+import java.util.TimeZone;
+
+/**
+ * RollupTable - Log counts per (time bucket, emotion) at one resolution.
+ *
+ * A bucket is a local hour, a local calendar day or an ISO week (Monday to
+ * Sunday), numbered from the epoch so that consecutive buckets have consecutive
+ * numbers. Every appended entry increments its bucket's total and the count of
+ * its emotion; range queries then read one row per bucket and never touch the
+ * log entries themselves.
+ *
+ * Like {@link LogColumns}, a table has a single writer and readers use a
+ * {@link View}. Rows and the chunks that hold them are copied the first time
+ * they are changed after a view was taken, so a view never sees a count change.
+ *
+ * Design Rationale:
+ * - Buckets are kept in fixed-size chunks under a directory, so growing the
+ *   table in either direction never copies existing rows
+ * - A row stores only the emotions logged in that bucket, as (ordinal, count)
+ *   pairs, since most buckets hold a handful of emotions
+ * - Copy-on-write is tracked with a generation number per row and chunk instead
+ *   of a flag per published view; an append usually copies one row, one chunk
+ *   and the small directory once per publication
+ * - In the hour before clocks go back, the repeated local hour falls into one
+ *   bucket, matching how {@link DayIndex} assigns entries to local days
+ */
+public final class RollupTable {
+
+    /** Receives the non-zero counts of a table, bucket by bucket. */
+    public interface CountVisitor {
+        void onCount(long bucket, int ordinal, int count);
+    }
+
+    public enum Resolution {
+        HOUR,
+        DAY,
+        ISO_WEEK;
+
+        /** Returns the bucket containing the timestamp in the given time zone. */
+        public long bucketOf(long timestamp, TimeZone timeZone) {
+            return bucketOfLocal(timestamp + timeZone.getOffset(timestamp));
+        }
+
+
+        long bucketOfLocal(long localMillis) {
+            switch (this) {
+                case HOUR:
+                    return Math.floorDiv(localMillis, MILLIS_PER_HOUR);
+                case DAY:
+                    return Math.floorDiv(localMillis, DayIndex.MILLIS_PER_DAY);
+                default:
+                    // Epoch day 0 was a Thursday; shift so that weeks start on Monday.
+                    return Math.floorDiv(Math.floorDiv(localMillis, DayIndex.MILLIS_PER_DAY) + 3, 7);
+            }
+        }
+
+        /** Returns the bucket containing the start of a local epoch day. */
+        public long bucketOfEpochDay(long epochDay) {
+            return bucketOfLocal(epochDay * DayIndex.MILLIS_PER_DAY);
+        }
+
+        /** Returns the local epoch day on which a bucket starts. */
+        public long firstEpochDay(long bucket) {
+            switch (this) {
+                case HOUR:
+                    return Math.floorDiv(bucket, 24);
+                case DAY:
+                    return bucket;
+                default:
+                    return bucket * 7 - 3;
+            }
+        }
+    }
+
+    static final long MILLIS_PER_HOUR = 60L * 60 * 1000;
+    static final int CHUNK_SHIFT = 8;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // Row layout: [generation, total, ordinal, count, ordinal, count, ...]
+    private static final int ROW_GENERATION = 0;
+    private static final int ROW_TOTAL = 1;
+    private static final int ROW_PAIRS = 2;
+    private static final int[][][] NO_CHUNKS = new int[0][][];
+
+    private final Resolution resolution;
+    private final TimeZone timeZone;
+
+    private int[][][] chunks = NO_CHUNKS;
+    private int[] chunkGenerations = new int[0];
+    private int directoryGeneration;
+    private long baseBucket;
+    private long minBucket = Long.MAX_VALUE;
+    private long maxBucket = Long.MIN_VALUE;
+    // Bumped when a view is taken after a change; anything older is shared with a view.
+    private int generation = 1;
+    private boolean changedSinceView;
+
+
+    public RollupTable(Resolution resolution, TimeZone timeZone) {
+        this.resolution = resolution;
+        this.timeZone = (TimeZone) timeZone.clone();
+    }
+
+
+    public Resolution getResolution() {
+        return resolution;
+    }
+
+
+    public void add(long timestamp, int ordinal) {
+        addLocal(timestamp + timeZone.getOffset(timestamp), ordinal);
+    }
+
+    /** Adds an entry given its local wall-clock time, i.e. timestamp plus zone offset. */
+    void addLocal(long localMillis, int ordinal) {
+        addLocal(localMillis, ordinal, 1);
+    }
+
+    /** Adds {@code count} entries of one emotion at a local wall-clock time. */
+    void addLocal(long localMillis, int ordinal, int count) {
+        long bucket = resolution.bucketOfLocal(localMillis);
+        ensureCovers(bucket);
+        int offset = (int) (bucket - baseBucket);
+        int chunk = offset >>> CHUNK_SHIFT;
+
+        int[][] rows = writableChunk(chunk);
+        int slot = offset & CHUNK_MASK;
+        int[] row = rows[slot];
+        int pair;
+        if (row == null) {
+            row = new int[] { generation, 0, ordinal, 0 };
+            pair = ROW_PAIRS;
+        } else if ((pair = findPair(row, ordinal)) < 0) {
+            row = Arrays.copyOf(row, row.length + 2);
+            pair = row.length - 2;
+            row[pair] = ordinal;
+            row[ROW_GENERATION] = generation;
+        } else if (row[ROW_GENERATION] != generation) {
+            row = row.clone();
+            row[ROW_GENERATION] = generation;
+        }
+        row[ROW_TOTAL] += count;
+        row[pair + 1] += count;
+        rows[slot] = row;
+
+        minBucket = Math.min(minBucket, bucket);
+        maxBucket = Math.max(maxBucket, bucket);
+        changedSinceView = true;
+    }
+
+
+    /** Adds {@code count} entries of one emotion to a bucket, as read from a {@link Checkpoint}. */
+    void addBucket(long bucket, int ordinal, int count) {
+        long localMillis = resolution == Resolution.HOUR ? bucket * MILLIS_PER_HOUR
+                : resolution.firstEpochDay(bucket) * DayIndex.MILLIS_PER_DAY;
+        addLocal(localMillis, ordinal, count);
+    }
+
+
+    public void clear() {
+        chunks = NO_CHUNKS;
+        chunkGenerations = new int[0];
+        minBucket = Long.MAX_VALUE;
+        maxBucket = Long.MIN_VALUE;
+        changedSinceView = true;
+    }
+
+    /** Returns a read-only view of the counts added so far. */
+    public View view() {
+        if (changedSinceView) {
+            generation++;
+            changedSinceView = false;
+        }
+        return new View(resolution, timeZone, chunks, baseBucket, minBucket, maxBucket);
+    }
+
+
+    // Grows the directory so that it has a chunk slot for the bucket.
+    private void ensureCovers(long bucket) {
+        if (chunks.length == 0) {
+            baseBucket = bucket & ~(long) CHUNK_MASK;
+        }
+        if (bucket < baseBucket) {
+            int prepend = (int) ((baseBucket - bucket + CHUNK_MASK) >>> CHUNK_SHIFT);
+            int[][][] grown = new int[chunks.length + prepend][][];
+            System.arraycopy(chunks, 0, grown, prepend, chunks.length);
+            int[] grownGenerations = new int[grown.length];
+            System.arraycopy(chunkGenerations, 0, grownGenerations, prepend, chunkGenerations.length);
+            chunks = grown;
+            chunkGenerations = grownGenerations;
+            directoryGeneration = generation;
+            baseBucket -= (long) prepend << CHUNK_SHIFT;
+        }
+        int chunk = (int) ((bucket - baseBucket) >>> CHUNK_SHIFT);
+        if (chunk >= chunks.length) {
+            int length = Math.max(chunk + 1, chunks.length * 2);
+            chunks = Arrays.copyOf(chunks, length);
+            chunkGenerations = Arrays.copyOf(chunkGenerations, length);
+            directoryGeneration = generation;
+        }
+    }
+
+
+    private int[][] writableChunk(int chunk) {
+        if (directoryGeneration != generation) {
+            chunks = chunks.clone();
+            directoryGeneration = generation;
+        }
+        int[][] rows = chunks[chunk];
+        if (rows == null) {
+            rows = new int[CHUNK_SIZE][];
+        } else if (chunkGenerations[chunk] != generation) {
+            rows = rows.clone();
+        }
+        chunks[chunk] = rows;
+        chunkGenerations[chunk] = generation;
+        return rows;
+    }
+
+
+    private static int findPair(int[] row, int ordinal) {
+        for (int i = ROW_PAIRS; i < row.length; i += 2) {
+            if (row[i] == ordinal) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Immutable view of a rollup table. Bucket ranges are half-open:
+     * {@code [fromBucket, toBucket)}.
+     */
+    public static final class View {
+        private final Resolution resolution;
+        private final TimeZone timeZone;
+        private final int[][][] chunks;
+        private final long baseBucket;
+        private final long minBucket;
+        private final long maxBucket;
+
+        View(Resolution resolution, TimeZone timeZone, int[][][] chunks, long baseBucket,
+             long minBucket, long maxBucket) {
+            this.resolution = resolution;
+            this.timeZone = timeZone;
+            this.chunks = chunks;
+            this.baseBucket = baseBucket;
+            this.minBucket = minBucket;
+            this.maxBucket = maxBucket;
+        }
+
+
+        public Resolution getResolution() {
+            return resolution;
+        }
+
+
+        public long bucketOf(long timestamp) {
+            return resolution.bucketOf(timestamp, timeZone);
+        }
+
+        /** Returns true if no entry has been counted. */
+        public boolean isEmpty() {
+            return minBucket > maxBucket;
+        }
+
+        /** Returns the first bucket holding any entry; only meaningful if not empty. */
+        public long getFirstBucket() {
+            return minBucket;
+        }
+
+        /** Returns the last bucket holding any entry; only meaningful if not empty. */
+        public long getLastBucket() {
+            return maxBucket;
+        }
+
+
+        public int total(long bucket) {
+            int[] row = row(bucket);
+            return row != null ? row[ROW_TOTAL] : 0;
+        }
+
+
+        public int count(long bucket, int ordinal) {
+            int[] row = row(bucket);
+            if (row == null) {
+                return 0;
+            }
+            int pair = findPair(row, ordinal);
+            return pair >= 0 ? row[pair + 1] : 0;
+        }
+
+        /** Returns the total of each bucket in {@code [fromBucket, toBucket)}. */
+        public int[] totals(long fromBucket, long toBucket) {
+            int[] totals = new int[checkedLength(fromBucket, toBucket)];
+            for (int i = 0; i < totals.length; i++) {
+                totals[i] = total(fromBucket + i);
+            }
+            return totals;
+        }
+
+        /** Returns the count of one emotion in each bucket of {@code [fromBucket, toBucket)}. */
+        public int[] counts(long fromBucket, long toBucket, int ordinal) {
+            int[] counts = new int[checkedLength(fromBucket, toBucket)];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = count(fromBucket + i, ordinal);
+            }
+            return counts;
+        }
+
+        /** Returns the count of every emotion over {@code [fromBucket, toBucket)}, by ordinal. */
+        public int[] countsByEmotion(long fromBucket, long toBucket, int emotionCount) {
+            int[] counts = new int[emotionCount];
+            long from = Math.max(fromBucket, minBucket);
+            long to = Math.min(toBucket, maxBucket + 1);
+            for (long bucket = from; bucket < to; bucket++) {
+                int[] row = row(bucket);
+                if (row == null) {
+                    continue;
+                }
+                for (int i = ROW_PAIRS; i < row.length; i += 2) {
+                    if (row[i] < emotionCount) {
+                        counts[row[i]] += row[i + 1];
+                    }
+                }
+            }
+            return counts;
+        }
+
+        /** Visits every non-zero (bucket, emotion) count in bucket order. */
+        public void forEach(CountVisitor visitor) {
+            for (long bucket = minBucket; bucket <= maxBucket; bucket++) {
+                int[] row = row(bucket);
+                if (row == null) {
+                    continue;
+                }
+                for (int i = ROW_PAIRS; i < row.length; i += 2) {
+                    visitor.onCount(bucket, row[i], row[i + 1]);
+                }
+            }
+        }
+
+
+        private int[] row(long bucket) {
+            if (bucket < minBucket || bucket > maxBucket) {
+                return null;
+            }
+            long offset = bucket - baseBucket;
+            int[][] rows = chunks[(int) (offset >>> CHUNK_SHIFT)];
+            return rows != null ? rows[(int) offset & CHUNK_MASK] : null;
+        }
+
+
+        private static int checkedLength(long fromBucket, long toBucket) {
+            long length = toBucket - fromBucket;
+            if (length < 0 || length > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("Invalid bucket range: " + fromBucket + " to " + toBucket);
+            }
+            return (int) length;
+        }
+    }
+}
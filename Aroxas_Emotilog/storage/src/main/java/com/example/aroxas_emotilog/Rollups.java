@@ -0,0 +1,119 @@
+package com.example.aroxas_emotilog;
+
+import java.util.TimeZone;
+
+/**
+ * Rollups - Hourly, daily and ISO-weekly {@link RollupTable}s kept side by side.
+ *
+ * LogStorage adds every appended entry here and publishes a {@link View} with
+ * each {@link LogSnapshot}, so trend queries over any range read one row per
+ * bucket instead of scanning entries.
+ *
+ * Design Rationale:
+ * - The zone offset is looked up once per entry and shared by all three tables
+ * - Same single-writer, immutable-view contract as {@link RollupTable}
+ */
+public final class Rollups {
+    private final TimeZone timeZone;
+    private final RollupTable hours;
+    private final RollupTable days;
+    private final RollupTable weeks;
+
+
+    public Rollups(TimeZone timeZone) {
+        this.timeZone = (TimeZone) timeZone.clone();
+        this.hours = new RollupTable(RollupTable.Resolution.HOUR, timeZone);
+        this.days = new RollupTable(RollupTable.Resolution.DAY, timeZone);
+        this.weeks = new RollupTable(RollupTable.Resolution.ISO_WEEK, timeZone);
+    }
+
+
+    public void add(long timestamp, int ordinal) {
+        long localMillis = timestamp + timeZone.getOffset(timestamp);
+        hours.addLocal(localMillis, ordinal);
+        days.addLocal(localMillis, ordinal);
+        weeks.addLocal(localMillis, ordinal);
+    }
+
+
+    /**
+     * Adds {@code count} entries of one emotion logged on a local epoch day whose
+     * individual timestamps are no longer known. Only the daily and weekly tables
+     * can place them, so the hourly table does not include them.
+     */
+    public void addDay(long epochDay, int ordinal, int count) {
+        long localMillis = epochDay * DayIndex.MILLIS_PER_DAY;
+        days.addLocal(localMillis, ordinal, count);
+        weeks.addLocal(localMillis, ordinal, count);
+    }
+
+
+    /** Adds {@code count} entries of one emotion to a bucket of one table. */
+    void addBucket(RollupTable.Resolution resolution, long bucket, int ordinal, int count) {
+        switch (resolution) {
+            case HOUR:
+                hours.addBucket(bucket, ordinal, count);
+                break;
+            case DAY:
+                days.addBucket(bucket, ordinal, count);
+                break;
+            default:
+                weeks.addBucket(bucket, ordinal, count);
+        }
+    }
+
+
+    public void clear() {
+        hours.clear();
+        days.clear();
+        weeks.clear();
+    }
+
+
+    public View view() {
+        return new View(hours.view(), days.view(), weeks.view());
+    }
+
+
+    /**
+     * Immutable views of the three tables, taken at the same point in time.
+     */
+    public static final class View {
+        private final RollupTable.View hours;
+        private final RollupTable.View days;
+        private final RollupTable.View weeks;
+
+        View(RollupTable.View hours, RollupTable.View days, RollupTable.View weeks) {
+            this.hours = hours;
+            this.days = days;
+            this.weeks = weeks;
+        }
+
+
+        public RollupTable.View get(RollupTable.Resolution resolution) {
+            switch (resolution) {
+                case HOUR:
+                    return hours;
+                case DAY:
+                    return days;
+                default:
+                    return weeks;
+            }
+        }
+
+
+        public RollupTable.View hours() {
+            return hours;
+        }
+
+
+        public RollupTable.View days() {
+            return days;
+        }
+
+
+        public RollupTable.View weeks() {
+            return weeks;
+        }
+    }
+}
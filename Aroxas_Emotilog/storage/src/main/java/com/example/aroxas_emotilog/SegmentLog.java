@@ -0,0 +1,531 @@
+package com.example.aroxas_emotilog;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * SegmentLog - Durable, append-only binary storage for emotion log entries.
+ *
+ * Every logged emotion is written as a fixed-width 16 byte record into the
+ * current segment file. Once a segment holds its maximum number of records it
+ * is sealed and a new segment is started, so no single file grows without bound.
+ * Emotion names are stored once in a small dictionary file and records refer
+ * to them by id.
+ *
+ * Record layout (big-endian):
+ * - 8 bytes: timestamp in milliseconds
+ * - 2 bytes: emotion id (index into the dictionary)
+ * - 2 bytes: record marker, always {@link #RECORD_MARKER}
+ * - 4 bytes: checksum over timestamp, emotion id and marker
+ *
+ * Design Rationale:
+ * - Fixed-width records let recovery walk a memory-mapped segment with plain
+ *   absolute reads instead of parsing one object per line
+ * - The checksum and marker detect torn writes and zero-filled tails; recovery
+ *   truncates the log at the first invalid record, so the log is always a valid prefix
+ * - Segment files are named after the index of their first record, which makes
+ *   sequential replay a simple sorted directory listing
+ * - The dictionary is forced to disk before any record that references a new id
+ * - Compaction only ever removes whole sealed segments from the front; records
+ *   that were compacted but still share a segment with raw ones are skipped on replay
+ * - Records already covered by a {@link Checkpoint} are not even read: sealed
+ *   segments before it are only checked for their length, and the segment holding
+ *   it is validated from the checkpoint on
+ *
+ * Outstanding Issues:
+ * - Emotion ids are 16 bits, so a log holds at most 65,536 distinct emotions;
+ *   {@link LogStore} refuses new emotions past that before they reach the log
+ * - Every append call forces the channel; callers batch entries with
+ *   {@link #appendAll} to share one disk write between them
+ */
+public class SegmentLog implements Closeable {
+
+    /** Receives every valid record, in log order, while a log is being opened. */
+    public interface RecordVisitor {
+        void onRecord(long timestamp, String emotion);
+    }
+
+    static final int RECORD_SIZE = 16;
+    static final int HEADER_SIZE = 16;
+    static final short RECORD_MARKER = 0x4C45;
+    static final int SEGMENT_MAGIC = 0x454D4C47;
+    static final int FORMAT_VERSION = 1;
+    static final int DEFAULT_RECORDS_PER_SEGMENT = 1 << 20;
+    // Longest emotion name the dictionary can hold, in UTF-8 bytes.
+    static final int MAX_EMOTION_BYTES = 0xFFFF;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String DICTIONARY_FILE = "emotions.dict";
+    private static final long CHECKSUM_SEED = 0x2545F4914F6CDD1DL;
+
+    private final File directory;
+    private final int recordsPerSegment;
+    private final List<String> emotions = new ArrayList<>();
+    private final Map<String, Integer> emotionIds = new HashMap<>();
+    private final ByteBuffer recordBuffer = ByteBuffer.allocate(RECORD_SIZE);
+
+    private FileChannel dictionaryChannel;
+    private FileChannel segmentChannel;
+    private long segmentBaseIndex;
+    private int segmentRecordCount;
+    private long recordCount;
+
+
+    private SegmentLog(File directory, int recordsPerSegment) {
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+    }
+
+
+    public static SegmentLog open(File directory, RecordVisitor visitor) throws IOException {
+        return open(directory, DEFAULT_RECORDS_PER_SEGMENT, visitor);
+    }
+
+
+    public static SegmentLog open(File directory, int recordsPerSegment, RecordVisitor visitor)
+            throws IOException {
+        return open(directory, recordsPerSegment, 0, visitor);
+    }
+
+    /**
+     * Opens a log whose records before {@code firstRecordIndex} were compacted
+     * elsewhere: they are not replayed, and sealed segments holding nothing but
+     * such records are deleted.
+     */
+    public static SegmentLog open(File directory, int recordsPerSegment, long firstRecordIndex,
+                                  RecordVisitor visitor) throws IOException {
+        return open(directory, recordsPerSegment, firstRecordIndex, firstRecordIndex, visitor);
+    }
+
+    /**
+     * Opens a log whose records before {@code replayFromIndex} are already known to
+     * the caller, typically from a {@link Checkpoint}: only the records from there on
+     * are read and replayed. If the log turns out to hold fewer records than that,
+     * {@link #getRecordCount()} says so and the caller must not trust its copy.
+     */
+    public static SegmentLog open(File directory, int recordsPerSegment, long firstRecordIndex,
+                                  long replayFromIndex, RecordVisitor visitor) throws IOException {
+        if (recordsPerSegment <= 0) {
+            throw new IllegalArgumentException("recordsPerSegment must be positive");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create log directory " + directory);
+        }
+
+        SegmentLog log = new SegmentLog(directory, recordsPerSegment);
+        try {
+            log.loadDictionary();
+            log.recover(firstRecordIndex, Math.max(firstRecordIndex, replayFromIndex), visitor);
+            log.deleteSegmentsBefore(firstRecordIndex);
+        } catch (IOException e) {
+            log.close();
+            throw e;
+        }
+        return log;
+    }
+
+
+    public synchronized void append(String emotion, long timestamp) throws IOException {
+        appendAll(new String[] { emotion }, new long[] { timestamp }, 1);
+    }
+
+    /**
+     * Appends a batch of records with a single write and a single force per segment.
+     * The batch is all or nothing: if it fails, whatever part of it reached the disk
+     * is removed again. If even that fails the log is closed, and reopening it
+     * decides which records count.
+     */
+    public synchronized void appendAll(String[] emotions, long[] timestamps, int count)
+            throws IOException {
+        if (segmentChannel == null) {
+            throw new IOException("Segment log is closed");
+        }
+        long startIndex = recordCount;
+        long startBaseIndex = segmentBaseIndex;
+        int startEmotions = this.emotions.size();
+        long startDictionarySize = dictionaryChannel.position();
+        int written = 0;
+        try {
+            while (written < count) {
+                if (segmentRecordCount >= recordsPerSegment) {
+                    rollOver();
+                }
+                int batch = Math.min(count - written, recordsPerSegment - segmentRecordCount);
+                ByteBuffer buffer = batch == 1 ? recordBuffer : ByteBuffer.allocate(batch * RECORD_SIZE);
+                buffer.clear();
+                for (int i = written; i < written + batch; i++) {
+                    int emotionId = idFor(emotions[i]);
+                    buffer.putLong(timestamps[i])
+                            .putShort((short) emotionId)
+                            .putShort(RECORD_MARKER)
+                            .putInt(checksum(timestamps[i], emotionId));
+                }
+                buffer.flip();
+                writeFully(segmentChannel, buffer);
+                segmentChannel.force(false);
+
+                segmentRecordCount += batch;
+                recordCount += batch;
+                written += batch;
+            }
+        } catch (IOException e) {
+            rollBack(startIndex, startBaseIndex, startEmotions, startDictionarySize, e);
+            throw e;
+        }
+    }
+
+
+    // Cuts the segments and the dictionary back to what they held before a failed batch.
+    private void rollBack(long recordIndex, long baseIndex, int emotionCount, long dictionarySize,
+                          IOException failure) {
+        try {
+            if (segmentBaseIndex != baseIndex || segmentChannel == null) {
+                // The batch rolled over into segments of its own.
+                if (segmentChannel != null) {
+                    segmentChannel.close();
+                    segmentChannel = null;
+                }
+                for (File segment : listSegments()) {
+                    if (parseBaseIndex(segment) > baseIndex) {
+                        deleteSegment(segment);
+                    }
+                }
+                segmentChannel = new RandomAccessFile(new File(directory, segmentName(baseIndex)), "rw").getChannel();
+                segmentBaseIndex = baseIndex;
+            }
+            long end = HEADER_SIZE + (recordIndex - baseIndex) * RECORD_SIZE;
+            segmentChannel.truncate(end);
+            segmentChannel.position(end);
+            segmentChannel.force(false);
+            segmentRecordCount = (int) (recordIndex - baseIndex);
+            recordCount = recordIndex;
+
+            // Only the truncated records referred to the names added since.
+            while (emotions.size() > emotionCount) {
+                emotionIds.remove(emotions.remove(emotions.size() - 1));
+            }
+            dictionaryChannel.truncate(dictionarySize);
+            dictionaryChannel.position(dictionarySize);
+            dictionaryChannel.force(false);
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+            try {
+                close();
+            } catch (IOException closeFailure) {
+                failure.addSuppressed(closeFailure);
+            }
+        }
+    }
+
+
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Deletes the sealed segments whose records all have an index below
+     * {@code recordIndex}. The segment being appended to is always kept.
+     */
+    public synchronized void deleteSegmentsBefore(long recordIndex) throws IOException {
+        File[] segments = listSegments();
+        for (int i = 0; i + 1 < segments.length; i++) {
+            long nextBase = parseBaseIndex(segments[i + 1]);
+            if (nextBase > recordIndex || nextBase > segmentBaseIndex) {
+                break;
+            }
+            deleteSegment(segments[i]);
+        }
+    }
+
+
+    public File getDirectory() {
+        return directory;
+    }
+
+
+    @Override
+    public synchronized void close() throws IOException {
+        IOException failure = null;
+        for (FileChannel channel : new FileChannel[] { segmentChannel, dictionaryChannel }) {
+            if (channel == null) {
+                continue;
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        segmentChannel = null;
+        dictionaryChannel = null;
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Emotion dictionary: a sequence of [u16 length][UTF-8 bytes] entries, id = position.
+
+    private void loadDictionary() throws IOException {
+        File file = new File(directory, DICTIONARY_FILE);
+        dictionaryChannel = new RandomAccessFile(file, "rw").getChannel();
+
+        long size = dictionaryChannel.size();
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        dictionaryChannel.read(buffer, 0);
+        buffer.flip();
+
+        long validEnd = 0;
+        while (buffer.remaining() >= 2) {
+            int length = buffer.getShort() & 0xFFFF;
+            if (length == 0 || buffer.remaining() < length) {
+                break;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            registerEmotion(new String(bytes, StandardCharsets.UTF_8));
+            validEnd = buffer.position();
+        }
+
+        // A partially written name can only come from a crash while it was being added;
+        // no record can reference it yet, so it is safe to drop.
+        if (validEnd < size) {
+            dictionaryChannel.truncate(validEnd);
+        }
+        dictionaryChannel.position(validEnd);
+    }
+
+
+    private int idFor(String emotion) throws IOException {
+        Integer id = emotionIds.get(emotion);
+        if (id != null) {
+            return id;
+        }
+        if (emotions.size() > 0xFFFF) {
+            throw new IOException("Too many distinct emotions for the segment format: at most "
+                    + (0xFFFF + 1) + " are supported");
+        }
+
+        byte[] bytes = emotion.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length == 0 || bytes.length > MAX_EMOTION_BYTES) {
+            throw new IOException("Emotion name length not supported: " + bytes.length);
+        }
+        ByteBuffer entry = ByteBuffer.allocate(2 + bytes.length);
+        entry.putShort((short) bytes.length).put(bytes).flip();
+        writeFully(dictionaryChannel, entry);
+        dictionaryChannel.force(false);
+
+        return registerEmotion(emotion);
+    }
+
+
+    private int registerEmotion(String emotion) {
+        int id = emotions.size();
+        emotions.add(emotion);
+        emotionIds.put(emotion, id);
+        return id;
+    }
+
+    // Recovery and segment management.
+
+    private void recover(long firstRecordIndex, long replayFromIndex, RecordVisitor visitor) throws IOException {
+        File[] segments = listSegments();
+        // After compaction the oldest segments are gone and the log starts further on.
+        long expectedBase = segments.length > 0 ? parseBaseIndex(segments[0]) : firstRecordIndex;
+        recordCount = expectedBase;
+
+        for (int i = 0; i < segments.length; i++) {
+            File segment = segments[i];
+            if (i + 1 < segments.length && parseBaseIndex(segment) == expectedBase) {
+                // A sealed segment that ends before the replay point and has exactly the
+                // length its successor implies was complete when it was sealed.
+                long nextBase = parseBaseIndex(segments[i + 1]);
+                if (nextBase <= replayFromIndex
+                        && segment.length() == HEADER_SIZE + (nextBase - expectedBase) * RECORD_SIZE) {
+                    expectedBase = nextBase;
+                    recordCount = expectedBase;
+                    continue;
+                }
+            }
+            long validRecords = scanSegment(segment, expectedBase, replayFromIndex, visitor);
+            boolean truncated = validRecords < 0;
+            if (truncated) {
+                validRecords = -validRecords - 1;
+            }
+            expectedBase += validRecords;
+            recordCount = expectedBase;
+
+            if (truncated) {
+                // Everything after the first invalid record is unreachable: a log must
+                // stay a contiguous prefix, so later segments are discarded as well.
+                for (int j = i + 1; j < segments.length; j++) {
+                    if (!segments[j].delete()) {
+                        throw new IOException("Cannot discard segment " + segments[j]);
+                    }
+                }
+                if (validRecords == 0 && i > 0) {
+                    deleteSegment(segment);
+                    openForAppend(segments[i - 1], parseBaseIndex(segments[i - 1]));
+                } else {
+                    openForAppend(segment, expectedBase - validRecords);
+                }
+                return;
+            }
+        }
+
+        if (segments.length == 0) {
+            startSegment(expectedBase);
+        } else {
+            File last = segments[segments.length - 1];
+            openForAppend(last, parseBaseIndex(last));
+        }
+    }
+
+    /**
+     * Replays the records of one segment from {@code replayFromIndex} on; records before
+     * it are taken as valid without being read. Returns the number of valid records, or
+     * {@code -(validRecords + 1)} when the segment had to be truncated.
+     */
+    private long scanSegment(File segment, long expectedBase, long replayFromIndex,
+                             RecordVisitor visitor) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw");
+             FileChannel channel = file.getChannel()) {
+            long size = channel.size();
+            MappedByteBuffer map = size < HEADER_SIZE ? null
+                    : channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (map == null || map.getInt(0) != SEGMENT_MAGIC
+                    || map.getInt(4) != FORMAT_VERSION || map.getLong(8) != expectedBase) {
+                // A torn header means the segment was being created when the process died.
+                channel.truncate(0);
+                writeHeader(channel, expectedBase);
+                channel.force(true);
+                return -1;
+            }
+
+            String[] names = emotions.toArray(new String[0]);
+            int limit = (int) size;
+            long skipped = Math.max(0, Math.min(replayFromIndex - expectedBase, (limit - HEADER_SIZE) / RECORD_SIZE));
+            int position = HEADER_SIZE + (int) skipped * RECORD_SIZE;
+            long valid = skipped;
+            while (position + RECORD_SIZE <= limit) {
+                long timestamp = map.getLong(position);
+                int emotionId = map.getShort(position + 8) & 0xFFFF;
+                short marker = map.getShort(position + 10);
+                int checksum = map.getInt(position + 12);
+                if (marker != RECORD_MARKER || checksum != checksum(timestamp, emotionId)
+                        || emotionId >= names.length) {
+                    break;
+                }
+                visitor.onRecord(timestamp, names[emotionId]);
+                position += RECORD_SIZE;
+                valid++;
+            }
+
+            if (position < limit) {
+                channel.truncate(position);
+                channel.force(true);
+                return -(valid + 1);
+            }
+            return valid;
+        }
+    }
+
+
+    private void openForAppend(File segment, long baseIndex) throws IOException {
+        segmentChannel = new RandomAccessFile(segment, "rw").getChannel();
+        segmentChannel.position(segmentChannel.size());
+        segmentBaseIndex = baseIndex;
+        segmentRecordCount = (int) (recordCount - baseIndex);
+    }
+
+
+    private void rollOver() throws IOException {
+        segmentChannel.force(true);
+        segmentChannel.close();
+        segmentChannel = null;
+        startSegment(segmentBaseIndex + segmentRecordCount);
+    }
+
+
+    private void startSegment(long baseIndex) throws IOException {
+        File segment = new File(directory, segmentName(baseIndex));
+        FileChannel channel = new RandomAccessFile(segment, "rw").getChannel();
+        channel.truncate(0);
+        writeHeader(channel, baseIndex);
+        channel.force(true);
+
+        segmentChannel = channel;
+        segmentBaseIndex = baseIndex;
+        segmentRecordCount = 0;
+    }
+
+
+    private void deleteSegment(File segment) throws IOException {
+        if (!segment.delete()) {
+            throw new IOException("Cannot discard segment " + segment);
+        }
+    }
+
+
+    private File[] listSegments() {
+        File[] segments = directory.listFiles((dir, name) ->
+                name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (segments == null) {
+            return new File[0];
+        }
+        // Names are zero-padded, so lexical order is log order.
+        Arrays.sort(segments, (a, b) -> a.getName().compareTo(b.getName()));
+        return segments;
+    }
+
+
+    private static void writeHeader(FileChannel channel, long baseIndex) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(SEGMENT_MAGIC).putInt(FORMAT_VERSION).putLong(baseIndex).flip();
+        channel.position(0);
+        writeFully(channel, header);
+    }
+
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+
+    static String segmentName(long baseIndex) {
+        return String.format(Locale.US, "%s%019d%s", SEGMENT_PREFIX, baseIndex, SEGMENT_SUFFIX);
+    }
+
+
+    static long parseBaseIndex(File segment) {
+        String name = segment.getName();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    // 64-bit finalizer mix (MurmurHash3 fmix64) folded to 32 bits. Cheap enough to run
+    // for every record during recovery while still catching torn and garbage writes.
+    static int checksum(long timestamp, int emotionId) {
+        long h = timestamp ^ ((long) emotionId << 48) ^ ((long) RECORD_MARKER << 32) ^ CHECKSUM_SEED;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return (int) (h ^ (h >>> 32));
+    }
+}
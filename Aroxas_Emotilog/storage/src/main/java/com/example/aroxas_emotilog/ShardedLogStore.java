@@ -0,0 +1,435 @@
+package com.example.aroxas_emotilog;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ShardedLogStore - Emotion logs of many profiles, one {@link LogStore} per profile.
+ *
+ * Profiles are spread over a fixed number of shards by the hash of their id.
+ * Logging and per-profile queries go straight to the profile's own store, so
+ * profiles never wait for each other. Queries across all profiles run as a
+ * fork/join map-reduce: one task per shard, split further over the shard's
+ * profiles when it holds many, each reducing the latest snapshots of its
+ * profiles into a partial result that is merged on the way back up.
+ *
+ * With a directory, each profile keeps its durable log in a subdirectory named
+ * after the profile id, and every profile found there is opened on construction.
+ *
+ * Design Rationale:
+ * - Each shard has its own lock, taken only when a profile is created, and each
+ *   profile store its own write lock; nothing is shared between writers of
+ *   different profiles
+ * - Profile lookup is a lock-free {@link ConcurrentHashMap} read
+ * - Each shard publishes its profiles as an append-only array, so aggregation
+ *   reads it without locking and never sees a half-created profile
+ * - Aggregates read published {@link LogSnapshot}s only, so they never block
+ *   writers and each profile contributes one consistent state
+ * - All profiles share one time zone, so their day buckets line up
+ *
+ * Outstanding Issues:
+ * - Profiles cannot be removed
+ * - Whole-history counts of profiles past {@link LogStore#APPROXIMATE_COUNTS_THRESHOLD}
+ *   distinct emotions are estimates, and so are their sums
+ */
+public final class ShardedLogStore implements Closeable {
+    public static final int DEFAULT_SHARD_COUNT = 64;
+    // Profiles per fork/join leaf task.
+    static final int PROFILES_PER_TASK = 32;
+
+    private final Shard[] shards;
+    private final TimeZone timeZone;
+    private final File directory;
+    private final ForkJoinPool pool;
+
+
+    /** Creates an in-memory store with the default shard count, aggregating on the common pool. */
+    public ShardedLogStore() {
+        this(DEFAULT_SHARD_COUNT, TimeZone.getDefault());
+    }
+
+
+    public ShardedLogStore(int shardCount, TimeZone timeZone) {
+        this(shardCount, timeZone, ForkJoinPool.commonPool());
+    }
+
+
+    /** Creates an in-memory store whose cross-profile aggregations run on {@code pool}. */
+    public ShardedLogStore(int shardCount, TimeZone timeZone, ForkJoinPool pool) {
+        this.shards = newShards(shardCount);
+        this.timeZone = timeZone;
+        this.directory = null;
+        this.pool = pool;
+    }
+
+    /**
+     * Creates a store that keeps each profile's log under {@code directory} and opens
+     * every profile already stored there.
+     *
+     * @param pool runs the cross-profile aggregations
+     */
+    public ShardedLogStore(int shardCount, TimeZone timeZone, File directory, ForkJoinPool pool)
+            throws IOException {
+        this.shards = newShards(shardCount);
+        this.timeZone = timeZone;
+        this.directory = directory;
+        this.pool = pool;
+        if (directory != null) {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Cannot create " + directory);
+            }
+            File[] profileDirectories = directory.listFiles(File::isDirectory);
+            if (profileDirectories != null) {
+                for (File profileDirectory : profileDirectories) {
+                    profile(decodeProfileId(profileDirectory.getName()));
+                }
+            }
+        }
+    }
+
+
+    private static Shard[] newShards(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Invalid shard count " + shardCount);
+        }
+        Shard[] shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard();
+        }
+        return shards;
+    }
+
+    /**
+     * Returns the store of a profile, creating it, and opening its durable log if
+     * the store has a directory, on first use.
+     *
+     * @throws UncheckedIOException if the profile's log could not be opened
+     */
+    public LogStore profile(String profileId) {
+        Shard shard = shardOf(profileId);
+        LogStore store = shard.byId.get(profileId);
+        return store != null ? store : shard.create(profileId, this);
+    }
+
+
+    /** Returns the store of a profile, or null if it has never been used. */
+    public LogStore existingProfile(String profileId) {
+        return shardOf(profileId).byId.get(profileId);
+    }
+
+
+    public int getProfileCount() {
+        int count = 0;
+        for (Shard shard : shards) {
+            count += shard.profiles.size;
+        }
+        return count;
+    }
+
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+
+    public void addLog(String profileId, String emotion) {
+        profile(profileId).addLog(emotion);
+    }
+
+    /**
+     * Returns the number of logs per emotion summed over every profile. Counts are
+     * longs because the total across profiles can pass the range of an int.
+     */
+    public Map<String, Long> getEmotionCounts() {
+        return aggregate(new Aggregation<Map<String, Long>>() {
+            @Override
+            public Map<String, Long> identity() {
+                return new HashMap<>();
+            }
+
+            @Override
+            public Map<String, Long> add(Map<String, Long> counts, LogSnapshot snapshot) {
+                for (Map.Entry<String, Integer> entry : snapshot.getEmotionCounts().entrySet()) {
+                    counts.merge(entry.getKey(), (long) entry.getValue(), Long::sum);
+                }
+                return counts;
+            }
+
+            @Override
+            public Map<String, Long> merge(Map<String, Long> left, Map<String, Long> right) {
+                if (left.size() < right.size()) {
+                    Map<String, Long> swap = left;
+                    left = right;
+                    right = swap;
+                }
+                for (Map.Entry<String, Long> entry : right.entrySet()) {
+                    left.merge(entry.getKey(), entry.getValue(), Long::sum);
+                }
+                return left;
+            }
+        });
+    }
+
+    /**
+     * Returns the number of logs per day over every profile, from the day containing
+     * {@code from} through the day containing {@code to}, read from each profile's
+     * daily rollups.
+     */
+    public long[] getDailyTotals(long from, long to) {
+        RollupTable.Resolution day = RollupTable.Resolution.DAY;
+        int days = (int) Math.max(0, day.bucketOf(to, timeZone) - day.bucketOf(from, timeZone) + 1);
+        return aggregate(new Aggregation<long[]>() {
+            @Override
+            public long[] identity() {
+                return new long[days];
+            }
+
+            @Override
+            public long[] add(long[] totals, LogSnapshot snapshot) {
+                int[] counts = snapshot.getCountsPerBucket(day, from, to);
+                for (int day = 0; day < days; day++) {
+                    totals[day] += counts[day];
+                }
+                return totals;
+            }
+
+            @Override
+            public long[] merge(long[] left, long[] right) {
+                for (int day = 0; day < days; day++) {
+                    left[day] += right[day];
+                }
+                return left;
+            }
+        });
+    }
+
+
+    /** Returns the number of entries ever logged by all profiles, including compacted ones. */
+    public long getTotalLogCount() {
+        return aggregate(new Aggregation<long[]>() {
+            @Override
+            public long[] identity() {
+                return new long[1];
+            }
+
+            @Override
+            public long[] add(long[] total, LogSnapshot snapshot) {
+                total[0] += snapshot.getTotalLogCount();
+                return total;
+            }
+
+            @Override
+            public long[] merge(long[] left, long[] right) {
+                left[0] += right[0];
+                return left;
+            }
+        })[0];
+    }
+
+    /**
+     * Reduces the latest snapshot of every profile with a fork/join map-reduce over
+     * the shards. Partial results are only touched by the task that created them.
+     */
+    public <R> R aggregate(Aggregation<R> aggregation) {
+        return pool.invoke(new AggregateTask<>(aggregation, shards, 0, shards.length, null, 0, 0));
+    }
+
+
+    /** Closes the durable logs of every profile; the in-memory entries stay readable. */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Shard shard : shards) {
+            Profiles profiles = shard.profiles;
+            for (int i = 0; i < profiles.size; i++) {
+                try {
+                    profiles.stores[i].close();
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+
+    private Shard shardOf(String profileId) {
+        int hash = profileId.hashCode();
+        return shards[Math.floorMod(hash ^ (hash >>> 16), shards.length)];
+    }
+
+
+    // Letters, digits, '-' and '_' are kept; every other UTF-8 byte becomes %XX.
+    static String encodeProfileId(String profileId) {
+        StringBuilder name = new StringBuilder(profileId.length());
+        for (byte b : profileId.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_') {
+                name.append(c);
+            } else {
+                name.append('%').append(Character.toUpperCase(Character.forDigit(c >> 4, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(c & 0xF, 16)));
+            }
+        }
+        return name.toString();
+    }
+
+
+    static String decodeProfileId(String name) {
+        byte[] bytes = new byte[name.length()];
+        int length = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '%' && i + 2 < name.length()) {
+                bytes[length++] = (byte) Integer.parseInt(name.substring(i + 1, i + 3), 16);
+                i += 2;
+            } else {
+                bytes[length++] = (byte) c;
+            }
+        }
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * A cross-profile query: partial results start at {@link #identity()}, take in one
+     * profile snapshot at a time and are merged pairwise. Each partial result is only
+     * used by one thread at a time, so it may be mutated and returned.
+     */
+    public interface Aggregation<R> {
+        R identity();
+
+        R add(R partial, LogSnapshot snapshot);
+
+        R merge(R left, R right);
+    }
+
+
+    /**
+     * Profiles of one shard, published as an append-only array: slots below
+     * {@code size} are never changed.
+     */
+    private static final class Profiles {
+        static final Profiles EMPTY = new Profiles(new LogStore[0], 0);
+
+        final LogStore[] stores;
+        final int size;
+
+        Profiles(LogStore[] stores, int size) {
+            this.stores = stores;
+            this.size = size;
+        }
+    }
+
+
+    private static final class Shard {
+        final ReentrantLock lock = new ReentrantLock();
+        final ConcurrentHashMap<String, LogStore> byId = new ConcurrentHashMap<>();
+        volatile Profiles profiles = Profiles.EMPTY;
+
+        LogStore create(String profileId, ShardedLogStore owner) {
+            lock.lock();
+            try {
+                LogStore store = byId.get(profileId);
+                if (store != null) {
+                    return store;
+                }
+                store = new LogStore();
+                store.setTimeZone(owner.timeZone);
+                if (owner.directory != null) {
+                    try {
+                        store.open(new File(owner.directory, encodeProfileId(profileId)));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Could not open profile " + profileId, e);
+                    }
+                }
+
+                Profiles current = profiles;
+                LogStore[] stores = current.stores;
+                if (current.size == stores.length) {
+                    stores = Arrays.copyOf(stores, Math.max(4, stores.length * 2));
+                }
+                stores[current.size] = store;
+                profiles = new Profiles(stores, current.size + 1);
+                byId.put(profileId, store);
+                return store;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+
+    /**
+     * Reduces shards [fromShard, toShard), or profiles [from, to) of a single shard.
+     */
+    private static final class AggregateTask<R> extends RecursiveTask<R> {
+        private static final long serialVersionUID = 1L;
+
+        private final Aggregation<R> aggregation;
+        private final Shard[] shards;
+        private final int fromShard;
+        private final int toShard;
+        private final Profiles profiles;
+        private final int from;
+        private final int to;
+
+        AggregateTask(Aggregation<R> aggregation, Shard[] shards, int fromShard, int toShard,
+                      Profiles profiles, int from, int to) {
+            this.aggregation = aggregation;
+            this.shards = shards;
+            this.fromShard = fromShard;
+            this.toShard = toShard;
+            this.profiles = profiles;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected R compute() {
+            if (profiles == null && toShard - fromShard > 1) {
+                int middle = (fromShard + toShard) >>> 1;
+                return fork(new AggregateTask<>(aggregation, shards, fromShard, middle, null, 0, 0),
+                        new AggregateTask<>(aggregation, shards, middle, toShard, null, 0, 0));
+            }
+            if (profiles == null) {
+                Profiles shardProfiles = shards[fromShard].profiles;
+                return new AggregateTask<>(aggregation, shards, fromShard, toShard, shardProfiles,
+                        0, shardProfiles.size).compute();
+            }
+            if (to - from > PROFILES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                return fork(new AggregateTask<>(aggregation, shards, fromShard, toShard, profiles, from, middle),
+                        new AggregateTask<>(aggregation, shards, fromShard, toShard, profiles, middle, to));
+            }
+            R partial = aggregation.identity();
+            for (int i = from; i < to; i++) {
+                partial = aggregation.add(partial, profiles.stores[i].snapshot());
+            }
+            return partial;
+        }
+
+        private R fork(AggregateTask<R> left, AggregateTask<R> right) {
+            right.fork();
+            R leftResult = left.compute();
+            return aggregation.merge(leftResult, right.join());
+        }
+    }
+}
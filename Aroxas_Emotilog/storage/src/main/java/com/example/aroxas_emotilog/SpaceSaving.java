@@ -0,0 +1,168 @@
+package com.example.aroxas_emotilog;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SpaceSaving - Tracks the most frequent items of a stream with k counters.
+ *
+ * Implements the Space-Saving algorithm (Metwally, Agrawal and El Abbadi). While
+ * fewer than k items were seen all counts are exact. Afterwards an unseen item
+ * takes over the counter with the smallest count m and starts at m + its count,
+ * remembering m as its maximum overestimate. With N the total of all counts:
+ * - every tracked count c satisfies {@code true <= c <= true + min(m, N / k)}
+ * - every item with a true count above N / k is tracked
+ *
+ * Design Rationale:
+ * - Counters live in parallel arrays ordered as a binary min-heap, so finding and
+ *   replacing the smallest counter is O(log k) and memory is fixed at k entries
+ * - A hash map from item to counter slot makes increments of tracked items O(log k)
+ * - Not thread-safe; LogStorage only touches it under its write lock
+ */
+public final class SpaceSaving {
+    private final int capacity;
+    private final String[] items;
+    private final int[] counts;
+    private final int[] errors;
+    // heap[i] is a slot; position[slot] is where that slot sits in the heap.
+    private final int[] heap;
+    private final int[] position;
+    private final Map<String, Integer> slots;
+    private int size;
+
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.items = new String[capacity];
+        this.counts = new int[capacity];
+        this.errors = new int[capacity];
+        this.heap = new int[capacity];
+        this.position = new int[capacity];
+        this.slots = new HashMap<>(capacity * 2);
+    }
+
+    /** Adds {@code count} occurrences of an item and returns its tracked count. */
+    public int add(String item, int count) {
+        Integer tracked = slots.get(item);
+        int slot;
+        if (tracked != null) {
+            slot = tracked;
+            counts[slot] = saturatedAdd(counts[slot], count);
+        } else if (size < capacity) {
+            slot = size;
+            items[slot] = item;
+            counts[slot] = count;
+            errors[slot] = 0;
+            heap[size] = slot;
+            position[slot] = size;
+            size++;
+            slots.put(item, slot);
+            siftUp(position[slot]);
+            return count;
+        } else {
+            // Replace the smallest counter; the new item inherits its count as error.
+            slot = heap[0];
+            slots.remove(items[slot]);
+            errors[slot] = counts[slot];
+            counts[slot] = saturatedAdd(counts[slot], count);
+            items[slot] = item;
+            slots.put(item, slot);
+        }
+        siftDown(position[slot]);
+        return counts[slot];
+    }
+
+    /** Returns the tracked count of an item, or -1 if it is not tracked. */
+    public int count(String item) {
+        Integer slot = slots.get(item);
+        return slot != null ? counts[slot] : -1;
+    }
+
+    /** Returns how much the tracked count of an item may exceed its true count, or -1. */
+    public int error(String item) {
+        Integer slot = slots.get(item);
+        return slot != null ? errors[slot] : -1;
+    }
+
+    /** Returns the smallest tracked count, which bounds the count of any untracked item. */
+    public int minCount() {
+        return size < capacity ? 0 : counts[heap[0]];
+    }
+
+
+    public int size() {
+        return size;
+    }
+
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /** Returns the tracked items with their counts, highest count first. */
+    public List<Map.Entry<String, Integer>> top() {
+        List<Map.Entry<String, Integer>> top = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int slot = heap[i];
+            top.add(new AbstractMap.SimpleImmutableEntry<>(items[slot], counts[slot]));
+        }
+        top.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+        return top;
+    }
+
+
+    public long estimateMemoryBytes() {
+        // Five int[] and a String[] of k entries, plus a HashMap node and boxed slot per item.
+        return 6 * (16 + 4L * capacity) + 16 + capacity * (32 + 16 + 8L);
+    }
+
+
+    private void siftUp(int i) {
+        int slot = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[slot]) {
+                break;
+            }
+            move(heap[parent], i);
+            i = parent;
+        }
+        move(slot, i);
+    }
+
+
+    private void siftDown(int i) {
+        int slot = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) {
+                child++;
+            }
+            if (counts[slot] <= counts[heap[child]]) {
+                break;
+            }
+            move(heap[child], i);
+            i = child;
+        }
+        move(slot, i);
+    }
+
+
+    private void move(int slot, int i) {
+        heap[i] = slot;
+        position[slot] = i;
+    }
+
+
+    private static int saturatedAdd(int a, int b) {
+        long sum = (long) a + b;
+        return sum > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) sum;
+    }
+}
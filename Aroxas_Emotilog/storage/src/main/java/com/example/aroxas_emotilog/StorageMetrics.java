@@ -0,0 +1,214 @@
+package com.example.aroxas_emotilog;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * StorageMetrics - Latency, scan and lock contention metrics for {@link LogStore}s.
+ *
+ * While enabled, every instrumented LogStore call is counted together with how
+ * many raw entries it read and how many items it returned, one call in
+ * {@link #getSampleInterval()} also records its duration in a per-operation
+ * {@link LatencyHistogram}, and every acquisition of the write lock records
+ * whether it had to wait and for how long. {@link #snapshot()} copies
+ * everything into a {@link MetricsSnapshot} that prints as text or JSON.
+ *
+ * Design Rationale:
+ * - Can be switched on and off at any time; while off, an instrumented call
+ *   costs one volatile read and nothing is recorded
+ * - A clock read costs about as much as the rest of the bookkeeping together, so
+ *   durations are sampled: an unsampled call costs a few striped counter updates
+ *   and no clock reads. Calls are picked at random per thread, so the sampled
+ *   latencies stay representative however calls are interleaved
+ * - Uncontended lock acquisitions are only counted: the wait is timed only when
+ *   an immediate tryLock fails, so the common case needs no clock reads
+ * - Counters are striped {@link LongAdder}s and histograms are lock-free, so
+ *   recording never makes threads wait for each other
+ * - Static like LogStorage, so any screen or debug hook can dump the numbers
+ *   without plumbing; all stores in the process record into the same metrics
+ */
+public final class StorageMetrics {
+    /** Default for {@link #setSampleInterval(int)}. */
+    public static final int DEFAULT_SAMPLE_INTERVAL = 16;
+
+    /** Returned by {@link #start()} when metrics are off; such calls are not recorded. */
+    static final long NOT_TIMED = Long.MIN_VALUE;
+    /** Returned by {@link #start()} for a call that is counted but not timed. */
+    static final long NOT_SAMPLED = Long.MIN_VALUE + 1;
+
+    private static volatile boolean enabled;
+    private static volatile int sampleInterval = DEFAULT_SAMPLE_INTERVAL;
+    private static final Map<Operation, OperationMetrics> operations = new EnumMap<>(Operation.class);
+    private static final LatencyHistogram lockWait = new LatencyHistogram();
+    private static final LongAdder lockAcquisitions = new LongAdder();
+    private static final LongAdder contendedAcquisitions = new LongAdder();
+
+    static {
+        for (Operation operation : Operation.values()) {
+            operations.put(operation, new OperationMetrics());
+        }
+    }
+
+
+    private StorageMetrics() {
+    }
+
+
+    /** Starts or stops recording. Metrics recorded so far are kept. */
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+
+    /**
+     * Sets how many calls share one timed call on average; 1 times every call. Call
+     * counts, scanned and returned entries and lock waits are always recorded in full.
+     */
+    public static void setSampleInterval(int interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("interval must be positive");
+        }
+        sampleInterval = interval;
+    }
+
+
+    public static int getSampleInterval() {
+        return sampleInterval;
+    }
+
+
+    /** Clears all recorded metrics without changing whether recording is enabled. */
+    public static void reset() {
+        for (OperationMetrics metrics : operations.values()) {
+            metrics.calls.reset();
+            metrics.latency.reset();
+            metrics.scanned.reset();
+            metrics.returned.reset();
+        }
+        lockWait.reset();
+        lockAcquisitions.reset();
+        contendedAcquisitions.reset();
+    }
+
+
+    public static MetricsSnapshot snapshot() {
+        Map<Operation, MetricsSnapshot.OperationStats> stats = new EnumMap<>(Operation.class);
+        for (Map.Entry<Operation, OperationMetrics> entry : operations.entrySet()) {
+            OperationMetrics metrics = entry.getValue();
+            stats.put(entry.getKey(), new MetricsSnapshot.OperationStats(metrics.calls.sum(),
+                    metrics.latency.snapshot(), metrics.scanned.sum(), metrics.returned.sum()));
+        }
+        return new MetricsSnapshot(enabled, stats, lockAcquisitions.sum(), contendedAcquisitions.sum(),
+                lockWait.snapshot());
+    }
+
+
+    /**
+     * Returns the start time of a call to be passed to {@link #record}, or
+     * {@link #NOT_TIMED} or {@link #NOT_SAMPLED}.
+     */
+    static long start() {
+        if (!enabled) {
+            return NOT_TIMED;
+        }
+        int interval = sampleInterval;
+        if (interval > 1 && ThreadLocalRandom.current().nextInt(interval) != 0) {
+            return NOT_SAMPLED;
+        }
+        return System.nanoTime();
+    }
+
+
+    /** Returns whether a call that started at {@code start} is recorded at all. */
+    static boolean isRecorded(long start) {
+        return start != NOT_TIMED;
+    }
+
+
+    /**
+     * Records a call that started at {@code start}, read {@code scanned} raw entries
+     * and returned {@code returned} entries or result items.
+     */
+    static void record(Operation operation, long start, long scanned, long returned) {
+        if (start == NOT_TIMED) {
+            return;
+        }
+        OperationMetrics metrics = operations.get(operation);
+        metrics.calls.increment();
+        if (start != NOT_SAMPLED) {
+            metrics.latency.record(System.nanoTime() - start);
+        }
+        if (scanned != 0) {
+            metrics.scanned.add(scanned);
+        }
+        if (returned != 0) {
+            metrics.returned.add(returned);
+        }
+    }
+
+
+    /** Acquires the lock, recording whether and how long the caller had to wait. */
+    static void lock(ReentrantLock lock) {
+        if (!enabled) {
+            lock.lock();
+            return;
+        }
+        lockAcquisitions.increment();
+        if (lock.tryLock()) {
+            return;
+        }
+        long start = System.nanoTime();
+        lock.lock();
+        contendedAcquisitions.increment();
+        lockWait.record(System.nanoTime() - start);
+    }
+
+
+    /**
+     * The instrumented LogStore operations, named after their methods.
+     */
+    public enum Operation {
+        ADD_LOG("addLog"),
+        ADD_LOGS("addLogs"),
+        COMPACT("compact"),
+        GET_LOGS("getLogs"),
+        GET_LOGS_SORTED_BY_TIME("getLogsSortedByTime"),
+        GET_LOGS_FOR_EMOTION("getLogsForEmotion"),
+        GET_LOGS_FOR_EMOTION_BETWEEN("getLogsForEmotionBetween"),
+        GET_LOGS_FOR_DAY("getLogsForDay"),
+        GET_LOGS_BETWEEN("getLogsBetween"),
+        GET_EMOTION_COUNTS("getEmotionCounts"),
+        GET_EMOTION_COUNTS_FOR_DAY("getEmotionCountsForDay"),
+        GET_EMOTION_COUNTS_WHERE("getEmotionCountsWhere"),
+        GET_LOGS_WHERE("getLogsWhere"),
+        QUERY("query"),
+        GET_COUNTS_PER_BUCKET("getCountsPerBucket"),
+        GET_MOST_FREQUENT_EMOTION("getMostFrequentEmotion");
+
+        private final String methodName;
+
+        Operation(String methodName) {
+            this.methodName = methodName;
+        }
+
+        public String getMethodName() {
+            return methodName;
+        }
+    }
+
+
+    private static final class OperationMetrics {
+        final LongAdder calls = new LongAdder();
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder scanned = new LongAdder();
+        final LongAdder returned = new LongAdder();
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.aroxas_emotilog;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SummaryEngine - Computes {@link SummarySnapshot}s for the summary screen.
+ *
+ * Whole-history figures come straight from the counters a {@link LogSnapshot}
+ * already carries; the only scan is one pass over today's entries, which
+ * counts them per emotion and keeps the newest few at the same time. Trends are
+ * read from the snapshot's rollup tables. When the
+ * store only appended entries since the cached summary, just those entries are
+ * scanned and added to it.
+ *
+ * Design Rationale:
+ * - Meant to be called off the UI thread; the returned summary is immutable and
+ *   can be handed to the UI thread as is
+ * - Caches the last summary against the storage version and the local day, so
+ *   asking again while nothing changed returns the same object without locking
+ * - Keeps today's newest entries in a fixed-size insertion buffer instead of
+ *   sorting all of today's logs
+ */
+public final class SummaryEngine {
+    private volatile SummarySnapshot cached;
+    private LogSnapshot cachedSource;
+
+
+    /**
+     * Returns the summary of the given snapshot with "today" being the local day
+     * that contains {@code now}. Reuses the previous result when both are unchanged.
+     */
+    public SummarySnapshot summarize(LogSnapshot snapshot, long now) {
+        long epochDay = snapshot.days().epochDay(now);
+        SummarySnapshot summary = cached;
+        if (isCurrent(summary, snapshot, epochDay)) {
+            return summary;
+        }
+        synchronized (this) {
+            summary = cached;
+            if (isCurrent(summary, snapshot, epochDay)) {
+                return summary;
+            }
+            if (summary != null && summary.getEpochDay() == epochDay
+                    && snapshot.extendsSnapshot(cachedSource)) {
+                summary = extend(summary, LogChange.between(cachedSource, snapshot));
+            } else {
+                summary = compute(snapshot, epochDay);
+            }
+            cachedSource = snapshot;
+            cached = summary;
+            return summary;
+        }
+    }
+
+
+    private static boolean isCurrent(SummarySnapshot summary, LogSnapshot snapshot, long epochDay) {
+        return summary != null && summary.getVersion() == snapshot.getVersion()
+                && summary.getEpochDay() == epochDay;
+    }
+
+
+    static SummarySnapshot compute(LogSnapshot snapshot, long epochDay) {
+        LogColumns.View columns = snapshot.columns();
+        TodayAccumulator today = new TodayAccumulator(columns.emotionCount());
+        // A retention policy may have compacted some of today's entries already.
+        today.addCompacted(snapshot.compacted(), epochDay);
+
+        // Today: a single pass over the day's ranges.
+        int[] ranges = snapshot.days().rangesForDay(epochDay);
+        LogColumns.Reader reader = columns.reader();
+        for (int r = 0; r < ranges.length; r += 2) {
+            for (int i = ranges[r]; i < ranges[r + 1]; i++) {
+                today.add(i, reader.timestampAt(i), reader.ordinalAt(i));
+            }
+        }
+        return today.finish(snapshot, epochDay);
+    }
+
+
+    // Adds the entries appended since the previous summary; O(appended entries).
+    static SummarySnapshot extend(SummarySnapshot previous, LogChange change) {
+        LogSnapshot snapshot = change.getSnapshot();
+        LogColumns.View columns = snapshot.columns();
+        DayIndex.View days = snapshot.days();
+        TodayAccumulator today = new TodayAccumulator(columns.emotionCount());
+        today.seed(previous, columns);
+
+        int first = change.getFirstInsertedPosition();
+        LogColumns.Reader reader = columns.reader();
+        for (int i = first, end = first + change.getInsertedCount(); i < end; i++) {
+            long timestamp = reader.timestampAt(i);
+            if (days.epochDay(timestamp) == previous.getEpochDay()) {
+                today.add(i, timestamp, reader.ordinalAt(i));
+            }
+        }
+        return today.finish(snapshot, previous.getEpochDay());
+    }
+
+
+    /**
+     * Today's per-emotion counts and newest entries, built one entry at a time.
+     */
+    private static final class TodayAccumulator {
+        private final int[] counts;
+        private final int[] recent = new int[SummarySnapshot.MAX_RECENT_ENTRIES];
+        private final long[] recentTimestamps = new long[SummarySnapshot.MAX_RECENT_ENTRIES];
+        private int recentCount;
+        private int total;
+
+        TodayAccumulator(int emotions) {
+            counts = new int[emotions];
+        }
+
+        void seed(SummarySnapshot previous, LogColumns.View columns) {
+            System.arraycopy(previous.todayOrdinalCounts, 0, counts, 0, previous.todayOrdinalCounts.length);
+            total = previous.getTodayLogCount();
+            recentCount = previous.recentPositions.length;
+            for (int k = 0; k < recentCount; k++) {
+                recent[k] = previous.recentPositions[k];
+                recentTimestamps[k] = columns.timestampAt(recent[k]);
+            }
+        }
+
+        void addCompacted(CompactedTier compacted, long epochDay) {
+            compacted.addCountsForDay(epochDay, counts);
+            total += compacted.countForDay(epochDay);
+        }
+
+        void add(int position, long timestamp, int ordinal) {
+            counts[ordinal]++;
+            total++;
+
+            // Insert into the newest-first buffer if the entry belongs there.
+            // Equal timestamps rank the later position as newer.
+            int slot = recentCount;
+            while (slot > 0 && (timestamp > recentTimestamps[slot - 1]
+                    || (timestamp == recentTimestamps[slot - 1] && position > recent[slot - 1]))) {
+                slot--;
+            }
+            if (slot >= recent.length) {
+                return;
+            }
+            int last = Math.min(recentCount, recent.length - 1);
+            System.arraycopy(recent, slot, recent, slot + 1, last - slot);
+            System.arraycopy(recentTimestamps, slot, recentTimestamps, slot + 1, last - slot);
+            recent[slot] = position;
+            recentTimestamps[slot] = timestamp;
+            recentCount = Math.min(recentCount + 1, recent.length);
+        }
+
+        SummarySnapshot finish(LogSnapshot snapshot, long epochDay) {
+            LogColumns.View columns = snapshot.columns();
+
+            // Whole history: counters are maintained on append, only the order is computed here.
+            // Approximate snapshots already carry their most frequent emotions in order.
+            List<Map.Entry<String, Integer>> frequencies;
+            if (snapshot.isApproximate()) {
+                frequencies = snapshot.getHeavyHitters();
+            } else {
+                frequencies = new ArrayList<>(counts.length);
+                for (int ordinal = 0; ordinal < counts.length; ordinal++) {
+                    int count = snapshot.emotionCountAt(ordinal);
+                    if (count > 0) {
+                        frequencies.add(new AbstractMap.SimpleImmutableEntry<>(columns.emotionName(ordinal), count));
+                    }
+                }
+                // Stable sort, so emotions with equal counts stay in the order they were first logged.
+                frequencies.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+            }
+
+            Map<String, Integer> todayMap = new LinkedHashMap<>();
+            for (int ordinal = 0; ordinal < counts.length; ordinal++) {
+                if (counts[ordinal] > 0) {
+                    todayMap.put(columns.emotionName(ordinal), counts[ordinal]);
+                }
+            }
+            List<LogEntry> recentToday = new ArrayList<>(recentCount);
+            for (int k = 0; k < recentCount; k++) {
+                recentToday.add(columns.entryAt(recent[k]));
+            }
+
+            // Trends: one rollup row per bucket, whatever the history size.
+            Rollups.View rollups = snapshot.getRollups();
+            int[] dailyTrend = rollups.days().totals(epochDay - SummarySnapshot.TREND_DAYS + 1, epochDay + 1);
+            long week = RollupTable.Resolution.ISO_WEEK.bucketOfEpochDay(epochDay);
+            int[] weeklyTrend = rollups.weeks().totals(week - SummarySnapshot.TREND_WEEKS + 1, week + 1);
+
+            return new SummarySnapshot(snapshot.getVersion(), epochDay, snapshot.getTotalLogCount(),
+                    snapshot.getMostFrequentEmotion(), snapshot.getMostFrequentEmotionCount(),
+                    frequencies, snapshot.isApproximate(), total, todayMap, recentToday,
+                    dailyTrend, weeklyTrend,
+                    counts, Arrays.copyOf(recent, recentCount));
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.aroxas_emotilog;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SummarySnapshot - Immutable result of summarizing one {@link LogSnapshot}.
+ *
+ * Holds everything the summary screen shows: whole-history totals and the
+ * per-emotion frequency list, today's counts and today's most recent entries,
+ * and per-day and per-week trends read from the rollup tables.
+ * It is built by {@link SummaryEngine} on a background thread and then only
+ * read on the UI thread.
+ *
+ * Design Rationale:
+ * - Records the storage version and the local day it was computed for, so the
+ *   engine can tell when a cached summary is still current
+ * - The frequency list is already sorted by count, descending, so the screen
+ *   can hand it straight to {@link FrequencyAdapter}
+ * - All collections are unmodifiable
+ */
+public final class SummarySnapshot {
+    public static final int MAX_RECENT_ENTRIES = 5;
+    public static final int TREND_DAYS = 90;
+    public static final int TREND_WEEKS = 12;
+
+    private final long version;
+    private final long epochDay;
+    private final int totalLogCount;
+    private final String mostFrequentEmotion;
+    private final int mostFrequentCount;
+    private final List<Map.Entry<String, Integer>> frequencies;
+    private final boolean approximate;
+    private final int todayLogCount;
+    private final Map<String, Integer> todayCounts;
+    private final List<LogEntry> recentToday;
+    private final int[] dailyTrend;
+    private final int[] weeklyTrend;
+
+    // Raw state kept so that SummaryEngine can extend this summary with appended entries.
+    final int[] todayOrdinalCounts;
+    final int[] recentPositions;
+
+
+    SummarySnapshot(long version, long epochDay, int totalLogCount, String mostFrequentEmotion,
+                    int mostFrequentCount, List<Map.Entry<String, Integer>> frequencies,
+                    boolean approximate, int todayLogCount, Map<String, Integer> todayCounts,
+                    List<LogEntry> recentToday, int[] dailyTrend, int[] weeklyTrend,
+                    int[] todayOrdinalCounts, int[] recentPositions) {
+        this.version = version;
+        this.epochDay = epochDay;
+        this.totalLogCount = totalLogCount;
+        this.mostFrequentEmotion = mostFrequentEmotion;
+        this.mostFrequentCount = mostFrequentCount;
+        this.frequencies = Collections.unmodifiableList(frequencies);
+        this.approximate = approximate;
+        this.todayLogCount = todayLogCount;
+        this.todayCounts = Collections.unmodifiableMap(todayCounts);
+        this.recentToday = Collections.unmodifiableList(recentToday);
+        this.dailyTrend = dailyTrend;
+        this.weeklyTrend = weeklyTrend;
+        this.todayOrdinalCounts = todayOrdinalCounts;
+        this.recentPositions = recentPositions;
+    }
+
+
+    /** Returns the version of the {@link LogSnapshot} this summary was computed from. */
+    public long getVersion() {
+        return version;
+    }
+
+    /** Returns the local epoch day treated as "today". */
+    public long getEpochDay() {
+        return epochDay;
+    }
+
+
+    public int getTotalLogCount() {
+        return totalLogCount;
+    }
+
+
+    public String getMostFrequentEmotion() {
+        return mostFrequentEmotion;
+    }
+
+
+    public int getMostFrequentEmotionCount() {
+        return mostFrequentCount;
+    }
+
+    /**
+     * Returns every logged emotion with its count, most frequent first. When
+     * {@link #isApproximate()}, only the most frequent emotions with estimated counts.
+     */
+    public List<Map.Entry<String, Integer>> getFrequencies() {
+        return frequencies;
+    }
+
+    /** Returns true if whole-history counts are {@link HeavyHitters} estimates. */
+    public boolean isApproximate() {
+        return approximate;
+    }
+
+
+    public int getTodayLogCount() {
+        return todayLogCount;
+    }
+
+    /** Returns today's count per emotion, in the order the emotions were first logged. */
+    public Map<String, Integer> getTodayCounts() {
+        return todayCounts;
+    }
+
+    /** Returns up to {@link #MAX_RECENT_ENTRIES} of today's entries, newest first. */
+    public List<LogEntry> getRecentToday() {
+        return recentToday;
+    }
+
+    /** Returns the log count of each of the last {@link #TREND_DAYS} days, ending with today. */
+    public int[] getDailyTrend() {
+        return dailyTrend.clone();
+    }
+
+    /** Returns the log count of each of the last {@link #TREND_WEEKS} ISO weeks, ending with this one. */
+    public int[] getWeeklyTrend() {
+        return weeklyTrend.clone();
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.aroxas_emotilog;
+
+import java.text.DecimalFormatSymbols;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * TimeFormatter - Shared, thread-safe formatting of log timestamps for display.
+ *
+ * Produces the same strings as the "HH:mm:ss", "MMM dd, yyyy" and
+ * "MMM dd, yyyy HH:mm:ss" patterns the app has always used, without creating a
+ * {@link SimpleDateFormat} for every call. Date prefixes are formatted once per
+ * calendar day and cached; the time of day is written digit by digit using the
+ * locale's zero digit. Fully rendered strings are memoized in small bounded caches,
+ * so rebinding a row that was shown recently allocates nothing.
+ *
+ * Design Rationale:
+ * - One formatter per (locale, time zone); {@link #getDefault()} replaces the
+ *   shared instance when the user changes either setting
+ * - {@link TimeZone#getDefault()} returns a fresh clone on every call, so
+ *   {@link #getDefault()} only looks at the default zone once per
+ *   {@link #DEFAULT_ZONE_CHECK_MILLIS} and otherwise returns the cached formatter
+ *   without allocating; {@link #refreshDefault()} looks right away
+ * - Caches are fixed-size arrays indexed by a hash of the key, with least
+ *   recently used replacement inside each 4-entry set, so lookups never box keys
+ *   and memory stays bounded however many distinct timestamps are shown
+ * - A single lock guards the caches; formatting a miss is short
+ */
+public final class TimeFormatter {
+    private static final int DAY_CACHE_SIZE = 64;
+    private static final int STRING_CACHE_SIZE = 512;
+
+    /** How long {@link #getDefault()} trusts the default time zone it last read. */
+    public static final long DEFAULT_ZONE_CHECK_MILLIS = 1000;
+
+    private static volatile TimeFormatter defaultFormatter;
+    private static volatile long defaultZoneCheckedAt;
+
+    private final Locale locale;
+    private final TimeZone timeZone;
+    private final char zeroDigit;
+    private final SimpleDateFormat dateFormat;
+
+    private final LongStringCache dayPrefixes = new LongStringCache(DAY_CACHE_SIZE);
+    private final LongStringCache times = new LongStringCache(STRING_CACHE_SIZE);
+    private final LongStringCache dateTimes = new LongStringCache(STRING_CACHE_SIZE);
+    private final char[] timeBuffer = new char[8];
+
+
+    public TimeFormatter(Locale locale, TimeZone timeZone) {
+        this.locale = locale;
+        this.timeZone = (TimeZone) timeZone.clone();
+        this.zeroDigit = DecimalFormatSymbols.getInstance(locale).getZeroDigit();
+        this.dateFormat = new SimpleDateFormat("MMM dd, yyyy", locale);
+        this.dateFormat.setTimeZone(this.timeZone);
+    }
+
+    /**
+     * Returns a formatter for the current default locale and time zone. A change of
+     * the default time zone is noticed within {@link #DEFAULT_ZONE_CHECK_MILLIS}.
+     */
+    public static TimeFormatter getDefault() {
+        TimeFormatter formatter = defaultFormatter;
+        if (formatter == null || formatter.locale != Locale.getDefault()
+                || System.nanoTime() - defaultZoneCheckedAt > DEFAULT_ZONE_CHECK_MILLIS * 1_000_000) {
+            return refreshDefault();
+        }
+        return formatter;
+    }
+
+    /**
+     * Reads the default locale and time zone now and returns a formatter for them;
+     * the shared instance is only replaced if one of them changed.
+     */
+    public static TimeFormatter refreshDefault() {
+        Locale locale = Locale.getDefault();
+        TimeZone timeZone = TimeZone.getDefault();
+        TimeFormatter formatter = defaultFormatter;
+        if (formatter == null || !formatter.locale.equals(locale)
+                || !formatter.timeZone.getID().equals(timeZone.getID())) {
+            formatter = new TimeFormatter(locale, timeZone);
+            defaultFormatter = formatter;
+        }
+        defaultZoneCheckedAt = System.nanoTime();
+        return formatter;
+    }
+
+
+    // The formatter's own copy of its zone; callers must not modify it.
+    TimeZone timeZone() {
+        return timeZone;
+    }
+
+
+    /** Formats like "HH:mm:ss". */
+    public synchronized String formatTime(long timestamp) {
+        String cached = times.get(timestamp);
+        if (cached == null) {
+            cached = renderTime(timestamp);
+            times.put(timestamp, cached);
+        }
+        return cached;
+    }
+
+
+    /** Formats like "MMM dd, yyyy". */
+    public synchronized String formatDate(long timestamp) {
+        long localMillis = timestamp + timeZone.getOffset(timestamp);
+        long epochDay = Math.floorDiv(localMillis, DayIndex.MILLIS_PER_DAY);
+        String prefix = dayPrefixes.get(epochDay);
+        if (prefix == null) {
+            prefix = dateFormat.format(new Date(timestamp));
+            dayPrefixes.put(epochDay, prefix);
+        }
+        return prefix;
+    }
+
+
+    /** Formats like "MMM dd, yyyy HH:mm:ss". */
+    public synchronized String formatDateTime(long timestamp) {
+        String cached = dateTimes.get(timestamp);
+        if (cached == null) {
+            cached = formatDate(timestamp) + ' ' + renderTime(timestamp);
+            dateTimes.put(timestamp, cached);
+        }
+        return cached;
+    }
+
+
+    private String renderTime(long timestamp) {
+        long localMillis = timestamp + timeZone.getOffset(timestamp);
+        int secondOfDay = (int) (Math.floorMod(localMillis, DayIndex.MILLIS_PER_DAY) / 1000);
+        writeTwoDigits(0, secondOfDay / 3600);
+        timeBuffer[2] = ':';
+        writeTwoDigits(3, secondOfDay / 60 % 60);
+        timeBuffer[5] = ':';
+        writeTwoDigits(6, secondOfDay % 60);
+        return new String(timeBuffer);
+    }
+
+
+    private void writeTwoDigits(int offset, int value) {
+        timeBuffer[offset] = (char) (zeroDigit + value / 10);
+        timeBuffer[offset + 1] = (char) (zeroDigit + value % 10);
+    }
+
+
+    /**
+     * Fixed-capacity long-to-String cache. Keys hash to a set of four slots and
+     * a miss replaces the least recently used slot in that set.
+     */
+    static final class LongStringCache {
+        private static final int WAYS = 4;
+
+        private final long[] keys;
+        private final String[] values;
+        private final long[] lastUsed;
+        private final int setMask;
+        private long clock;
+
+        LongStringCache(int capacity) {
+            int sets = Integer.highestOneBit(Math.max(1, capacity / WAYS));
+            keys = new long[sets * WAYS];
+            values = new String[sets * WAYS];
+            lastUsed = new long[sets * WAYS];
+            setMask = sets - 1;
+        }
+
+        String get(long key) {
+            int base = setOf(key);
+            for (int slot = base; slot < base + WAYS; slot++) {
+                if (values[slot] != null && keys[slot] == key) {
+                    lastUsed[slot] = ++clock;
+                    return values[slot];
+                }
+            }
+            return null;
+        }
+
+        void put(long key, String value) {
+            int base = setOf(key);
+            int victim = base;
+            for (int slot = base; slot < base + WAYS; slot++) {
+                if (values[slot] == null) {
+                    victim = slot;
+                    break;
+                }
+                if (lastUsed[slot] < lastUsed[victim]) {
+                    victim = slot;
+                }
+            }
+            keys[victim] = key;
+            values[victim] = value;
+            lastUsed[victim] = ++clock;
+        }
+
+        int capacity() {
+            return keys.length;
+        }
+
+        private int setOf(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return ((int) (h >>> 40) & setMask) * WAYS;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.aroxas_emotilog;
+
+/**
+ * TooManyEmotionsException - Thrown when a new emotion is logged but no more distinct emotions fit.
+ *
+ * A store keeps at most {@link LogStore#MAX_DISTINCT_EMOTIONS} distinct emotion
+ * names for its whole lifetime; entries of emotions it already knows can still be
+ * logged. The limit is a property of the stored data, so retrying does not help.
+ *
+ * Design Rationale:
+ * - Extends {@link IllegalStateException}, which these calls documented before the
+ *   limit had its own type, so existing handlers keep working
+ * - Carries the rejected emotion and the limit, so callers can tell the user which
+ *   tag was refused without parsing the message
+ */
+public class TooManyEmotionsException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    private final String emotion;
+    private final int limit;
+
+
+    public TooManyEmotionsException(String emotion, int limit) {
+        super("Too many distinct emotions to add " + emotion + ": at most " + limit + " are supported");
+        this.emotion = emotion;
+        this.limit = limit;
+    }
+
+
+    /** Returns the new emotion that could not be added. */
+    public String getEmotion() {
+        return emotion;
+    }
+
+
+    /** Returns the number of distinct emotions the store already holds and cannot exceed. */
+    public int getLimit() {
+        return limit;
+    }
+}
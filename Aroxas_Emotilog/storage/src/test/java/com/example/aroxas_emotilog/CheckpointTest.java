@@ -0,0 +1,346 @@
+package com.example.aroxas_emotilog;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link Checkpoint} and for opening a {@link LogStore} from one:
+ * the restored state equals a full replay, only the log tail is read, and damaged
+ * or outdated checkpoints fall back to an older one or to a full replay.
+ *
+ * Whether a log record was read on open is observed by damaging it on disk: a
+ * replay stops at the first damaged record, a checkpoint covering it does not.
+ */
+public class CheckpointTest {
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final String[] EMOTIONS = { "Happy", "Sad", "Calm", "Angry", "Excited" };
+    private static final long START = 1_700_000_000_000L;
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("checkpoint").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private LogStore open() throws IOException {
+        LogStore store = new LogStore();
+        store.setTimeZone(UTC);
+        store.setCheckpointInterval(0);
+        store.open(directory);
+        return store;
+    }
+
+    // Logs entries [from, to) of a history about seven minutes apart with a skewed mix of emotions.
+    private static void addEntries(LogStore store, int from, int to) {
+        String[] emotions = new String[to - from];
+        long[] timestamps = new long[to - from];
+        for (int i = from; i < to; i++) {
+            emotions[i - from] = EMOTIONS[(i * 7 + i / 3) % (1 + i % EMOTIONS.length)];
+            timestamps[i - from] = START + i * 419_000L + (i % 11) * 1000L;
+        }
+        store.addLogs(emotions, timestamps, to - from);
+    }
+
+    private static void assertSameState(LogStore expected, LogStore actual) {
+        assertSameState(expected, actual, true);
+    }
+
+
+    private static void assertSameState(LogStore expected, LogStore actual, boolean compareHours) {
+        assertEquals(expected.getTotalLogCount(), actual.getTotalLogCount());
+        assertEquals(describe(expected.getLogs()), describe(actual.getLogs()));
+        assertEquals(expected.getEmotionCounts(), actual.getEmotionCounts());
+        assertEquals(expected.getMostFrequentEmotion(), actual.getMostFrequentEmotion());
+        assertEquals(expected.getMostFrequentEmotionCount(), actual.getMostFrequentEmotionCount());
+        long end = START + 60 * DayIndex.MILLIS_PER_DAY;
+        for (RollupTable.Resolution resolution : RollupTable.Resolution.values()) {
+            if (resolution == RollupTable.Resolution.HOUR && !compareHours) {
+                continue;
+            }
+            assertEquals(resolution.name(), Arrays.toString(expected.getCountsPerBucket(resolution, START, end)),
+                    Arrays.toString(actual.getCountsPerBucket(resolution, START, end)));
+        }
+        for (long day = START; day < end; day += DayIndex.MILLIS_PER_DAY) {
+            assertEquals(describe(expected.getLogsForDay(day)), describe(actual.getLogsForDay(day)));
+            assertEquals(expected.getEmotionCountsForDay(day), actual.getEmotionCountsForDay(day));
+        }
+        assertEquals(describe(expected.getLogsForEmotionBetween("Sad", START, end)),
+                describe(actual.getLogsForEmotionBetween("Sad", START, end)));
+    }
+
+    private File segment() {
+        return new File(directory, String.format(Locale.US, "segment-%019d.log", 0));
+    }
+
+    // Overwrites the checksum of one log record, so a replay stops right before it.
+    private void damageRecord(long index) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segment(), "rw")) {
+            file.seek(SegmentLog.HEADER_SIZE + index * SegmentLog.RECORD_SIZE + 12);
+            file.writeInt(0);
+        }
+    }
+
+
+    // Flips a bit in the middle of the file; repeated calls flip further bits.
+    private static void damage(File file) throws IOException {
+        try (RandomAccessFile input = new RandomAccessFile(file, "rw")) {
+            input.seek(input.length() / 2);
+            int value = input.read();
+            input.seek(input.length() / 2);
+            input.write(value + 1);
+        }
+    }
+
+
+    private static String describe(List<LogEntry> logs) {
+        StringBuilder text = new StringBuilder();
+        for (LogEntry log : logs) {
+            text.append(log.getTimestamp()).append(' ').append(log.getEmotion()).append('\n');
+        }
+        return text.toString();
+    }
+
+
+    private void deleteCheckpoints() {
+        for (File file : Checkpoint.list(directory)) {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void testReopeningFromCheckpointEqualsFullReplay() throws IOException {
+        LogStore store = open();
+        // Several sealed blocks plus an open chunk.
+        addEntries(store, 0, 3 * LogColumns.CHUNK_SIZE + 77);
+        store.close();
+        assertEquals(1, Checkpoint.list(directory).length);
+
+        LogStore restored = open();
+        restored.close();
+        deleteCheckpoints();
+        LogStore replayed = open();
+        assertSameState(replayed, restored);
+        assertEquals(3 * LogColumns.CHUNK_SIZE + 77, restored.getTotalLogCount());
+        replayed.close();
+    }
+
+    @Test
+    public void testReopeningWithCompactedTierEqualsFullReplay() throws IOException {
+        LogStore store = open();
+        addEntries(store, 0, 5000);
+        store.setRetentionPolicy(new RetentionPolicy(0, 1500));
+        store.compact();
+        store.setRetentionPolicy(RetentionPolicy.KEEP_ALL);
+        addEntries(store, 5000, 5200);
+        store.close();
+
+        LogStore restored = open();
+        addEntries(restored, 5200, 5300);
+        restored.close();
+        LogStore reopened = open();
+        reopened.close();
+        deleteCheckpoints();
+        LogStore replayed = open();
+        // A replay cannot rebuild the hourly rollups of compacted entries; the checkpoint kept them.
+        assertSameState(replayed, reopened, false);
+        assertEquals(5300, reopened.getTotalLogCount());
+        long end = START + 60 * DayIndex.MILLIS_PER_DAY;
+        int[] hours = reopened.getCountsPerBucket(RollupTable.Resolution.HOUR, START, end);
+        int hourly = 0;
+        for (int count : hours) {
+            hourly += count;
+        }
+        assertEquals(5300, hourly);
+        replayed.close();
+    }
+
+    @Test
+    public void testOnlyTheTailIsReplayed() throws IOException {
+        LogStore store = open();
+        addEntries(store, 0, 1000);
+        assertTrue(store.checkpoint());
+        assertFalse("nothing new to checkpoint", store.checkpoint());
+        addEntries(store, 1000, 1100);
+        store.close();
+
+        // Before the checkpoint: not read at all.
+        damageRecord(500);
+        LogStore restored = open();
+        assertEquals(1100, restored.getTotalLogCount());
+        // The new entry goes after the tail, not after the damaged record.
+        restored.addLog("Calm");
+        restored.close();
+        LogStore reopened = open();
+        assertEquals(1101, reopened.getTotalLogCount());
+        assertEquals("Calm", reopened.getLogs().get(1100).getEmotion());
+        reopened.close();
+    }
+
+    @Test
+    public void testDamagedCheckpointFallsBackToOlderOne() throws IOException {
+        LogStore store = open();
+        addEntries(store, 0, 1000);
+        assertTrue(store.checkpoint());
+        addEntries(store, 1000, 1500);
+        store.close();
+        File[] checkpoints = Checkpoint.list(directory);
+        assertEquals(2, checkpoints.length);
+        assertEquals(Checkpoint.fileName(1500), checkpoints[0].getName());
+        LogStore expected = open();
+        expected.close();
+
+        damage(checkpoints[0]);
+        try {
+            Checkpoint.read(checkpoints[0], UTC);
+            fail("damaged checkpoint must not load");
+        } catch (IOException expectedFailure) {
+            // Checksum mismatch.
+        }
+        // Covered by the older checkpoint, so a replay from there does not see it.
+        damageRecord(10);
+        LogStore restored = open();
+        assertSameState(expected, restored);
+        restored.close();
+    }
+
+    @Test
+    public void testAllCheckpointsDamagedFallsBackToFullReplay() throws IOException {
+        LogStore store = open();
+        addEntries(store, 0, 1000);
+        assertTrue(store.checkpoint());
+        addEntries(store, 1000, 1500);
+        store.close();
+
+        for (File checkpoint : Checkpoint.list(directory)) {
+            damage(checkpoint);
+        }
+        LogStore replayed = open();
+        assertEquals(1500, replayed.getTotalLogCount());
+        replayed.close();
+        // The full replay wrote a fresh checkpoint on close.
+        assertEquals(Checkpoint.fileName(1500), Checkpoint.list(directory)[0].getName());
+
+        for (File checkpoint : Checkpoint.list(directory)) {
+            damage(checkpoint);
+        }
+        damageRecord(10);
+        replayed = open();
+        assertEquals(10, replayed.getTotalLogCount());
+        replayed.close();
+    }
+
+    @Test
+    public void testLogBehindCheckpointIsReplayedInFull() throws IOException {
+        LogStore store = open();
+        addEntries(store, 0, 1000);
+        store.close();
+        try (RandomAccessFile file = new RandomAccessFile(segment(), "rw")) {
+            file.setLength(SegmentLog.HEADER_SIZE + 600L * SegmentLog.RECORD_SIZE);
+        }
+
+        LogStore restored = open();
+        assertEquals(600, restored.getTotalLogCount());
+        restored.close();
+        deleteCheckpoints();
+        LogStore replayed = open();
+        assertSameState(replayed, restored);
+        replayed.close();
+    }
+
+    @Test
+    public void testCheckpointOfAnotherTimeZoneIsSkipped() throws IOException {
+        LogStore store = open();
+        addEntries(store, 0, 1000);
+        store.close();
+
+        TimeZone tokyo = TimeZone.getTimeZone("Asia/Tokyo");
+        LogStore restored = new LogStore();
+        restored.setTimeZone(tokyo);
+        restored.open(directory);
+        restored.close();
+        // Replaces the checkpoint of the same records with one in Tokyo time.
+        assertEquals(1, Checkpoint.list(directory).length);
+        LogStore rebuilt = open();
+        rebuilt.setTimeZone(tokyo);
+        assertSameState(rebuilt, restored);
+        rebuilt.close();
+    }
+
+    @Test
+    public void testCheckpointsAreWrittenPeriodically() throws Exception {
+        LogStore store = open();
+        store.setCheckpointInterval(300);
+        for (int i = 0; i < 10; i++) {
+            addEntries(store, i * 100, i * 100 + 100);
+        }
+        long start = System.nanoTime();
+        while (Checkpoint.list(directory).length == 0 && System.nanoTime() - start < 5_000_000_000L) {
+            Thread.sleep(1);
+        }
+        File[] checkpoints = Checkpoint.list(directory);
+        assertTrue(checkpoints.length > 0);
+        assertTrue(checkpoints.length <= Checkpoint.KEPT_CHECKPOINTS);
+        store.close();
+        assertEquals(Checkpoint.fileName(1000), Checkpoint.list(directory)[0].getName());
+    }
+
+    @Test
+    public void testLargeHistoryReopensFromCheckpoint() throws IOException {
+        int history = 200_000;
+        int tail = 1000;
+        LogStore store = open();
+        for (int from = 0; from < history; from += 50_000) {
+            addEntries(store, from, from + 50_000);
+        }
+        assertTrue(store.checkpoint());
+        addEntries(store, history, history + tail);
+        // Closed without covering the tail.
+        store.reset();
+        File[] checkpoints = Checkpoint.list(directory);
+        assertTrue(Arrays.toString(checkpoints), checkpoints.length == 1);
+
+        File hidden = new File(directory, "hidden");
+        assertTrue(checkpoints[0].renameTo(hidden));
+        LogStore replayed = new LogStore();
+        replayed.setTimeZone(UTC);
+        replayed.open(directory);
+        assertTrue(hidden.renameTo(checkpoints[0]));
+
+        LogStore restored = new LogStore();
+        restored.setTimeZone(UTC);
+        restored.open(directory);
+        try {
+            assertEquals(history + tail, replayed.getTotalLogCount());
+            assertEquals(history + tail, restored.getTotalLogCount());
+            assertEquals(replayed.getEmotionCounts(), restored.getEmotionCounts());
+            assertEquals(replayed.getLogsForEmotion("Sad").size(), restored.getLogsForEmotion("Sad").size());
+        } finally {
+            replayed.reset();
+            restored.reset();
+        }
+    }
+}
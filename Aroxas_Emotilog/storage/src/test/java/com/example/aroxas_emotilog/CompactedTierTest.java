@@ -0,0 +1,131 @@
+package com.example.aroxas_emotilog;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link CompactedTier} counts and persistence, and for the
+ * cut chosen by a {@link RetentionPolicy}.
+ */
+public class CompactedTierTest {
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final long DAY = DayIndex.MILLIS_PER_DAY;
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("compacted-tier").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    // Entries on days 100 to 109, one more each day, alternating between two emotions.
+    private static LogColumns columns() {
+        LogColumns columns = new LogColumns();
+        columns.intern("Happy");
+        columns.intern("Sad");
+        for (int day = 100; day < 110; day++) {
+            for (int k = 0; k <= day - 100; k++) {
+                columns.append(day * DAY + k * 60_000L, k % 2);
+            }
+        }
+        return columns;
+    }
+
+    @Test
+    public void testPlusAddsToExistingCounts() {
+        LogColumns.View view = columns().view();
+        CompactedTier first = CompactedTier.EMPTY.plus(view, 0, 3, UTC, 3);
+        CompactedTier second = first.plus(view, 3, 10, UTC, 10);
+
+        assertTrue(CompactedTier.EMPTY.isEmpty());
+        assertEquals(3, first.getTotal());
+        assertEquals(0, first.countForDay(102));
+        assertEquals(10, second.getTotal());
+        assertEquals(10, second.getRawStartIndex());
+        assertEquals(1, second.countForDay(100));
+        assertEquals(4, second.countForDay(103));
+        assertEquals(2, second.countForDay(103, 0));
+        assertEquals(2, second.countForDay(103, 1));
+
+        int[] counts = new int[2];
+        second.addCountsForDay(102, counts);
+        assertArrayEquals(new int[] { 2, 1 }, counts);
+        assertEquals("Sad", second.emotionName(1));
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        LogColumns.View view = columns().view();
+        CompactedTier tier = CompactedTier.EMPTY.plus(view, 0, view.size(), UTC, 42);
+        assertEquals(CompactedTier.EMPTY, CompactedTier.read(directory, UTC));
+
+        File pending = tier.writePending(directory);
+        // Not visible until committed.
+        assertEquals(CompactedTier.EMPTY, CompactedTier.read(directory, UTC));
+        CompactedTier.commitPending(pending);
+
+        CompactedTier read = CompactedTier.read(directory, UTC);
+        assertEquals(tier.getTotal(), read.getTotal());
+        assertEquals(42, read.getRawStartIndex());
+        assertEquals(2, read.emotionCount());
+        assertEquals("Happy", read.emotionName(0));
+        for (long day = 99; day < 111; day++) {
+            assertEquals(tier.countForDay(day), read.countForDay(day));
+            assertEquals(tier.countForDay(day, 1), read.countForDay(day, 1));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testDamagedFileIsRejected() throws IOException {
+        LogColumns.View view = columns().view();
+        CompactedTier.commitPending(CompactedTier.EMPTY.plus(view, 0, 20, UTC, 20).writePending(directory));
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, CompactedTier.FILE_NAME), "rw")) {
+            file.seek(file.length() - 10);
+            file.write(0x7F);
+        }
+        CompactedTier.read(directory, UTC);
+    }
+
+    @Test
+    public void testRetentionPolicyCut() {
+        LogColumns.View columns = columns().view();
+        DayIndex days = new DayIndex(UTC);
+        for (int i = 0; i < columns.size(); i++) {
+            days.add(columns.timestampAt(i));
+        }
+        long now = 109 * DAY + 12 * 3_600_000L;
+
+        assertEquals(0, RetentionPolicy.KEEP_ALL.compactionCut(columns, days.view(), now));
+        // Days 108 and 109 hold 9 + 10 entries.
+        assertEquals(columns.size() - 19, new RetentionPolicy(2, 0).compactionCut(columns, days.view(), now));
+        assertEquals(columns.size() - 5, new RetentionPolicy(0, 5).compactionCut(columns, days.view(), now));
+        // The stricter limit wins.
+        assertEquals(columns.size() - 5, new RetentionPolicy(2, 5).compactionCut(columns, days.view(), now));
+        assertEquals(columns.size() - 19, new RetentionPolicy(2, 50).compactionCut(columns, days.view(), now));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeLimitsAreRejected() {
+        new RetentionPolicy(-1, 0);
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.aroxas_emotilog;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link CompressedBlock}: every kind of timestamp sequence round-trips,
+ * through full decoding and through anchored random access, and the smaller emotion
+ * encoding is chosen.
+ */
+public class CompressedBlockTest {
+    private static final int SIZE = LogColumns.CHUNK_SIZE;
+
+    private static void assertRoundTrip(long[] timestamps, short[] ordinals, int size) {
+        CompressedBlock block = CompressedBlock.compress(timestamps, ordinals, size);
+        assertEquals(size, block.size());
+        long[] decodedTimestamps = new long[size];
+        short[] decodedOrdinals = new short[size];
+        block.decodeTimestamps(decodedTimestamps);
+        block.decodeOrdinals(decodedOrdinals);
+        for (int i = 0; i < size; i++) {
+            assertEquals("timestamp " + i, timestamps[i], decodedTimestamps[i]);
+            assertEquals("ordinal " + i, ordinals[i], decodedOrdinals[i]);
+            assertEquals("timestamp at " + i, timestamps[i], block.timestampAt(i));
+            assertEquals("ordinal at " + i, ordinals[i] & 0xFFFF, block.ordinalAt(i));
+        }
+    }
+
+    @Test
+    public void testRegularTimestamps() {
+        long[] timestamps = new long[SIZE];
+        short[] ordinals = new short[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            timestamps[i] = 1_700_000_000_000L + i * 60_000L;
+        }
+        assertRoundTrip(timestamps, ordinals, SIZE);
+        // One bit per entry plus the anchors.
+        assertTrue(CompressedBlock.compress(timestamps, ordinals, SIZE).estimateMemoryBytes() < SIZE);
+    }
+
+    @Test
+    public void testIrregularTimestampsAndClockChanges() {
+        Random random = new Random(7);
+        long[] timestamps = new long[SIZE];
+        short[] ordinals = new short[SIZE];
+        long timestamp = 1_700_000_000_000L;
+        for (int i = 0; i < SIZE; i++) {
+            switch (random.nextInt(6)) {
+                case 0:
+                    timestamp -= random.nextInt(3_600_000);
+                    break;
+                case 1:
+                    timestamp += random.nextInt(1 << 30) * 1000L;
+                    break;
+                default:
+                    timestamp += random.nextInt(1 << random.nextInt(24));
+            }
+            timestamps[i] = timestamp;
+            ordinals[i] = (short) random.nextInt(40);
+        }
+        assertRoundTrip(timestamps, ordinals, SIZE);
+    }
+
+    @Test
+    public void testWholeSecondGapsAreStoredInSeconds() {
+        Random random = new Random(11);
+        long[] seconds = new long[SIZE];
+        long[] millis = new long[SIZE];
+        short[] ordinals = new short[SIZE];
+        long timestamp = 1_700_000_000_123L;
+        for (int i = 0; i < SIZE; i++) {
+            timestamp += (random.nextInt(1200) - 100) * 1000L;
+            seconds[i] = timestamp;
+            millis[i] = timestamp + (i == SIZE - 1 ? 1 : 0);
+        }
+        assertRoundTrip(seconds, ordinals, SIZE);
+        assertRoundTrip(millis, ordinals, SIZE);
+        assertTrue(CompressedBlock.compress(seconds, ordinals, SIZE).estimateMemoryBytes() * 3
+                < CompressedBlock.compress(millis, ordinals, SIZE).estimateMemoryBytes() * 2);
+    }
+
+    @Test
+    public void testExtremeTimestamps() {
+        long[] timestamps = { Long.MIN_VALUE, Long.MAX_VALUE, 0, Long.MIN_VALUE, -1, Long.MAX_VALUE, 1,
+                Long.MAX_VALUE, Long.MIN_VALUE, 42 };
+        short[] ordinals = { 0, (short) 0xFFFF, 1, (short) 0x8000, 3, 3, 3, 2, 2, 0 };
+        assertRoundTrip(timestamps, ordinals, timestamps.length);
+        assertRoundTrip(new long[] { 123L }, new short[] { 5 }, 1);
+    }
+
+    @Test
+    public void testEncodingChoice() {
+        long[] timestamps = new long[SIZE];
+        short[] streaks = new short[SIZE];
+        short[] alternating = new short[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            timestamps[i] = i * 1000L;
+            streaks[i] = (short) (i / 100 % 3);
+            alternating[i] = (short) (i % 2 == 0 ? 1000 : 2000);
+        }
+        CompressedBlock runs = CompressedBlock.compress(timestamps, streaks, SIZE);
+        assertTrue(runs.isRunLengthEncoded());
+        CompressedBlock packed = CompressedBlock.compress(timestamps, alternating, SIZE);
+        assertFalse(packed.isRunLengthEncoded());
+        // One bit per ordinal against a dictionary of two.
+        assertTrue(packed.estimateMemoryBytes() < SIZE / 8 + SIZE / 4);
+        assertRoundTrip(timestamps, streaks, SIZE);
+        assertRoundTrip(timestamps, alternating, SIZE);
+    }
+
+    @Test
+    public void testAddCounts() {
+        long[] timestamps = new long[SIZE];
+        short[] streaks = new short[SIZE];
+        short[] mixed = new short[SIZE];
+        Random random = new Random(3);
+        for (int i = 0; i < SIZE; i++) {
+            timestamps[i] = i;
+            streaks[i] = (short) (i / 37 % 4);
+            mixed[i] = (short) random.nextInt(4);
+        }
+        for (short[] ordinals : new short[][] { streaks, mixed }) {
+            CompressedBlock block = CompressedBlock.compress(timestamps, ordinals, SIZE);
+            for (int[] range : new int[][] { { 0, SIZE }, { 5, 6 }, { 36, 75 }, { 100, 100 }, { 4000, SIZE } }) {
+                int[] counts = new int[4];
+                block.addCounts(range[0], range[1], counts);
+                int[] expected = new int[4];
+                for (int i = range[0]; i < range[1]; i++) {
+                    expected[ordinals[i]]++;
+                }
+                assertArrayEquals(expected, counts);
+            }
+        }
+    }
+
+    @Test
+    public void testValidateChecksOrdinals() throws IOException {
+        long[] timestamps = new long[SIZE];
+        short[] streaks = new short[SIZE];
+        short[] mixed = new short[SIZE];
+        Random random = new Random(5);
+        for (int i = 0; i < SIZE; i++) {
+            timestamps[i] = i;
+            streaks[i] = (short) (i / 37 % 4);
+            mixed[i] = (short) random.nextInt(4);
+        }
+        for (short[] ordinals : new short[][] { streaks, mixed }) {
+            CompressedBlock block = CompressedBlock.compress(timestamps, ordinals, SIZE);
+            block.validate(4);
+            try {
+                block.validate(3);
+                fail("Ordinal 3 was accepted with only 3 emotions");
+            } catch (IOException expected) {
+                // Ordinals must refer to known emotions.
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.aroxas_emotilog;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link DayIndex}, including days around DST transitions.
+ */
+public class DayIndexTest {
+    private static final long HOUR = 60L * 60 * 1000;
+    private static final TimeZone EDMONTON = TimeZone.getTimeZone("America/Edmonton");
+
+    private static long localTime(int year, int month, int day, int hour) {
+        Calendar calendar = Calendar.getInstance(EDMONTON);
+        calendar.clear();
+        calendar.set(year, month, day, hour, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    private static DayIndex indexOf(List<Long> timestamps) {
+        DayIndex index = new DayIndex(EDMONTON);
+        for (long timestamp : timestamps) {
+            index.add(timestamp);
+        }
+        return index;
+    }
+
+    @Test
+    public void testSpringForwardDayHas23Hours() {
+        List<Long> timestamps = new ArrayList<>();
+        long start = localTime(2024, Calendar.MARCH, 9, 0);
+        long end = localTime(2024, Calendar.MARCH, 12, 0);
+        for (long t = start; t < end; t += HOUR) {
+            timestamps.add(t);
+        }
+        DayIndex index = indexOf(timestamps);
+
+        long transitionDay = index.epochDay(localTime(2024, Calendar.MARCH, 10, 12));
+        assertEquals(24, DayIndex.countPositions(index.rangesForDay(transitionDay - 1)));
+        assertEquals(23, DayIndex.countPositions(index.rangesForDay(transitionDay)));
+        assertEquals(24, DayIndex.countPositions(index.rangesForDay(transitionDay + 1)));
+        assertEquals(1, index.getRunCount());
+    }
+
+    @Test
+    public void testFallBackDayHas25Hours() {
+        List<Long> timestamps = new ArrayList<>();
+        long start = localTime(2024, Calendar.NOVEMBER, 2, 0);
+        long end = localTime(2024, Calendar.NOVEMBER, 5, 0);
+        for (long t = start; t < end; t += HOUR) {
+            timestamps.add(t);
+        }
+        DayIndex index = indexOf(timestamps);
+
+        long transitionDay = index.epochDay(localTime(2024, Calendar.NOVEMBER, 3, 12));
+        int[] ranges = index.rangesForDay(transitionDay);
+        assertEquals(2, ranges.length);
+        assertEquals(24, ranges[0]);
+        assertEquals(49, ranges[1]);
+    }
+
+    @Test
+    public void testOutOfOrderEntriesStartNewRun() {
+        long monday = localTime(2024, Calendar.JUNE, 3, 9);
+        long tuesday = localTime(2024, Calendar.JUNE, 4, 9);
+        List<Long> timestamps = new ArrayList<>();
+        timestamps.add(monday);
+        timestamps.add(tuesday);
+        timestamps.add(monday + HOUR);   // clock set back
+        timestamps.add(tuesday + HOUR);
+        DayIndex index = indexOf(timestamps);
+
+        assertEquals(2, index.getRunCount());
+        int[] ranges = index.rangesForDay(index.epochDay(monday));
+        assertArrayEquals(new int[] { 0, 1, 2, 3 }, ranges);
+        assertEquals(2, DayIndex.countPositions(index.rangesForDay(index.epochDay(tuesday))));
+    }
+
+    @Test
+    public void testRangesBetween() {
+        List<Long> timestamps = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            timestamps.add(1000L * i);
+        }
+        timestamps.add(2500L);
+        DayIndex index = indexOf(timestamps);
+
+        int[] ranges = index.rangesBetween(2000L, 5000L, timestamps::get);
+        assertArrayEquals(new int[] { 2, 5, 10, 11 }, ranges);
+        assertEquals(0, index.rangesBetween(5000L, 5000L, timestamps::get).length);
+        assertEquals(0, index.rangesForDay(index.epochDay(0L) + 1).length);
+    }
+
+    @Test
+    public void testRangesWhereDayMergesAdjacentDays() {
+        long monday = localTime(2024, Calendar.JUNE, 3, 9);
+        List<Long> timestamps = new ArrayList<>();
+        for (int day = 0; day < 4; day++) {
+            timestamps.add(monday + day * 24 * HOUR);
+            timestamps.add(monday + day * 24 * HOUR + HOUR);
+        }
+        timestamps.add(monday + HOUR);   // clock set back to Monday
+        DayIndex index = indexOf(timestamps);
+        long first = index.epochDay(monday);
+
+        // Monday and Tuesday are adjacent in the first run; Monday again in the second.
+        assertArrayEquals(new int[] { 0, 4, 8, 9 },
+                index.view().rangesWhereDay(day -> day == first || day == first + 1));
+        assertArrayEquals(new int[] { 2, 4, 6, 8 },
+                index.view().rangesWhereDay(day -> day == first + 1 || day == first + 3));
+        assertEquals(0, index.view().rangesWhereDay(day -> false).length);
+    }
+
+    @Test
+    public void testIntersectRanges() {
+        int[] a = { 0, 5, 8, 12, 20, 30 };
+        int[] b = { 3, 9, 11, 25 };
+        assertArrayEquals(new int[] { 3, 5, 8, 9, 11, 12, 20, 25 }, DayIndex.intersectRanges(a, b));
+        assertArrayEquals(new int[] { 3, 5, 8, 9, 11, 12, 20, 25 }, DayIndex.intersectRanges(b, a));
+        assertEquals(0, DayIndex.intersectRanges(a, new int[0]).length);
+        assertEquals(0, DayIndex.intersectRanges(new int[] { 0, 5 }, new int[] { 5, 9 }).length);
+    }
+
+    @Test
+    public void testIsSameDayMatchesIndex() {
+        LogEntry entry = new LogEntry("Happy", System.currentTimeMillis());
+        assertTrue(entry.isSameDay(entry.getTimestamp()));
+        assertFalse(entry.isSameDay(entry.getTimestamp() - 2 * DayIndex.MILLIS_PER_DAY));
+    }
+}
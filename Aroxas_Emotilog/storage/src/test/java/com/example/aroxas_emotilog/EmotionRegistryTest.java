@@ -0,0 +1,65 @@
+package com.example.aroxas_emotilog;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link EmotionRegistry} ids, views and capacity.
+ */
+public class EmotionRegistryTest {
+
+    @Test
+    public void testIdsAreDense() {
+        EmotionRegistry registry = new EmotionRegistry(100);
+        for (int i = 0; i < EmotionRegistry.DEFAULT_EMOTIONS.size(); i++) {
+            assertEquals(i, registry.intern(EmotionRegistry.DEFAULT_EMOTIONS.get(i)));
+        }
+        assertEquals(0, registry.intern("Happy"));
+        assertEquals(9, registry.intern("Calm"));
+        assertEquals(9, registry.idOf("Calm"));
+        assertEquals(-1, registry.idOf("Bored"));
+        assertEquals("Calm", registry.name(9));
+        assertEquals(10, registry.size());
+    }
+
+    @Test
+    public void testViewIgnoresLaterEmotions() {
+        EmotionRegistry registry = new EmotionRegistry(1000);
+        registry.intern("Happy");
+        EmotionRegistry.View view = registry.view();
+        // Enough new emotions to fill the view's table slots and to resize it.
+        for (int i = 0; i < 500; i++) {
+            registry.intern("tag-" + i);
+        }
+        assertEquals(1, view.size());
+        assertEquals(0, view.idOf("Happy"));
+        assertEquals(-1, view.idOf("tag-0"));
+        assertEquals(-1, view.idOf("tag-499"));
+        assertEquals(500, registry.view().idOf("tag-499"));
+    }
+
+    @Test(expected = TooManyEmotionsException.class)
+    public void testCapacityIsEnforced() {
+        EmotionRegistry registry = new EmotionRegistry(2);
+        registry.intern("Happy");
+        registry.intern("Sad");
+        registry.intern("Happy");
+        registry.intern("Angry");
+    }
+
+    @Test
+    public void testInterningManyEmotions() {
+        int distinct = LogColumns.MAX_EMOTIONS;
+        EmotionRegistry registry = new EmotionRegistry(distinct);
+        for (int i = 0; i < distinct; i++) {
+            assertEquals(i, registry.intern("tag-" + i));
+            // A view per new emotion, as LogStorage publishes a snapshot per batch.
+            registry.view();
+        }
+        assertEquals(distinct, registry.size());
+        for (int i = 0; i < distinct; i += 97) {
+            assertEquals(i, registry.idOf("tag-" + i));
+        }
+    }
+}
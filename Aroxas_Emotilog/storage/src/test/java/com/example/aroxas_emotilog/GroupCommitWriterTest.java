@@ -0,0 +1,244 @@
+package com.example.aroxas_emotilog;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link GroupCommitWriter}: taps are durable within the max latency,
+ * full batches and {@link GroupCommitWriter#flush()} do not wait, and failures are
+ * reported. Durability is checked on a copy of the log directory taken without
+ * closing the store, which is what a killed process leaves behind.
+ */
+public class GroupCommitWriterTest {
+    private File directory;
+    private LogStore store;
+    private final AtomicInteger publications = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("group-commit").toFile();
+        store = new LogStore();
+        store.open(new File(directory, "log"));
+        store.addChangeListener(change -> publications.incrementAndGet());
+        publications.set(0);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+        deleteRecursively(directory);
+    }
+
+    // Copies the log as it is on disk right now and counts the entries it replays.
+    private int countDurableEntries() throws IOException {
+        File copy = new File(directory, "copy" + System.nanoTime());
+        copy.mkdirs();
+        File[] files = new File(directory, "log").listFiles();
+        for (File file : files) {
+            Files.copy(file.toPath(), new File(copy, file.getName()).toPath());
+        }
+        LogStore reopened = new LogStore();
+        reopened.open(copy);
+        try {
+            return reopened.getTotalLogCount();
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private static void awaitCount(LogStore store, int count, long timeoutMillis) throws InterruptedException {
+        long start = System.nanoTime();
+        while (store.getTotalLogCount() < count) {
+            if (System.nanoTime() - start > timeoutMillis * 1_000_000L) {
+                fail("Only " + store.getTotalLogCount() + " of " + count + " entries after " + timeoutMillis + " ms");
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void testBurstIsDurableWithinMaxLatencyAsOneBatch() throws Exception {
+        AtomicLong now = new AtomicLong();
+        GroupCommitWriter writer = new GroupCommitWriter(store, 100, 1000, now::get);
+        for (int i = 0; i < 20; i++) {
+            writer.log(i % 2 == 0 ? "Happy" : "Sad");
+        }
+
+        // Just before the window closes nothing is written, however long the flusher
+        // had to look; the sleep only gives it the chance.
+        now.set(99_000_000L);
+        Thread.sleep(150);
+        assertEquals(20, writer.getQueuedCount());
+        assertEquals(0, store.getTotalLogCount());
+
+        now.set(100_000_000L);
+        awaitCount(store, 20, 5000);
+        assertEquals(20, countDurableEntries());
+        assertEquals(1, publications.get());
+        assertEquals(0, writer.getQueuedCount());
+    }
+
+    @Test
+    public void testFullBatchDoesNotWaitForMaxLatency() throws Exception {
+        GroupCommitWriter writer = new GroupCommitWriter(store, 60_000, 50);
+        for (int i = 0; i < 50; i++) {
+            writer.log("Happy");
+        }
+        awaitCount(store, 50, 5000);
+        assertEquals(50, countDurableEntries());
+    }
+
+    @Test
+    public void testFlushMakesQueuedEntriesDurable() throws IOException {
+        GroupCommitWriter writer = new GroupCommitWriter(store, 60_000, 1000);
+        writer.log("Happy");
+        writer.log("Calm");
+        assertEquals(0, countDurableEntries());
+        writer.flush();
+        assertEquals(2, store.getTotalLogCount());
+        assertEquals(2, countDurableEntries());
+        assertEquals(1, publications.get());
+        // Nothing left to write.
+        writer.flush();
+        assertEquals(1, publications.get());
+    }
+
+    @Test
+    public void testTimestampsAreTakenAtTapTime() throws Exception {
+        GroupCommitWriter writer = new GroupCommitWriter(store, 60_000, 1000);
+        long before = System.currentTimeMillis();
+        writer.log("Happy");
+        long after = System.currentTimeMillis();
+        Thread.sleep(20);
+        writer.flush();
+        long timestamp = store.getLogs().get(0).getTimestamp();
+        assertTrue(timestamp >= before && timestamp <= after);
+    }
+
+    @Test
+    public void testFailedBatchesAreReported() throws Exception {
+        LogStore failing = new LogStore() {
+            @Override
+            public void addLogs(String[] emotions, long[] timestamps, int count) {
+                throw new UncheckedIOException(new IOException("disk full"));
+            }
+        };
+        List<Integer> failed = new CopyOnWriteArrayList<>();
+        GroupCommitWriter writer = new GroupCommitWriter(failing, 10, 1000);
+        writer.setFailureListener((entries, failure) -> failed.add(entries));
+        writer.log("Happy");
+        writer.log("Sad");
+        long start = System.nanoTime();
+        while (failed.isEmpty() && System.nanoTime() - start < 5_000_000_000L) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, failed.size());
+        assertEquals(2, (int) failed.get(0));
+
+        writer.setMaxLatencyMillis(60_000);
+        writer.log("Happy");
+        try {
+            writer.flush();
+            fail("flush must report the failure");
+        } catch (IOException expected) {
+            assertEquals("disk full", expected.getMessage());
+        }
+        assertEquals(1, failed.size());
+    }
+
+    @Test
+    public void testFlusherSurvivesUnexpectedExceptions() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        LogStore flaky = new LogStore() {
+            @Override
+            public void addLogs(String[] emotions, long[] timestamps, int count) {
+                if (calls.incrementAndGet() == 1) {
+                    throw new IllegalStateException("bug in the store");
+                }
+                super.addLogs(emotions, timestamps, count);
+            }
+        };
+        List<Exception> failures = new CopyOnWriteArrayList<>();
+        GroupCommitWriter writer = new GroupCommitWriter(flaky, 10, 1000);
+        writer.setFailureListener((entries, failure) -> {
+            failures.add(failure);
+            throw new IllegalStateException("listener failed too");
+        });
+        writer.log("Happy");
+        long start = System.nanoTime();
+        while (failures.isEmpty() && System.nanoTime() - start < 5_000_000_000L) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, failures.size());
+        assertEquals("bug in the store", failures.get(0).getMessage());
+
+        // The flusher is still running and writes what is logged afterwards.
+        writer.log("Sad");
+        writer.log("Calm");
+        awaitCount(flaky, 2, 5_000);
+        assertEquals(Integer.valueOf(1), flaky.getEmotionCounts().get("Sad"));
+        assertNull(flaky.getEmotionCounts().get("Happy"));
+        assertEquals(1, failures.size());
+    }
+
+    @Test
+    public void testFlushThrowsRejections() throws IOException {
+        LogStore rejecting = new LogStore() {
+            @Override
+            public void addLogs(String[] emotions, long[] timestamps, int count) {
+                throw new TooManyEmotionsException(emotions[0], 1);
+            }
+        };
+        GroupCommitWriter writer = new GroupCommitWriter(rejecting, 60_000, 1000);
+        writer.log("Happy");
+        try {
+            writer.flush();
+            fail("flush must throw the rejection");
+        } catch (TooManyEmotionsException expected) {
+            assertEquals("Happy", expected.getEmotion());
+        }
+        assertEquals(0, writer.getQueuedCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyEmotionIsRejected() {
+        new GroupCommitWriter(store).log("");
+    }
+
+    @Test
+    public void testClearDropsQueuedEntries() throws IOException {
+        GroupCommitWriter writer = new GroupCommitWriter(store, 60_000, Integer.MAX_VALUE);
+        for (int i = 0; i < 1000; i++) {
+            writer.log("Happy");
+        }
+        assertEquals(1000, writer.getQueuedCount());
+        writer.clear();
+        assertEquals(0, writer.getQueuedCount());
+
+        writer.log("Happy");
+        writer.flush();
+        assertEquals(1, countDurableEntries());
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
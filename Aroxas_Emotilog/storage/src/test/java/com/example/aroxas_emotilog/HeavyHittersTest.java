@@ -0,0 +1,163 @@
+package com.example.aroxas_emotilog;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link CountMinSketch}, {@link SpaceSaving} and {@link HeavyHitters},
+ * including accuracy against memory on skewed synthetic tags.
+ */
+public class HeavyHittersTest {
+
+    // Draws tags from a Zipf distribution over {@code distinct} tags.
+    private static String[] zipfStream(int length, int distinct, double exponent, long seed) {
+        double[] cumulative = new double[distinct];
+        double sum = 0;
+        for (int rank = 0; rank < distinct; rank++) {
+            sum += 1.0 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        Random random = new Random(seed);
+        String[] stream = new String[length];
+        for (int i = 0; i < length; i++) {
+            double target = random.nextDouble() * sum;
+            int low = 0;
+            int high = distinct - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cumulative[mid] < target) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            stream[i] = "tag-" + low;
+        }
+        return stream;
+    }
+
+    private static Map<String, Integer> exactCounts(String[] stream) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String tag : stream) {
+            counts.merge(tag, 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    private static List<String> exactTop(Map<String, Integer> counts, int k) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(counts.entrySet());
+        entries.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+        List<String> top = new ArrayList<>();
+        for (int i = 0; i < k && i < entries.size(); i++) {
+            top.add(entries.get(i).getKey());
+        }
+        return top;
+    }
+
+    @Test
+    public void testSketchNeverUndercounts() {
+        String[] stream = zipfStream(200_000, 20_000, 1.1, 1);
+        Map<String, Integer> exact = exactCounts(stream);
+        CountMinSketch sketch = new CountMinSketch(4, 1000);
+        for (String tag : stream) {
+            sketch.add(tag, 1);
+        }
+        long bound = (long) Math.ceil(sketch.getErrorRate() * sketch.getTotal());
+        int overBound = 0;
+        for (Map.Entry<String, Integer> entry : exact.entrySet()) {
+            int estimate = sketch.estimate(entry.getKey());
+            assertTrue(estimate >= entry.getValue());
+            if (estimate - entry.getValue() > bound) {
+                overBound++;
+            }
+        }
+        assertEquals(200_000, sketch.getTotal());
+        assertTrue(overBound <= exact.size() * sketch.getFailureProbability());
+    }
+
+    @Test
+    public void testSpaceSavingGuarantees() {
+        String[] stream = zipfStream(200_000, 20_000, 1.1, 2);
+        Map<String, Integer> exact = exactCounts(stream);
+        SpaceSaving topK = new SpaceSaving(50);
+        for (String tag : stream) {
+            topK.add(tag, 1);
+        }
+        assertEquals(50, topK.size());
+        int threshold = stream.length / topK.capacity();
+        for (Map.Entry<String, Integer> entry : exact.entrySet()) {
+            int tracked = topK.count(entry.getKey());
+            if (entry.getValue() > threshold) {
+                assertTrue("frequent tag must be tracked: " + entry.getKey(), tracked >= 0);
+            }
+            if (tracked >= 0) {
+                assertTrue(tracked >= entry.getValue());
+                assertTrue(tracked - topK.error(entry.getKey()) <= entry.getValue());
+                assertTrue(tracked - entry.getValue() <= threshold);
+            }
+        }
+    }
+
+    @Test
+    public void testExactWhileUnderCapacity() {
+        HeavyHitters heavyHitters = new HeavyHitters(8, 4, 256);
+        heavyHitters.add("Happy", 5);
+        heavyHitters.add("Sad", 2);
+        heavyHitters.add("Happy", 1);
+        List<Map.Entry<String, Integer>> top = heavyHitters.top();
+        assertEquals(2, top.size());
+        assertEquals("Happy", top.get(0).getKey());
+        assertEquals(Integer.valueOf(6), top.get(0).getValue());
+        assertEquals(2, heavyHitters.estimate("Sad"));
+        assertEquals(0, heavyHitters.estimate("Calm"));
+    }
+
+    @Test
+    public void testAccuracyVersusMemory() {
+        String[] stream = zipfStream(1_000_000, 100_000, 1.1, 3);
+        Map<String, Integer> exact = exactCounts(stream);
+        List<String> trueTop = exactTop(exact, 10);
+        // An exact HashMap<String, Integer>: about 32 byte node + 16 byte Integer + table slot
+        // per tag, not counting the tag strings themselves.
+        long exactBytes = exact.size() * (32L + 16 + 8);
+
+        int[][] configs = { { 16, 256 }, { 64, 2048 }, { 256, 8192 } };
+        for (int[] config : configs) {
+            HeavyHitters heavyHitters = new HeavyHitters(config[0], 4, config[1]);
+            for (String tag : stream) {
+                heavyHitters.add(tag, 1);
+            }
+
+            Set<String> reported = new HashSet<>();
+            List<Map.Entry<String, Integer>> top = heavyHitters.top();
+            for (int i = 0; i < 10 && i < top.size(); i++) {
+                reported.add(top.get(i).getKey());
+            }
+            int hits = 0;
+            long maxError = 0;
+            for (String tag : trueTop) {
+                if (reported.contains(tag)) {
+                    hits++;
+                }
+                int error = heavyHitters.estimate(tag) - exact.get(tag);
+                assertTrue(error >= 0);
+                maxError = Math.max(maxError, error);
+            }
+
+            assertTrue(maxError <= stream.length / config[0]);
+            if (config[0] >= HeavyHitters.DEFAULT_CAPACITY) {
+                assertEquals(10, hits);
+                assertTrue(heavyHitters.estimateMemoryBytes() < exactBytes / 20);
+            }
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.aroxas_emotilog;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link ListDiff}. Every diff is replayed on the old list the way a
+ * RecyclerView adapter applies its notifications, and must produce the new list
+ * while only rebinding the rows whose content changed or that are new.
+ */
+public class ListDiffTest {
+
+    // A row as an adapter sees it: a stable id and the content bound to the row.
+    private static final class Row {
+        final long id;
+        final int content;
+
+        Row(long id, int content) {
+            this.id = id;
+            this.content = content;
+        }
+
+        @Override
+        public String toString() {
+            return id + "=" + content;
+        }
+    }
+
+    // Applies a diff to a copy of the old rows, binding rows from the new list as needed.
+    private static final class Replay implements ListDiff.Callback {
+        final List<Row> rows;
+        final List<Row> target;
+        int binds;
+
+        Replay(List<Row> old, List<Row> target) {
+            this.rows = new ArrayList<>(old);
+            this.target = target;
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            for (int i = 0; i < count; i++) {
+                rows.add(position + i, bind(position + i));
+            }
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            rows.subList(position, position + count).clear();
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            rows.add(toPosition, rows.remove(fromPosition));
+        }
+
+        @Override
+        public void onChanged(int position, int count) {
+            for (int i = position; i < position + count; i++) {
+                assertEquals("changed row keeps its id", target.get(i).id, rows.get(i).id);
+                rows.set(i, bind(i));
+            }
+        }
+
+        @Override
+        public void onReset() {
+            rows.clear();
+            for (int i = 0; i < target.size(); i++) {
+                rows.add(bind(i));
+            }
+        }
+
+        // Operations are applied in order, so a bound row already sits at its final position.
+        private Row bind(int position) {
+            binds++;
+            return target.get(position);
+        }
+    }
+
+    private static List<Row> rows(long... idContentPairs) {
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < idContentPairs.length; i += 2) {
+            rows.add(new Row(idContentPairs[i], (int) idContentPairs[i + 1]));
+        }
+        return rows;
+    }
+
+
+    private static long[] ids(List<Row> rows) {
+        long[] ids = new long[rows.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = rows.get(i).id;
+        }
+        return ids;
+    }
+
+
+    private static ListDiff diff(List<Row> old, List<Row> updated) {
+        return ListDiff.between(ids(old), ids(updated),
+                (oldPosition, newPosition) -> old.get(oldPosition).content == updated.get(newPosition).content);
+    }
+
+
+    // Replays the diff and checks that it reproduces the new list; returns the replay.
+    private static Replay assertReplays(List<Row> old, List<Row> updated, ListDiff diff) {
+        Replay replay = new Replay(old, updated);
+        diff.dispatchTo(replay);
+        assertEquals(diff.toString(), updated.toString(), replay.rows.toString());
+        assertEquals(diff.getRebindCount(), replay.binds);
+        return replay;
+    }
+
+    @Test
+    public void testIdenticalListsNeedNothing() {
+        List<Row> old = rows(1, 10, 2, 20, 3, 30);
+        ListDiff diff = diff(old, rows(1, 10, 2, 20, 3, 30));
+        assertTrue(diff.isEmpty());
+        assertEquals(0, diff.getRebindCount());
+        assertTrue(ListDiff.NONE.isEmpty());
+    }
+
+    @Test
+    public void testCountChangeRebindsOneRow() {
+        List<Row> old = rows(1, 10, 2, 20, 3, 30);
+        List<Row> updated = rows(1, 10, 2, 21, 3, 30);
+        ListDiff diff = diff(old, updated);
+        assertEquals("change 1 x1", diff.toString());
+        assertReplays(old, updated, diff);
+        assertEquals(1, diff.getRebindCount());
+    }
+
+    @Test
+    public void testRowMovingUpIsOneMoveAndOneRebind() {
+        // The frequency list: the bottom emotion overtakes the two above it.
+        List<Row> old = rows(1, 30, 2, 20, 3, 10, 4, 5);
+        List<Row> updated = rows(1, 30, 3, 25, 2, 20, 4, 5);
+        ListDiff diff = diff(old, updated);
+        assertEquals(1, diff.getMovedCount());
+        assertEquals(1, diff.getRebindCount());
+        assertReplays(old, updated, diff);
+    }
+
+    @Test
+    public void testInsertsAndRemovalsAreMergedIntoRanges() {
+        List<Row> old = rows(1, 1, 2, 2, 3, 3, 4, 4, 5, 5);
+        List<Row> updated = rows(7, 7, 8, 8, 1, 1, 5, 5, 9, 9);
+        ListDiff diff = diff(old, updated);
+        assertEquals("remove 1 x3, insert 0 x2, insert 4 x1", diff.toString());
+        assertEquals(3, diff.getInsertedCount());
+        assertEquals(3, diff.getRemovedCount());
+        assertReplays(old, updated, diff);
+    }
+
+    @Test
+    public void testEmptyLists() {
+        List<Row> some = rows(1, 1, 2, 2);
+        assertEquals("insert 0 x2", diff(new ArrayList<>(), some).toString());
+        assertEquals("remove 0 x2", diff(some, new ArrayList<>()).toString());
+        assertReplays(some, new ArrayList<>(), diff(some, new ArrayList<>()));
+    }
+
+    @Test
+    public void testReset() {
+        List<Row> old = rows(1, 1, 2, 2);
+        List<Row> updated = rows(3, 3, 4, 4, 5, 5);
+        ListDiff diff = ListDiff.reset(updated.size());
+        assertTrue(diff.isReset());
+        assertFalse(diff.isEmpty());
+        assertReplays(old, updated, diff);
+        assertEquals(3, diff.getRebindCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateIdsAreRejected() {
+        ListDiff.between(new long[] { 1, 2, 1 }, new long[] { 1 }, (a, b) -> true);
+    }
+
+    @Test
+    public void testBuilderMergesAdjacentOperations() {
+        ListDiff diff = new ListDiff.Builder()
+                .insert(0, 1).insert(1, 2)
+                .change(5, 1).change(6, 1).change(8, 1)
+                .remove(9, 1).remove(8, 1).remove(8, 2)
+                .move(3, 3)
+                .build();
+        assertEquals("insert 0 x3, change 5 x2, change 8 x1, remove 8 x4", diff.toString());
+    }
+
+    @Test
+    public void testRandomEditsReplayToTheNewList() {
+        Random random = new Random(42);
+        for (int round = 0; round < 2000; round++) {
+            List<Row> old = new ArrayList<>();
+            int size = random.nextInt(12);
+            for (int i = 0; i < size; i++) {
+                old.add(new Row(i, random.nextInt(3)));
+            }
+            List<Row> updated = new ArrayList<>();
+            for (Row row : old) {
+                if (random.nextInt(4) > 0) {
+                    updated.add(random.nextInt(3) == 0 ? new Row(row.id, row.content + 1) : row);
+                }
+            }
+            for (int i = random.nextInt(4); i > 0; i--) {
+                updated.add(random.nextInt(updated.size() + 1), new Row(100 + i, 0));
+            }
+            if (random.nextBoolean()) {
+                Collections.shuffle(updated, random);
+            }
+
+            ListDiff diff = diff(old, updated);
+            assertReplays(old, updated, diff);
+            // Only new rows and rows whose content changed are bound again.
+            int expectedBinds = 0;
+            for (Row row : updated) {
+                Row before = null;
+                for (Row candidate : old) {
+                    if (candidate.id == row.id) {
+                        before = candidate;
+                    }
+                }
+                if (before == null || before.content != row.content) {
+                    expectedBinds++;
+                }
+            }
+            assertEquals(Arrays.toString(ids(updated)), expectedBinds, diff.getRebindCount());
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.aroxas_emotilog;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link LogChange} and the {@link LogStorage} change feed.
+ */
+public class LogChangeTest {
+
+    @Before
+    public void setUp() throws IOException {
+        LogStorage.reset();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        LogStorage.reset();
+    }
+
+    @Test
+    public void testAppendOnlyChange() {
+        LogStorage.addLog("Happy");
+        LogStorage.addLog("Sad");
+        LogSnapshot before = LogStorage.snapshot();
+        LogStorage.addLog("Happy");
+        LogStorage.addLog("Calm");
+        LogStorage.addLog("Happy");
+
+        LogChange change = LogChange.between(before, LogStorage.snapshot());
+        assertFalse(change.isReset());
+        assertEquals(before.getVersion(), change.getPreviousSequence());
+        assertEquals(LogStorage.snapshot().getVersion(), change.getSequence());
+        assertEquals(2, change.getFirstInsertedPosition());
+        assertEquals(3, change.getInsertedCount());
+        assertEquals("Calm", change.getInsertedEntries().get(1).getEmotion());
+
+        Map<String, Integer> deltas = change.getCountDeltas();
+        assertEquals(2, deltas.size());
+        assertEquals(Integer.valueOf(2), deltas.get("Happy"));
+        assertEquals(Integer.valueOf(1), deltas.get("Calm"));
+        assertSame(deltas, change.getCountDeltas());
+    }
+
+    @Test
+    public void testClearingOrReindexingIsReset() throws IOException {
+        LogStorage.addLog("Happy");
+        LogSnapshot before = LogStorage.snapshot();
+
+        LogStorage.setTimeZone(TimeZone.getTimeZone("UTC"));
+        LogChange reindexed = LogChange.between(before, LogStorage.snapshot());
+        assertTrue(reindexed.isReset());
+        assertEquals(1, reindexed.getInsertedCount());
+
+        LogStorage.reset();
+        assertTrue(LogChange.between(before, LogStorage.snapshot()).isReset());
+        assertTrue(LogChange.between(null, LogStorage.snapshot()).isReset());
+    }
+
+    @Test
+    public void testListenersReceiveOrderedChanges() {
+        List<LogChange> changes = new ArrayList<>();
+        LogStorage.ChangeListener listener = changes::add;
+        LogStorage.addChangeListener(listener);
+        try {
+            LogStorage.addLog("Happy");
+            LogStorage.addLog("Sad");
+            LogStorage.addLog("Happy");
+        } finally {
+            LogStorage.removeChangeListener(listener);
+        }
+        LogStorage.addLog("Calm");
+
+        assertEquals(3, changes.size());
+        for (int i = 0; i < changes.size(); i++) {
+            LogChange change = changes.get(i);
+            assertFalse(change.isReset());
+            assertEquals(i, change.getFirstInsertedPosition());
+            assertEquals(1, change.getInsertedCount());
+            if (i > 0) {
+                assertEquals(changes.get(i - 1).getSequence(), change.getPreviousSequence());
+            }
+        }
+        assertEquals(Integer.valueOf(1), changes.get(1).getCountDeltas().get("Sad"));
+    }
+
+    @Test
+    public void testFailingListenerDoesNotBreakWritersOrOtherListeners() {
+        LogStore store = new LogStore();
+        List<LogChange> changes = new ArrayList<>();
+        store.addChangeListener(change -> {
+            throw new IllegalStateException("executor shut down");
+        });
+        store.addChangeListener(changes::add);
+        store.addLog("Happy");
+        store.addLogs(new String[] { "Sad", "Calm" }, new long[] { 1, 2 }, 2);
+
+        assertEquals(3, store.getTotalLogCount());
+        assertEquals(2, changes.size());
+        assertEquals(2, changes.get(1).getInsertedCount());
+    }
+
+    @Test
+    public void testListenersRunWithoutTheWriteLock() throws InterruptedException {
+        LogStore store = new LogStore();
+        List<Long> sequences = new ArrayList<>();
+        CountDownLatch listening = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        store.addChangeListener(change -> {
+            sequences.add(change.getSequence());
+            if (change.getSnapshot().getRawLogCount() == 1) {
+                // Logging from a listener queues its change behind this one.
+                store.addLog("Nested");
+                listening.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        Thread slow = new Thread(() -> store.addLog("Happy"));
+        slow.start();
+        listening.await();
+        // Another writer gets through while the listener is still busy.
+        store.addLog("Sad");
+        assertEquals(3, store.getTotalLogCount());
+        release.countDown();
+        slow.join();
+
+        synchronized (sequences) {
+            assertEquals(3, sequences.size());
+            for (int i = 1; i < sequences.size(); i++) {
+                assertTrue(sequences.get(i - 1) < sequences.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.aroxas_emotilog;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link LogColumns}, including the bytes per entry and scanning
+ * sealed blocks against raw chunks.
+ */
+public class LogColumnsTest {
+
+    @Test
+    public void testAppendAndRead() {
+        LogColumns columns = new LogColumns();
+        int happy = columns.intern("Happy");
+        int sad = columns.intern("Sad");
+        assertEquals(happy, columns.intern("Happy"));
+        assertEquals(-1, columns.ordinalOf("Angry"));
+
+        int count = LogColumns.CHUNK_SIZE * 3 + 5;
+        for (int i = 0; i < count; i++) {
+            columns.append(1000L + i, i % 2 == 0 ? happy : sad);
+        }
+
+        assertEquals(count, columns.size());
+        assertEquals(1000L + count - 1, columns.timestampAt(count - 1));
+        assertEquals(sad, columns.ordinalAt(LogColumns.CHUNK_SIZE + 1));
+        LogEntry entry = columns.entryAt(LogColumns.CHUNK_SIZE * 2);
+        assertEquals("Happy", entry.getEmotion());
+        assertEquals(1000L + LogColumns.CHUNK_SIZE * 2, entry.getTimestamp());
+    }
+
+    @Test
+    public void testFullChunksAreSealed() {
+        LogColumns columns = new LogColumns();
+        int happy = columns.intern("Happy");
+        int sad = columns.intern("Sad");
+        columns.append(5000L, happy);
+        LogColumns.View early = columns.view();
+
+        int count = LogColumns.CHUNK_SIZE * 2 + 7;
+        for (int i = 1; i < count; i++) {
+            columns.append(5000L + i * 1000L + (i % 5) * 37L, (i / 10) % 2 == 0 ? happy : sad);
+        }
+        LogColumns.View view = columns.view();
+        assertTrue(view.isSealed(0));
+        assertTrue(view.isSealed(1));
+        assertFalse(view.isSealed(2));
+        // A view taken before sealing keeps reading the raw chunk.
+        assertFalse(early.isSealed(0));
+        assertEquals(1, early.size());
+        assertEquals(5000L, early.timestampAt(0));
+
+        LogColumns.Reader reader = view.reader();
+        for (int i = count - 1; i >= 0; i--) {
+            long expected = i == 0 ? 5000L : 5000L + i * 1000L + (i % 5) * 37L;
+            int ordinal = i == 0 || (i / 10) % 2 == 0 ? happy : sad;
+            assertEquals(expected, view.timestampAt(i));
+            assertEquals(expected, reader.timestampAt(i));
+            assertEquals(ordinal, view.ordinalAt(i));
+            assertEquals(ordinal, reader.ordinalAt(i));
+        }
+
+        int[] counts = new int[2];
+        view.addCounts(10, count, counts);
+        int[] expected = new int[2];
+        for (int i = 10; i < count; i++) {
+            expected[view.ordinalAt(i)]++;
+        }
+        assertArrayEquals(expected, counts);
+
+        long[] scratch = new long[LogColumns.CHUNK_SIZE];
+        assertEquals(view.timestampAt(LogColumns.CHUNK_SIZE + 3), view.timestamps(1, scratch)[3]);
+        short[] ordinalScratch = new short[LogColumns.CHUNK_SIZE];
+        assertEquals(view.ordinalAt(11), view.ordinals(0, ordinalScratch)[11]);
+    }
+
+    @Test
+    public void testMemoryPerEntry() {
+        for (int entries : new int[] { 1_000_000, 10_000_000 }) {
+            LogColumns columns = new LogColumns();
+            int ordinal = columns.intern("Happy");
+            long timestamp = 1_700_000_000_000L;
+            for (int i = 0; i < entries; i++) {
+                columns.append(timestamp + i * 60_000L, ordinal);
+            }
+
+            double after = (double) columns.estimateMemoryBytes() / entries;
+            double postings = (double) columns.estimatePostingMemoryBytes() / entries;
+            assertTrue(after * 50 < LogColumns.LIST_BYTES_PER_ENTRY);
+            assertTrue(postings < 4.2);
+        }
+    }
+
+    @Test
+    public void testRealisticMemoryPerEntry() {
+        int entries = 1_000_000;
+        LogColumns taps = realisticHistory(entries, 1_000L);
+        LogColumns seconds = realisticHistory(entries, 1L);
+        double tapBytes = (double) taps.estimateMemoryBytes() / entries;
+        double millisBytes = (double) seconds.estimateMemoryBytes() / entries;
+        assertTrue(tapBytes * 10 < LogColumns.LIST_BYTES_PER_ENTRY);
+        assertTrue(millisBytes * 4 < LogColumns.LIST_BYTES_PER_ENTRY);
+    }
+
+    @Test
+    public void testSealedScanMatchesRawArrays() {
+        int entries = 200_000;
+        LogColumns.View view = realisticHistory(entries, 1L).view();
+        long[] rawTimestamps = new long[entries];
+        short[] rawOrdinals = new short[entries];
+        for (int i = 0; i < entries; i++) {
+            rawTimestamps[i] = view.timestampAt(i);
+            rawOrdinals[i] = (short) view.ordinalAt(i);
+        }
+        long middle = rawTimestamps[entries / 2];
+        LogFilter filter = (timestamp, emotion) -> timestamp >= middle && emotion.equals("Calm");
+
+        assertEquals(scanRaw(view, rawTimestamps, rawOrdinals, null), scanSealed(view, null));
+        assertEquals(scanRaw(view, rawTimestamps, rawOrdinals, filter), scanSealed(view, filter));
+    }
+
+    // Sums the entries that pass the filter, or all of them without one.
+    private static long scanRaw(LogColumns.View view, long[] timestamps, short[] ordinals, LogFilter filter) {
+        long sum = 0;
+        for (int i = 0; i < timestamps.length; i++) {
+            if (filter == null || filter.test(timestamps[i], view.emotionName(ordinals[i]))) {
+                sum += timestamps[i] ^ ordinals[i];
+            }
+        }
+        return sum;
+    }
+
+
+    private static long scanSealed(LogColumns.View view, LogFilter filter) {
+        long sum = 0;
+        long[] timestampScratch = new long[LogColumns.CHUNK_SIZE];
+        short[] ordinalScratch = new short[LogColumns.CHUNK_SIZE];
+        for (int chunk = 0, base = 0; base < view.size(); chunk++, base += LogColumns.CHUNK_SIZE) {
+            long[] timestamps = view.timestamps(chunk, timestampScratch);
+            short[] ordinals = view.ordinals(chunk, ordinalScratch);
+            for (int i = 0, limit = Math.min(LogColumns.CHUNK_SIZE, view.size() - base); i < limit; i++) {
+                if (filter == null || filter.test(timestamps[i], view.emotionName(ordinals[i]))) {
+                    sum += timestamps[i] ^ ordinals[i];
+                }
+            }
+        }
+        return sum;
+    }
+
+    // Taps of eight emotions, often several of the same in a row, minutes to hours
+    // apart, with timestamps rounded to the given resolution.
+    private static LogColumns realisticHistory(int entries, long resolution) {
+        LogColumns columns = new LogColumns();
+        String[] emotions = { "Happy", "Sad", "Angry", "Calm", "Anxious", "Excited", "Tired", "Grateful" };
+        Random random = new Random(21);
+        long timestamp = 1_700_000_000_000L;
+        int ordinal = columns.intern(emotions[0]);
+        for (int i = 0; i < entries; i++) {
+            if (random.nextInt(3) == 0) {
+                ordinal = columns.intern(emotions[random.nextInt(emotions.length)]);
+            }
+            timestamp += random.nextInt(4) == 0 ? 3_600_000L + random.nextInt(7_200_000) : 60_000L
+                    + random.nextInt(600_000);
+            columns.append(timestamp / resolution * resolution, ordinal);
+        }
+        return columns;
+    }
+}
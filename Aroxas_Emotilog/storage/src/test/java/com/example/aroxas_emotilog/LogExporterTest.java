@@ -0,0 +1,87 @@
+package com.example.aroxas_emotilog;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link LogExporter} output and round trips through {@link LogImporter}.
+ */
+public class LogExporterTest {
+
+    @Before
+    public void setUp() throws IOException {
+        LogStorage.reset();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        LogStorage.reset();
+    }
+
+    private static void addSampleLogs() {
+        LogStorage.addLogs(new String[] { "Happy", "Calm, mostly", "Said \"hi\"", "two\nlines", "Happy" },
+                new long[] { 1000, 2000, 3000, 4000, 0 }, 5);
+    }
+
+    private static List<String> rows(List<LogEntry> entries) {
+        List<String> rows = new ArrayList<>();
+        for (LogEntry entry : entries) {
+            rows.add(entry.getTimestamp() + "/" + entry.getEmotion());
+        }
+        return rows;
+    }
+
+    @Test
+    public void testCsvOutput() throws IOException {
+        addSampleLogs();
+        StringWriter out = new StringWriter();
+        assertEquals(5, new LogExporter(LogFormat.CSV).export(LogStorage.snapshot(), out));
+        assertEquals("timestamp,emotion\n"
+                + "1000,Happy\n"
+                + "2000,\"Calm, mostly\"\n"
+                + "3000,\"Said \"\"hi\"\"\"\n"
+                + "4000,\"two\nlines\"\n"
+                + "0,Happy\n", out.toString());
+    }
+
+    @Test
+    public void testNdjsonOutput() throws IOException {
+        LogStorage.addLogs(new String[] { "Happy", "Tab\there \"x\"" }, new long[] { 1000, 2000 }, 2);
+        StringWriter out = new StringWriter();
+        new LogExporter(LogFormat.NDJSON).export(LogStorage.snapshot(), out);
+        assertEquals("{\"timestamp\":1000,\"emotion\":\"Happy\"}\n"
+                + "{\"timestamp\":2000,\"emotion\":\"Tab\\there \\\"x\\\"\"}\n", out.toString());
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        for (LogFormat format : LogFormat.values()) {
+            LogStorage.reset();
+            addSampleLogs();
+            for (int i = 0; i < 10_000; i++) {
+                LogStorage.addLog(i % 2 == 0 ? "Happy" : "Sad");
+            }
+            // Imports are re-sorted by timestamp; ties keep their order.
+            List<LogEntry> sorted = new ArrayList<>(LogStorage.getLogs());
+            sorted.sort(Comparator.comparingLong(LogEntry::getTimestamp));
+            List<String> before = rows(sorted);
+            StringWriter out = new StringWriter();
+            new LogExporter(format).export(LogStorage.snapshot(), out);
+
+            LogStorage.reset();
+            LogImporter.Report report = new LogImporter(format).importFrom(new StringReader(out.toString()));
+            assertFalse(report.getErrors().toString(), report.hasErrors());
+            assertEquals(before, rows(LogStorage.getLogs()));
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.aroxas_emotilog;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link LogImporter} parsing, error reporting, re-sorting and large imports.
+ */
+public class LogImporterTest {
+
+    @Before
+    public void setUp() throws IOException {
+        LogStorage.reset();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        LogStorage.reset();
+    }
+
+    private static List<LogEntry> parse(LogFormat format, String input, LogImporter.Report[] report)
+            throws IOException {
+        List<LogEntry> entries = new ArrayList<>();
+        report[0] = new LogImporter(format, 2).importFrom(new StringReader(input), (emotions, timestamps, count) -> {
+            for (int i = 0; i < count; i++) {
+                entries.add(new LogEntry(emotions[i], timestamps[i]));
+            }
+        });
+        return entries;
+    }
+
+    @Test
+    public void testCsvRows() throws IOException {
+        LogImporter.Report[] report = new LogImporter.Report[1];
+        List<LogEntry> entries = parse(LogFormat.CSV, "\uFEFFTimestamp,Emotion\r\n"
+                + "1000,Happy\r\n"
+                + "\n"
+                + "2000,\"Calm, mostly\"\n"
+                + "3000,\"Said \"\"hi\"\"\"\n"
+                + "4000,\"two\nlines\"\n"
+                + "-5,Sad", report);
+
+        assertEquals(5, entries.size());
+        assertEquals(5, report[0].getImportedCount());
+        assertFalse(report[0].hasErrors());
+        assertEquals("Happy", entries.get(0).getEmotion());
+        assertEquals(1000, entries.get(0).getTimestamp());
+        assertEquals("Calm, mostly", entries.get(1).getEmotion());
+        assertEquals("Said \"hi\"", entries.get(2).getEmotion());
+        assertEquals("two\nlines", entries.get(3).getEmotion());
+        assertEquals(-5, entries.get(4).getTimestamp());
+    }
+
+    @Test
+    public void testNdjsonRows() throws IOException {
+        LogImporter.Report[] report = new LogImporter.Report[1];
+        List<LogEntry> entries = parse(LogFormat.NDJSON,
+                "{\"timestamp\":1000,\"emotion\":\"Happy\"}\n"
+                        + "  { \"emotion\" : \"Tab\\there \\u00e9\\\"\", \"note\": \"x\", \"timestamp\" : 2000, \"ok\": true }\n"
+                        + "\n", report);
+
+        assertEquals(2, entries.size());
+        assertFalse(report[0].hasErrors());
+        assertEquals("Tab\there \u00e9\"", entries.get(1).getEmotion());
+        assertEquals(2000, entries.get(1).getTimestamp());
+    }
+
+    @Test
+    public void testMalformedRowsAreReportedAndSkipped() throws IOException {
+        LogImporter.Report[] report = new LogImporter.Report[1];
+        List<LogEntry> entries = parse(LogFormat.CSV, "timestamp,emotion\n"
+                + "abc,Happy\n"
+                + "1000\n"
+                + "1000,\n"
+                + "1000,Happy,extra\n"
+                + "2000,Sad\n"
+                + "3000,\"open", report);
+        assertEquals(1, entries.size());
+        assertEquals(1, report[0].getImportedCount());
+        assertEquals(5, report[0].getRejectedCount());
+        assertEquals("Line 2: Invalid timestamp", report[0].getErrors().get(0));
+        assertEquals("Line 3: Expected timestamp,emotion", report[0].getErrors().get(1));
+        assertEquals("Line 4: Missing emotion", report[0].getErrors().get(2));
+        assertEquals("Line 5: Too many fields", report[0].getErrors().get(3));
+        assertEquals("Line 7: Unterminated quoted emotion", report[0].getErrors().get(4));
+
+        entries = parse(LogFormat.NDJSON, "[1]\n"
+                + "{\"timestamp\":1.5,\"emotion\":\"Happy\"}\n"
+                + "{\"timestamp\":1}\n"
+                + "{\"timestamp\":1,\"emotion\":{}}\n"
+                + "{\"timestamp\":1,\"emotion\":\"Ok\"} trailing\n"
+                + "{\"timestamp\":1,\"emotion\":\"Ok\"}\n", report);
+        assertEquals(1, entries.size());
+        assertEquals(5, report[0].getRejectedCount());
+        assertEquals("Line 2: Timestamp must be an integer", report[0].getErrors().get(1));
+        assertEquals("Line 3: Missing emotion", report[0].getErrors().get(2));
+    }
+
+    @Test
+    public void testErrorListIsBounded() throws IOException {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            input.append("bad\n");
+        }
+        LogImporter.Report[] report = new LogImporter.Report[1];
+        parse(LogFormat.CSV, input.toString(), report);
+        assertEquals(500, report[0].getRejectedCount());
+        assertEquals(LogImporter.MAX_REPORTED_ERRORS, report[0].getErrors().size());
+    }
+
+    @Test
+    public void testImportPreservesTimestampsInStorage() throws IOException {
+        LogImporter.Report report = new LogImporter(LogFormat.CSV).importFrom(new StringReader(
+                "timestamp,emotion\n86400000,Happy\n0,Sad\n172800000,Happy\n"));
+        assertEquals(3, report.getImportedCount());
+        assertEquals(3, LogStorage.getTotalLogCount());
+        // Imports are re-sorted, so the rows are stored in timestamp order.
+        assertEquals(0, LogStorage.getLogs().get(0).getTimestamp());
+        assertEquals(86400000, LogStorage.getLogs().get(1).getTimestamp());
+        assertEquals(Integer.valueOf(2), LogStorage.getEmotionCounts().get("Happy"));
+        assertEquals(172800000, LogStorage.getLogsSortedByTime().get(0).getTimestamp());
+    }
+
+    // Imports CSV rows with the given timestamps, and names each row by its line
+    // number, through batches of 100.
+    private static List<LogEntry> importSorted(long[] rowTimestamps) throws IOException {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < rowTimestamps.length; i++) {
+            input.append(rowTimestamps[i]).append(",Row").append(i).append('\n');
+        }
+        List<LogEntry> entries = new ArrayList<>();
+        new LogImporter(LogFormat.CSV, 100).importFrom(new StringReader(input.toString()),
+                (emotions, timestamps, count) -> {
+                    for (int i = 0; i < count; i++) {
+                        entries.add(new LogEntry(emotions[i], timestamps[i]));
+                    }
+                });
+        assertEquals(rowTimestamps.length, entries.size());
+        boolean[] seen = new boolean[rowTimestamps.length];
+        for (LogEntry entry : entries) {
+            int row = Integer.parseInt(entry.getEmotion().substring(3));
+            assertFalse(seen[row]);
+            seen[row] = true;
+            assertEquals(rowTimestamps[row], entry.getTimestamp());
+        }
+        return entries;
+    }
+
+    // Counts the sorted runs the store would start for entries in this order.
+    private static int countRuns(List<LogEntry> entries) {
+        int runs = entries.isEmpty() ? 0 : 1;
+        for (int i = 1; i < entries.size(); i++) {
+            long previous = entries.get(i - 1).getTimestamp();
+            long current = entries.get(i).getTimestamp();
+            if (current < previous) {
+                runs++;
+            } else if (current == previous) {
+                // Equal timestamps keep their file order.
+                int previousRow = Integer.parseInt(entries.get(i - 1).getEmotion().substring(3));
+                int row = Integer.parseInt(entries.get(i).getEmotion().substring(3));
+                assertTrue(previousRow < row);
+            }
+        }
+        return runs;
+    }
+
+    @Test
+    public void testImportIsResortedByTimestamp() throws IOException {
+        int rows = 10_000;
+        long[] sorted = new long[rows];
+        long[] newestFirst = new long[rows];
+        long[] shuffled = new long[rows];
+        Random random = new Random(42);
+        for (int i = 0; i < rows; i++) {
+            sorted[i] = i / 3 * 1000L;
+            newestFirst[i] = (rows - i) * 1000L;
+            shuffled[i] = random.nextInt(rows / 2) * 1000L;
+        }
+
+        assertEquals(1, countRuns(importSorted(sorted)));
+        assertEquals(rows / 100, countRuns(importSorted(newestFirst)));
+        // Replacement selection makes runs of about twice the window on random input.
+        int shuffledRuns = countRuns(importSorted(shuffled));
+        assertTrue("runs: " + shuffledRuns, shuffledRuns <= rows / 100);
+        assertTrue("runs: " + shuffledRuns, shuffledRuns >= rows / 300);
+    }
+
+    /**
+     * Produces {@code rows} CSV rows on the fly, so the input never exists in memory.
+     */
+    private static final class SyntheticCsv extends Reader {
+        private static final String[] EMOTIONS = { "Happy", "Sad", "Calm", "Angry", "Tired", "Excited" };
+        private final int rows;
+        private int row;
+        private String pending = "timestamp,emotion\n";
+        private int offset;
+
+        SyntheticCsv(int rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public int read(char[] buffer, int off, int len) {
+            int written = 0;
+            while (written < len) {
+                if (offset == pending.length()) {
+                    if (row == rows) {
+                        break;
+                    }
+                    pending = (1_600_000_000_000L + row * 30_000L) + "," + EMOTIONS[row % EMOTIONS.length] + "\n";
+                    offset = 0;
+                    row++;
+                }
+                int count = Math.min(len - written, pending.length() - offset);
+                pending.getChars(offset, offset + count, buffer, off + written);
+                offset += count;
+                written += count;
+            }
+            return written == 0 ? -1 : written;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void testLargeSyntheticImport() throws IOException {
+        int parsedRows = 1_000_000;
+        long[] sum = { 0 };
+        LogImporter.Report parsed = new LogImporter(LogFormat.CSV).importFrom(new SyntheticCsv(parsedRows),
+                (emotions, timestamps, count) -> sum[0] += count);
+        assertEquals(parsedRows, parsed.getImportedCount());
+        assertEquals(parsedRows, sum[0]);
+
+        int storedRows = 200_000;
+        LogImporter.Report stored = new LogImporter(LogFormat.CSV).importFrom(new SyntheticCsv(storedRows));
+        assertEquals(storedRows, stored.getImportedCount());
+        assertEquals(storedRows, LogStorage.getTotalLogCount());
+    }
+}
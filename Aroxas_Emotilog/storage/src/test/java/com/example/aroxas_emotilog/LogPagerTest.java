@@ -0,0 +1,276 @@
+package com.example.aroxas_emotilog;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link LogPager} page loading, ordering and the resident window.
+ */
+public class LogPagerTest {
+
+    private static LogSnapshot snapshotOf(int count) {
+        LogColumns columns = new LogColumns();
+        DayIndex days = new DayIndex(TimeZone.getTimeZone("UTC"));
+        int ordinal = columns.intern("Happy");
+        for (int i = 0; i < count; i++) {
+            columns.append(1000L * i, ordinal);
+            days.add(1000L * i);
+        }
+        return new LogSnapshot(1, columns.view(), days.view(), new int[] { count }, "Happy", count);
+    }
+
+    // Snapshots of one growing store, each appending entries to the previous one.
+    private static LogSnapshot[] lineageOf(int... counts) {
+        Object lineage = new Object();
+        LogColumns columns = new LogColumns();
+        DayIndex days = new DayIndex(TimeZone.getTimeZone("UTC"));
+        int ordinal = columns.intern("Happy");
+        LogSnapshot[] snapshots = new LogSnapshot[counts.length];
+        for (int s = 0; s < counts.length; s++) {
+            for (int i = columns.size(); i < counts[s]; i++) {
+                columns.append(1000L * i, ordinal);
+                days.add(1000L * i);
+            }
+            snapshots[s] = new LogSnapshot(s + 1, lineage, columns.view(), days.view(),
+                    new int[] { counts[s] }, "Happy", counts[s]);
+        }
+        return snapshots;
+    }
+
+    @Test
+    public void testNewestFirstPages() {
+        LogPager pager = new LogPager(snapshotOf(125), 50, 3, 1, null);
+        assertEquals(125, pager.size());
+        assertEquals(124_000L, pager.get(0).getTimestamp());
+        assertEquals(75_000L, pager.get(49).getTimestamp());
+        assertEquals(74_000L, pager.get(50).getTimestamp());
+        assertEquals(0L, pager.get(124).getTimestamp());
+    }
+
+    @Test
+    public void testResidentWindowIsBounded() {
+        LogPager pager = new LogPager(snapshotOf(100_000), 50, 4, 1, Runnable::run);
+        for (int position = 0; position < pager.size(); position += 7) {
+            pager.get(position);
+            assertTrue(pager.getResidentPageCount() <= 4);
+        }
+        assertFalse(pager.isResident(0));
+    }
+
+    @Test
+    public void testPrefetchesNextPage() {
+        LogPager pager = new LogPager(snapshotOf(500), 50, 4, 2, Runnable::run);
+        pager.get(120);
+        assertTrue(pager.isResident(2));
+        assertTrue(pager.isResident(3));
+        assertTrue(pager.isResident(4));
+        assertFalse(pager.isResident(5));
+    }
+
+    @Test
+    public void testNoPrefetchPastLastPage() {
+        LogPager pager = new LogPager(snapshotOf(60), 50, 3, 1, Runnable::run);
+        pager.get(55);
+        assertEquals(1, pager.getResidentPageCount());
+    }
+
+    @Test
+    public void testRejectedPrefetchLoadsPagesOnRead() {
+        LogPager pager = new LogPager(snapshotOf(500), 50, 4, 2, task -> {
+            throw new RejectedExecutionException();
+        });
+        assertEquals(379_000L, pager.get(120).getTimestamp());
+        assertFalse(pager.isResident(3));
+        assertEquals(329_000L, pager.get(170).getTimestamp());
+    }
+
+    @Test
+    public void testUpdateKeepsResidentPages() {
+        LogSnapshot[] snapshots = lineageOf(1_000, 1_003, 1_060);
+        LogPager pager = new LogPager(snapshots[0], 50, 4, 1, null);
+        pager.get(0);
+        pager.get(60);
+
+        LogPager updated = pager.update(snapshots[1]);
+        assertEquals(1_003, updated.size());
+        assertEquals(2, updated.getResidentPageCount());
+        assertTrue(updated.isResident(0));
+        assertTrue(updated.isResident(1));
+        assertEquals(1_002_000L, updated.get(0).getTimestamp());
+        assertEquals(999_000L, updated.get(3).getTimestamp());
+        assertEquals(939_000L, updated.get(63).getTimestamp());
+        assertEquals(0L, updated.get(1_002).getTimestamp());
+
+        // The partial page holding the 3 new rows is rebuilt when more arrive.
+        LogPager again = updated.update(snapshots[2]);
+        assertFalse(again.isResident(-1));
+        for (int position = 0; position < again.size(); position++) {
+            assertEquals(1000L * (again.size() - 1 - position), again.get(position).getTimestamp());
+        }
+    }
+
+    @Test
+    public void testUpdateToSameOrOlderSnapshotKeepsPager() {
+        LogSnapshot[] snapshots = lineageOf(10, 20);
+        LogPager pager = new LogPager(snapshots[1], 50, 3, 1, null);
+        assertSame(pager, pager.update(snapshots[1]));
+        assertSame(pager, pager.update(snapshots[0]));
+        assertNotSame(pager, pager.update(snapshotOf(20)));
+    }
+
+    @Test
+    public void testDiffFromOlderPagerInsertsNewRowsAtTop() {
+        LogSnapshot[] snapshots = lineageOf(100, 103, 103);
+        LogPager pager = new LogPager(snapshots[0], 50, 4, 1, null);
+        long oldTopId = pager.getItemId(0);
+
+        LogPager updated = pager.update(snapshots[1]);
+        ListDiff diff = updated.diffFrom(pager);
+        assertEquals("insert 0 x3", diff.toString());
+        // Existing rows keep their ids at their shifted positions.
+        assertEquals(oldTopId, updated.getItemId(3));
+        assertEquals(pager.getItemId(99), updated.getItemId(102));
+
+        assertTrue(updated.update(snapshots[2]).diffFrom(updated).isEmpty());
+        assertTrue(updated.diffFrom(updated).isEmpty());
+        assertTrue(new LogPager(snapshotOf(103), null).diffFrom(updated).isReset());
+    }
+
+    @Test
+    public void testDiffFromOlderPagerAfterClockWentBack() {
+        Object lineage = new Object();
+        LogColumns columns = new LogColumns();
+        DayIndex days = new DayIndex(TimeZone.getTimeZone("UTC"));
+        int ordinal = columns.intern("Happy");
+        long[] timestamps = { 1000, 2000, 3000, 4000, 2500, 5000 };
+        LogSnapshot[] snapshots = new LogSnapshot[2];
+        for (int i = 0; i < timestamps.length; i++) {
+            columns.append(timestamps[i], ordinal);
+            days.add(timestamps[i]);
+            if (i == 3 || i == 5) {
+                snapshots[i / 4] = new LogSnapshot(i, lineage, columns.view(), days.view(),
+                        new int[] { i + 1 }, "Happy", i + 1);
+            }
+        }
+        LogPager pager = new LogPager(snapshots[0], null);
+        LogPager updated = pager.update(snapshots[1]);
+        ListDiff diff = updated.diffFrom(pager);
+        // 5000 goes on top, 2500 between 3000 and 2000.
+        assertEquals("insert 0 x1, insert 3 x1", diff.toString());
+        assertEquals(5, updated.getItemId(0));
+        assertEquals(4, updated.getItemId(3));
+        assertEquals(pager.getItemId(1), updated.getItemId(2));
+        assertEquals(2500L, updated.get(3).getTimestamp());
+    }
+
+    @Test
+    public void testUpdateStaysIncrementalAfterClockWentBack() {
+        Object lineage = new Object();
+        LogColumns columns = new LogColumns();
+        DayIndex days = new DayIndex(TimeZone.getTimeZone("UTC"));
+        int ordinal = columns.intern("Happy");
+        // The clock went back once, half way through the history.
+        for (int i = 0; i < 2_000; i++) {
+            long timestamp = 1000L * (i < 1_000 ? i : i - 500);
+            columns.append(timestamp, ordinal);
+            days.add(timestamp);
+        }
+        LogSnapshot first = new LogSnapshot(1, lineage, columns.view(), days.view(), new int[1], null, 0);
+        LogPager pager = new LogPager(first, 50, 4, 1, null);
+        pager.get(0);
+        pager.get(100);
+
+        for (int tap = 0; tap < 3; tap++) {
+            long timestamp = 1000L * (1_500 + tap);
+            columns.append(timestamp, ordinal);
+            days.add(timestamp);
+            LogSnapshot newer = new LogSnapshot(tap + 2, lineage, columns.view(), days.view(), new int[1], null, 0);
+            LogPager updated = pager.update(newer);
+            assertEquals("insert 0 x1", updated.diffFrom(pager).toString());
+            // The page further down survives, so the runs were not merged again.
+            assertTrue(updated.isResident(2));
+            assertEquals(pager.getItemId(0), updated.getItemId(1));
+            pager = updated;
+        }
+        List<LogEntry> expected = pager.getSnapshot().getLogsSortedByTime();
+        for (int position = 0; position < pager.size(); position++) {
+            assertEquals(expected.get(position).getTimestamp(), pager.get(position).getTimestamp());
+            assertEquals(pager.getSnapshot().getRecordIndexSortedByTime(position), pager.getItemId(position));
+        }
+    }
+
+    @Test
+    public void testDiffLocatesRowsInsertedBetweenRuns() {
+        Object lineage = new Object();
+        LogColumns columns = new LogColumns();
+        DayIndex days = new DayIndex(TimeZone.getTimeZone("UTC"));
+        int ordinal = columns.intern("Happy");
+        Random random = new Random(3);
+        LogPager pager = null;
+        List<Long> ids = new ArrayList<>();
+        for (int step = 0; step < 200; step++) {
+            for (int i = random.nextInt(4); i >= 0; i--) {
+                long timestamp = 1000L * random.nextInt(300);
+                columns.append(timestamp, ordinal);
+                days.add(timestamp);
+            }
+            LogSnapshot snapshot = new LogSnapshot(step + 1, lineage, columns.view(), days.view(),
+                    new int[1], null, 0);
+            LogPager updated = pager == null ? new LogPager(snapshot, 10, 3, 1, null) : pager.update(snapshot);
+            if (pager != null) {
+                updated.diffFrom(pager).dispatchTo(new ListDiff.Callback() {
+                    @Override
+                    public void onInserted(int position, int count) {
+                        for (int i = 0; i < count; i++) {
+                            ids.add(position + i, updated.getItemId(position + i));
+                        }
+                    }
+
+                    @Override
+                    public void onRemoved(int position, int count) {
+                        fail();
+                    }
+
+                    @Override
+                    public void onMoved(int fromPosition, int toPosition) {
+                        fail();
+                    }
+
+                    @Override
+                    public void onChanged(int position, int count) {
+                        fail();
+                    }
+
+                    @Override
+                    public void onReset() {
+                        fail();
+                    }
+                });
+            } else {
+                for (int i = 0; i < updated.size(); i++) {
+                    ids.add(updated.getItemId(i));
+                }
+            }
+            pager = updated;
+
+            List<LogEntry> expected = snapshot.getLogsSortedByTime();
+            assertEquals(expected.size(), ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                assertEquals(snapshot.getRecordIndexSortedByTime(i), ids.get(i).longValue());
+                assertEquals(expected.get(i).getTimestamp(), pager.get(i).getTimestamp());
+            }
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOutOfRange() {
+        new LogPager(snapshotOf(10), 50, 3, 1, null).get(10);
+    }
+}
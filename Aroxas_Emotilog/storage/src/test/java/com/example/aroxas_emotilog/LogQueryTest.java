@@ -0,0 +1,319 @@
+package com.example.aroxas_emotilog;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link LogQuery} and {@link QueryPlan}: results of random queries
+ * match a brute-force evaluation through {@link Calendar} on every access path,
+ * and the planner picks the cheapest path.
+ */
+public class LogQueryTest {
+    private static final TimeZone EDMONTON = TimeZone.getTimeZone("America/Edmonton");
+    private static final String[] EMOTIONS = { "Happy", "Sad", "Angry", "Calm", "Tired", "Proud" };
+    private static final long MINUTE = 60_000L;
+    private static final long DAY = DayIndex.MILLIS_PER_DAY;
+    // 2024-03-01, so the history crosses the spring DST transition.
+    private static final long START = 19_783 * DAY;
+
+    @After
+    public void tearDown() {
+        ParallelScan.setMode(ParallelScan.Mode.AUTO);
+    }
+
+    // Entries a few minutes to a few hours apart, with the clock set back now and
+    // then, and emotions of very different frequencies; "Proud" is rare.
+    private static LogSnapshot snapshotOf(int entries, long seed) {
+        LogColumns columns = new LogColumns();
+        DayIndex days = new DayIndex(EDMONTON);
+        Random random = new Random(seed);
+        long timestamp = START;
+        for (int i = 0; i < entries; i++) {
+            timestamp += random.nextInt(2000) == 0 ? -random.nextInt(3) * DAY : random.nextInt(180) * MINUTE;
+            double r = random.nextDouble();
+            String emotion = random.nextInt(500) == 0 ? "Proud" : EMOTIONS[(int) (r * r * (EMOTIONS.length - 1))];
+            columns.append(timestamp, columns.intern(emotion));
+            days.add(timestamp);
+        }
+        return new LogSnapshot(1, columns.view(), days.view(), new int[0], null, 0);
+    }
+
+    private static LogQuery randomQuery(Random random, LogSnapshot snapshot) {
+        LogQuery.Builder query = new LogQuery.Builder();
+        List<LogEntry> logs = snapshot.getLogs();
+        if (random.nextBoolean()) {
+            List<String> emotions = new ArrayList<>();
+            for (String emotion : EMOTIONS) {
+                if (random.nextInt(3) == 0) {
+                    emotions.add(emotion);
+                }
+            }
+            if (random.nextInt(4) == 0) {
+                emotions.add("Unknown");
+            }
+            query.emotions(emotions.toArray(new String[0]));
+        }
+        if (random.nextBoolean()) {
+            long a = logs.get(random.nextInt(logs.size())).getTimestamp();
+            long b = logs.get(random.nextInt(logs.size())).getTimestamp();
+            query.between(Math.min(a, b), Math.max(a, b) + random.nextInt(2));
+        }
+        if (random.nextInt(3) == 0) {
+            query.hoursBetween(random.nextInt(24), random.nextInt(25));
+        }
+        if (random.nextInt(3) == 0) {
+            query.daysOfWeek(1 + random.nextInt(7), 1 + random.nextInt(7));
+        }
+        if (random.nextInt(4) == 0) {
+            query.where((timestamp, emotion) -> timestamp / MINUTE % 3 != 0);
+        }
+        List<LogQuery.Dimension> dimensions = new ArrayList<>();
+        for (LogQuery.Dimension dimension : LogQuery.Dimension.values()) {
+            if (random.nextBoolean()) {
+                dimensions.add(dimension);
+            }
+        }
+        query.groupBy(dimensions.toArray(new LogQuery.Dimension[0]));
+        if (random.nextBoolean()) {
+            LogQuery.Aggregate[] aggregates = LogQuery.Aggregate.values();
+            query.orderBy(aggregates[random.nextInt(aggregates.length)], random.nextBoolean());
+        }
+        if (random.nextBoolean()) {
+            query.limit(random.nextInt(5));
+        }
+        return query.build();
+    }
+
+    // Evaluates a query entry by entry, reading local hours and days from a Calendar.
+    private static List<String> bruteForce(LogSnapshot snapshot, LogQuery query) {
+        Calendar calendar = Calendar.getInstance(EDMONTON);
+        Set<String> emotions = query.emotions() == null ? null : new HashSet<>(Arrays.asList(query.emotions()));
+        boolean byEmotion = query.groupsBy(LogQuery.Dimension.EMOTION);
+        boolean byHour = query.groupsBy(LogQuery.Dimension.HOUR_OF_DAY);
+        boolean byDay = query.groupsBy(LogQuery.Dimension.DAY_OF_WEEK);
+        Map<String, long[]> groups = new HashMap<>();
+        Map<String, QueryResult.Row> keys = new HashMap<>();
+        for (LogEntry entry : snapshot.getLogs()) {
+            long timestamp = entry.getTimestamp();
+            calendar.setTimeInMillis(timestamp);
+            int hour = calendar.get(Calendar.HOUR_OF_DAY);
+            int day = calendar.get(Calendar.DAY_OF_WEEK);
+            if ((emotions != null && !emotions.contains(entry.getEmotion()))
+                    || timestamp < query.from() || timestamp >= query.to()
+                    || (query.hourMask() & 1 << hour) == 0 || (query.dayMask() & 1 << day) == 0
+                    || (query.filter() != null && !query.filter().test(timestamp, entry.getEmotion()))) {
+                continue;
+            }
+            QueryResult.Row key = new QueryResult.Row(byEmotion ? entry.getEmotion() : null,
+                    byHour ? hour : -1, byDay ? day : 0, 0, 0, 0);
+            String name = key.toString();
+            keys.put(name, key);
+            long[] aggregates = groups.computeIfAbsent(name, k -> new long[] { 0, Long.MAX_VALUE, Long.MIN_VALUE });
+            aggregates[0]++;
+            aggregates[1] = Math.min(aggregates[1], timestamp);
+            aggregates[2] = Math.max(aggregates[2], timestamp);
+        }
+
+        List<QueryResult.Row> rows = new ArrayList<>();
+        for (Map.Entry<String, long[]> group : groups.entrySet()) {
+            QueryResult.Row key = keys.get(group.getKey());
+            long[] aggregates = group.getValue();
+            rows.add(new QueryResult.Row(key.getEmotion(), key.getHourOfDay(), key.getDayOfWeek(),
+                    (int) aggregates[0], aggregates[1], aggregates[2]));
+        }
+        Comparator<QueryResult.Row> order = Comparator
+                .comparing((QueryResult.Row row) -> row.getEmotion() == null ? "" : row.getEmotion())
+                .thenComparingInt(QueryResult.Row::getHourOfDay)
+                .thenComparingInt(row -> row.getDayOfWeek() == Calendar.SUNDAY ? 8 : row.getDayOfWeek());
+        if (query.orderBy() != null) {
+            Comparator<QueryResult.Row> byAggregate = query.orderBy() == LogQuery.Aggregate.COUNT
+                    ? Comparator.comparingInt(QueryResult.Row::getCount)
+                    : query.orderBy() == LogQuery.Aggregate.FIRST
+                    ? Comparator.comparingLong(QueryResult.Row::getFirst)
+                    : Comparator.comparingLong(QueryResult.Row::getLast);
+            order = (query.isDescending() ? byAggregate.reversed() : byAggregate).thenComparing(order);
+        }
+        rows.sort(order);
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < Math.min(rows.size(), query.limit()); i++) {
+            result.add(rows.get(i).toString());
+        }
+        return result;
+    }
+
+    private static List<String> describe(QueryResult result) {
+        List<String> rows = new ArrayList<>();
+        for (QueryResult.Row row : result.getRows()) {
+            rows.add(row.toString());
+        }
+        return rows;
+    }
+
+    @Test
+    public void testRandomQueriesMatchBruteForce() {
+        LogSnapshot snapshot = snapshotOf(20_000, 3);
+        assertTrue(snapshot.days().getRunCount() > 1);
+        Random random = new Random(11);
+        Set<QueryPlan.AccessPath> paths = new HashSet<>();
+        for (int round = 0; round < 300; round++) {
+            LogQuery query = randomQuery(random, snapshot);
+            List<String> expected = bruteForce(snapshot, query);
+            ParallelScan.setMode(round % 2 == 0 ? ParallelScan.Mode.SEQUENTIAL : ParallelScan.Mode.PARALLEL);
+            QueryResult result = snapshot.query(query);
+            assertEquals(result.explain(), expected, describe(result));
+            paths.add(result.getPlan().getAccessPath());
+        }
+        assertEquals(3, paths.size());
+    }
+
+    @Test
+    public void testPlannerPicksCheapestPath() {
+        LogSnapshot snapshot = snapshotOf(50_000, 5);
+        List<LogEntry> logs = snapshot.getLogs();
+        long lastWeek = logs.get(logs.size() - 1).getTimestamp() - 7 * DAY;
+
+        QueryPlan rare = QueryPlan.plan(snapshot, new LogQuery.Builder().emotions("Proud").build());
+        assertEquals(QueryPlan.AccessPath.EMOTION_POSTINGS, rare.getAccessPath());
+        assertEquals(snapshot.getLogsForEmotion("Proud").size(), rare.getEntriesRead());
+
+        QueryPlan common = QueryPlan.plan(snapshot, new LogQuery.Builder().emotions("Happy", "Sad").build());
+        assertEquals(QueryPlan.AccessPath.FULL_SCAN, common.getAccessPath());
+        assertEquals(logs.size(), common.getEntriesRead());
+
+        QueryPlan recent = QueryPlan.plan(snapshot,
+                new LogQuery.Builder().emotions("Happy").between(lastWeek, Long.MAX_VALUE).build());
+        assertEquals(QueryPlan.AccessPath.TIME_INDEX, recent.getAccessPath());
+        assertEquals(snapshot.getLogsBetween(lastWeek, Long.MAX_VALUE).size(), recent.getEntriesRead());
+
+        QueryPlan recentRare = QueryPlan.plan(snapshot,
+                new LogQuery.Builder().emotions("Proud").between(lastWeek, Long.MAX_VALUE).build());
+        assertEquals(QueryPlan.AccessPath.EMOTION_POSTINGS, recentRare.getAccessPath());
+        assertEquals(snapshot.getLogCountForEmotionBetween("Proud", lastWeek, Long.MAX_VALUE),
+                recentRare.getEntriesRead());
+
+        QueryPlan weekends = QueryPlan.plan(snapshot,
+                new LogQuery.Builder().daysOfWeek(Calendar.SATURDAY, Calendar.SUNDAY).build());
+        assertEquals(QueryPlan.AccessPath.TIME_INDEX, weekends.getAccessPath());
+        assertTrue(weekends.getEntriesRead() < logs.size() / 2);
+
+        QueryPlan unknown = QueryPlan.plan(snapshot, new LogQuery.Builder().emotions("Unknown").build());
+        assertEquals(QueryPlan.AccessPath.EMOTION_POSTINGS, unknown.getAccessPath());
+        assertEquals(0, unknown.getEntriesRead());
+        assertTrue(unknown.execute().getRows().isEmpty());
+    }
+
+    @Test
+    public void testGroupOrderAndLimit() {
+        LogColumns columns = new LogColumns();
+        DayIndex days = new DayIndex(TimeZone.getTimeZone("UTC"));
+        // Monday 2024-06-03: Happy at 9:00 and 9:30, Sad at 10:00, Happy at 20:00.
+        long monday = 19_877 * DAY;
+        long[] timestamps = { monday + 540 * MINUTE, monday + 570 * MINUTE, monday + 600 * MINUTE,
+                monday + 1200 * MINUTE };
+        String[] emotions = { "Happy", "Happy", "Sad", "Happy" };
+        for (int i = 0; i < timestamps.length; i++) {
+            columns.append(timestamps[i], columns.intern(emotions[i]));
+            days.add(timestamps[i]);
+        }
+        LogSnapshot snapshot = new LogSnapshot(1, columns.view(), days.view(), new int[0], null, 0);
+
+        QueryResult top = snapshot.query(new LogQuery.Builder()
+                .groupBy(LogQuery.Dimension.EMOTION, LogQuery.Dimension.HOUR_OF_DAY)
+                .orderBy(LogQuery.Aggregate.COUNT, true)
+                .limit(2)
+                .build());
+        assertEquals(Arrays.asList(
+                "Happy hour 9 count 2 first " + timestamps[0] + " last " + timestamps[1],
+                "Happy hour 20 count 1 first " + timestamps[3] + " last " + timestamps[3]),
+                describe(top));
+
+        QueryResult all = snapshot.query(new LogQuery.Builder().build());
+        assertEquals(1, all.getRows().size());
+        QueryResult.Row row = all.getRows().get(0);
+        assertNull(row.getEmotion());
+        assertEquals(-1, row.getHourOfDay());
+        assertEquals(0, row.getDayOfWeek());
+        assertEquals(4, row.getCount());
+        assertEquals(timestamps[0], row.getFirst());
+        assertEquals(timestamps[3], row.getLast());
+
+        QueryResult evenings = snapshot.query(new LogQuery.Builder()
+                .hoursBetween(18, 6).daysOfWeek(Calendar.MONDAY).groupBy(LogQuery.Dimension.DAY_OF_WEEK).build());
+        assertEquals(Arrays.asList("day 2 count 1 first " + timestamps[3] + " last " + timestamps[3]),
+                describe(evenings));
+        assertTrue(snapshot.query(new LogQuery.Builder().daysOfWeek(Calendar.TUESDAY).build()).getRows().isEmpty());
+    }
+
+    @Test
+    public void testExplain() {
+        LogSnapshot snapshot = snapshotOf(10_000, 9);
+        String plan = snapshot.explain(new LogQuery.Builder()
+                .emotions("Proud")
+                .between(START, START + 30 * DAY)
+                .hoursBetween(9, 17)
+                .groupBy(LogQuery.Dimension.HOUR_OF_DAY)
+                .orderBy(LogQuery.Aggregate.COUNT, true)
+                .limit(3)
+                .build());
+        String[] lines = plan.split("\n");
+        assertEquals(4, lines.length);
+        assertTrue(lines[0], lines[0].startsWith("query: emotions [Proud], time [" + START + ", "));
+        assertTrue(lines[0], lines[0].contains("hours [9, 10, 11, 12, 13, 14, 15, 16]"));
+        assertTrue(lines[0], lines[0].endsWith("group by [HOUR_OF_DAY], order by COUNT desc, limit 3"));
+        assertTrue(lines[1], lines[1].startsWith("access: EMOTION_POSTINGS, 1 emotion within "));
+        assertEquals("residual: hour of day", lines[2]);
+        assertTrue(lines[3], lines[3].matches(
+                "candidates: EMOTION_POSTINGS cost \\d+, TIME_INDEX cost \\d+, FULL_SCAN cost 10000"));
+
+        String scan = snapshot.explain(new LogQuery.Builder().emotions("Happy").build());
+        assertTrue(scan, scan.contains("access: FULL_SCAN, reads 10000 of 10000 entries"));
+        assertTrue(scan, scan.contains("residual: emotion"));
+    }
+
+    @Test
+    public void testQueryThroughStore() {
+        LogStore store = new LogStore();
+        store.setTimeZone(TimeZone.getTimeZone("UTC"));
+        String[] emotions = { "Happy", "Sad", "Happy" };
+        long[] timestamps = { 1000L, 2000L, 3000L };
+        store.addLogs(emotions, timestamps, emotions.length);
+
+        QueryResult result = store.query(new LogQuery.Builder()
+                .emotions("Happy").groupBy(LogQuery.Dimension.EMOTION).build());
+        assertEquals(Arrays.asList("Happy count 2 first 1000 last 3000"), describe(result));
+        assertTrue(store.explain(new LogQuery.Builder().build()).contains("access: FULL_SCAN"));
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        LogQuery.Builder builder = new LogQuery.Builder();
+        for (Runnable invalid : Arrays.<Runnable>asList(
+                () -> builder.hoursOfDay(24),
+                () -> builder.hoursBetween(-1, 5),
+                () -> builder.daysOfWeek(0),
+                () -> builder.limit(-1))) {
+            try {
+                invalid.run();
+                fail();
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+        assertEquals(LogQuery.ALL_HOURS, builder.hoursBetween(5, 5).build().hourMask());
+        assertEquals((1 << 22) | (1 << 23) | 1, builder.hoursBetween(22, 1).build().hourMask());
+    }
+}
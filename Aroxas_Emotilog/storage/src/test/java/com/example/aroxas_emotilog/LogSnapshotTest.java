@@ -0,0 +1,149 @@
+package com.example.aroxas_emotilog;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TimeZone;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link LogSnapshot} views, newest-first order and spliterators.
+ */
+public class LogSnapshotTest {
+
+    private static LogSnapshot snapshotOf(long... timestamps) {
+        LogColumns columns = new LogColumns();
+        DayIndex days = new DayIndex(TimeZone.getTimeZone("UTC"));
+        int happy = columns.intern("Happy");
+        int sad = columns.intern("Sad");
+        for (int i = 0; i < timestamps.length; i++) {
+            columns.append(timestamps[i], i % 2 == 0 ? happy : sad);
+            days.add(timestamps[i]);
+        }
+        return new LogSnapshot(1, columns.view(), days.view(), new int[2], null, 0);
+    }
+
+    @Test
+    public void testLogsAreReadOnlyView() {
+        LogSnapshot snapshot = snapshotOf(10, 20, 30);
+        List<LogEntry> logs = snapshot.getLogs();
+        assertEquals(3, logs.size());
+        assertEquals(20L, logs.get(1).getTimestamp());
+        assertEquals("Sad", logs.get(1).getEmotion());
+        try {
+            logs.add(new LogEntry("Angry", 40));
+            fail("view must be read-only");
+        } catch (UnsupportedOperationException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testNewestFirstSingleRun() {
+        List<LogEntry> logs = snapshotOf(10, 20, 30, 40).getLogsSortedByTime();
+        assertEquals(40L, logs.get(0).getTimestamp());
+        assertEquals(10L, logs.get(3).getTimestamp());
+    }
+
+    @Test
+    public void testLogsForEmotionUsePostingLists() {
+        // Happy at even positions, Sad at odd ones; the clock went back once.
+        LogSnapshot snapshot = snapshotOf(10, 20, 30, 40, 50, 15, 25, 35);
+        List<Long> happy = snapshot.getLogsForEmotion("Happy").stream()
+                .map(LogEntry::getTimestamp)
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList(10L, 30L, 50L, 25L), happy);
+        assertTrue(snapshot.getLogsForEmotion("Angry").isEmpty());
+
+        List<Long> between = snapshot.getLogsForEmotionBetween("Happy", 20, 40).stream()
+                .map(LogEntry::getTimestamp)
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList(30L, 25L), between);
+        assertEquals(2, snapshot.getLogCountForEmotionBetween("Happy", 20, 40));
+        assertEquals(4, snapshot.getLogCountForEmotionBetween("Sad", 15, 41));
+        assertEquals(0, snapshot.getLogCountForEmotionBetween("Angry", 0, 100));
+        assertTrue(snapshot.getLogsForEmotionBetween("Sad", 41, 100).isEmpty());
+    }
+
+    @Test
+    public void testNewestFirstMergesRuns() {
+        // The clock went back twice, leaving three sorted runs.
+        LogSnapshot snapshot = snapshotOf(10, 50, 20, 30, 60, 5, 40);
+        List<Long> order = snapshot.getLogsSortedByTime().stream()
+                .map(LogEntry::getTimestamp)
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList(60L, 50L, 40L, 30L, 20L, 10L, 5L), order);
+    }
+
+    @Test
+    public void testNewestFirstWithManyRuns() {
+        // Shuffled timestamps with many ties: nearly one run per entry, which a merge
+        // that compares every run head per row could not finish.
+        Random random = new Random(7);
+        long[] timestamps = new long[200_000];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = random.nextInt(50_000) * 1000L;
+        }
+        LogSnapshot snapshot = snapshotOf(timestamps);
+        int runs = snapshot.days().getRunCount();
+        assertTrue(runs > 50_000);
+        assertEquals(49_999_000L, snapshot.getLogsSortedByTime().get(0).getTimestamp());
+
+        // The first row builds the heap, O(runs); each later one costs O(log runs).
+        NewestFirstOrder order = new NewestFirstOrder(snapshot.columns(), snapshot.days());
+        order.positionAt(0);
+        long first = order.comparisons();
+        assertTrue(first + " comparisons for the first row", first <= 3L * runs);
+        order.positionAt(1000);
+        long perRow = (order.comparisons() - first) / 1000;
+        assertTrue(perRow + " comparisons per row", perRow <= 2 * (32 - Integer.numberOfLeadingZeros(runs)));
+
+        // Newest first, ties in reverse log order.
+        Integer[] expected = new Integer[timestamps.length];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = i;
+        }
+        Arrays.sort(expected, (a, b) -> timestamps[a] != timestamps[b]
+                ? Long.compare(timestamps[b], timestamps[a]) : Integer.compare(b, a));
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].intValue(), snapshot.rawPositionSortedByTime(i));
+        }
+    }
+
+    @Test
+    public void testSpliteratorIsSizedAndSplits() {
+        long[] timestamps = new long[10_001];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = i;
+        }
+        LogSnapshot snapshot = snapshotOf(timestamps);
+
+        Spliterator<LogEntry> spliterator = snapshot.spliterator();
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED));
+        assertTrue(spliterator.hasCharacteristics(Spliterator.ORDERED));
+        assertEquals(10_001, spliterator.getExactSizeIfKnown());
+        Spliterator<LogEntry> prefix = spliterator.trySplit();
+        assertEquals(10_001, prefix.estimateSize() + spliterator.estimateSize());
+
+        long happy = snapshot.parallelStream().filter(e -> e.getEmotion().equals("Happy")).count();
+        assertEquals(5_001, happy);
+        long sum = snapshot.parallelStream().mapToLong(LogEntry::getTimestamp).sum();
+        assertEquals(10_000L * 10_001 / 2, sum);
+    }
+
+    @Test
+    public void testVersionIncreasesOnPublish() throws Exception {
+        LogStorage.reset();
+        long before = LogStorage.snapshot().getVersion();
+        LogStorage.addLog("Happy");
+        LogSnapshot after = LogStorage.snapshot();
+        assertTrue(after.getVersion() > before);
+        assertSame(after, LogStorage.snapshot());
+        LogStorage.reset();
+    }
+}
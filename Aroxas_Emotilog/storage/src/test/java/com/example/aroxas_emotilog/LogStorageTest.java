@@ -0,0 +1,440 @@
+package com.example.aroxas_emotilog;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the query methods of {@link LogStorage}.
+ */
+public class LogStorageTest {
+
+    @Before
+    public void setUp() throws IOException {
+        LogStorage.reset();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        LogStorage.reset();
+    }
+
+    @Test
+    public void testEmptyStorage() {
+        assertEquals(0, LogStorage.getTotalLogCount());
+        assertNull(LogStorage.getMostFrequentEmotion());
+        assertEquals(0, LogStorage.getMostFrequentEmotionCount());
+        assertTrue(LogStorage.getEmotionCounts().isEmpty());
+    }
+
+    @Test
+    public void testEmotionCounts() {
+        LogStorage.addLog("Happy");
+        LogStorage.addLog("Sad");
+        LogStorage.addLog("Happy");
+
+        Map<String, Integer> counts = LogStorage.getEmotionCounts();
+        assertEquals(2, counts.size());
+        assertEquals(Integer.valueOf(2), counts.get("Happy"));
+        assertEquals(Integer.valueOf(1), counts.get("Sad"));
+        assertEquals(3, LogStorage.getTotalLogCount());
+    }
+
+    @Test
+    public void testEmotionCountsSnapshotIsStable() {
+        LogStorage.addLog("Happy");
+        Map<String, Integer> before = LogStorage.getEmotionCounts();
+        assertSame(before, LogStorage.getEmotionCounts());
+
+        LogStorage.addLog("Happy");
+        assertEquals(Integer.valueOf(1), before.get("Happy"));
+        assertEquals(Integer.valueOf(2), LogStorage.getEmotionCounts().get("Happy"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testEmotionCountsAreReadOnly() {
+        LogStorage.addLog("Happy");
+        LogStorage.getEmotionCounts().put("Sad", 4);
+    }
+
+    @Test
+    public void testMostFrequentEmotion() {
+        LogStorage.addLog("Angry");
+        LogStorage.addLog("Tired");
+        LogStorage.addLog("Tired");
+        assertEquals("Tired", LogStorage.getMostFrequentEmotion());
+        assertEquals(2, LogStorage.getMostFrequentEmotionCount());
+
+        // A tie does not replace the emotion that reached the count first.
+        LogStorage.addLog("Angry");
+        assertEquals("Tired", LogStorage.getMostFrequentEmotion());
+
+        LogStorage.addLog("Angry");
+        assertEquals("Angry", LogStorage.getMostFrequentEmotion());
+        assertEquals(3, LogStorage.getMostFrequentEmotionCount());
+    }
+
+    @Test
+    public void testManyDistinctEmotionsSwitchToEstimates() {
+        for (int i = 0; i < 200; i++) {
+            LogStorage.addLog("Happy");
+        }
+        for (int tag = 0; tag < LogStorage.APPROXIMATE_COUNTS_THRESHOLD + 500; tag++) {
+            LogStorage.addLog("tag-" + tag);
+        }
+        for (int i = 0; i < 100; i++) {
+            LogStorage.addLog("Sad");
+        }
+
+        LogSnapshot snapshot = LogStorage.snapshot();
+        assertTrue(snapshot.isApproximate());
+        assertEquals(200 + LogStorage.APPROXIMATE_COUNTS_THRESHOLD + 500 + 100, snapshot.getTotalLogCount());
+        assertEquals("Happy", LogStorage.getMostFrequentEmotion());
+        assertTrue(LogStorage.getMostFrequentEmotionCount() >= 200);
+
+        Map<String, Integer> counts = LogStorage.getEmotionCounts();
+        assertTrue(counts.size() <= HeavyHitters.DEFAULT_CAPACITY);
+        assertTrue(counts.get("Sad") >= 100);
+        // Day queries still scan the entries and stay exact.
+        assertEquals(Integer.valueOf(100),
+                LogStorage.getEmotionCountsForDay(System.currentTimeMillis()).get("Sad"));
+    }
+
+    @Test
+    public void testCountsPerBucket() {
+        long now = System.currentTimeMillis();
+        LogStorage.addLog("Happy");
+        LogStorage.addLog("Sad");
+        LogStorage.addLog("Happy");
+
+        int[] days = LogStorage.getCountsPerBucket(RollupTable.Resolution.DAY,
+                now - 2 * DayIndex.MILLIS_PER_DAY, now);
+        assertEquals(3, days.length);
+        assertEquals(LogStorage.getLogCountForDay(now), days[2]);
+        assertEquals(0, days[0]);
+
+        int[] happyWeeks = LogStorage.getCountsPerBucket(RollupTable.Resolution.ISO_WEEK, now, now, "Happy");
+        assertArrayEquals(new int[] { 2 }, happyWeeks);
+        assertArrayEquals(new int[] { 0 },
+                LogStorage.getCountsPerBucket(RollupTable.Resolution.HOUR, now, now, "Calm"));
+    }
+
+    @Test
+    public void testDayQueries() {
+        long now = System.currentTimeMillis();
+        LogStorage.addLog("Happy");
+        LogStorage.addLog("Sad");
+        LogStorage.addLog("Happy");
+
+        assertEquals(3, LogStorage.getLogsForDay(now).size());
+        assertEquals(3, LogStorage.getLogCountForDay(now));
+        assertEquals(Integer.valueOf(2), LogStorage.getEmotionCountsForDay(now).get("Happy"));
+        assertEquals(0, LogStorage.getLogCountForDay(now - 3 * DayIndex.MILLIS_PER_DAY));
+        assertTrue(LogStorage.getLogsForDay(now + 3 * DayIndex.MILLIS_PER_DAY).isEmpty());
+        assertEquals(3, LogStorage.getLogsBetween(now - 60000, System.currentTimeMillis() + 1).size());
+    }
+
+    @Test
+    public void testRetentionKeepsCountsExactAcrossTiers() throws IOException {
+        long now = System.currentTimeMillis();
+        File directory = Files.createTempDirectory("retention").toFile();
+        try {
+            // Thirty days of history, between one and four entries a day.
+            String[] emotions = { "Happy", "Sad", "Calm" };
+            SegmentLog log = SegmentLog.open(directory, (timestamp, emotion) -> fail());
+            for (int day = 29; day >= 0; day--) {
+                for (int k = 0; k <= day % 4; k++) {
+                    log.append(emotions[(day + k) % 3], now - day * DayIndex.MILLIS_PER_DAY - (4 - k) * 1000L);
+                }
+            }
+            log.close();
+            LogStorage.open(directory);
+            int total = LogStorage.getTotalLogCount();
+            Map<String, Integer> counts = LogStorage.getEmotionCounts();
+            List<Integer> dayCounts = new ArrayList<>();
+            List<Map<String, Integer>> dayEmotionCounts = new ArrayList<>();
+            for (int day = 0; day < 32; day++) {
+                dayCounts.add(LogStorage.getLogCountForDay(now - day * DayIndex.MILLIS_PER_DAY));
+                dayEmotionCounts.add(LogStorage.getEmotionCountsForDay(now - day * DayIndex.MILLIS_PER_DAY));
+            }
+            int[] trend = LogStorage.getCountsPerBucket(RollupTable.Resolution.DAY,
+                    now - 40 * DayIndex.MILLIS_PER_DAY, now);
+
+            LogStorage.setRetentionPolicy(new RetentionPolicy(7, 0));
+            LogStorage.compact();
+            LogSnapshot compacted = LogStorage.snapshot();
+            assertTrue(compacted.getCompactedLogCount() > 0);
+            assertTrue(compacted.getRawLogCount() < total);
+            assertEquals(compacted.getRawLogCount(), LogStorage.getLogs().size());
+            for (LogEntry entry : LogStorage.getLogs()) {
+                assertTrue(now - entry.getTimestamp() < 8 * DayIndex.MILLIS_PER_DAY);
+            }
+
+            // Exact across the raw and compacted tiers, and again after a restart.
+            for (int pass = 0; pass < 2; pass++) {
+                assertEquals(total, LogStorage.getTotalLogCount());
+                assertEquals(counts, LogStorage.getEmotionCounts());
+                for (int day = 0; day < 32; day++) {
+                    long timestamp = now - day * DayIndex.MILLIS_PER_DAY;
+                    assertEquals((int) dayCounts.get(day), LogStorage.getLogCountForDay(timestamp));
+                    assertEquals(dayEmotionCounts.get(day), LogStorage.getEmotionCountsForDay(timestamp));
+                }
+                assertArrayEquals(trend, LogStorage.getCountsPerBucket(RollupTable.Resolution.DAY,
+                        now - 40 * DayIndex.MILLIS_PER_DAY, now));
+                assertEquals(compacted.getRawLogCount(), LogStorage.snapshot().getRawLogCount());
+
+                LogStorage.reset();
+                LogStorage.open(directory);
+            }
+        } finally {
+            LogStorage.reset();
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    public void testCompactionKeepsEntriesLoggedMeanwhile() throws Exception {
+        for (int i = 0; i < 50_000; i++) {
+            LogStorage.addLog(i % 3 == 0 ? "Happy" : "Sad");
+        }
+        LogStorage.setRetentionPolicy(new RetentionPolicy(0, 1_000));
+        Thread compactor = new Thread(() -> {
+            try {
+                LogStorage.compact();
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        });
+        compactor.start();
+        for (int i = 0; i < 5_000; i++) {
+            LogStorage.addLog("Calm");
+        }
+        compactor.join();
+        LogStorage.compact();
+
+        LogSnapshot snapshot = LogStorage.snapshot();
+        assertEquals(55_000, snapshot.getTotalLogCount());
+        assertEquals(1_000, snapshot.getRawLogCount());
+        assertEquals(54_000, snapshot.getCompactedLogCount());
+        assertEquals(Integer.valueOf(5_000), snapshot.getEmotionCounts().get("Calm"));
+        assertEquals(Integer.valueOf(16_667), snapshot.getEmotionCounts().get("Happy"));
+        assertEquals(55_000, snapshot.getLogCountForDay(System.currentTimeMillis())
+                + snapshot.getLogCountForDay(System.currentTimeMillis() - DayIndex.MILLIS_PER_DAY));
+        for (LogEntry entry : snapshot.getLogs()) {
+            assertEquals("Calm", entry.getEmotion());
+        }
+    }
+
+    @Test
+    public void testRecentLogs() {
+        long now = System.currentTimeMillis();
+        LogStorage.addLogs(new String[] { "Old", "Happy", "Sad", "Calm" },
+                new long[] { now - 3 * DayIndex.MILLIS_PER_DAY, now - 2, now - 1, now }, 4);
+
+        long[] timestamps = new long[10];
+        String[] emotions = new String[10];
+        assertEquals(4, LogStorage.getRecentLogs(timestamps, emotions));
+        assertEquals("Calm", emotions[0]);
+        assertEquals(now, timestamps[0]);
+        assertEquals("Old", emotions[3]);
+        assertEquals(3, LogStorage.getRecentLogsForDay(now, timestamps, emotions));
+        assertEquals("Happy", emotions[2]);
+        LogSnapshot snapshot = LogStorage.snapshot();
+        LogStorage.addLog("Later");
+        assertEquals(3, LogStorage.getRecentLogsForDay(snapshot, now, timestamps, emotions));
+        assertEquals("Calm", emotions[0]);
+
+        LogStorage.setRecentCapacity(2);
+        assertEquals(2, LogStorage.getRecentLogs(timestamps, emotions));
+        assertEquals("Calm", emotions[1]);
+        LogStorage.addLog("Angry");
+        assertEquals(2, LogStorage.getRecentLogs(timestamps, emotions));
+        assertEquals("Angry", emotions[0]);
+        assertEquals("Later", emotions[1]);
+    }
+
+    @Test
+    public void testRecentLogsSurviveReopening() throws IOException {
+        File directory = Files.createTempDirectory("recent").toFile();
+        try {
+            LogStorage.open(directory);
+            for (int i = 0; i < 100; i++) {
+                LogStorage.addLog("E" + i);
+            }
+            LogStorage.close();
+            LogStorage.open(directory);
+
+            long[] timestamps = new long[3];
+            String[] emotions = new String[3];
+            assertEquals(3, LogStorage.getRecentLogs(timestamps, emotions));
+            assertEquals("E99", emotions[0]);
+            assertEquals("E97", emotions[2]);
+        } finally {
+            LogStorage.reset();
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    public void testConcurrentProducers() throws InterruptedException {
+        int producers = 8;
+        int perProducer = 5_000;
+        runProducers(producers, perProducer);
+
+        assertEquals(producers * perProducer, LogStorage.getTotalLogCount());
+        Map<String, Integer> counts = LogStorage.getEmotionCounts();
+        for (int p = 0; p < producers; p++) {
+            assertEquals(Integer.valueOf(perProducer), counts.get("Producer" + p));
+        }
+        // Timestamps are assigned in append order, so the log stays one sorted run.
+        List<LogEntry> logs = LogStorage.getLogs();
+        for (int i = 1; i < logs.size(); i++) {
+            assertTrue(logs.get(i - 1).getTimestamp() <= logs.get(i).getTimestamp());
+        }
+    }
+
+    @Test
+    public void testRejectedEntryOnlyFailsItsOwnCall() throws InterruptedException {
+        LogStore store = new LogStore();
+        try {
+            store.addLog(null);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        // Fill the registry, so every new emotion from now on is turned away.
+        String[] emotions = new String[LogStore.MAX_DISTINCT_EMOTIONS];
+        long[] timestamps = new long[emotions.length];
+        for (int i = 0; i < emotions.length; i++) {
+            emotions[i] = "Tag" + i;
+        }
+        store.addLogs(emotions, timestamps, emotions.length);
+        try {
+            store.addLogs(new String[] { "Happy", "Tag1" }, new long[2], 2);
+            fail();
+        } catch (TooManyEmotionsException expected) {
+            assertEquals("Happy", expected.getEmotion());
+            assertEquals(LogStore.MAX_DISTINCT_EMOTIONS, expected.getLimit());
+        }
+        assertEquals(emotions.length, store.getTotalLogCount());
+
+        int producers = 4;
+        int perProducer = 2_000;
+        List<Throwable> failures = new ArrayList<>();
+        int[] rejected = new int[1];
+        Thread[] threads = new Thread[producers + 1];
+        for (int p = 0; p < producers; p++) {
+            String emotion = "Tag" + p;
+            threads[p] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < perProducer; i++) {
+                        store.addLog(emotion);
+                    }
+                } catch (Throwable t) {
+                    synchronized (failures) {
+                        failures.add(t);
+                    }
+                }
+            });
+        }
+        threads[producers] = new Thread(() -> {
+            for (int i = 0; i < perProducer; i++) {
+                try {
+                    store.addLog("New" + i);
+                } catch (TooManyEmotionsException expected) {
+                    rejected[0]++;
+                }
+            }
+        });
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(failures.toString(), failures.isEmpty());
+        assertEquals(perProducer, rejected[0]);
+        assertEquals(emotions.length + producers * perProducer, store.getTotalLogCount());
+        assertEquals(emotions.length + producers * perProducer, store.snapshot().columns().size());
+    }
+
+    @Test
+    public void testReadersSeeConsistentSnapshots() throws InterruptedException {
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 20_000; i++) {
+                LogStorage.addLog(i % 2 == 0 ? "Happy" : "Sad");
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            LogSnapshot snapshot = LogStorage.snapshot();
+            int total = 0;
+            for (int count : snapshot.getEmotionCounts().values()) {
+                total += count;
+            }
+            assertEquals(snapshot.getTotalLogCount(), total);
+        }
+        writer.join();
+    }
+
+    @Test
+    public void testConcurrentDurableIngestion() throws Exception {
+        File directory = Files.createTempDirectory("ingestion").toFile();
+        int perProducer = 500;
+        try {
+            for (int producers = 1; producers <= 8; producers *= 2) {
+                LogStorage.reset();
+                LogStorage.open(new File(directory, "run" + producers));
+                runProducers(producers, perProducer);
+                assertEquals(producers * perProducer, LogStorage.getTotalLogCount());
+            }
+        } finally {
+            LogStorage.reset();
+            deleteRecursively(directory);
+        }
+    }
+
+    private static void runProducers(int producers, int perProducer) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            String emotion = "Producer" + p;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    LogStorage.addLog(emotion);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.aroxas_emotilog;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link ParallelScan}: parallel results match sequential ones
+ * and the mode picks the scan.
+ */
+public class ParallelScanTest {
+    private static final String[] EMOTIONS = { "Happy", "Sad", "Angry", "Calm", "Tired" };
+
+    @After
+    public void tearDown() {
+        ParallelScan.setMode(ParallelScan.Mode.AUTO);
+        ParallelScan.setThreshold(ParallelScan.DEFAULT_THRESHOLD);
+    }
+
+    // One entry a minute from epoch day 100, with the clock set back by a day
+    // every 100k entries, so days are split over several runs.
+    private static LogSnapshot snapshotOf(int entries) {
+        LogColumns columns = new LogColumns();
+        DayIndex days = new DayIndex(TimeZone.getTimeZone("UTC"));
+        Random random = new Random(7);
+        long timestamp = 100 * DayIndex.MILLIS_PER_DAY;
+        for (int i = 0; i < entries; i++) {
+            timestamp += i > 0 && i % 100_000 == 0 ? -DayIndex.MILLIS_PER_DAY : 60_000;
+            double r = random.nextDouble();
+            columns.append(timestamp, columns.intern(EMOTIONS[(int) (r * r * EMOTIONS.length)]));
+            days.add(timestamp);
+        }
+        return new LogSnapshot(1, columns.view(), days.view(), new int[0], null, 0);
+    }
+
+    // LogEntry has no equals, so compare what the entries hold.
+    private static List<String> keys(List<LogEntry> logs) {
+        return logs.stream().map(entry -> entry.getTimestamp() + " " + entry.getEmotion()).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testParallelMatchesSequential() {
+        LogSnapshot snapshot = snapshotOf(300_000);
+        LogFilter evenMinutes = (timestamp, emotion) -> (timestamp / 60_000) % 2 == 0 && !emotion.equals("Sad");
+        // The clock went back from day 169 to day 168, so day 169 has two runs.
+        long day = 169 * DayIndex.MILLIS_PER_DAY;
+        assertTrue(snapshot.days().rangesForDay(snapshot.days().epochDay(day)).length > 2);
+
+        ParallelScan.setMode(ParallelScan.Mode.SEQUENTIAL);
+        Map<String, Integer> dayCounts = snapshot.getEmotionCountsForDay(day);
+        Map<String, Integer> filteredCounts = snapshot.getEmotionCountsWhere(evenMinutes);
+        List<LogEntry> filteredLogs = snapshot.getLogsWhere(evenMinutes);
+        List<LogEntry> happy = snapshot.getLogsForEmotion("Happy");
+
+        ParallelScan.setMode(ParallelScan.Mode.PARALLEL);
+        assertEquals(dayCounts, snapshot.getEmotionCountsForDay(day));
+        assertEquals(filteredCounts, snapshot.getEmotionCountsWhere(evenMinutes));
+        assertEquals(keys(filteredLogs), keys(snapshot.getLogsWhere(evenMinutes)));
+        assertEquals(keys(happy), keys(snapshot.getLogsForEmotion("Happy")));
+
+        int total = 0;
+        for (int count : filteredCounts.values()) {
+            total += count;
+        }
+        assertEquals(filteredLogs.size(), total);
+        assertFalse(filteredCounts.containsKey("Sad"));
+        assertEquals(snapshot.getRawLogCount(),
+                snapshot.getEmotionCountsWhere((timestamp, emotion) -> true).values().stream()
+                        .mapToInt(Integer::intValue).sum());
+    }
+
+    @Test
+    public void testEmptyAndUnmatchedScans() {
+        ParallelScan.setMode(ParallelScan.Mode.PARALLEL);
+        assertTrue(LogSnapshot.EMPTY.getLogsWhere((timestamp, emotion) -> true).isEmpty());
+        assertTrue(LogSnapshot.EMPTY.getEmotionCountsWhere((timestamp, emotion) -> true).isEmpty());
+        LogSnapshot snapshot = snapshotOf(50_000);
+        assertTrue(snapshot.getLogsWhere((timestamp, emotion) -> false).isEmpty());
+        assertTrue(snapshot.getEmotionCountsForDay(0).isEmpty());
+    }
+
+    @Test
+    public void testAutoModeUsesThreshold() {
+        ParallelScan.setThreshold(1000);
+        boolean multiCore = ForkJoinPool.getCommonPoolParallelism() > 1;
+        assertEquals(multiCore, ParallelScan.isParallel(1000));
+        assertFalse(ParallelScan.isParallel(999));
+        ParallelScan.setMode(ParallelScan.Mode.SEQUENTIAL);
+        assertFalse(ParallelScan.isParallel(1_000_000));
+        ParallelScan.setMode(ParallelScan.Mode.PARALLEL);
+        assertTrue(ParallelScan.isParallel(2));
+    }
+}
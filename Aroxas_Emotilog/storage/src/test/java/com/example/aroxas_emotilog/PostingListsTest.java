@@ -0,0 +1,121 @@
+package com.example.aroxas_emotilog;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link PostingLists} chunking, views and searches.
+ */
+public class PostingListsTest {
+
+    @Test
+    public void testChunksCoverEveryIndexOnce() {
+        int expectedChunk = 0;
+        int expectedOffset = 0;
+        for (int index = 0; index < 200_000; index++) {
+            int chunk = PostingLists.chunkOf(index);
+            assertEquals("chunk of " + index, expectedChunk, chunk);
+            assertEquals("offset of " + index, expectedOffset, PostingLists.offsetOf(index, chunk));
+            if (++expectedOffset == PostingLists.chunkSize(chunk)) {
+                expectedChunk++;
+                expectedOffset = 0;
+            }
+        }
+    }
+
+    @Test
+    public void testListsPerEmotion() {
+        PostingLists postings = new PostingLists();
+        for (int position = 0; position < 100_000; position++) {
+            postings.add(position % 3 == 0 ? 0 : 200, position);
+        }
+        PostingLists.View view = postings.view();
+        assertEquals(33_334, view.count(0));
+        assertEquals(66_666, view.count(200));
+        assertEquals(0, view.count(1));
+        assertEquals(0, view.count(5_000));
+        for (int i = 0; i < view.count(0); i++) {
+            assertEquals(i * 3, view.positionAt(0, i));
+        }
+        assertEquals(99_998, view.positionAt(200, 66_665));
+    }
+
+    @Test
+    public void testViewsKeepTheirCounts() {
+        PostingLists postings = new PostingLists();
+        postings.add(0, 0);
+        postings.add(1, 1);
+        PostingLists.View first = postings.view();
+        for (int position = 2; position < 1000; position++) {
+            postings.add(position % 2, position);
+        }
+        postings.add(70, 1000);
+        PostingLists.View second = postings.view();
+
+        assertEquals(1, first.count(0));
+        assertEquals(1, first.count(1));
+        assertEquals(0, first.count(70));
+        assertEquals(500, second.count(0));
+        assertEquals(1, second.count(70));
+        assertEquals(999, second.positionAt(1, 499));
+
+        postings.clear();
+        assertEquals(500, second.count(0));
+        assertEquals(0, postings.view().count(0));
+    }
+
+    @Test
+    public void testIndexOf() {
+        PostingLists postings = new PostingLists();
+        for (int position = 10; position < 1000; position += 10) {
+            postings.add(0, position);
+        }
+        PostingLists.View view = postings.view();
+        assertEquals(0, view.indexOf(0, 0));
+        assertEquals(0, view.indexOf(0, 10));
+        assertEquals(1, view.indexOf(0, 11));
+        assertEquals(view.count(0), view.indexOf(0, 1000));
+        assertEquals(0, view.indexOf(3, 50));
+    }
+
+    @Test
+    public void testPrefixOfSealedBlocks() {
+        int size = 2 * LogColumns.CHUNK_SIZE;
+        long[] timestamps = new long[LogColumns.CHUNK_SIZE];
+        short[] ordinals = new short[LogColumns.CHUNK_SIZE];
+        CompressedBlock[] blocks = new CompressedBlock[2];
+        for (int chunk = 0; chunk < blocks.length; chunk++) {
+            for (int i = 0; i < LogColumns.CHUNK_SIZE; i++) {
+                ordinals[i] = (short) ((chunk * LogColumns.CHUNK_SIZE + i) % 3);
+            }
+            blocks[chunk] = CompressedBlock.compress(timestamps, ordinals, LogColumns.CHUNK_SIZE);
+        }
+        PostingLists postings = new PostingLists();
+        postings.setPrefix(blocks, size);
+        for (int position = size; position < size + 30; position++) {
+            postings.add(position % 3, position);
+        }
+        PostingLists.View view = postings.view();
+
+        PostingLists expected = new PostingLists();
+        for (int position = 0; position < size + 30; position++) {
+            expected.add(position % 3, position);
+        }
+        PostingLists.View expectedView = expected.view();
+        for (int id = 0; id < 4; id++) {
+            assertEquals("count of " + id, expectedView.count(id), view.count(id));
+            for (int i = 0; i < expectedView.count(id); i++) {
+                assertEquals(expectedView.positionAt(id, i), view.positionAt(id, i));
+            }
+        }
+        assertEquals(expectedView.indexOf(1, size + 1), view.indexOf(1, size + 1));
+
+        try {
+            postings.setPrefix(blocks, size);
+            fail("A prefix after other positions was accepted");
+        } catch (IllegalStateException expectedFailure) {
+            // The prefix must come first.
+        }
+    }
+}
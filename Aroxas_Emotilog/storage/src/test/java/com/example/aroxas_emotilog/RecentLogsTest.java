@@ -0,0 +1,135 @@
+package com.example.aroxas_emotilog;
+
+import org.junit.Test;
+
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link RecentLogs}: newest-first reads, wrap-around, the
+ * day-filtered read and consistency of lock-free reads under a running writer.
+ */
+public class RecentLogsTest {
+    private static final long DAY = DayIndex.MILLIS_PER_DAY;
+    private static final long HOUR = 3_600_000L;
+
+    private static DayIndex.View utcDays() {
+        return new DayIndex(TimeZone.getTimeZone("UTC")).view();
+    }
+
+    @Test
+    public void testEmptyRing() {
+        RecentLogs recent = new RecentLogs(4);
+        assertEquals(0, recent.copyRecent(new long[4], new String[4]));
+        assertEquals(0, recent.getAddedCount());
+    }
+
+    @Test
+    public void testNewestFirstWithinCapacity() {
+        RecentLogs recent = new RecentLogs(4);
+        recent.add(1000, "Happy");
+        recent.add(2000, "Sad");
+        recent.add(3000, "Calm");
+
+        long[] timestamps = new long[10];
+        String[] emotions = new String[10];
+        assertEquals(3, recent.copyRecent(timestamps, emotions));
+        assertEquals(3000, timestamps[0]);
+        assertEquals("Calm", emotions[0]);
+        assertEquals(1000, timestamps[2]);
+        assertEquals("Happy", emotions[2]);
+
+        // Only as many as fit.
+        assertEquals(2, recent.copyRecent(new long[2], new String[5]));
+    }
+
+    @Test
+    public void testWrapAroundKeepsNewest() {
+        RecentLogs recent = new RecentLogs(3);
+        for (int i = 0; i < 10; i++) {
+            recent.add(i, "E" + i);
+        }
+        long[] timestamps = new long[5];
+        String[] emotions = new String[5];
+        assertEquals(3, recent.copyRecent(timestamps, emotions));
+        assertArrayEquals(new long[] { 9, 8, 7, 0, 0 }, timestamps);
+        assertEquals("E7", emotions[2]);
+        assertEquals(10, recent.getAddedCount());
+    }
+
+    @Test
+    public void testDayReadStopsAtEarlierDay() {
+        RecentLogs recent = new RecentLogs(8);
+        long today = 20_000 * DAY;
+        recent.add(today - 2 * HOUR, "Yesterday");
+        recent.add(today + HOUR, "Morning");
+        recent.add(today - HOUR, "Imported");
+        recent.add(today + 2 * HOUR, "Noon");
+        recent.add(today + DAY + HOUR, "Tomorrow");
+
+        long[] timestamps = new long[8];
+        String[] emotions = new String[8];
+        // Tomorrow is skipped; the imported entry from yesterday ends the read.
+        assertEquals(1, recent.copyRecentForDay(utcDays(), 20_000, timestamps, emotions));
+        assertEquals("Noon", emotions[0]);
+        assertEquals(1, recent.copyRecentForDay(utcDays(), 20_001, timestamps, emotions));
+        assertEquals("Tomorrow", emotions[0]);
+        assertEquals(0, recent.copyRecentForDay(utcDays(), 19_998, timestamps, emotions));
+    }
+
+    @Test
+    public void testDayReadSkipsLaterVersions() {
+        RecentLogs recent = new RecentLogs(8);
+        long today = 20_000 * DAY;
+        recent.add(today + HOUR, "Morning", 1);
+        recent.add(today + 2 * HOUR, "Noon", 2);
+        recent.add(today + 3 * HOUR, "Evening", 3);
+
+        long[] timestamps = new long[8];
+        String[] emotions = new String[8];
+        assertEquals(2, recent.copyRecentForDay(utcDays(), 20_000, 2, timestamps, emotions));
+        assertEquals("Noon", emotions[0]);
+        assertEquals("Morning", emotions[1]);
+        assertEquals(0, recent.copyRecentForDay(utcDays(), 20_000, 0, timestamps, emotions));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroCapacityIsRejected() {
+        new RecentLogs(0);
+    }
+
+    @Test
+    public void testReadsUnderConcurrentWriterAreConsistent() throws InterruptedException {
+        RecentLogs recent = new RecentLogs(8);
+        String[] names = new String[16];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "E" + i;
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            for (long i = 0; i < 2_000_000; i++) {
+                recent.add(i, names[(int) (i % names.length)]);
+            }
+            done.set(true);
+        });
+        writer.start();
+
+        long[] timestamps = new long[8];
+        String[] emotions = new String[8];
+        while (!done.get()) {
+            int count = recent.copyRecent(timestamps, emotions);
+            for (int k = 0; k < count; k++) {
+                // Each entry is whole and the entries are consecutive, newest first.
+                assertSame(names[(int) (timestamps[k] % names.length)], emotions[k]);
+                if (k > 0) {
+                    assertEquals(timestamps[k - 1] - 1, timestamps[k]);
+                }
+            }
+        }
+        writer.join();
+        assertEquals(8, recent.copyRecent(timestamps, emotions));
+        assertEquals(1_999_999, timestamps[0]);
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.aroxas_emotilog;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link RollupTable} buckets, counts, views and trend queries.
+ */
+public class RollupTableTest {
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final long HOUR = RollupTable.MILLIS_PER_HOUR;
+    private static final long DAY = DayIndex.MILLIS_PER_DAY;
+
+    private static long utc(int year, int month, int day, int hour) {
+        Calendar calendar = new GregorianCalendar(UTC);
+        calendar.clear();
+        calendar.set(year, month - 1, day, hour, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    @Test
+    public void testIsoWeeksStartOnMonday() {
+        RollupTable.Resolution weeks = RollupTable.Resolution.ISO_WEEK;
+        // Sunday 2024-03-10 and Monday 2024-03-11 are in different ISO weeks.
+        long sunday = weeks.bucketOf(utc(2024, 3, 10, 23), UTC);
+        long monday = weeks.bucketOf(utc(2024, 3, 11, 0), UTC);
+        assertEquals(sunday + 1, monday);
+        assertEquals(weeks.bucketOf(utc(2024, 3, 17, 23), UTC), monday);
+        assertEquals(utc(2024, 3, 11, 0) / DAY, weeks.firstEpochDay(monday));
+        // Weeks before the epoch are numbered consistently too.
+        long before = weeks.bucketOf(utc(1969, 12, 29, 0), UTC);
+        assertEquals(0, before);
+        assertEquals(-1, weeks.bucketOf(utc(1969, 12, 28, 23), UTC));
+    }
+
+    @Test
+    public void testDaysFollowLocalTimeAcrossDst() {
+        TimeZone edmonton = TimeZone.getTimeZone("America/Edmonton");
+        RollupTable table = new RollupTable(RollupTable.Resolution.DAY, edmonton);
+        // 2024-03-10 in Edmonton is 23 hours long: 07:00Z to 06:00Z the next day.
+        long start = utc(2024, 3, 10, 7);
+        for (long t = start; t < start + 23 * HOUR; t += HOUR) {
+            table.add(t, 0);
+        }
+        table.add(start + 23 * HOUR, 0);
+        RollupTable.View view = table.view();
+        long day = view.bucketOf(start);
+        assertEquals(23, view.total(day));
+        assertEquals(1, view.total(day + 1));
+    }
+
+    @Test
+    public void testCountsAndRanges() {
+        RollupTable table = new RollupTable(RollupTable.Resolution.HOUR, UTC);
+        long base = utc(2024, 1, 1, 0);
+        table.add(base, 0);
+        table.add(base + 10, 1);
+        table.add(base + HOUR, 1);
+        table.add(base + 5 * HOUR, 2);
+        // Far in the past: the table grows to the left.
+        table.add(base - 400 * DAY, 1);
+
+        RollupTable.View view = table.view();
+        long hour = view.bucketOf(base);
+        assertEquals(2, view.total(hour));
+        assertEquals(1, view.count(hour, 0));
+        assertEquals(1, view.count(hour, 1));
+        assertEquals(0, view.count(hour, 2));
+        assertArrayEquals(new int[] { 2, 1, 0, 0, 0, 1, 0 }, view.totals(hour, hour + 7));
+        assertArrayEquals(new int[] { 0, 1, 1 }, view.counts(hour - 1, hour + 2, 1));
+        assertArrayEquals(new int[] { 1, 3, 1 }, view.countsByEmotion(Long.MIN_VALUE / 2, Long.MAX_VALUE / 2, 3));
+        assertEquals(view.bucketOf(base - 400 * DAY), view.getFirstBucket());
+        assertEquals(hour + 5, view.getLastBucket());
+    }
+
+    @Test
+    public void testViewIsNotAffectedByLaterAdds() {
+        RollupTable table = new RollupTable(RollupTable.Resolution.DAY, UTC);
+        long base = utc(2024, 1, 1, 12);
+        table.add(base, 0);
+        RollupTable.View before = table.view();
+        table.add(base, 0);
+        table.add(base, 1);
+        table.add(base + DAY, 0);
+        table.add(base - 1000 * DAY, 0);
+        RollupTable.View after = table.view();
+
+        long day = before.bucketOf(base);
+        assertEquals(1, before.total(day));
+        assertEquals(0, before.count(day, 1));
+        assertEquals(0, before.total(day + 1));
+        assertEquals(day, before.getFirstBucket());
+        assertEquals(3, after.total(day));
+        assertEquals(1, after.total(day + 1));
+
+        table.clear();
+        assertEquals(3, after.total(day));
+        assertTrue(table.view().isEmpty());
+    }
+
+    @Test
+    public void testMatchesNaiveCounts() {
+        Random random = new Random(7);
+        RollupTable table = new RollupTable(RollupTable.Resolution.ISO_WEEK, UTC);
+        long base = utc(2023, 6, 1, 0);
+        int weeks = 60;
+        int[][] expected = new int[weeks + 2][4];
+        RollupTable.View[] views = new RollupTable.View[10];
+        int[][][] snapshots = new int[10][][];
+        for (int i = 0; i < 20_000; i++) {
+            long timestamp = base + (long) (random.nextDouble() * weeks * 7 * DAY);
+            int ordinal = random.nextInt(4);
+            table.add(timestamp, ordinal);
+            long week = table.view().bucketOf(timestamp) - table.view().bucketOf(base);
+            expected[(int) week][ordinal]++;
+            if (i % 2_000 == 1_999) {
+                views[i / 2_000] = table.view();
+                snapshots[i / 2_000] = deepCopy(expected);
+            }
+        }
+        long first = table.view().bucketOf(base);
+        for (int v = 0; v < views.length; v++) {
+            for (int week = 0; week < expected.length; week++) {
+                for (int ordinal = 0; ordinal < 4; ordinal++) {
+                    assertEquals(snapshots[v][week][ordinal], views[v].count(first + week, ordinal));
+                }
+            }
+        }
+    }
+
+    private static int[][] deepCopy(int[][] source) {
+        int[][] copy = new int[source.length][];
+        for (int i = 0; i < source.length; i++) {
+            copy[i] = source[i].clone();
+        }
+        return copy;
+    }
+
+    @Test
+    public void testNinetyDayTrendOverLongHistory() {
+        Rollups rollups = new Rollups(UTC);
+        long end = utc(2024, 6, 1, 0);
+        Random random = new Random(11);
+        int entries = 2_000_000;
+        int[] expected = new int[90];
+        for (int i = 0; i < entries; i++) {
+            // Three years of history, a log every ~47 seconds.
+            long timestamp = end - 3 * 365 * DAY + i * (3 * 365 * DAY / entries);
+            rollups.add(timestamp, random.nextInt(8));
+            long daysBeforeEnd = (end - 1 - timestamp) / DAY;
+            if (daysBeforeEnd < 90) {
+                expected[89 - (int) daysBeforeEnd]++;
+            }
+        }
+        RollupTable.View days = rollups.view().days();
+        long today = days.bucketOf(end - 1);
+
+        assertArrayEquals(expected, days.totals(today - 89, today + 1));
+    }
+}
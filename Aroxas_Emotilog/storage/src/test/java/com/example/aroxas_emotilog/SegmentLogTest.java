@@ -0,0 +1,199 @@
+package com.example.aroxas_emotilog;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link SegmentLog} covering replay, torn-write recovery, segment rollover
+ * and skipping compacted records.
+ */
+public class SegmentLogTest {
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("segment-log").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private List<LogEntry> replay() throws IOException {
+        List<LogEntry> entries = new ArrayList<>();
+        SegmentLog log = SegmentLog.open(directory, 4,
+                (timestamp, emotion) -> entries.add(new LogEntry(emotion, timestamp)));
+        log.close();
+        return entries;
+    }
+
+    @Test
+    public void testReplayAfterReopen() throws IOException {
+        SegmentLog log = SegmentLog.open(directory, 4, (timestamp, emotion) -> fail());
+        log.append("Happy", 1000L);
+        log.append("Sad", 2000L);
+        log.append("Happy", 3000L);
+        assertEquals(3, log.getRecordCount());
+        log.close();
+
+        List<LogEntry> entries = replay();
+        assertEquals(3, entries.size());
+        assertEquals("Happy", entries.get(0).getEmotion());
+        assertEquals(2000L, entries.get(1).getTimestamp());
+        assertEquals("Sad", entries.get(1).getEmotion());
+        assertEquals(3000L, entries.get(2).getTimestamp());
+    }
+
+    @Test
+    public void testSegmentRollover() throws IOException {
+        SegmentLog log = SegmentLog.open(directory, 4, (timestamp, emotion) -> fail());
+        for (int i = 0; i < 10; i++) {
+            log.append("Tired", i);
+        }
+        log.close();
+
+        File[] segments = directory.listFiles((dir, name) -> name.startsWith("segment-"));
+        assertEquals(3, segments.length);
+
+        List<LogEntry> entries = replay();
+        assertEquals(10, entries.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, entries.get(i).getTimestamp());
+        }
+    }
+
+    @Test
+    public void testFailedBatchLeavesNothingOnDisk() throws IOException {
+        SegmentLog log = SegmentLog.open(directory, 4, (timestamp, emotion) -> fail());
+        log.append("Happy", 1L);
+        log.append("Happy", 2L);
+        // The batch spans two segments and fails on its last record, in the second.
+        char[] tooLong = new char[SegmentLog.MAX_EMOTION_BYTES + 1];
+        Arrays.fill(tooLong, 'x');
+        String[] emotions = { "Sad", "Sad", "Calm", "Calm", new String(tooLong) };
+        try {
+            log.appendAll(emotions, new long[] { 3, 4, 5, 6, 7 }, emotions.length);
+            fail();
+        } catch (IOException expected) {
+        }
+        assertEquals(2, log.getRecordCount());
+        log.append("Tired", 8L);
+        log.close();
+
+        List<LogEntry> entries = replay();
+        assertEquals(3, entries.size());
+        assertEquals("Happy", entries.get(1).getEmotion());
+        assertEquals("Tired", entries.get(2).getEmotion());
+        assertEquals(8L, entries.get(2).getTimestamp());
+        assertEquals(1, directory.listFiles((dir, name) -> name.startsWith("segment-")).length);
+    }
+
+    @Test
+    public void testTornWriteIsTruncated() throws IOException {
+        SegmentLog log = SegmentLog.open(directory, 100, (timestamp, emotion) -> fail());
+        log.append("Happy", 1000L);
+        log.append("Angry", 2000L);
+        log.close();
+
+        File segment = new File(directory, SegmentLog.segmentName(0));
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            // Simulate a crash halfway through writing a third record.
+            file.seek(file.length());
+            file.write(new byte[] { 0, 0, 0, 0, 0, 0, 11, (byte) 184 });
+        }
+
+        List<LogEntry> entries = replay();
+        assertEquals(2, entries.size());
+        assertEquals(SegmentLog.HEADER_SIZE + 2 * SegmentLog.RECORD_SIZE, segment.length());
+
+        // The log keeps accepting appends after recovery.
+        SegmentLog reopened = SegmentLog.open(directory, 100, (timestamp, emotion) -> { });
+        reopened.append("Sick", 3000L);
+        reopened.close();
+        assertEquals(3, replay().size());
+    }
+
+    @Test
+    public void testCorruptRecordDiscardsLaterSegments() throws IOException {
+        SegmentLog log = SegmentLog.open(directory, 2, (timestamp, emotion) -> fail());
+        for (int i = 0; i < 6; i++) {
+            log.append("Loved", i);
+        }
+        log.close();
+
+        File second = new File(directory, SegmentLog.segmentName(2));
+        try (RandomAccessFile file = new RandomAccessFile(second, "rw")) {
+            file.seek(SegmentLog.HEADER_SIZE + SegmentLog.RECORD_SIZE + 3);
+            file.write(0x7F);
+        }
+
+        List<LogEntry> entries = replay();
+        assertEquals(3, entries.size());
+        assertFalse(new File(directory, SegmentLog.segmentName(4)).exists());
+    }
+
+    @Test
+    public void testCompactedRecordsAreSkippedAndSegmentsDeleted() throws IOException {
+        SegmentLog log = SegmentLog.open(directory, 4, (timestamp, emotion) -> fail());
+        for (int i = 0; i < 10; i++) {
+            log.append("Calm", i);
+        }
+        log.close();
+
+        List<LogEntry> entries = new ArrayList<>();
+        SegmentLog reopened = SegmentLog.open(directory, 4, 6,
+                (timestamp, emotion) -> entries.add(new LogEntry(emotion, timestamp)));
+        assertEquals(4, entries.size());
+        assertEquals(6, entries.get(0).getTimestamp());
+        // Only the first segment held nothing but compacted records.
+        assertFalse(new File(directory, SegmentLog.segmentName(0)).exists());
+        assertTrue(new File(directory, SegmentLog.segmentName(4)).exists());
+
+        reopened.append("Calm", 10);
+        assertEquals(11, reopened.getRecordCount());
+        reopened.deleteSegmentsBefore(11);
+        // The segment being appended to is never deleted.
+        assertTrue(new File(directory, SegmentLog.segmentName(8)).exists());
+        assertFalse(new File(directory, SegmentLog.segmentName(4)).exists());
+        reopened.close();
+
+        entries.clear();
+        SegmentLog.open(directory, 4, 9, (timestamp, emotion) -> entries.add(new LogEntry(emotion, timestamp)))
+                .close();
+        assertEquals(2, entries.size());
+        assertEquals(10, entries.get(1).getTimestamp());
+    }
+
+    @Test
+    public void testLogStoragePersistsEntries() throws IOException {
+        LogStorage.reset();
+        LogStorage.open(directory);
+        LogStorage.addLog("Excited");
+        LogStorage.addLog("Dead");
+        LogStorage.reset();
+        assertEquals(0, LogStorage.getTotalLogCount());
+
+        LogStorage.open(directory);
+        assertEquals(2, LogStorage.getTotalLogCount());
+        assertEquals(1, LogStorage.getLogsForEmotion("Excited").size());
+        LogStorage.reset();
+    }
+}
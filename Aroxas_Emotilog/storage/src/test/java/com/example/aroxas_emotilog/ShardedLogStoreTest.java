@@ -0,0 +1,155 @@
+package com.example.aroxas_emotilog;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link ShardedLogStore}: profile isolation, aggregates against
+ * per-profile sums at several pool sizes, and durable profiles.
+ */
+public class ShardedLogStoreTest {
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final long DAY = DayIndex.MILLIS_PER_DAY;
+    private static final String[] EMOTIONS = { "Happy", "Sad", "Angry", "Calm" };
+
+    // Profile p logs p + 1 entries a day for (p % 5) + 1 days, ending on day 10.
+    private static void fill(ShardedLogStore store, int profiles) {
+        for (int p = 0; p < profiles; p++) {
+            int days = p % 5 + 1;
+            int perDay = p + 1;
+            String[] emotions = new String[days * perDay];
+            long[] timestamps = new long[emotions.length];
+            for (int i = 0; i < emotions.length; i++) {
+                emotions[i] = EMOTIONS[(p + i) % EMOTIONS.length];
+                timestamps[i] = (10 - i / perDay) * DAY + i;
+            }
+            store.profile("user-" + p).addLogs(emotions, timestamps, emotions.length);
+        }
+    }
+
+    @Test
+    public void testProfilesAreIsolated() {
+        ShardedLogStore store = new ShardedLogStore(4, UTC);
+        store.addLog("alice", "Happy");
+        store.addLog("alice", "Happy");
+        store.addLog("bob", "Sad");
+
+        assertEquals(2, store.getProfileCount());
+        assertSame(store.profile("alice"), store.profile("alice"));
+        assertEquals(2, store.profile("alice").getLogCountForDay(System.currentTimeMillis()));
+        assertEquals(1, store.profile("bob").getEmotionCounts().size());
+        assertNull(store.existingProfile("carol"));
+        assertEquals(2, store.getProfileCount());
+    }
+
+    @Test
+    public void testAggregatesMatchPerProfileSums() {
+        ShardedLogStore store = new ShardedLogStore(8, UTC, new ForkJoinPool(4));
+        // Enough profiles that shards split into several leaf tasks.
+        int profiles = 8 * ShardedLogStore.PROFILES_PER_TASK * 3;
+        fill(store, profiles);
+
+        Map<String, Long> expectedCounts = new HashMap<>();
+        long[] expectedDays = new long[12];
+        long expectedTotal = 0;
+        for (int p = 0; p < profiles; p++) {
+            LogStore profile = store.existingProfile("user-" + p);
+            for (Map.Entry<String, Integer> entry : profile.getEmotionCounts().entrySet()) {
+                expectedCounts.merge(entry.getKey(), (long) entry.getValue(), Long::sum);
+            }
+            for (int day = 0; day < expectedDays.length; day++) {
+                expectedDays[day] += profile.getLogCountForDay(day * DAY);
+            }
+            expectedTotal += profile.getTotalLogCount();
+        }
+
+        assertEquals(profiles, store.getProfileCount());
+        assertEquals(expectedCounts, store.getEmotionCounts());
+        assertArrayEquals(expectedDays, store.getDailyTotals(0, 11 * DAY));
+        assertEquals(expectedTotal, store.getTotalLogCount());
+        // Profiles p = 0 .. 767 each log p + 1 entries on day 10.
+        assertEquals((long) profiles * (profiles + 1) / 2, store.getDailyTotals(10 * DAY, 10 * DAY)[0]);
+    }
+
+    @Test
+    public void testEmptyStore() {
+        ShardedLogStore store = new ShardedLogStore();
+        assertTrue(store.getEmotionCounts().isEmpty());
+        assertEquals(0, store.getTotalLogCount());
+        assertArrayEquals(new long[3], store.getDailyTotals(0, 2 * DAY));
+    }
+
+    @Test
+    public void testProfileIdsRoundTripAsDirectoryNames() {
+        for (String id : new String[] { "alice", "user-1_a", "a/b", "..", "%41", "Jos\u00e9 \u2603" }) {
+            String name = ShardedLogStore.encodeProfileId(id);
+            assertTrue(name, name.matches("[A-Za-z0-9_%-]+"));
+            assertEquals(id, ShardedLogStore.decodeProfileId(name));
+        }
+        assertEquals("a%2Fb", ShardedLogStore.encodeProfileId("a/b"));
+    }
+
+    @Test
+    public void testDurableProfilesAreReopened() throws IOException {
+        File directory = Files.createTempDirectory("profiles").toFile();
+        try {
+            ShardedLogStore store = new ShardedLogStore(4, UTC, directory, ForkJoinPool.commonPool());
+            store.addLog("alice", "Happy");
+            store.addLog("a/b", "Sad");
+            store.addLog("a/b", "Sad");
+            store.close();
+
+            ShardedLogStore reopened = new ShardedLogStore(4, UTC, directory, ForkJoinPool.commonPool());
+            try {
+                assertEquals(2, reopened.getProfileCount());
+                assertEquals(3, reopened.getTotalLogCount());
+                assertEquals(Long.valueOf(2), reopened.getEmotionCounts().get("Sad"));
+                assertEquals(2, reopened.existingProfile("a/b").getTotalLogCount());
+            } finally {
+                reopened.close();
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    public void testAggregatesPerParallelism() {
+        int profiles = 1024;
+        for (int parallelism = 1; parallelism <= 8; parallelism *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                ShardedLogStore store = new ShardedLogStore(ShardedLogStore.DEFAULT_SHARD_COUNT, UTC, pool);
+                for (int p = 0; p < profiles; p++) {
+                    for (int i = 0; i < 50; i++) {
+                        store.addLog("user-" + p, EMOTIONS[(p + i) % EMOTIONS.length]);
+                    }
+                }
+                Map<String, Long> counts = store.getEmotionCounts();
+                assertEquals(50L * profiles, counts.values().stream().mapToLong(Long::longValue).sum());
+                assertEquals(50L * profiles, store.getTotalLogCount());
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
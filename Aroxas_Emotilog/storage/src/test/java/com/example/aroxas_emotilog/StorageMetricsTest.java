@@ -0,0 +1,159 @@
+package com.example.aroxas_emotilog;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link LatencyHistogram}, {@link StorageMetrics} and {@link MetricsSnapshot}.
+ */
+public class StorageMetricsTest {
+
+    @Before
+    public void setUp() throws IOException {
+        LogStorage.reset();
+        StorageMetrics.reset();
+        StorageMetrics.setEnabled(true);
+        // Time every call, so latency counts are exact.
+        StorageMetrics.setSampleInterval(1);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        StorageMetrics.setEnabled(false);
+        StorageMetrics.setSampleInterval(StorageMetrics.DEFAULT_SAMPLE_INTERVAL);
+        StorageMetrics.reset();
+        LogStorage.reset();
+    }
+
+    @Test
+    public void testBucketsAreLogLinear() {
+        for (long value = 0; value < 1_000_000; value += 1 + value / 100) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(value + " below bucket " + bucket, LatencyHistogram.lowerBound(bucket) <= value);
+            assertTrue(value + " above bucket " + bucket, LatencyHistogram.upperBound(bucket) >= value);
+            // Every bucket is at most an eighth of its lower bound wide.
+            long width = LatencyHistogram.upperBound(bucket) - LatencyHistogram.lowerBound(bucket) + 1;
+            assertTrue(width <= Math.max(1, LatencyHistogram.lowerBound(bucket) / 8));
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500_500, snapshot.getMeanNanos(), 0.001);
+        assertEquals(1_000_000, snapshot.getMaxNanos());
+        assertEquals(500_000, snapshot.getPercentileNanos(0.5), 500_000 / 8);
+        assertEquals(990_000, snapshot.getPercentileNanos(0.99), 990_000 / 8);
+        assertEquals(1_000_000, snapshot.getPercentileNanos(1.0));
+
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().getCount());
+        assertEquals(0, histogram.snapshot().getPercentileNanos(0.5));
+    }
+
+    @Test
+    public void testOperationsAreRecordedWithScannedAndReturned() {
+        LogStorage.addLogs(new String[] { "Happy", "Sad", "Happy" }, new long[] { 1000, 2000, 3000 }, 3);
+        LogStorage.addLog("Calm");
+        assertEquals(2, LogStorage.getLogsForEmotion("Happy").size());
+        LogStorage.getLogsForEmotion("Unknown");
+        LogStorage.getEmotionCountsForDay(1000);
+        LogStorage.getMostFrequentEmotion();
+
+        MetricsSnapshot metrics = StorageMetrics.snapshot();
+        assertEquals(1, metrics.get(StorageMetrics.Operation.ADD_LOG).getLatency().getCount());
+        assertEquals(1, metrics.get(StorageMetrics.Operation.ADD_LOGS).getLatency().getCount());
+        MetricsSnapshot.OperationStats forEmotion = metrics.get(StorageMetrics.Operation.GET_LOGS_FOR_EMOTION);
+        assertEquals(2, forEmotion.getLatency().getCount());
+        assertEquals(2, forEmotion.getScanned());
+        assertEquals(2, forEmotion.getReturned());
+        MetricsSnapshot.OperationStats forDay = metrics.get(StorageMetrics.Operation.GET_EMOTION_COUNTS_FOR_DAY);
+        assertEquals(3, forDay.getScanned());
+        assertEquals(2, forDay.getReturned());
+        assertEquals(0, metrics.get(StorageMetrics.Operation.GET_LOGS).getLatency().getCount());
+        assertEquals(2, metrics.getLockAcquisitions());
+    }
+
+    @Test
+    public void testDisabledMetricsRecordNothing() {
+        StorageMetrics.setEnabled(false);
+        LogStorage.addLog("Happy");
+        LogStorage.getLogs();
+
+        MetricsSnapshot metrics = StorageMetrics.snapshot();
+        assertFalse(metrics.isEnabled());
+        assertEquals(0, metrics.get(StorageMetrics.Operation.ADD_LOG).getLatency().getCount());
+        assertEquals(0, metrics.getLockAcquisitions());
+
+        StorageMetrics.setEnabled(true);
+        LogStorage.getLogs();
+        assertEquals(1, StorageMetrics.snapshot().get(StorageMetrics.Operation.GET_LOGS).getLatency().getCount());
+    }
+
+    @Test
+    public void testContendedLockWaitsAreRecorded() throws InterruptedException {
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    LogStorage.addLog("Happy");
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        MetricsSnapshot metrics = StorageMetrics.snapshot();
+        assertEquals(80_000, metrics.get(StorageMetrics.Operation.ADD_LOG).getCalls());
+        assertEquals(80_000, metrics.getLockAcquisitions());
+        assertEquals(metrics.getContendedLockAcquisitions(), metrics.getLockWait().getCount());
+    }
+
+    @Test
+    public void testTextAndJson() {
+        LogStorage.addLog("Happy");
+        LogStorage.getLogs();
+        MetricsSnapshot metrics = StorageMetrics.snapshot();
+
+        String text = metrics.toText();
+        assertTrue(text, text.contains("addLog"));
+        assertTrue(text, text.contains("getLogs"));
+        assertFalse(text, text.contains("getLogsForDay"));
+        assertTrue(text, text.contains("write lock: 1 acquisitions, 0 contended"));
+
+        String json = metrics.toJson();
+        assertTrue(json, json.startsWith("{\"enabled\":true,\"operations\":{\"addLog\":{\"calls\":1,\"count\":1,"));
+        assertTrue(json, json.contains("\"getLogs\":{\"calls\":1,\"count\":1,"));
+        assertTrue(json, json.contains("\"scanned\":0,\"returned\":1}"));
+        assertTrue(json, json.contains("\"writeLock\":{\"acquisitions\":1,\"contended\":0,\"wait\":{\"count\":0,"));
+        assertTrue(json, json.endsWith("\"buckets\":[]}}}"));
+    }
+
+    @Test
+    public void testOnlySampledCallsAreTimed() {
+        StorageMetrics.setSampleInterval(16);
+        for (int i = 0; i < 16_000; i++) {
+            LogStorage.addLog("Happy");
+        }
+        MetricsSnapshot.OperationStats addLog = StorageMetrics.snapshot().get(StorageMetrics.Operation.ADD_LOG);
+        assertEquals(16_000, addLog.getCalls());
+        // About one call in 16 is timed; 1,000 expected, far outside these bounds only by chance.
+        long timed = addLog.getLatency().getCount();
+        assertTrue("timed: " + timed, timed > 700 && timed < 1300);
+        assertEquals(16_000, StorageMetrics.snapshot().getLockAcquisitions());
+        assertTrue(StorageMetrics.snapshot().toText().contains("addLog"));
+    }
+}
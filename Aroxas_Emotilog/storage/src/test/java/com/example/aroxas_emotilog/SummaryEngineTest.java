@@ -0,0 +1,154 @@
+package com.example.aroxas_emotilog;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link SummaryEngine} results and caching.
+ */
+public class SummaryEngineTest {
+    private static final long DAY = DayIndex.MILLIS_PER_DAY;
+    private static final long TODAY = 20_000 * DAY;
+
+    private static LogSnapshot snapshotOf(long version, String[] emotions, long[] timestamps) {
+        LogColumns columns = new LogColumns();
+        DayIndex days = new DayIndex(TimeZone.getTimeZone("UTC"));
+        int[] counts = new int[8];
+        String mostFrequent = null;
+        int mostFrequentCount = 0;
+        for (int i = 0; i < timestamps.length; i++) {
+            int ordinal = columns.intern(emotions[i]);
+            columns.append(timestamps[i], ordinal);
+            days.add(timestamps[i]);
+            if (++counts[ordinal] > mostFrequentCount) {
+                mostFrequentCount = counts[ordinal];
+                mostFrequent = emotions[i];
+            }
+        }
+        return new LogSnapshot(version, columns.view(), days.view(),
+                Arrays.copyOf(counts, columns.emotionCount()), mostFrequent, mostFrequentCount);
+    }
+
+    private static LogSnapshot sample(long version) {
+        String[] emotions = { "Sad", "Happy", "Happy", "Calm", "Happy", "Sad", "Calm", "Happy", "Angry" };
+        long[] timestamps = {
+                TODAY - DAY + 5, TODAY - 10,
+                TODAY + 100, TODAY + 200, TODAY + 300, TODAY + 400, TODAY + 500,
+                // The clock went back: this run is still today but older than the previous entry.
+                TODAY + 250, TODAY + DAY + 1 };
+        return snapshotOf(version, emotions, timestamps);
+    }
+
+    @Test
+    public void testWholeHistoryTotals() {
+        SummarySnapshot summary = new SummaryEngine().summarize(sample(1), TODAY + 1_000);
+        assertEquals(9, summary.getTotalLogCount());
+        assertEquals("Happy", summary.getMostFrequentEmotion());
+        assertEquals(4, summary.getMostFrequentEmotionCount());
+
+        List<String> order = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : summary.getFrequencies()) {
+            order.add(entry.getKey() + "=" + entry.getValue());
+        }
+        // Ties keep the order emotions were first logged in.
+        assertEquals(Arrays.asList("Happy=4", "Sad=2", "Calm=2", "Angry=1"), order);
+    }
+
+    @Test
+    public void testTodayCountsAndRecentEntries() {
+        SummarySnapshot summary = new SummaryEngine().summarize(sample(1), TODAY + 1_000);
+        assertEquals(TODAY / DAY, summary.getEpochDay());
+        assertEquals(6, summary.getTodayLogCount());
+        assertEquals(Integer.valueOf(3), summary.getTodayCounts().get("Happy"));
+        assertEquals(Integer.valueOf(1), summary.getTodayCounts().get("Sad"));
+        assertEquals(Integer.valueOf(2), summary.getTodayCounts().get("Calm"));
+        assertNull(summary.getTodayCounts().get("Angry"));
+
+        List<Long> recent = new ArrayList<>();
+        for (LogEntry entry : summary.getRecentToday()) {
+            recent.add(entry.getTimestamp() - TODAY);
+        }
+        assertEquals(Arrays.asList(500L, 400L, 300L, 250L, 200L), recent);
+    }
+
+    @Test
+    public void testEmptySnapshot() {
+        SummarySnapshot summary = new SummaryEngine().summarize(LogSnapshot.EMPTY, TODAY);
+        assertEquals(0, summary.getTotalLogCount());
+        assertNull(summary.getMostFrequentEmotion());
+        assertTrue(summary.getFrequencies().isEmpty());
+        assertEquals(0, summary.getTodayLogCount());
+        assertTrue(summary.getRecentToday().isEmpty());
+    }
+
+    @Test
+    public void testUnchangedVersionReusesSummary() {
+        SummaryEngine engine = new SummaryEngine();
+        LogSnapshot snapshot = sample(7);
+        SummarySnapshot first = engine.summarize(snapshot, TODAY + 1_000);
+        assertSame(first, engine.summarize(snapshot, TODAY + 2_000));
+
+        // A new version or a new local day recomputes.
+        SummarySnapshot newer = engine.summarize(sample(8), TODAY + 2_000);
+        assertNotSame(first, newer);
+        assertEquals(8, newer.getVersion());
+        SummarySnapshot tomorrow = engine.summarize(sample(8), TODAY + DAY + 10);
+        assertEquals(1, tomorrow.getTodayLogCount());
+    }
+
+    @Test
+    public void testAppendedEntriesExtendCachedSummary() {
+        Object lineage = new Object();
+        LogColumns columns = new LogColumns();
+        DayIndex days = new DayIndex(TimeZone.getTimeZone("UTC"));
+        String[] emotions = { "Happy", "Sad", "Calm" };
+        SummaryEngine engine = new SummaryEngine();
+        int[] counts = new int[3];
+        long timestamp = TODAY - 100;
+        for (int batch = 0; batch < 20; batch++) {
+            for (int i = 0; i < 7; i++) {
+                // Occasionally step back in time, so today's entries span several runs.
+                timestamp += (i * 31 + batch) % 11 == 0 ? -40 : 13;
+                int ordinal = columns.intern(emotions[(batch + i * i) % 3]);
+                columns.append(timestamp, ordinal);
+                days.add(timestamp);
+                counts[ordinal]++;
+            }
+            LogSnapshot snapshot = new LogSnapshot(batch + 1, lineage, columns.view(), days.view(),
+                    Arrays.copyOf(counts, columns.emotionCount()), "Happy", counts[0]);
+            SummarySnapshot incremental = engine.summarize(snapshot, TODAY);
+            SummarySnapshot full = SummaryEngine.compute(snapshot, TODAY / DAY);
+
+            assertEquals(full.getTodayLogCount(), incremental.getTodayLogCount());
+            assertEquals(full.getTodayCounts(), incremental.getTodayCounts());
+            assertEquals(full.getFrequencies(), incremental.getFrequencies());
+            assertEquals(timestampsOf(full.getRecentToday()), timestampsOf(incremental.getRecentToday()));
+        }
+    }
+
+    private static List<Long> timestampsOf(List<LogEntry> entries) {
+        List<Long> timestamps = new ArrayList<>();
+        for (LogEntry entry : entries) {
+            timestamps.add(entry.getTimestamp());
+        }
+        return timestamps;
+    }
+
+    @Test
+    public void testSummaryIsReadOnly() {
+        SummarySnapshot summary = new SummaryEngine().summarize(sample(1), TODAY);
+        try {
+            summary.getRecentToday().clear();
+            fail("summary must be read-only");
+        } catch (UnsupportedOperationException expected) {
+            // expected
+        }
+    }
+}
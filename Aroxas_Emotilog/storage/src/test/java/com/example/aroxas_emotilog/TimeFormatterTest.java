@@ -0,0 +1,139 @@
+package com.example.aroxas_emotilog;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link TimeFormatter}, including the allocation per bound row.
+ */
+public class TimeFormatterTest {
+    private static final String[] ZONES = { "UTC", "America/Edmonton", "Asia/Kolkata", "Australia/Lord_Howe" };
+
+    private static String reference(String pattern, long timestamp, TimeZone zone) {
+        SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+        format.setTimeZone(zone);
+        return format.format(new Date(timestamp));
+    }
+
+    @Test
+    public void testMatchesSimpleDateFormat() {
+        Random random = new Random(42);
+        for (String id : ZONES) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            TimeFormatter formatter = new TimeFormatter(Locale.US, zone);
+            for (int i = 0; i < 2_000; i++) {
+                long timestamp = 1_500_000_000_000L + (long) (random.nextDouble() * 400_000_000_000L);
+                assertEquals(reference("HH:mm:ss", timestamp, zone), formatter.formatTime(timestamp));
+                assertEquals(reference("MMM dd, yyyy", timestamp, zone), formatter.formatDate(timestamp));
+                assertEquals(reference("MMM dd, yyyy HH:mm:ss", timestamp, zone),
+                        formatter.formatDateTime(timestamp));
+            }
+        }
+    }
+
+    @Test
+    public void testRepeatedCallsReturnCachedString() {
+        TimeFormatter formatter = new TimeFormatter(Locale.US, TimeZone.getTimeZone("UTC"));
+        String first = formatter.formatDateTime(1_700_000_000_000L);
+        assertSame(first, formatter.formatDateTime(1_700_000_000_000L));
+        assertEquals("Nov 14, 2023 22:13:20", first);
+    }
+
+    @Test
+    public void testCacheIsBounded() {
+        TimeFormatter.LongStringCache cache = new TimeFormatter.LongStringCache(16);
+        for (long key = 0; key < 10_000; key++) {
+            cache.put(key, "v" + key);
+        }
+        assertEquals(16, cache.capacity());
+        assertEquals("v9999", cache.get(9_999));
+        assertNull(cache.get(0));
+    }
+
+    @Test
+    public void testAllocationPerBoundRow() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        TimeZone zone = TimeZone.getDefault();
+        TimeFormatter formatter = new TimeFormatter(Locale.getDefault(), zone);
+
+        // A screen of 20 rows rebound while scrolling back and forth.
+        long[] rows = new long[20];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = 1_700_000_000_000L + i * 61_000L;
+        }
+        int binds = 50_000;
+        int sink = 0;
+
+        for (int warmup = 0; warmup < 2; warmup++) {
+            long start = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < binds; i++) {
+                SimpleDateFormat format = new SimpleDateFormat("MMM dd, yyyy HH:mm:ss", Locale.getDefault());
+                sink += format.format(new Date(rows[i % rows.length])).length();
+            }
+            long before = (threads.getThreadAllocatedBytes(thread) - start) / binds;
+
+            start = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < binds; i++) {
+                sink += formatter.formatDateTime(rows[i % rows.length]).length();
+            }
+            long after = (threads.getThreadAllocatedBytes(thread) - start) / binds;
+
+            if (warmup == 1) {
+                assertTrue(after < 16);
+                assertTrue(before > 1_000);
+            }
+        }
+        assertTrue(sink > 0);
+    }
+
+    @Test
+    public void testDefaultFormatterIsCachedUntilTheZoneChanges() {
+        TimeZone original = TimeZone.getDefault();
+        try {
+            TimeFormatter formatter = TimeFormatter.refreshDefault();
+            assertSame(formatter, TimeFormatter.getDefault());
+            assertSame(formatter, TimeFormatter.refreshDefault());
+
+            TimeZone.setDefault(TimeZone.getTimeZone(original.getID().equals("Asia/Tokyo") ? "UTC" : "Asia/Tokyo"));
+            TimeFormatter changed = TimeFormatter.refreshDefault();
+            assertNotSame(formatter, changed);
+            assertSame(changed, TimeFormatter.getDefault());
+        } finally {
+            TimeZone.setDefault(original);
+            TimeFormatter.refreshDefault();
+        }
+    }
+
+    @Test
+    public void testEntriesFormatWithoutAllocating() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        LogEntry[] rows = new LogEntry[20];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new LogEntry("Happy", 1_700_000_000_000L + i * 61_000L);
+        }
+        int binds = 50_000;
+        int sink = 0;
+        long perRow = 0;
+        for (int warmup = 0; warmup < 2; warmup++) {
+            long start = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < binds; i++) {
+                sink += rows[i % rows.length].getFormattedDateTime().length();
+            }
+            perRow = (threads.getThreadAllocatedBytes(thread) - start) / binds;
+        }
+        assertTrue(perRow < 16);
+        assertTrue(sink > 0);
+    }
+}